@@ -69,6 +69,9 @@ public class ExpressoConfiguration extends Configuration {
  	//
 	public static final String KEY_SYNTAX_TO_STRING_THREAD_CACHE_TIMEOUT_IN_SECONDS           = "expresso.syntax.to.string.thread.cache.timeout";
 	public static final Long   DEFAULT_VALUE_SYNTAX_TO_STRING_THREAD_CACHE_TIMEOUT_IN_SECONDS = new Long(60);
+	// Note: < 0 means no limit, 0 means no caching, > 0 means cache to that size.
+	public static final String  KEY_PARSE_CACHE_MAXIMUM_SIZE                                  = "expresso.parse.cache.maximum.size";
+	public static final Long    DEFAULT_VALUE_PARSE_CACHE_MAXIMUM_SIZE                        = new Long(10000);
 	
 			
 	public static int getDisplayNumericPrecisionForSymbols() {
@@ -112,4 +115,10 @@ public class ExpressoConfiguration extends Configuration {
 		
 		return result;
 	}
+	
+	public static long getParseCacheMaximumSize() {
+		long result = getLong(KEY_PARSE_CACHE_MAXIMUM_SIZE, DEFAULT_VALUE_PARSE_CACHE_MAXIMUM_SIZE);
+		
+		return result;
+	}
 }
@@ -37,13 +37,26 @@
  */
 package com.sri.ai.expresso.api;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedList;
+import java.util.List;
+
 import com.google.common.annotations.Beta;
+import com.sri.ai.expresso.helper.ExpressionBatchParser;
+import com.sri.ai.expresso.helper.ParseResult;
 
 /**
  * A parser maps strings to the corresponding {@link Expression}s. To give
  * implementations a chance to free up resources and save caches, the interface
  * requires the method {@link #close()} to be called before finishing the
  * application.
+ * <p>
+ * Besides single strings, parsers can parse whole sources of top-level expressions separated by <code>;</code>
+ * (see {@link ExpressionBatchParser}), reporting errors for each expression in a {@link ParseResult}.
+ * By default these are parsed sequentially; thread-safe implementations may override
+ * {@link #getNumberOfBatchParsingThreads()} to parse them in parallel.
  * 
  * @author braz
  */
@@ -51,4 +64,39 @@ import com.google.common.annotations.Beta;
 public interface Parser {
 	Expression parse(String string);
 	void close();
+	
+	/**
+	 * Parses a string and returns a {@link ParseResult} with the expression or the errors found.
+	 * The default implementation relies on {@link #parse(String)} and can only report a generic error.
+	 */
+	default ParseResult parseWithErrorReport(String string) {
+		Expression expression = parse(string);
+		List<String> errors = new LinkedList<String>();
+		if (expression == null) {
+			errors.add("Unable to parse: " + string);
+		}
+		ParseResult result = new ParseResult(string, expression, errors);
+		return result;
+	}
+
+	/** The number of threads used to parse top-level expressions of a source; 1 by default. */
+	default int getNumberOfBatchParsingThreads() {
+		return 1;
+	}
+	
+	/**
+	 * Lazily parses the top-level expressions read from given reader, yielding them in order;
+	 * the iterator must be closed if not exhausted.
+	 */
+	default ExpressionBatchParser.ParseResultIterator parseAll(Reader reader) {
+		return new ExpressionBatchParser(this, getNumberOfBatchParsingThreads()).parse(reader);
+	}
+
+	/**
+	 * Lazily parses the top-level expressions in given file, memory-mapping it if it is large, and yields them in order;
+	 * the iterator holds the file open until exhausted or closed, so consumers that may stop early should use it in a try-with-resources block.
+	 */
+	default ExpressionBatchParser.ParseResultIterator parseAll(File file) throws IOException {
+		return new ExpressionBatchParser(this, getNumberOfBatchParsingThreads()).parse(file);
+	}
 }
@@ -52,4 +52,16 @@ public interface Symbol extends Expression {
 	 */
 	@Override
 	public Object getValue();
+
+	/**
+	 * Indicates whether the value of this symbol is an integer fitting in a <code>long</code>,
+	 * in which case it is also available, without arbitrary-precision arithmetic, from {@link #longValue()}.
+	 */
+	public boolean hasLongValue();
+
+	/**
+	 * Returns the value of this symbol as a <code>long</code>.
+	 * An error is thrown if {@link #hasLongValue()} is false.
+	 */
+	public long longValue();
 }
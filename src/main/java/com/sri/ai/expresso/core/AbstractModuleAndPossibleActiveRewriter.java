@@ -1,7 +1,18 @@
 package com.sri.ai.expresso.core;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Function;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.grinder.GrinderConfiguration;
 import com.sri.ai.grinder.api.Module;
 import com.sri.ai.grinder.api.NoOpRewriter;
 import com.sri.ai.grinder.api.Rewriter;
@@ -10,19 +21,32 @@ import com.sri.ai.grinder.core.AbstractRewriter;
 
 /**
  * A abstract module implements basic functionality of a module for keeping a list of providers,
- * registering them and clearing them when a {@link RewritingProcess} is finalized.
+ * registering them and clearing them when the last {@link RewritingProcess} using the module is finalized
+ * (modules may be shared by several processes at once, for example in a shared cardinality rewriter graph;
+ * providers are registered by rewriters of the same graph, so they are the same for all of those processes).
+ * A process is using the module from the moment it is initiated, or a provider is registered for it
+ * with {@link #register(Class, Provider, RewritingProcess)}, until it is finalized;
+ * finalizing a process more than once, or one that is not using the module, does not affect the other processes.
  * Because only {@link Rewriter}s receive notification of finalization, this extends {@link AbstractRewriter}.
  * In the future, we should modify {@link RewritingProcess} to notify {@link Module}s as well to dispense with the need for modules to be rewriters.
  * 
  * Most modules are {@link NoOpRewriter}s, but some are not. This class does not commit to being a {@link NoOpRewriter}.
  * Its extension {@link AbstractModuleNoOpRewriter} does, and is the one most often used for creating modules.
+ * <p>
+ * Providers are kept in registration order.
+ * Queries about a single expression can be dispatched with {@link #getProvidersFor(Expression)}
+ * to the providers that may know about it (see {@link Module.ProviderWithDispatchKeys}),
+ * and their results memoized per expression with {@link #getFirstNonNullResult(String, Expression, Function)}.
  * 
  * @author braz
  *
  */
 public abstract class AbstractModuleAndPossibleActiveRewriter extends AbstractRewriter implements Module {
 
-	protected ConcurrentHashMap<Module.Provider, Module.Provider> providers = new ConcurrentHashMap<Module.Provider, Module.Provider>();
+	protected CopyOnWriteArraySet<Module.Provider> providers = new CopyOnWriteArraySet<Module.Provider>();
+	private volatile ProviderIndex providerIndex = new ProviderIndex();
+	// weak so that processes abandoned without being finalized (for example, on errors) are not kept alive
+	private Set<RewritingProcess> activeProcesses = Collections.newSetFromMap(new WeakHashMap<RewritingProcess, Boolean>());
 
 	public AbstractModuleAndPossibleActiveRewriter() {
 		super();
@@ -38,6 +62,10 @@ public abstract class AbstractModuleAndPossibleActiveRewriter extends AbstractRe
 	public static void register(Class moduleClass, Provider provider, RewritingProcess process) throws Error {
 		Module module = (Module) process.findModule(moduleClass);
 		if (module != null) {
+			if (module instanceof AbstractModuleAndPossibleActiveRewriter) {
+				// the process may register providers before the module itself is notified of its initiation
+				((AbstractModuleAndPossibleActiveRewriter) module).addActiveProcess(process);
+			}
 			module.register(provider);
 		}
 //		else {
@@ -48,13 +76,134 @@ public abstract class AbstractModuleAndPossibleActiveRewriter extends AbstractRe
 
 	@Override
 	public void register(Module.Provider provider) {
-		if ( ! providers.contains(provider)) {
-			providers.put(provider, provider);
+		if (providers.add(provider)) {
+			providerIndex = new ProviderIndex();
 		}
 	}
 
+	/**
+	 * Returns the registered providers, in registration order.
+	 */
+	public List<Module.Provider> getProviders() {
+		List<Module.Provider> result = Collections.unmodifiableList(new ArrayList<Module.Provider>(providers));
+		return result;
+	}
+
+	/**
+	 * Returns the registered providers that may know about a given expression, in registration order;
+	 * these are the providers not implementing {@link Module.ProviderWithDispatchKeys}
+	 * and the ones declaring the expression's functor (if it is a function application) or syntactic form type.
+	 * The providers for each functor and syntactic form type are computed once after each registration,
+	 * so this takes constant time otherwise.
+	 */
+	public List<Module.Provider> getProvidersFor(Expression expression) {
+		List<Module.Provider> result = providerIndex.getProvidersFor(expression);
+		return result;
+	}
+
+	/**
+	 * Returns the first non-null result of a query to the providers for a given expression (see {@link #getProvidersFor(Expression)}),
+	 * or null if there is none.
+	 * Non-null results are memoized per expression in a cache kept by this module for the current set of providers
+	 * (whose maximum size is given by {@link GrinderConfiguration#getModuleQueryCacheMaximumSize()}),
+	 * and shared by all processes using it, so queries must depend on the expression only
+	 * (see {@link Module.ProviderWithDispatchKeys}).
+	 * The cache is discarded whenever the set of providers changes.
+	 * 
+	 * @param queryName
+	 *            a name for the query, distinguishing its cache from the ones of other queries to the same module.
+	 * @param expression
+	 *            the expression the query is about.
+	 * @param query
+	 *            a function invoking the query on a provider.
+	 */
+	@SuppressWarnings("unchecked")
+	protected <P extends Module.Provider, T> T getFirstNonNullResult(String queryName, Expression expression, Function<P, T> query) {
+		ProviderIndex index = providerIndex;
+		Cache<Expression, Object> cache = index.getCache(queryName);
+		Object result = cache.getIfPresent(expression);
+		if (result == null) {
+			for (Module.Provider provider : index.getProvidersFor(expression)) {
+				result = query.apply((P) provider);
+				if (result != null) {
+					cache.put(expression, result);
+					break;
+				}
+			}
+		}
+		return (T) result;
+	}
+
+	@Override
+	public void rewritingProcessInitiated(RewritingProcess process) {
+		addActiveProcess(process);
+	}
+
 	@Override
 	public void rewritingProcessFinalized(RewritingProcess process) {
-		providers.clear();
+		synchronized (activeProcesses) {
+			if (activeProcesses.remove(process) && activeProcesses.isEmpty()) {
+				providers.clear();
+				providerIndex = new ProviderIndex();
+			}
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private void addActiveProcess(RewritingProcess process) {
+		synchronized (activeProcesses) {
+			activeProcesses.add(process);
+		}
+	}
+
+	private List<Module.Provider> makeProvidersFor(Expression functor, Object syntacticFormType) {
+		List<Module.Provider> result = new ArrayList<Module.Provider>();
+		for (Module.Provider provider : providers) {
+			if (provider instanceof Module.ProviderWithDispatchKeys) {
+				Module.ProviderWithDispatchKeys providerWithDispatchKeys = (Module.ProviderWithDispatchKeys) provider;
+				if (
+						(functor != null && providerWithDispatchKeys.getHandledFunctors().contains(functor))
+						||
+						providerWithDispatchKeys.getHandledSyntacticFormTypes().contains(syntacticFormType)) {
+					result.add(provider);
+				}
+			}
+			else {
+				result.add(provider);
+			}
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * The providers for each functor and syntactic form type, and the caches of query results, computed on demand
+	 * and replaced by a new, empty index whenever the set of providers changes.
+	 */
+	private class ProviderIndex {
+		private ConcurrentHashMap<Expression, List<Module.Provider>> fromFunctorToProviders           = new ConcurrentHashMap<Expression, List<Module.Provider>>();
+		private ConcurrentHashMap<Object, List<Module.Provider>>     fromSyntacticFormTypeToProviders = new ConcurrentHashMap<Object, List<Module.Provider>>();
+		private ConcurrentHashMap<String, Cache<Expression, Object>> fromQueryNameToCache             = new ConcurrentHashMap<String, Cache<Expression, Object>>();
+
+		public Cache<Expression, Object> getCache(String queryName) {
+			Cache<Expression, Object> result =
+					fromQueryNameToCache.computeIfAbsent(
+							queryName,
+							name -> CacheBuilder.newBuilder().maximumSize(GrinderConfiguration.getModuleQueryCacheMaximumSize()).build());
+			return result;
+		}
+
+		public List<Module.Provider> getProvidersFor(Expression expression) {
+			List<Module.Provider> result;
+			Object syntacticFormType = expression.getSyntacticFormType();
+			if (syntacticFormType.equals("Function application")) {
+				result = fromFunctorToProviders.computeIfAbsent(expression.getFunctor(), functor -> makeProvidersFor(functor, syntacticFormType));
+			}
+			else {
+				result = fromSyntacticFormTypeToProviders.computeIfAbsent(syntacticFormType, type -> makeProvidersFor(null, type));
+			}
+			return result;
+		}
 	}
 }
\ No newline at end of file
@@ -67,10 +67,24 @@ import com.sri.ai.util.math.Rational;
 public class DefaultSymbol extends AbstractNonQuantifiedExpression implements Symbol {
 	private static final long serialVersionUID = 1L;
 	
+	//
+	// Integer symbols in this range are always shared, independently of the global symbol table settings
+	// (which by default does not cache numeric symbols).
+	// Note: these must be declared before the commonly used symbols below, which are created through the cache during class initialization.
+	private static final int      SMALL_INTEGER_SYMBOLS_MINIMUM = -128;
+	private static final int      SMALL_INTEGER_SYMBOLS_MAXIMUM = 1024;
+	private static final Symbol[] SMALL_INTEGER_SYMBOLS         = makeSmallIntegerSymbols(); // made eagerly, so that they are safely published to all threads
+	// Integers whose magnitude is below this bound are guaranteed to fit in a long (2^63 is about 9.22E18).
+	private static final double   LONG_MAGNITUDE_BOUND          = 9.0E18;
+	
 	private Object value;
 	
 	// this field is merely a cache; this Expression class is not based on syntax trees like previous ones did; it merely provides a syntax tree when requested.
 	private SyntaxLeaf cachedSyntaxTree;
+	
+	// integer values fitting in a long are also kept as a primitive, so that arithmetic on them can avoid arbitrary precision.
+	private boolean hasLongValue = false;
+	private long    longValue    = 0;
 
 	@Override
 	public Object getValue() {
@@ -185,8 +199,24 @@ public class DefaultSymbol extends AbstractNonQuantifiedExpression implements Sy
 		throw new Error("Expression.rationalValue() invoked on " + this + ", which is not a number.");
 	}
 
+	@Override
+	public boolean hasLongValue() {
+		return hasLongValue;
+	}
+
+	@Override
+	public long longValue() {
+		if (hasLongValue) {
+			return longValue;
+		}
+		throw new Error("Symbol.longValue() invoked on " + this + ", which is not an integer fitting in a long.");
+	}
+
 	public static Symbol createSymbol(Object value) {
-		Symbol result = null;
+		Symbol result = getSmallIntegerSymbolOrNull(value);
+		if (result != null) {
+			return result;
+		}
 		// If global symbol table to be used and the symbol's value is not
 		// an expression - i.e. quoted expressions of the form:
 		// <X>
@@ -209,10 +239,70 @@ public class DefaultSymbol extends AbstractNonQuantifiedExpression implements Sy
 		return result;
 	}
 
+	private static Symbol[] makeSmallIntegerSymbols() {
+		Symbol[] result = new Symbol[SMALL_INTEGER_SYMBOLS_MAXIMUM - SMALL_INTEGER_SYMBOLS_MINIMUM + 1];
+		for (int i = 0; i != result.length; i++) {
+			result[i] = new DefaultSymbol(SMALL_INTEGER_SYMBOLS_MINIMUM + i);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the shared symbol for an integer value (given as a primitive wrapper or {@link Rational})
+	 * within the small integers range,
+	 * or <code>null</code> if the value is not such an integer.
+	 */
+	private static Symbol getSmallIntegerSymbolOrNull(Object value) {
+		long integerValue;
+		if (isPrimitiveIntegerNumber(value)) {
+			integerValue = ((Number) value).longValue();
+		}
+		else if (value instanceof Rational) {
+			Rational rational = (Rational) value;
+			double doubleValue = rational.doubleValue();
+			if (doubleValue < SMALL_INTEGER_SYMBOLS_MINIMUM || doubleValue > SMALL_INTEGER_SYMBOLS_MAXIMUM || ! rational.isInteger()) {
+				return null;
+			}
+			integerValue = rational.longValue();
+		}
+		else {
+			return null;
+		}
+		
+		if (integerValue < SMALL_INTEGER_SYMBOLS_MINIMUM || integerValue > SMALL_INTEGER_SYMBOLS_MAXIMUM) {
+			return null;
+		}
+		
+		Symbol result = SMALL_INTEGER_SYMBOLS[(int) (integerValue - SMALL_INTEGER_SYMBOLS_MINIMUM)];
+		return result;
+	}
+
+	private static boolean isPrimitiveIntegerNumber(Object value) {
+		boolean result = value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+		return result;
+	}
+
+	private static Rational makeExactRational(long integerValue) {
+		Rational result;
+		if (integerValue >= Integer.MIN_VALUE && integerValue <= Integer.MAX_VALUE) {
+			result = new Rational((int) integerValue);
+		}
+		else {
+			result = new Rational(Long.toString(integerValue));
+		}
+		return result;
+	}
+
 	// Note: End users can only instantiate Symbols via the factory method.
 	private DefaultSymbol(Object value) {
 		
-		if (value instanceof Number && !(value instanceof Rational)) {
+		if (isPrimitiveIntegerNumber(value)) {
+			// integers are converted exactly, rather than through doubleValue(), which loses precision for large longs.
+			longValue    = ((Number) value).longValue();
+			hasLongValue = true;
+			value = makeExactRational(longValue);
+		}
+		else if (value instanceof Number && !(value instanceof Rational)) {
 			value = new Rational(((Number)value).doubleValue());
 		} 
 		else if (value.equals("true")) {
@@ -230,6 +320,14 @@ public class DefaultSymbol extends AbstractNonQuantifiedExpression implements Sy
 			}
 		}
 	
+		if ( ! hasLongValue && value instanceof Rational) {
+			Rational rational = (Rational) value;
+			if (Math.abs(rational.doubleValue()) < LONG_MAGNITUDE_BOUND && rational.isInteger()) {
+				longValue    = rational.longValue();
+				hasLongValue = true;
+			}
+		}
+	
 		cachedSyntaxTree = DefaultSyntaxLeaf.createSyntaxLeaf(value);
 		this.value = value;
 	}
@@ -0,0 +1,420 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.expresso.helper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.expresso.api.Parser;
+import com.sri.ai.util.collect.EZIterator;
+
+/**
+ * Parses sources containing many top-level expressions, separated by <code>;</code>
+ * (which is not used by the expression syntax itself except inside quotes and comments).
+ * Expressions are read lazily, parsed by up to a given number of threads at once, and
+ * yielded in the order they appear in the source as {@link ParseResult}s,
+ * which carry the error messages of expressions that could not be parsed.
+ * <p>
+ * Parsing in more than one thread requires the parser to be thread-safe,
+ * and is done by a pool of that many threads owned by the returned iterator.
+ * Iterators release their source and threads once they are exhausted;
+ * consumers stopping earlier must {@link ParseResultIterator#close() close} them.
+ * 
+ * @author braz
+ *
+ */
+@Beta
+public class ExpressionBatchParser {
+
+	/** Files at least this large are memory-mapped instead of read through a stream. */
+	public static final long MINIMUM_SIZE_OF_MEMORY_MAPPED_FILES = 1 << 16;
+	
+	/** The number of characters decoded at a time from memory-mapped files. */
+	private static final int DECODING_CHUNK_SIZE = 1 << 14;
+	
+	/**
+	 * An iterator over parse results that holds a source and possibly threads,
+	 * released by {@link #close()} (which is called automatically once the iterator is exhausted).
+	 */
+	public static interface ParseResultIterator extends Iterator<ParseResult>, Closeable {
+		@Override
+		void close();
+	}
+	
+	private Parser parser;
+	private int numberOfThreads;
+	
+	public ExpressionBatchParser(Parser parser, int numberOfThreads) {
+		this.parser = parser;
+		this.numberOfThreads = numberOfThreads;
+	}
+	
+	/**
+	 * Returns an iterator over the results of parsing the top-level expressions in given file,
+	 * which is memory-mapped (and decoded a chunk at a time) if it is large.
+	 */
+	public ParseResultIterator parse(File file) throws IOException {
+		Reader reader;
+		long size = file.length();
+		if (size >= MINIMUM_SIZE_OF_MEMORY_MAPPED_FILES && size <= Integer.MAX_VALUE) {
+			try (FileInputStream inputStream = new FileInputStream(file)) {
+				// the mapping remains valid after the channel is closed
+				FileChannel channel = inputStream.getChannel();
+				reader = new ByteBufferReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+			}
+		}
+		else {
+			reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
+		}
+		ParseResultIterator result;
+		try {
+			result = parse(reader);
+		}
+		catch (Throwable throwable) {
+			reader.close();
+			throw throwable;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns an iterator over the results of parsing the top-level expressions read from given reader,
+	 * which is closed once all of them have been read or the iterator is closed.
+	 */
+	public ParseResultIterator parse(Reader reader) {
+		TopLevelExpressionsIterator texts = new TopLevelExpressionsIterator(reader);
+		ParseResultIterator result;
+		if (numberOfThreads <= 1) {
+			result = new SequentialParseIterator(texts);
+		}
+		else {
+			result = new ParallelParseIterator(texts, numberOfThreads);
+		}
+		return result;
+	}
+
+	//
+	// PRIVATE
+	//
+	
+	private ParseResult parse(TopLevelExpression topLevelExpression) {
+		ParseResult result = parser.parseWithErrorReport(topLevelExpression.text).atPosition(topLevelExpression.index, topLevelExpression.line);
+		return result;
+	}
+	
+	private class SequentialParseIterator extends EZIterator<ParseResult> implements ParseResultIterator {
+		private TopLevelExpressionsIterator texts;
+		
+		public SequentialParseIterator(TopLevelExpressionsIterator texts) {
+			this.texts = texts;
+		}
+
+		@Override
+		protected ParseResult calculateNext() {
+			ParseResult result = texts.hasNext()? parse(texts.next()) : null;
+			return result;
+		}
+
+		@Override
+		public void close() {
+			texts.close();
+		}
+	}
+	
+	/**
+	 * Keeps up to twice as many parsing tasks as threads running ahead of the consumer,
+	 * in a pool of its own, and yields their results in submission order.
+	 */
+	private class ParallelParseIterator extends EZIterator<ParseResult> implements ParseResultIterator {
+		private TopLevelExpressionsIterator texts;
+		private int maximumNumberOfPendingTasks;
+		private ExecutorService executor;
+		private LinkedList<Future<ParseResult>> pendingTasks = new LinkedList<Future<ParseResult>>();
+		
+		public ParallelParseIterator(TopLevelExpressionsIterator texts, int numberOfThreads) {
+			this.texts = texts;
+			this.maximumNumberOfPendingTasks = 2*numberOfThreads;
+			this.executor = Executors.newFixedThreadPool(numberOfThreads, runnable -> {
+				Thread thread = new Thread(runnable, "Expression batch parser");
+				thread.setDaemon(true); // so that iterators that are not closed do not keep the application running
+				return thread;
+			});
+		}
+
+		@Override
+		protected ParseResult calculateNext() {
+			while (pendingTasks.size() < maximumNumberOfPendingTasks && texts.hasNext()) {
+				final TopLevelExpression topLevelExpression = texts.next();
+				pendingTasks.add(executor.submit(() -> parse(topLevelExpression)));
+			}
+			ParseResult result = null;
+			if ( ! pendingTasks.isEmpty()) {
+				try {
+					result = pendingTasks.removeFirst().get();
+				}
+				catch (InterruptedException exception) {
+					Thread.currentThread().interrupt();
+					throw new Error("Interrupted while waiting for parsing of top-level expression", exception);
+				}
+				catch (ExecutionException exception) {
+					throw new Error("Unexpected exception while parsing top-level expression", exception.getCause());
+				}
+			}
+			else {
+				executor.shutdown();
+			}
+			return result;
+		}
+
+		@Override
+		public void close() {
+			for (Future<ParseResult> pendingTask : pendingTasks) {
+				pendingTask.cancel(true);
+			}
+			pendingTasks.clear();
+			executor.shutdownNow();
+			texts.close();
+		}
+	}
+	
+	private static class TopLevelExpression {
+		public String text;
+		public int index;
+		public int line;
+		
+		public TopLevelExpression(String text, int index, int line) {
+			this.text = text;
+			this.index = index;
+			this.line = line;
+		}
+	}
+	
+	/**
+	 * Splits the text read from a reader into the texts of its top-level expressions,
+	 * skipping the ones containing nothing but white space and comments.
+	 */
+	private static class TopLevelExpressionsIterator extends EZIterator<TopLevelExpression> {
+		private static final int END = -1;
+		
+		private BufferedReader reader;
+		private boolean closed = false;
+		private int lookAhead;
+		private int currentLine = 1;
+		private int index = 0;
+		
+		public TopLevelExpressionsIterator(Reader reader) {
+			this.reader = reader instanceof BufferedReader? (BufferedReader) reader : new BufferedReader(reader);
+			this.lookAhead = read();
+		}
+
+		@Override
+		protected TopLevelExpression calculateNext() {
+			TopLevelExpression result = null;
+			while ( ! closed && result == null && lookAhead != END) {
+				StringBuilder text = new StringBuilder();
+				int firstLine = readUntilSeparatorOrEnd(text);
+				if (firstLine != -1) {
+					result = new TopLevelExpression(text.toString(), index++, firstLine);
+				}
+			}
+			if (result == null) {
+				close();
+			}
+			return result;
+		}
+
+		/**
+		 * Reads text up to the next top-level separator (which is consumed but not appended) or the end of the input,
+		 * and returns the line of its first character not in white space or comments, or -1 if there is none.
+		 */
+		private int readUntilSeparatorOrEnd(StringBuilder text) {
+			int firstLine = -1;
+			int previous = END; // previous character, if it can be followed by primes (as in X'), or END
+			while (lookAhead != END && lookAhead != ';') {
+				int c = next(text);
+				if (c == '/' && lookAhead == '*') {
+					next(text);
+					int previousInComment = END;
+					while (lookAhead != END && ! (previousInComment == '*' && lookAhead == '/')) {
+						previousInComment = next(text);
+					}
+					next(text);
+					previous = END;
+				}
+				else if (c == '/' && lookAhead == '/') {
+					while (lookAhead != END && lookAhead != '\n') {
+						next(text);
+					}
+					previous = END;
+				}
+				else if (Character.isWhitespace(c)) {
+					previous = END;
+				}
+				else {
+					if (firstLine == -1) {
+						firstLine = currentLine;
+					}
+					boolean isPrime = c == '\'' && previous != END;
+					if ((c == '\'' || c == '"') && ! isPrime) {
+						while (lookAhead != END && lookAhead != c) {
+							if (next(text) == '\\') {
+								next(text);
+							}
+						}
+						next(text);
+						previous = END;
+					}
+					else {
+						previous = isPrime || Character.isLetterOrDigit(c) || c == '_'? c : END;
+					}
+				}
+			}
+			if (lookAhead == ';') {
+				lookAhead = read();
+			}
+			return firstLine;
+		}
+		
+		/** Appends the look-ahead character, if any, to given text, advances, and returns it. */
+		private int next(StringBuilder text) {
+			int c = lookAhead;
+			if (c != END) {
+				text.append((char) c);
+				lookAhead = read();
+			}
+			return c;
+		}
+		
+		private int read() {
+			try {
+				if (lookAhead == '\n') {
+					currentLine++;
+				}
+				int result = reader.read();
+				return result;
+			}
+			catch (IOException exception) {
+				throw new Error("Could not read top-level expressions", exception);
+			}
+		}
+		
+		public void close() {
+			if ( ! closed) {
+				closed = true;
+				try {
+					reader.close();
+				}
+				catch (IOException exception) {
+					throw new Error("Could not close reader of top-level expressions", exception);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * A {@link Reader} on the UTF-8 characters in a {@link ByteBuffer}, such as a memory-mapped file,
+	 * decoding them a chunk at a time so that the whole text is never held in memory.
+	 */
+	private static class ByteBufferReader extends Reader {
+		private ByteBuffer bytes;
+		private CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+		private CharBuffer characters = CharBuffer.allocate(DECODING_CHUNK_SIZE);
+		private boolean flushed = false;
+		
+		public ByteBufferReader(ByteBuffer bytes) {
+			this.bytes = bytes;
+			characters.flip(); // nothing decoded yet
+		}
+		
+		@Override
+		public int read(char[] destination, int offset, int length) throws IOException {
+			if ( ! characters.hasRemaining()) {
+				decodeNextChunk();
+			}
+			int result;
+			if (characters.hasRemaining()) {
+				result = Math.min(length, characters.remaining());
+				characters.get(destination, offset, result);
+			}
+			else {
+				result = -1;
+			}
+			return result;
+		}
+
+		private void decodeNextChunk() throws IOException {
+			characters.clear();
+			if (bytes != null && ! flushed) {
+				if (bytes.hasRemaining()) {
+					CoderResult coderResult = decoder.decode(bytes, characters, true);
+					if (coderResult.isError()) {
+						coderResult.throwException();
+					}
+				}
+				if ( ! bytes.hasRemaining() && characters.hasRemaining()) {
+					// flushing may not fit in what is left of the chunk, in which case it continues in the next one
+					flushed = decoder.flush(characters).isUnderflow();
+				}
+			}
+			characters.flip();
+		}
+
+		@Override
+		public void close() {
+			bytes = null; // the mapping itself is only released when garbage collected
+		}
+	}
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.expresso.helper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.expresso.api.CompoundSyntaxTree;
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.api.Symbol;
+import com.sri.ai.expresso.api.SyntaxTree;
+import com.sri.ai.util.Util;
+import com.sri.ai.util.math.Rational;
+
+/**
+ * A compact binary format for {@link Expression}s, meant for loading large models
+ * without re-parsing their textual representation.
+ * <p>
+ * Expressions are written as their syntax trees in pre-order.
+ * Strings (symbol names and functors) are written once per stream and referred to by index afterwards,
+ * integers fitting in a <code>long</code> are written as variable-length integers,
+ * and other numbers as the bytes of their numerator and denominator.
+ * Only the symbol values expressions actually use (strings, booleans, numbers and quoted expressions) are supported;
+ * in particular, Java serialization is never used, so reading untrusted input cannot instantiate arbitrary classes.
+ * Reading rebuilds the expressions with {@link Expressions#makeExpressionOnSyntaxTreeWithLabelAndSubTrees(Object, Object...)},
+ * so the result is equal to the original expression.
+ * Malformed input is reported as an {@link IOException};
+ * in particular, memory is only allocated as the data it is meant for is actually read,
+ * so counts and lengths in forged input cannot cause the allocation of arbitrarily large arrays.
+ * 
+ * @author braz
+ */
+@Beta
+public class ExpressionBinaryFormat {
+	
+	private static final int  MAGIC_NUMBER = 0x41494358; // "AICX"
+	private static final byte VERSION      = 2;
+	
+	private static final byte NULL        = 0;
+	private static final byte NEW_STRING  = 1;
+	private static final byte STRING      = 2;
+	private static final byte TRUE        = 3;
+	private static final byte FALSE       = 4;
+	private static final byte LONG        = 5;
+	private static final byte RATIONAL    = 6;
+	private static final byte QUOTED      = 7;
+	private static final byte COMPOUND    = 8;
+	private static final byte LONG_STRING = 9;
+	
+	// writeUTF is limited to 65535 bytes, that is, at least this many characters
+	private static final int MAXIMUM_UTF_STRING_LENGTH = 65535 / 3;
+	
+	// byte arrays longer than this are read in chunks of this size, so that their memory is allocated as they are read
+	private static final int BYTES_CHUNK_SIZE = 64*1024;
+
+	/** Writes a list of expressions to an output stream (which is not closed). */
+	public static void write(List<Expression> expressions, OutputStream outputStream) throws IOException {
+		DataOutputStream output = new DataOutputStream(outputStream);
+		output.writeInt(MAGIC_NUMBER);
+		output.writeByte(VERSION);
+		writeUnsignedVariableLengthLong(expressions.size(), output);
+		Writer writer = new Writer(output);
+		for (Expression expression : expressions) {
+			writer.writeExpression(expression);
+		}
+		output.flush();
+	}
+
+	/** Reads a list of expressions written by {@link #write(List, OutputStream)} from an input stream (which is not closed). */
+	public static List<Expression> read(InputStream inputStream) throws IOException {
+		DataInputStream input = new DataInputStream(inputStream);
+		if (input.readInt() != MAGIC_NUMBER) {
+			throw new IOException("Input is not in the binary expression format");
+		}
+		byte version = input.readByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported binary expression format version " + version);
+		}
+		int numberOfExpressions = readCount(input);
+		List<Expression> result = new ArrayList<Expression>(); // not pre-allocated, since the count has not been validated
+		Reader reader = new Reader(input);
+		for (int i = 0; i != numberOfExpressions; i++) {
+			result.add(reader.readExpression());
+		}
+		return result;
+	}
+
+	/** Convenience method returning the binary representation of a single expression. */
+	public static byte[] toBytes(Expression expression) {
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		try {
+			write(Util.list(expression), byteArrayOutputStream);
+		}
+		catch (IOException exception) {
+			throw new Error("Unexpected error writing " + expression + " to memory", exception);
+		}
+		return byteArrayOutputStream.toByteArray();
+	}
+
+	/** Convenience method returning the single expression represented by the output of {@link #toBytes(Expression)}. */
+	public static Expression fromBytes(byte[] bytes) {
+		try {
+			List<Expression> expressions = read(new ByteArrayInputStream(bytes));
+			return expressions.get(0);
+		}
+		catch (IOException exception) {
+			throw new Error("Invalid binary expression representation", exception);
+		}
+	}
+
+	//
+	// PRIVATE
+	//
+	
+	private static class Writer {
+		private DataOutput           output;
+		private Map<String, Integer> stringIndices = new HashMap<String, Integer>();
+		
+		public Writer(DataOutput output) {
+			this.output = output;
+		}
+		
+		public void writeExpression(Expression expression) throws IOException {
+			writeSyntaxTree(expression == null? null : expression.getSyntaxTree());
+		}
+		
+		private void writeSyntaxTree(SyntaxTree syntaxTree) throws IOException {
+			if (syntaxTree == null) {
+				output.writeByte(NULL);
+			}
+			else if (syntaxTree instanceof CompoundSyntaxTree) {
+				output.writeByte(COMPOUND);
+				writeSyntaxTree(syntaxTree.getRootTree());
+				List<SyntaxTree> subTrees = syntaxTree.getImmediateSubTrees();
+				writeUnsignedVariableLengthLong(subTrees.size(), output);
+				for (SyntaxTree subTree : subTrees) {
+					writeSyntaxTree(subTree);
+				}
+			}
+			else {
+				writeValue(syntaxTree.getValue());
+			}
+		}
+		
+		private void writeValue(Object value) throws IOException {
+			if (value instanceof String) {
+				writeString((String) value);
+			}
+			else if (value instanceof Boolean) {
+				output.writeByte(((Boolean) value).booleanValue()? TRUE : FALSE);
+			}
+			else if (value instanceof Expression) {
+				output.writeByte(QUOTED);
+				writeExpression((Expression) value);
+			}
+			else if (value instanceof Number) {
+				Symbol numericSymbol = Expressions.makeSymbol(value);
+				if (numericSymbol.hasLongValue()) {
+					output.writeByte(LONG);
+					writeUnsignedVariableLengthLong(zigZagEncode(numericSymbol.longValue()), output);
+				}
+				else {
+					Rational rational = numericSymbol.rationalValue();
+					output.writeByte(RATIONAL);
+					writeBytes(rational.getNumerator().toByteArray(), output);
+					writeBytes(rational.getDenominator().toByteArray(), output);
+				}
+			}
+			else {
+				throw new IOException("Symbol value " + value + " of " + value.getClass() + " is not supported by the binary expression format");
+			}
+		}
+		
+		private void writeString(String string) throws IOException {
+			Integer index = stringIndices.get(string);
+			if (index != null) {
+				output.writeByte(STRING);
+				writeUnsignedVariableLengthLong(index, output);
+			}
+			else if (string.length() > MAXIMUM_UTF_STRING_LENGTH) {
+				// too long for writeUTF; rare enough to be left out of the string table
+				output.writeByte(LONG_STRING);
+				writeBytes(string.getBytes(StandardCharsets.UTF_8), output);
+			}
+			else {
+				stringIndices.put(string, stringIndices.size());
+				output.writeByte(NEW_STRING);
+				output.writeUTF(string);
+			}
+		}
+	}
+	
+	private static class Reader {
+		private DataInput    input;
+		private List<String> strings = new ArrayList<String>();
+		
+		public Reader(DataInput input) {
+			this.input = input;
+		}
+		
+		public Expression readExpression() throws IOException {
+			byte tag = input.readByte();
+			Expression result;
+			if (tag == NULL) {
+				result = null;
+			}
+			else if (tag == COMPOUND) {
+				result = readCompoundExpression();
+			}
+			else {
+				result = Expressions.makeSymbol(readValue(tag));
+			}
+			return result;
+		}
+		
+		private Expression readCompoundExpression() throws IOException {
+			Object label = readLabel();
+			int numberOfSubTrees = readCount(input);
+			List<Object> subExpressions = new ArrayList<Object>(); // not pre-allocated, since the count has not been validated
+			for (int i = 0; i != numberOfSubTrees; i++) {
+				subExpressions.add(readExpression());
+			}
+			Expression result = Expressions.makeExpressionOnSyntaxTreeWithLabelAndSubTrees(label, subExpressions.toArray());
+			return result;
+		}
+		
+		/**
+		 * Reads the root tree of a compound syntax tree, returning its value if it is a symbol
+		 * (which is what syntax-tree-based construction expects as a label),
+		 * or the corresponding expression otherwise (as in <code>f(x)(y)</code>).
+		 */
+		private Object readLabel() throws IOException {
+			byte tag = input.readByte();
+			Object result;
+			if (tag == COMPOUND) {
+				result = readCompoundExpression();
+			}
+			else if (tag == NULL) {
+				throw new IOException("Null root tree in binary expression format");
+			}
+			else {
+				result = readValue(tag);
+			}
+			return result;
+		}
+		
+		private Object readValue(byte tag) throws IOException {
+			Object result;
+			switch (tag) {
+			case NEW_STRING:
+				String string = input.readUTF();
+				strings.add(string);
+				result = string;
+				break;
+			case STRING:
+				long index = readUnsignedVariableLengthLong(input);
+				if (index >= strings.size()) {
+					throw new IOException("Invalid string index " + index + " in binary expression format");
+				}
+				result = strings.get((int) index);
+				break;
+			case TRUE:
+				result = Boolean.TRUE;
+				break;
+			case FALSE:
+				result = Boolean.FALSE;
+				break;
+			case LONG:
+				result = Long.valueOf(zigZagDecode(readUnsignedVariableLengthLong(input)));
+				break;
+			case LONG_STRING:
+				result = new String(readBytes(input), StandardCharsets.UTF_8);
+				break;
+			case RATIONAL:
+				BigInteger numerator   = readBigInteger(input);
+				BigInteger denominator = readBigInteger(input);
+				if (denominator.signum() == 0) {
+					throw new IOException("Zero denominator in binary expression format");
+				}
+				result = new Rational(numerator, denominator);
+				break;
+			case QUOTED:
+				result = readExpression();
+				break;
+			default:
+				throw new IOException("Invalid tag " + tag + " in binary expression format");
+			}
+			return result;
+		}
+	}
+
+	private static void writeUnsignedVariableLengthLong(long value, DataOutput output) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			output.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		output.writeByte((int) value);
+	}
+
+	private static long readUnsignedVariableLengthLong(DataInput input) throws IOException {
+		long result = 0;
+		int shift = 0;
+		byte currentByte;
+		do {
+			if (shift > 63) {
+				throw new IOException("Variable-length integer too long in binary expression format");
+			}
+			currentByte = input.readByte();
+			result |= ((long) (currentByte & 0x7F)) << shift;
+			shift += 7;
+		} while ((currentByte & 0x80) != 0);
+		return result;
+	}
+
+	/** Reads a count of items, which must fit in an int (but whose items may still not be there). */
+	private static int readCount(DataInput input) throws IOException {
+		long result = readUnsignedVariableLengthLong(input);
+		if (result > Integer.MAX_VALUE) {
+			throw new IOException("Invalid count " + result + " in binary expression format");
+		}
+		return (int) result;
+	}
+
+	private static void writeBytes(byte[] bytes, DataOutput output) throws IOException {
+		writeUnsignedVariableLengthLong(bytes.length, output);
+		output.write(bytes);
+	}
+
+	private static byte[] readBytes(DataInput input) throws IOException {
+		int length = readCount(input);
+		byte[] result;
+		if (length <= BYTES_CHUNK_SIZE) {
+			result = new byte[length];
+			input.readFully(result);
+		}
+		else {
+			// a forged length makes reading run out of input before much memory is allocated
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(BYTES_CHUNK_SIZE);
+			byte[] chunk = new byte[BYTES_CHUNK_SIZE];
+			int remaining = length;
+			while (remaining != 0) {
+				int chunkLength = Math.min(remaining, BYTES_CHUNK_SIZE);
+				input.readFully(chunk, 0, chunkLength);
+				bytes.write(chunk, 0, chunkLength);
+				remaining -= chunkLength;
+			}
+			result = bytes.toByteArray();
+		}
+		return result;
+	}
+
+	private static BigInteger readBigInteger(DataInput input) throws IOException {
+		byte[] bytes = readBytes(input);
+		if (bytes.length == 0) {
+			throw new IOException("Empty integer in binary expression format");
+		}
+		return new BigInteger(bytes);
+	}
+
+	private static long zigZagEncode(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long zigZagDecode(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
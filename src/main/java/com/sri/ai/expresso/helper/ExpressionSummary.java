@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.expresso.helper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.api.ExpressionAndContext;
+import com.sri.ai.grinder.core.AbstractExpression;
+
+/**
+ * An immutable, compact summary of the structure of an {@link Expression}:
+ * its number of nodes, its depth, the distinct symbols and free symbols occurring in it
+ * (in depth-first order of first occurrence), and a 64-bit Bloom filter over the hash codes of all its sub-expressions.
+ * <p>
+ * Summaries are computed compositionally from the summaries of immediate sub-expressions
+ * and cached by {@link AbstractExpression}, so queries such as
+ * {@link Expressions#freeSymbols(Expression, com.sri.ai.grinder.api.RewritingProcess)}
+ * and {@link Expressions#isSubExpressionOf(Expression, Expression)}
+ * only traverse an expression once in its lifetime.
+ * <p>
+ * Arrays of symbols equal to the ones of a sub-expression (or, for free symbols, to the ones of all symbols) are shared,
+ * so that summaries of deep expressions do not hold a copy of their symbols per node.
+ * Symbols are referred to by the summaries only (rather than, say, interned into ids in a global table),
+ * so they are released along with the expressions using them.
+ * 
+ * @author braz
+ */
+@Beta
+public class ExpressionSummary {
+
+	private final long         numberOfNodes;
+	private final int          depth;
+	private final long         subExpressionsFilter;
+	private final Expression[] symbols;
+	private final Expression[] freeSymbols;
+	
+	private ExpressionSummary(long numberOfNodes, int depth, long subExpressionsFilter, Expression[] symbols, Expression[] freeSymbols) {
+		this.numberOfNodes        = numberOfNodes;
+		this.depth                = depth;
+		this.subExpressionsFilter = subExpressionsFilter;
+		this.symbols              = symbols;
+		this.freeSymbols          = freeSymbols;
+	}
+
+	/**
+	 * Returns the summary of a given expression,
+	 * using the one cached in it if it is an {@link AbstractExpression}.
+	 */
+	public static ExpressionSummary get(Expression expression) {
+		ExpressionSummary result;
+		if (expression instanceof AbstractExpression) {
+			result = ((AbstractExpression) expression).getSummary();
+		}
+		else {
+			result = make(expression);
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the summary of a given expression from the (possibly cached) summaries of its immediate sub-expressions.
+	 */
+	public static ExpressionSummary make(Expression expression) {
+		if (expression.getSyntacticFormType().equals("Symbol")) {
+			Expression[] singleton = new Expression[] { expression };
+			return new ExpressionSummary(1, 1, filterBit(expression), singleton, singleton);
+		}
+		
+		long numberOfNodes = 1;
+		int  maximumSubExpressionDepth = 0;
+		long subExpressionsFilter = filterBit(expression);
+		List<ExpressionSummary> subSummaries = new ArrayList<ExpressionSummary>();
+		List<List<Expression>>  subIndices   = new ArrayList<List<Expression>>();
+		
+		// sub-summaries are all obtained before merging, since obtaining them may recursively use the merging scratch space
+		Iterator<ExpressionAndContext> subExpressionsAndContextsIterator = expression.getImmediateSubExpressionsAndContextsIterator();
+		while (subExpressionsAndContextsIterator.hasNext()) {
+			ExpressionAndContext subExpressionAndContext = subExpressionsAndContextsIterator.next();
+			Expression subExpression = subExpressionAndContext.getExpression();
+			if (subExpression == null) {
+				continue;
+			}
+			
+			ExpressionSummary subSummary = get(subExpression);
+			numberOfNodes = saturatedAdd(numberOfNodes, subSummary.numberOfNodes);
+			maximumSubExpressionDepth = Math.max(maximumSubExpressionDepth, subSummary.depth);
+			subExpressionsFilter |= subSummary.subExpressionsFilter;
+			subSummaries.add(subSummary);
+			subIndices.add(subExpressionAndContext.getIndices());
+		}
+		
+		SymbolArrayBuilder symbols     = symbolsBuilder.get();
+		SymbolArrayBuilder freeSymbols = freeSymbolsBuilder.get();
+		for (int i = 0; i != subSummaries.size(); i++) {
+			ExpressionSummary subSummary = subSummaries.get(i);
+			symbols.addAll(subSummary.symbols);
+			
+			List<Expression> indices = subIndices.get(i);
+			if (indices.isEmpty()) {
+				freeSymbols.addAll(subSummary.freeSymbols);
+			}
+			else {
+				for (Expression freeSymbol : subSummary.freeSymbols) {
+					if ( ! indices.contains(freeSymbol)) {
+						freeSymbols.add(freeSymbol);
+					}
+				}
+			}
+		}
+		
+		Expression[] symbolsArray     = shareIfPossible(symbols.toArrayAndReset(), subSummaries, false);
+		Expression[] freeSymbolsArray = freeSymbols.toArrayAndReset();
+		// free symbols are very often all the symbols, in which case we share the array
+		freeSymbolsArray = Arrays.equals(freeSymbolsArray, symbolsArray)? symbolsArray : shareIfPossible(freeSymbolsArray, subSummaries, true);
+		
+		ExpressionSummary result = new ExpressionSummary(numberOfNodes, maximumSubExpressionDepth + 1, subExpressionsFilter, symbolsArray, freeSymbolsArray);
+		return result;
+	}
+
+	/** The number of nodes of the expression seen as a tree (shared sub-expressions are counted once per occurrence), saturated at {@link Long#MAX_VALUE}. */
+	public long getNumberOfNodes() {
+		return numberOfNodes;
+	}
+
+	/** The depth of the expression, symbols having depth 1. */
+	public int getDepth() {
+		return depth;
+	}
+
+	/** The distinct symbols occurring in the expression (free or not), in depth-first order of first occurrence. */
+	public List<Expression> getSymbols() {
+		return Collections.unmodifiableList(Arrays.asList(symbols));
+	}
+
+	/** The distinct free symbols of the expression, in depth-first order of first occurrence. */
+	public List<Expression> getFreeSymbols() {
+		return Collections.unmodifiableList(Arrays.asList(freeSymbols));
+	}
+
+	/** Indicates whether a given symbol occurs in the expression (free or not); takes time linear in the number of distinct symbols. */
+	public boolean containsSymbol(Expression symbol) {
+		boolean result = contains(symbols, symbol);
+		return result;
+	}
+	
+	/**
+	 * Indicates whether a given expression may be a sub-expression of the summarized one.
+	 * A <code>false</code> answer is definite; a <code>true</code> answer must be confirmed by a traversal,
+	 * unless the given expression is a symbol, in which case the answer is exact.
+	 */
+	public boolean mayContainSubExpression(Expression searched) {
+		if (searched.getSyntacticFormType().equals("Symbol")) {
+			return containsSymbol(searched);
+		}
+		ExpressionSummary searchedSummary = get(searched);
+		boolean result =
+				searchedSummary.depth <= depth
+				&& searchedSummary.numberOfNodes <= numberOfNodes
+				&& (filterBit(searched) & subExpressionsFilter) != 0;
+		return result;
+	}
+
+	//
+	// SYMBOL ARRAYS
+	//
+	
+	private static boolean contains(Expression[] symbols, Expression symbol) {
+		for (Expression anotherSymbol : symbols) {
+			if (anotherSymbol == symbol || anotherSymbol.equals(symbol)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/** Returns an array of a sub-summary equal to the given one if there is one, or the given one otherwise. */
+	private static Expression[] shareIfPossible(Expression[] symbols, List<ExpressionSummary> subSummaries, boolean free) {
+		for (ExpressionSummary subSummary : subSummaries) {
+			Expression[] subSymbols = free? subSummary.freeSymbols : subSummary.symbols;
+			if (subSymbols.length == symbols.length && Arrays.equals(subSymbols, symbols)) {
+				return subSymbols;
+			}
+		}
+		return symbols;
+	}
+	
+	private static ThreadLocal<SymbolArrayBuilder> symbolsBuilder     = ThreadLocal.withInitial(SymbolArrayBuilder::new);
+	private static ThreadLocal<SymbolArrayBuilder> freeSymbolsBuilder = ThreadLocal.withInitial(SymbolArrayBuilder::new);
+	
+	/**
+	 * Accumulates distinct symbols in order of first addition, reusing its storage across uses
+	 * (but not keeping the symbols once reset, so they can be released along with their expressions).
+	 */
+	private static class SymbolArrayBuilder {
+		private Expression[]    symbols = new Expression[16];
+		private int             size    = 0;
+		private Set<Expression> seen    = new HashSet<Expression>();
+		
+		public void add(Expression symbol) {
+			if (seen.add(symbol)) {
+				if (size == symbols.length) {
+					symbols = Arrays.copyOf(symbols, 2*size);
+				}
+				symbols[size++] = symbol;
+			}
+		}
+		
+		public void addAll(Expression[] symbols) {
+			for (Expression symbol : symbols) {
+				add(symbol);
+			}
+		}
+		
+		public Expression[] toArrayAndReset() {
+			Expression[] result = Arrays.copyOf(symbols, size);
+			for (int i = 0; i != size; i++) {
+				seen.remove(symbols[i]);
+				symbols[i] = null;
+			}
+			size = 0;
+			return result;
+		}
+	}
+
+	//
+	// OTHER PRIVATE METHODS
+	//
+	
+	private static long filterBit(Expression expression) {
+		int hash = expression.hashCode();
+		hash ^= (hash >>> 16);
+		hash *= 0x9E3779B9;
+		return 1L << (hash >>> 26);
+	}
+
+	private static long saturatedAdd(long a, long b) {
+		long result = a + b;
+		if (result < 0) {
+			result = Long.MAX_VALUE;
+		}
+		return result;
+	}
+}
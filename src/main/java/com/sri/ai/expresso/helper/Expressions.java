@@ -48,12 +48,14 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
+import com.sri.ai.expresso.ExpressoConfiguration;
 import com.sri.ai.expresso.api.CompoundSyntaxTree;
 import com.sri.ai.expresso.api.Expression;
 import com.sri.ai.expresso.api.ExpressionAndContext;
@@ -93,6 +95,7 @@ import com.sri.ai.grinder.library.indexexpression.IndexExpressions;
 import com.sri.ai.grinder.library.set.extensional.ExtensionalSet;
 import com.sri.ai.grinder.library.set.tuple.Tuple;
 import com.sri.ai.grinder.parser.antlr.AntlrGrinderParserWrapper;
+import com.sri.ai.util.AICUtilConfiguration;
 import com.sri.ai.util.Util;
 import com.sri.ai.util.base.Equals;
 import com.sri.ai.util.base.GetFirstOfPair;
@@ -379,12 +382,53 @@ public class Expressions {
 	}
 	
 	static private Parser parser = new AntlrGrinderParserWrapper();
+	
+	static private Cache<String, Expression> parseCache = newParseCache();
 
 	/**
 	 * Parse a string into an expression using {@link AntlrGrinderParserWrapper}.
+	 * Since expressions are immutable, results are cached (up to {@link ExpressoConfiguration#getParseCacheMaximumSize()} entries)
+	 * and the same instance is returned for repeated parses of the same string.
 	 */
 	public static Expression parse(String string) {
-		Expression result = parser.parse(string);
+		Expression result = parseCache.getIfPresent(string);
+		if (result == null) {
+			result = parser.parse(string);
+			if (result != null) { // failed parses are not cached, so that errors keep being reported
+				parseCache.put(string, result);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Empties the cache used by {@link #parse(String)}, re-reading its maximum size from {@link ExpressoConfiguration}.
+	 */
+	public static void flushParseCache() {
+		if (AICUtilConfiguration.isRecordCacheStatistics()) {
+			System.out.println("Parse Cache Stats=" + parseCache.stats());
+		}
+		parseCache.invalidateAll();
+		parseCache = newParseCache();
+	}
+
+	private static Cache<String, Expression> newParseCache() {
+		CacheBuilder<Object, Object> cb = CacheBuilder.newBuilder();
+		
+		long maximumSize = ExpressoConfiguration.getParseCacheMaximumSize();
+		// Note: a maximumSize of 
+		// < 0 means no size restrictions
+		// = 0 means no cache
+		// > 0 means maximum size of cache
+		if (maximumSize >= 0L) {			
+			cb.maximumSize(maximumSize);
+		}
+		if (AICUtilConfiguration.isRecordCacheStatistics()) {
+			cb.recordStats();
+		}
+		
+		Cache<String, Expression> result = cb.build();
+		
 		return result;
 	}
 	
@@ -558,11 +602,37 @@ public class Expressions {
 		return Util.map(Expressions.wrap(pairs).toArray());
 	}
 
+	/**
+	 * Indicates whether <code>searched</code> is a sub-expression of <code>expression</code> (or the expression itself).
+	 * Uses the cached {@link ExpressionSummary} of sub-expressions to answer in time linear in the number of distinct symbols
+	 * when <code>searched</code> is a symbol, and to prune sub-trees that cannot contain it otherwise.
+	 */
 	public static boolean isSubExpressionOf(Expression searched, Expression expression) {
-		boolean result = Util.thereExists(new SubExpressionsDepthFirstIterator(expression), new Equals<Expression>(searched));
+		if (searched.getSyntacticFormType().equals("Symbol")) {
+			boolean result = ExpressionSummary.get(expression).containsSymbol(searched);
+			return result;
+		}
+		boolean result = isNonSymbolSubExpressionOf(searched, expression);
 		return result;
 	}
 
+	private static boolean isNonSymbolSubExpressionOf(Expression searched, Expression expression) {
+		if ( ! ExpressionSummary.get(expression).mayContainSubExpression(searched)) {
+			return false;
+		}
+		if (searched.equals(expression)) {
+			return true;
+		}
+		Iterator<Expression> subExpressionsIterator = expression.getImmediateSubExpressionsIterator();
+		while (subExpressionsIterator.hasNext()) {
+			Expression subExpression = subExpressionsIterator.next();
+			if (subExpression != null && isNonSymbolSubExpressionOf(searched, subExpression)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Indicates whether any of <code>expressions</code> is a sub-expression of <code>expression</code>.
 	 */
@@ -902,7 +972,14 @@ public class Expressions {
 	 * in a given expression, for a certain predicate indicating constants.
 	 */
 	public static LinkedHashSet<Expression> getVariables(Expression argument, Predicate<Expression> isUniquelyNamedConstantPredicate) {
-		return Expressions.getSubExpressionsSatisfying(argument, new IsVariable(isUniquelyNamedConstantPredicate));
+		// variables are always symbols, so we only need to check the (cached) distinct symbols of the expression
+		LinkedHashSet<Expression> result = new LinkedHashSet<Expression>();
+		for (Expression symbol : ExpressionSummary.get(argument).getSymbols()) {
+			if (IsVariable.isVariable(symbol, isUniquelyNamedConstantPredicate)) {
+				result.add(symbol);
+			}
+		}
+		return result;
 	}
 
 	/**
@@ -915,100 +992,24 @@ public class Expressions {
 
 	/** Returns the set of free variables in an expression, according to a given process. */
 	public static Set<Expression> freeVariables(Expression expression, RewritingProcess process) {
-		Set<Expression> freeVariables       = new LinkedHashSet<Expression>(); 
-		Set<Expression> quantifiedVariables = new LinkedHashSet<Expression>();
-		
-		Expressions.freeVariables(expression, freeVariables, quantifiedVariables, process);
-		
+		// Note: this used to traverse the expression, duplicating Expression.replace a bit, although in a lighter-weight manner.
+		// Since free symbols do not depend on the process, they are now cached in the expression's summary
+		// and we only need to check which of them are variables.
+		Set<Expression> freeVariables = new LinkedHashSet<Expression>();
+		for (Expression freeSymbol : ExpressionSummary.get(expression).getFreeSymbols()) {
+			if (process.isVariable(freeSymbol)) {
+				freeVariables.add(freeSymbol);
+			}
+		}
 		return freeVariables;
 	}
 
 	/** Returns the set of free symbols in an expression, according to a given process. */
 	public static Set<Expression> freeSymbols(Expression expression, RewritingProcess process) {
-		Set<Expression> freeSymbols = new LinkedHashSet<Expression>(); 
-		Stack<Expression> quantifiedSymbols = new Stack<Expression>();
-		
-		Expressions.freeSymbols(expression, freeSymbols, quantifiedSymbols, process);
-		
+		Set<Expression> freeSymbols = new LinkedHashSet<Expression>(ExpressionSummary.get(expression).getFreeSymbols());
 		return freeSymbols;
 	}
 
-	//
-	// PRIVATE METHODS
-	//
-	private static void freeVariables(Expression expression, Set<Expression> freeVariables, Set<Expression> quantifiedVariables, RewritingProcess process) {
-		// Note: this used to be duplicating Expression.replace a bit, although in a lighter-weight, more efficient manner.
-		// However, since the changes that include a check against unregistered variables during contextual expansion
-		// (that is, constraints expanding the contextual expansion cannot contains variables that are not already in the contextual symbols),
-		// this method became more fundamentally distinct since Expression.replace uses contextual expansion and therefore these checks,
-		// while this method here does not perform such checks.
-		
-		if (expression.getSyntacticFormType().equals("Symbol")) {
-			if (process.isVariable(expression)) {
-				if (!quantifiedVariables.contains(expression)) {
-					freeVariables.add(expression);
-				}
-			}
-		} 
-		else {
-			Iterator<ExpressionAndContext> subExpressionAndContextsIterator = expression.getImmediateSubExpressionsAndContextsIterator();
-			
-			Set<Expression> newLocalQuantifiedVariables = null;
-			while (subExpressionAndContextsIterator.hasNext()) {
-				ExpressionAndContext subExpressionAndContext = subExpressionAndContextsIterator.next();
-				
-				// initialize newLocalQuantifiedVariables with an empty collection
-				if (newLocalQuantifiedVariables == null) {
-					// For efficiency, only instantiate once
-					newLocalQuantifiedVariables = new LinkedHashSet<Expression>();
-				}
-				else {
-					newLocalQuantifiedVariables.clear();
-				}
-				
-				for (Expression localVariable : subExpressionAndContext.getIndices()) {
-					if (quantifiedVariables.add(localVariable)) {
-						newLocalQuantifiedVariables.add(localVariable);
-					}
-				}
-	
-				freeVariables(subExpressionAndContext.getExpression(), freeVariables, quantifiedVariables, process);
-				
-				// Backtrack to what quantifiedVariables was at the beginning of this call; perhaps it would be more efficient to keep this on a stack?
-				quantifiedVariables.removeAll(newLocalQuantifiedVariables);
-			}
-		}
-	
-		return;
-	}
-
-	private static void freeSymbols(Expression expression, Set<Expression> freeSymbols, Stack<Expression> quantifiedSymbols, RewritingProcess process) {
-		
-		if (expression.getSyntacticFormType().equals("Symbol")) {
-			if (!quantifiedSymbols.contains(expression)) {
-				freeSymbols.add(expression);
-			}
-		} 
-		else {
-			Iterator<ExpressionAndContext> subExpressionAndContextsIterator = expression.getImmediateSubExpressionsAndContextsIterator();
-			
-			while (subExpressionAndContextsIterator.hasNext()) {
-				ExpressionAndContext subExpressionAndContext = subExpressionAndContextsIterator.next();
-				
-				IndexExpressionsSet indexExpressions = subExpressionAndContext.getIndexExpressions();
-				List<Expression> indexExpressionsList = ((ExtensionalIndexExpressionsSet) indexExpressions).getList();
-				List<Expression> newQuantifiedSymbols = Util.mapIntoList(indexExpressionsList, IndexExpressions.GET_INDEX);
-				int numberOfPushed = Util.pushAll(quantifiedSymbols, newQuantifiedSymbols);
-				
-				freeSymbols(subExpressionAndContext.getExpression(), freeSymbols, quantifiedSymbols, process);
-				
-				Util.popAll(quantifiedSymbols, numberOfPushed);
-			}
-		}
-	
-		return;
-	}
-
 	public static Map<Expression, Expression> freeSymbolsAndTypes(Expression expression, RewritingProcess process) {
 		Set<Expression> freeSymbols = freeSymbols(expression, process);
 		Map<Expression, Expression> result = new LinkedHashMap<Expression, Expression>();
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.expresso.helper;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.api.Parser;
+import com.sri.ai.util.Util;
+
+/**
+ * The outcome of parsing a piece of text with a {@link Parser}:
+ * the resulting expression if parsing succeeded, and the error messages produced otherwise.
+ * When the text is one of many top-level expressions read from a single source,
+ * its position in that source is kept as well, so errors can be traced back to it.
+ * 
+ * @author braz
+ *
+ */
+@Beta
+public class ParseResult {
+
+	private String text;
+	private Expression expression;
+	private List<String> errors;
+	private int index;
+	private int line;
+	
+	public ParseResult(String text, Expression expression, List<String> errors) {
+		this(text, expression, errors, 0, 1);
+	}
+	
+	public ParseResult(String text, Expression expression, List<String> errors, int index, int line) {
+		this.text = text;
+		this.expression = expression;
+		this.errors = Collections.unmodifiableList(errors);
+		this.index = index;
+		this.line = line;
+	}
+	
+	/** Returns a copy of this result positioned as the <code>index</code>-th expression of its source, starting at given line. */
+	public ParseResult atPosition(int index, int line) {
+		ParseResult result = new ParseResult(text, expression, errors, index, line);
+		return result;
+	}
+
+	/** The parsed text. */
+	public String getText() {
+		return text;
+	}
+
+	/** The parsed expression, or <code>null</code> if parsing failed. */
+	public Expression getExpression() {
+		return expression;
+	}
+
+	/** The error messages produced while parsing, empty if parsing succeeded. */
+	public List<String> getErrors() {
+		return errors;
+	}
+
+	/** The position (starting from 0) of the text among the top-level expressions of its source. */
+	public int getIndex() {
+		return index;
+	}
+
+	/** The line (starting from 1) of the source on which the text starts. */
+	public int getLine() {
+		return line;
+	}
+	
+	public boolean succeeded() {
+		return expression != null;
+	}
+	
+	@Override
+	public String toString() {
+		String result = succeeded()? expression.toString() : "Line " + line + ": " + Util.join("; ", errors);
+		return result;
+	}
+}
@@ -92,6 +92,42 @@ public class GrinderConfiguration extends Configuration {
 	//
 	public static final String  KEY_DEMO_APP_DEFAULT_LOOK_AND_FEEL                              = "grinder.demo.ui.default.look.and.feel";
 	public static final String  DEFAULT_VALUE_DEMO_APP_DEFAULT_LOOK_AND_FEEL                    = "Nimbus"; // available as of JDK 1.6u10, see: http://docs.oracle.com/javase/tutorial/uiswing/lookandfeel/nimbus.html
+	// How GrinderUtil.branchAndMerge* methods execute their tasks: one of the BRANCH_AND_MERGE_EXECUTOR_POLICY_* values below.
+	public static final String  KEY_BRANCH_AND_MERGE_EXECUTOR_POLICY                            = "grinder.branch.and.merge.executor.policy";
+	public static final String  BRANCH_AND_MERGE_EXECUTOR_POLICY_BRANCH_AND_MERGE               = "branch.and.merge"; // aic-util's BranchAndMerge
+	public static final String  BRANCH_AND_MERGE_EXECUTOR_POLICY_FORK_JOIN                      = "fork.join";        // a bounded, work-stealing ForkJoinPool
+	public static final String  BRANCH_AND_MERGE_EXECUTOR_POLICY_CALLER_RUNS                    = "caller.runs";      // sequentially, in the calling thread
+	public static final String  DEFAULT_VALUE_BRANCH_AND_MERGE_EXECUTOR_POLICY                  = BRANCH_AND_MERGE_EXECUTOR_POLICY_BRANCH_AND_MERGE;
+	//
+	public static final String  KEY_BRANCH_AND_MERGE_FORK_JOIN_PARALLELISM                      = "grinder.branch.and.merge.fork.join.parallelism";
+	public static final Integer DEFAULT_VALUE_BRANCH_AND_MERGE_FORK_JOIN_PARALLELISM            = Runtime.getRuntime().availableProcessors();
+	// Tasks whose arguments add up to fewer expression nodes than this are run sequentially in the calling thread, whatever the policy (0 disables the cutoff).
+	public static final String  KEY_BRANCH_AND_MERGE_SEQUENTIAL_CUTOFF                          = "grinder.branch.and.merge.sequential.cutoff";
+	public static final Long    DEFAULT_VALUE_BRANCH_AND_MERGE_SEQUENTIAL_CUTOFF                = 0L;
+	//
+	public static final String  KEY_BRANCH_AND_MERGE_RECORD_TASK_TIMING                         = "grinder.branch.and.merge.record.task.timing";
+	public static final Boolean DEFAULT_VALUE_BRANCH_AND_MERGE_RECORD_TASK_TIMING               = Boolean.FALSE;
+	//
+	public static final String  KEY_INDEPENDENT_PROBLEMS_CACHE_MAXIMUM_SIZE                     = "grinder.independent.problems.cache.maximum.size";
+	public static final Long    DEFAULT_VALUE_INDEPENDENT_PROBLEMS_CACHE_MAXIMUM_SIZE           = 10000L;
+	//
+	public static final String  KEY_SYMBOLIC_ADDITIONS_CACHE_MAXIMUM_SIZE                       = "grinder.symbolic.additions.cache.maximum.size";
+	public static final Long    DEFAULT_VALUE_SYMBOLIC_ADDITIONS_CACHE_MAXIMUM_SIZE             = 10000L;
+	//
+	public static final String  KEY_QUANTIFIED_FORMULAS_CACHE_MAXIMUM_SIZE                      = "grinder.quantified.formulas.cache.maximum.size";
+	public static final Long    DEFAULT_VALUE_QUANTIFIED_FORMULAS_CACHE_MAXIMUM_SIZE            = 10000L;
+	//
+	public static final String  KEY_ORDER_NORMALIZE_CACHE_MAXIMUM_SIZE                          = "grinder.order.normalize.cache.maximum.size";
+	public static final Long    DEFAULT_VALUE_ORDER_NORMALIZE_CACHE_MAXIMUM_SIZE                = 3000L;
+	//
+	public static final String  KEY_IF_THEN_ELSE_EXTERNALIZATION_CACHE_MAXIMUM_SIZE             = "grinder.if.then.else.externalization.cache.maximum.size";
+	public static final Long    DEFAULT_VALUE_IF_THEN_ELSE_EXTERNALIZATION_CACHE_MAXIMUM_SIZE   = 10000L;
+	//
+	public static final String  KEY_MODULE_QUERY_CACHE_MAXIMUM_SIZE                             = "grinder.module.query.cache.maximum.size";
+	public static final Long    DEFAULT_VALUE_MODULE_QUERY_CACHE_MAXIMUM_SIZE                   = 10000L;
+	//
+	public static final String  KEY_INJECTIVE_LOOK_UP_UNIFICATION_CACHE_MAXIMUM_SIZE            = "grinder.injective.look.up.unification.cache.maximum.size";
+	public static final Long    DEFAULT_VALUE_INJECTIVE_LOOK_UP_UNIFICATION_CACHE_MAXIMUM_SIZE  = 10000L;
 	
 	/**
 	 * Enable the output of trace information.
@@ -208,4 +244,70 @@ public class GrinderConfiguration extends Configuration {
 		
 		return result;
 	}
+	
+	public static String getBranchAndMergeExecutorPolicy() {
+		String result = getString(KEY_BRANCH_AND_MERGE_EXECUTOR_POLICY, DEFAULT_VALUE_BRANCH_AND_MERGE_EXECUTOR_POLICY);
+		
+		return result;
+	}
+	
+	public static int getBranchAndMergeForkJoinParallelism() {
+		int result = getInt(KEY_BRANCH_AND_MERGE_FORK_JOIN_PARALLELISM, DEFAULT_VALUE_BRANCH_AND_MERGE_FORK_JOIN_PARALLELISM);
+		
+		return result;
+	}
+	
+	public static long getBranchAndMergeSequentialCutoff() {
+		long result = getLong(KEY_BRANCH_AND_MERGE_SEQUENTIAL_CUTOFF, DEFAULT_VALUE_BRANCH_AND_MERGE_SEQUENTIAL_CUTOFF);
+		
+		return result;
+	}
+	
+	public static boolean isBranchAndMergeRecordTaskTiming() {
+		boolean result = getBoolean(KEY_BRANCH_AND_MERGE_RECORD_TASK_TIMING, DEFAULT_VALUE_BRANCH_AND_MERGE_RECORD_TASK_TIMING);
+		
+		return result;
+	}
+	
+	public static long getIndependentProblemsCacheMaximumSize() {
+		long result = getLong(KEY_INDEPENDENT_PROBLEMS_CACHE_MAXIMUM_SIZE, DEFAULT_VALUE_INDEPENDENT_PROBLEMS_CACHE_MAXIMUM_SIZE);
+		
+		return result;
+	}
+	
+	public static long getSymbolicAdditionsCacheMaximumSize() {
+		long result = getLong(KEY_SYMBOLIC_ADDITIONS_CACHE_MAXIMUM_SIZE, DEFAULT_VALUE_SYMBOLIC_ADDITIONS_CACHE_MAXIMUM_SIZE);
+		
+		return result;
+	}
+	
+	public static long getQuantifiedFormulasCacheMaximumSize() {
+		long result = getLong(KEY_QUANTIFIED_FORMULAS_CACHE_MAXIMUM_SIZE, DEFAULT_VALUE_QUANTIFIED_FORMULAS_CACHE_MAXIMUM_SIZE);
+		
+		return result;
+	}
+	
+	public static long getOrderNormalizeCacheMaximumSize() {
+		long result = getLong(KEY_ORDER_NORMALIZE_CACHE_MAXIMUM_SIZE, DEFAULT_VALUE_ORDER_NORMALIZE_CACHE_MAXIMUM_SIZE);
+		
+		return result;
+	}
+	
+	public static long getIfThenElseExternalizationCacheMaximumSize() {
+		long result = getLong(KEY_IF_THEN_ELSE_EXTERNALIZATION_CACHE_MAXIMUM_SIZE, DEFAULT_VALUE_IF_THEN_ELSE_EXTERNALIZATION_CACHE_MAXIMUM_SIZE);
+		
+		return result;
+	}
+	
+	public static long getModuleQueryCacheMaximumSize() {
+		long result = getLong(KEY_MODULE_QUERY_CACHE_MAXIMUM_SIZE, DEFAULT_VALUE_MODULE_QUERY_CACHE_MAXIMUM_SIZE);
+		
+		return result;
+	}
+	
+	public static long getInjectiveLookUpUnificationCacheMaximumSize() {
+		long result = getLong(KEY_INJECTIVE_LOOK_UP_UNIFICATION_CACHE_MAXIMUM_SIZE, DEFAULT_VALUE_INJECTIVE_LOOK_UP_UNIFICATION_CACHE_MAXIMUM_SIZE);
+		
+		return result;
+	}
 }
@@ -1,5 +1,10 @@
 package com.sri.ai.grinder.api;
 
+import java.util.Collection;
+import java.util.Collections;
+
+import com.sri.ai.expresso.api.Expression;
+
 /**
  * A module is an entity concentrating user-defined <i>providers<i> of some sort of knowledge about {@link Expression}s.
  * Providers must be <i>registered<i> with the provider.
@@ -13,5 +18,32 @@ public interface Module {
 
 	public interface Provider { }
 
+	/**
+	 * A {@link Provider} declaring the functors and syntactic form types of the expressions it provides knowledge about,
+	 * so that modules can dispatch queries about an expression directly to the providers that may answer them.
+	 * Such a provider is only consulted about function applications whose functor is in {@link #getHandledFunctors()},
+	 * and about expressions whose syntactic form type is in {@link #getHandledSyntacticFormTypes()}.
+	 * Providers not implementing this interface are consulted about all expressions.
+	 * Note that modules asking about pairs of expressions may ignore these declarations.
+	 * <p>
+	 * Modules may memoize the non-null answers of providers to queries about a single expression,
+	 * sharing them among all rewriting processes using the module until the set of providers changes
+	 * (see <code>AbstractModuleAndPossibleActiveRewriter.getFirstNonNullResult</code>).
+	 * Therefore, the answers of providers to such queries, whether they declare dispatch keys or not,
+	 * must depend on the expression only, and not on the rewriting process (its contextual constraint, for example).
+	 */
+	public interface ProviderWithDispatchKeys extends Provider {
+
+		/** The functors of the function applications the provider knows about. */
+		default Collection<Expression> getHandledFunctors() {
+			return Collections.emptyList();
+		}
+
+		/** The syntactic form types (see {@link Expression#getSyntacticFormType()}) of the expressions the provider knows about. */
+		default Collection<Object> getHandledSyntacticFormTypes() {
+			return Collections.emptyList();
+		}
+	}
+
 	public void register(Provider provider);
 }
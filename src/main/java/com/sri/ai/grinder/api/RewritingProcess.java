@@ -46,6 +46,7 @@ import com.google.common.base.Predicate;
 import com.sri.ai.expresso.api.Expression;
 import com.sri.ai.grinder.core.RewriteOnce;
 import com.sri.ai.grinder.core.RewriterLookup;
+import com.sri.ai.grinder.helper.concurrent.CancellationToken;
 import com.sri.ai.grinder.plaindpll.api.Constraint;
 import com.sri.ai.util.base.IdentityWrapper;
 import com.sri.ai.util.base.Pair;
@@ -174,6 +175,12 @@ public interface RewritingProcess {
 			Map<Expression, Expression> subProcessContextualSymbolsAndTypes,
 			Expression contextualConstraint);
 
+	/**
+	 * Create a new sub-rewriting process with the same context as this one
+	 * but with a given cancellation token (typically a child of this process's token).
+	 */
+	RewritingProcess newSubProcessWithCancellationToken(CancellationToken cancellationToken);
+
 	/**
 	 * A method to be called by rewriters in advance of their own rewriting.
 	 * Rewriters are required to directly return its returned value if it is not <code>null</code>.
@@ -255,6 +262,13 @@ public interface RewritingProcess {
 	 */
 	void interrupt();
 
+	/**
+	 * The token used to cooperatively cancel this process's rewritings;
+	 * sub-processes share the token of their parent process unless created with
+	 * {@link #newSubProcessWithCancellationToken(CancellationToken)}.
+	 */
+	CancellationToken getCancellationToken();
+
 	void initializeDPLLContextualConstraint(Constraint constraint);
 
 	Constraint getDPLLContextualConstraint();
@@ -54,6 +54,7 @@ import com.sri.ai.expresso.api.ExpressionAndContext;
 import com.sri.ai.expresso.api.ReplacementFunctionWithContextuallyUpdatedProcess;
 import com.sri.ai.expresso.api.SubExpressionAddress;
 import com.sri.ai.expresso.api.SyntaxTree;
+import com.sri.ai.expresso.helper.ExpressionSummary;
 import com.sri.ai.expresso.helper.Expressions;
 import com.sri.ai.expresso.helper.SyntaxTrees;
 import com.sri.ai.grinder.api.RewritingProcess;
@@ -85,6 +86,8 @@ public abstract class AbstractExpression implements Expression {
 	protected volatile transient ImmutableList<ExpressionAndContext> cachedImmediateSubExpressionsAndContexts;
 	protected Lock               lazyInitCachedImmediateSubExpressionsAndContextsLock = new ReentrantLock();
 	
+	protected volatile transient ExpressionSummary cachedSummary = null;
+	
 	@Override
 	public Expression replaceFirstOccurrence(Expression replaced, Expression replacement, RewritingProcess process) {
 		return replaceFirstOccurrence(new ReplaceByIfEqualTo<Expression>(replacement, replaced), null, null, process);
@@ -318,6 +321,19 @@ public abstract class AbstractExpression implements Expression {
 	}
 
 
+	/**
+	 * Returns the {@link ExpressionSummary} of this expression, computing it the first time it is requested.
+	 * Since expressions are immutable, the summary remains valid for the lifetime of the instance.
+	 */
+	public ExpressionSummary getSummary() {
+		ExpressionSummary result = cachedSummary;
+		if (result == null) {
+			result = ExpressionSummary.make(this);
+			cachedSummary = result;
+		}
+		return result;
+	}
+
 	private static Cache<Thread, Function<Expression, String>> newThreadToStringCache() {
 		Cache<Thread, Function<Expression, String>> result = CacheBuilder.newBuilder()
 				.expireAfterAccess(ExpressoConfiguration.getSyntaxToStringThreadCacheTimeoutInSeconds(), TimeUnit.SECONDS)
@@ -53,6 +53,7 @@ import com.sri.ai.grinder.api.RewriterTest;
 import com.sri.ai.grinder.api.RewritingProcess;
 import com.sri.ai.grinder.helper.GrinderUtil;
 import com.sri.ai.grinder.helper.Justification;
+import com.sri.ai.grinder.helper.BinaryTraceRecorder;
 import com.sri.ai.grinder.helper.RewriterLogging;
 import com.sri.ai.grinder.helper.Trace;
 import com.sri.ai.util.Util;
@@ -81,6 +82,10 @@ public abstract class AbstractRewriter implements Rewriter {
 	private String name = null;
 	private List<RewriterTest> reifiedTests = Collections.emptyList(); 
 	private boolean traceInAndOutOfRewriter = GrinderConfiguration.isTraceInAndOutOfAtomicRewriterEnabled();
+	// trace messages, built once per rewriter (and reset when its name changes)
+	private String traceInFormat          = null;
+	private String traceOutFormat         = null;
+	private String traceDidNotApplyFormat = null;
 
 	/**
 	 * A general rewriting utility which receives an expression, looks for a
@@ -152,16 +157,23 @@ public abstract class AbstractRewriter implements Rewriter {
 		Expression original = expression;
 		
 		String previousRewriterName = null;
-		if (Trace.isEnabled() || Justification.isEnabled()) {
+		// the current rewriter name is only used by logging appenders, so it is not kept when recording binary traces
+		boolean keepCurrentRewriterName = BinaryTraceRecorder.getInstalled() == null && (Trace.isEnabled() || Justification.isEnabled());
+		if (keepCurrentRewriterName) {
 			previousRewriterName = RewriterLogging.setCurrentRewriterName(getName());
 		}
 		
 		if (isTraceInAndOutOfRewriter()) {
 			if (Trace.isEnabled()) {
-				Trace.in("+" + getName() + "({}) - under context variables = {}, constrained by {}", expression, process.getContextualSymbols(), process.getContextualConstraint());
+				if (traceInFormat == null) {
+					traceInFormat = "+" + getName() + "({}) - under context variables = {}, constrained by {}";
+				}
+				Trace.in(traceInFormat, expression, process.getContextualSymbols(), process.getContextualConstraint());
 			}
 		}
 		
+		process.getCancellationToken().throwIfCancelled();
+		
 		if (process.getRootRewriter() == null) {
 			process.setRootRewriter(this);
 		}
@@ -187,15 +199,21 @@ public abstract class AbstractRewriter implements Rewriter {
 		if (isTraceInAndOutOfRewriter()) {
 			if (Trace.isEnabled()) {
 				if (result != expression) {
-					Trace.out(RewriterLogging.REWRITER_PROFILE_INFO, "-"+getName()+"={}", result);
+					if (traceOutFormat == null) {
+						traceOutFormat = "-" + getName() + "={}";
+					}
+					Trace.out(RewriterLogging.REWRITER_PROFILE_INFO, traceOutFormat, result);
 				}
 				else {
-					Trace.out(RewriterLogging.REWRITER_PROFILE_INFO, "-"+getName()+" did not apply");
+					if (traceDidNotApplyFormat == null) {
+						traceDidNotApplyFormat = "-" + getName() + " did not apply";
+					}
+					Trace.out(RewriterLogging.REWRITER_PROFILE_INFO, traceDidNotApplyFormat);
 				}
 			}
 		}
 		
-		if (Trace.isEnabled() || Justification.isEnabled()) {
+		if (keepCurrentRewriterName) {
 			RewriterLogging.setCurrentRewriterName(previousRewriterName);
 		}
 		
@@ -249,6 +267,9 @@ public abstract class AbstractRewriter implements Rewriter {
 	//	
 	protected void setName(String name) {
 		this.name = name;
+		this.traceInFormat          = null;
+		this.traceOutFormat         = null;
+		this.traceDidNotApplyFormat = null;
 	}
 	
 	protected void setReifiedTests(RewriterTest... rewriterTests) {
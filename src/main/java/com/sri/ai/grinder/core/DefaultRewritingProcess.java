@@ -59,6 +59,7 @@ import com.sri.ai.grinder.api.Rewriter;
 import com.sri.ai.grinder.api.RewritingProcess;
 import com.sri.ai.grinder.expression.ExpressionCache;
 import com.sri.ai.grinder.expression.ExpressionCacheKey;
+import com.sri.ai.grinder.helper.concurrent.CancellationToken;
 import com.sri.ai.grinder.library.IsVariable;
 import com.sri.ai.grinder.plaindpll.api.Constraint;
 import com.sri.ai.util.AICUtilConfiguration;
@@ -133,6 +134,7 @@ public class DefaultRewritingProcess implements RewritingProcess {
 	private boolean                      isResponsibleForNotifyingRewritersOfBeginningAndEndOfRewritingProcess = true;
 	private int                          recursionLevel                                                        = 0;
 	private AtomicBoolean                interrupted                                                           = new AtomicBoolean(false);
+	private CancellationToken            cancellationToken                                                     = null;
 	//
 	private ConcurrentHashMap<Object, Object>               globalObjects       = null;
 	private ConcurrentHashMap<Class<?>, Rewriter>           lookedUpModuleCache = null;
@@ -233,6 +235,7 @@ public class DefaultRewritingProcess implements RewritingProcess {
 				new ConcurrentHashMap<RewriterKey, ExpressionCache>(),
 				new ConcurrentHashMap<Class<?>, Rewriter>(),
 				new AtomicBoolean(false), 
+				new CancellationToken(),
 				true);
 	}
 
@@ -255,6 +258,7 @@ public class DefaultRewritingProcess implements RewritingProcess {
 				new ConcurrentHashMap<RewriterKey, ExpressionCache>(),
 				new ConcurrentHashMap<Class<?>, Rewriter>(),
 				new AtomicBoolean(false), 
+				new CancellationToken(),
 				true);
 	}
 
@@ -466,6 +470,18 @@ public class DefaultRewritingProcess implements RewritingProcess {
 		return result;
 	}
 
+	@Override
+	public RewritingProcess newSubProcessWithCancellationToken(CancellationToken cancellationToken) {
+		DefaultRewritingProcess result = new DefaultRewritingProcess(this, 
+				this.childCallIntercepter,
+				this.contextualSymbolsAndTypes,
+				this.contextualConstraint);
+		result.cancellationToken = cancellationToken;
+		result.dpllConstraint    = dpllConstraint;
+		result.setRecursionLevel(recursionLevel); // not a recursive call, merely a different token
+		return result;
+	}
+
 	@Override
 	public Expression rewritingPreProcessing(Rewriter rewriter, Expression expression) {
 		Expression cached = getCached(rewriter, expression);
@@ -606,6 +622,11 @@ public class DefaultRewritingProcess implements RewritingProcess {
 		interrupted.set(true);
 	}
 	
+	@Override
+	public CancellationToken getCancellationToken() {
+		return cancellationToken;
+	}
+	
 	// END-RewritingProcess
 	//
 	
@@ -647,6 +668,7 @@ public class DefaultRewritingProcess implements RewritingProcess {
 				parentProcess.rewriterCaches,
 				parentProcess.lookedUpModuleCache,
 				parentProcess.interrupted, 
+				parentProcess.cancellationToken,
 				false /* isResponsibleForNotifyingRewritersOfBeginningAndEndOfRewritingProcess */				
 				);
 		
@@ -672,6 +694,7 @@ public class DefaultRewritingProcess implements RewritingProcess {
 				new ConcurrentHashMap<RewriterKey, ExpressionCache>(),
 				new ConcurrentHashMap<Class<?>, Rewriter>(),
 				process.interrupted,
+				process.cancellationToken,
 				process.getIsResponsibleForNotifyingRewritersOfBeginningAndEndOfRewritingProcess());
 	}
 	
@@ -687,6 +710,7 @@ public class DefaultRewritingProcess implements RewritingProcess {
 			ConcurrentHashMap<RewriterKey, ExpressionCache> rewriterCaches,
 			ConcurrentHashMap<Class<?>, Rewriter> lookedUpModuleCache,
 			AtomicBoolean interrupted,
+			CancellationToken cancellationToken,
 			boolean isResponsibleForNotifyingRewritersOfBeginningAndEndOfRewritingProcess) {
 		this.id                   = _uniqueIdGenerator.addAndGet(1L);
 		this.parentProcess        = parentProcess;
@@ -703,6 +727,7 @@ public class DefaultRewritingProcess implements RewritingProcess {
 		this.rewriterCaches       = rewriterCaches;
 		this.lookedUpModuleCache  = lookedUpModuleCache;
 		this.interrupted          = interrupted;
+		this.cancellationToken    = cancellationToken;
 		//
 		this.isResponsibleForNotifyingRewritersOfBeginningAndEndOfRewritingProcess = isResponsibleForNotifyingRewritersOfBeginningAndEndOfRewritingProcess;
 		if (parentProcess != null) {
@@ -83,7 +83,7 @@ public class OpenInterpretationModule extends AbstractModuleNoOpRewriter {
 
 	public boolean isOpenInterpretationExpressionWithRespectTo(Expression expression, Expression anotherExpression, RewritingProcess process) {
 		boolean result;
-		for (Provider provider : providers.keySet()) {
+		for (Provider provider : providers) {
 			OpenInterpretationModuleProvider openInterpretationModuleProvider = (OpenInterpretationModuleProvider) provider;
 			result = openInterpretationModuleProvider.isOpenInterpretationExpressionWithRespectTo(expression, anotherExpression, process);
 			if (result) {
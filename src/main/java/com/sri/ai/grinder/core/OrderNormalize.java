@@ -3,26 +3,72 @@ package com.sri.ai.grinder.core;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.sri.ai.expresso.api.Expression;
 import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.grinder.GrinderConfiguration;
 import com.sri.ai.grinder.api.RewritingProcess;
 import com.sri.ai.util.Util;
-import com.sri.ai.util.base.IdentityWrapper;
-import com.sri.ai.util.cache.DefaultCacheMap;
 
 /**
  * Returns an equivalent expression by sorting arguments of commutative-associative functions,
  * thus order-normalizing them.
+ * <p>
+ * Normalizations are memoized in a thread-safe, size-bounded cache keyed by expressions themselves
+ * (that is, by structural hash code and equality, so structurally equal expressions share entries).
+ * By default, all instances share a global cache
+ * (whose maximum size is given by {@link GrinderConfiguration#getOrderNormalizeCacheMaximumSize()}),
+ * but a cache can be given at construction, for example one obtained from {@link #getProcessCache(RewritingProcess)}
+ * to keep a cache per rewriting process.
  * 
  * @author braz
  *
  */
 public class OrderNormalize extends AbstractRewriter implements Comparator<Expression> {
 
-	private static Map<IdentityWrapper, Expression> cache = new DefaultCacheMap<IdentityWrapper, Expression>(3000);
+	private static Cache<Expression, Expression> globalCache = makeCache(GrinderConfiguration.getOrderNormalizeCacheMaximumSize());
+
+	private static final String PROCESS_CACHE_GLOBAL_OBJECTS_KEY = "order normalize cache";
+
+	/**
+	 * Cached value indicating that an expression is already order-normalized,
+	 * so that the very instance being normalized is returned (which allows callers to detect no change by identity).
+	 */
+	private static final Expression UNCHANGED = Expressions.makeSymbol("order normalize: unchanged");
+
+	private Cache<Expression, Expression> cache;
+
+	public OrderNormalize() {
+		this(globalCache);
+	}
+
+	public OrderNormalize(Cache<Expression, Expression> cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Makes a cache suitable for {@link #OrderNormalize(Cache)}.
+	 */
+	public static Cache<Expression, Expression> makeCache(long maximumSize) {
+		Cache<Expression, Expression> result = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+		return result;
+	}
+
+	/**
+	 * Returns a cache suitable for {@link #OrderNormalize(Cache)} kept in the given process's global objects
+	 * (and therefore shared by it and its sub-processes), creating it if needed.
+	 */
+	@SuppressWarnings("unchecked")
+	public static Cache<Expression, Expression> getProcessCache(RewritingProcess process) {
+		Cache<Expression, Expression> result =
+				(Cache<Expression, Expression>) process.getGlobalObjects().computeIfAbsent(
+						PROCESS_CACHE_GLOBAL_OBJECTS_KEY,
+						key -> makeCache(GrinderConfiguration.getOrderNormalizeCacheMaximumSize()));
+		return result;
+	}
 
 	@Override
 	public int compare(Expression o1, Expression o2) {
@@ -49,8 +95,7 @@ public class OrderNormalize extends AbstractRewriter implements Comparator<Expre
 		Expression functor = expression.getFunctor();
 		if (isSymmetric(functor)) {
 			
-			IdentityWrapper originalCacheKey = new IdentityWrapper(expression);
-			Expression cached = cache.get(originalCacheKey);
+			Expression cached = cache.getIfPresent(expression);
 			if (cached == null) {
 
 				List<Expression> arguments = expression.getArguments();
@@ -64,23 +109,29 @@ public class OrderNormalize extends AbstractRewriter implements Comparator<Expre
 				// If it is identical, its elements will not only be equal, but they will be the *same instances* as the original,
 				// so we check for that, which is cheaper.
 				if (! Util.sameInstancesInSameIterableOrder(newArguments, arguments)) {
+					Expression original = expression;
 					expression = Expressions.apply(functor, newArguments);
+					cache.put(original, expression);
+				}
+				else {
+					// no change in arguments and no need to create a new instance
+					cache.put(expression, UNCHANGED);
 				}
-				// else, no change in arguments and no need to create a new instance
-				
-				cache.put(originalCacheKey, expression);
 			}
-			else {
+			else if (cached != UNCHANGED) {
 				expression = cached;
 			}
 		}
 		return expression;
 	}
 	
-	private static Set<String> symmetricFunctorNames = Util.set("+", "*", "and", "or", "<=>", "=", "!=", "union");
+	private static Set<Expression> symmetricFunctors = Util.set(
+			Expressions.makeSymbol("+"), Expressions.makeSymbol("*"), Expressions.makeSymbol("and"), Expressions.makeSymbol("or"),
+			Expressions.makeSymbol("<=>"), Expressions.makeSymbol("="), Expressions.makeSymbol("!="), Expressions.makeSymbol("union"));
 	
-	private boolean isSymmetric(Expression functor) {
-		boolean result = functor != null && symmetricFunctorNames.contains(functor.toString());
+	private static boolean isSymmetric(Expression functor) {
+		// functors are compared as expressions (whose hash codes are cached) rather than by their string representations to avoid allocation
+		boolean result = functor != null && symmetricFunctors.contains(functor);
 		return result;
 	}
 }
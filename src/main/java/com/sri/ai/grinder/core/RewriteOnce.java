@@ -42,6 +42,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Function;
@@ -76,10 +77,12 @@ import com.sri.ai.util.collect.FunctionIterator;
 public class RewriteOnce extends AbstractRewriter {
 
 	private List<Rewriter> rewriters;
-	private List<RewriteOnceWithinProcessFunction> rewriterReplacementFunctions = new ArrayList<RewriteOnceWithinProcessFunction>();
-	private int totalNumberOfSelections = 0;
-	private int rewritingCount = 0; 
-	private ConcurrentHashMap<Rewriter, CacheMap<Pair<IdentityWrapper, Expression>, Object>> deadEndsByRewriter = new ConcurrentHashMap<Rewriter, CacheMap<Pair<IdentityWrapper, Expression>, Object>>();
+	private List<Rewriter> activeRewriters = new ArrayList<Rewriter>();
+	private AtomicInteger rewritingCount = new AtomicInteger(0);
+	// the dead ends and the number of selections since the start of a process are kept per rewriting process, in its global objects,
+	// so that this rewriter can be shared by processes.
+	private Pair<String, Rewriter> deadEndsByRewriterGlobalObjectKey      = new Pair<String, Rewriter>("RewriteOnce dead ends by rewriter", this);
+	private Pair<String, Rewriter> totalNumberOfSelectionsGlobalObjectKey = new Pair<String, Rewriter>("RewriteOnce total number of selections", this);
 	private long rewriteOnceDeadEndsCacheMaximumSize = GrinderConfiguration.getRewriteDeadEndsCacheMaximumSize();
 	private int rewriteOnceDeadEndsCacheGarbageCollectionPeriod = GrinderConfiguration.getRewriteDeadEndsCacheGarbageCollectionPeriod();
 	
@@ -106,7 +109,7 @@ public class RewriteOnce extends AbstractRewriter {
 				// expression.replace().
 				continue;
 			}
-			rewriterReplacementFunctions.add(new RewriteOnceWithinProcessFunction(rewriter));
+			activeRewriters.add(rewriter);
 		}
 	}
 
@@ -122,18 +125,21 @@ public class RewriteOnce extends AbstractRewriter {
 	
 	@Override
 	public void rewritingProcessInitiated(RewritingProcess process) {
-		totalNumberOfSelections = 0;
-		deadEndsByRewriter      = new ConcurrentHashMap<Rewriter, CacheMap<Pair<IdentityWrapper, Expression>, Object>>();
+		// replaces any dead ends and number of selections inherited from the global objects of a parent process.
+		process.putGlobalObject(deadEndsByRewriterGlobalObjectKey, new ConcurrentHashMap<Rewriter, CacheMap<Pair<IdentityWrapper, Expression>, Object>>());
+		process.putGlobalObject(totalNumberOfSelectionsGlobalObjectKey, new AtomicInteger(0));
 	}
 
+	@SuppressWarnings("unchecked")
 	@Override
 	public void rewritingProcessFinalized(RewritingProcess process) {
-		if (AICUtilConfiguration.isRecordCacheStatistics()) {
+		ConcurrentHashMap<Rewriter, CacheMap<Pair<IdentityWrapper, Expression>, Object>> deadEndsByRewriter =
+				(ConcurrentHashMap<Rewriter, CacheMap<Pair<IdentityWrapper, Expression>, Object>>) process.removeGlobalObject(deadEndsByRewriterGlobalObjectKey);
+		if (deadEndsByRewriter != null && AICUtilConfiguration.isRecordCacheStatistics()) {
 			for (Map.Entry<Rewriter, CacheMap<Pair<IdentityWrapper, Expression>, Object>> entry : deadEndsByRewriter.entrySet()) {
 				System.out.println(String.format("Rewrite Once Dead Ends Cache Stats for %-80s are %s", entry.getKey().getName(), entry.getValue().stats()));
 			}
 		}
-		deadEndsByRewriter.clear();
 	}
 	
 	// END-Rewriter
@@ -150,8 +156,9 @@ public class RewriteOnce extends AbstractRewriter {
 		Expression   rewroteFrom        = null;
 		Expression   rewroteTo          = null;
 		if (expression != null) {
-			for (RewriteOnceWithinProcessFunction replacementFunction : rewriterReplacementFunctions) {
-				Rewriter rewriter = replacementFunction.getRewriter();
+			for (Rewriter rewriter : activeRewriters) {
+				// made per rewriting, since it records the rewriting it does and this rewriter can be shared by processes
+				RewriteOnceWithinProcessFunction replacementFunction = new RewriteOnceWithinProcessFunction(rewriter);
 				
 				CacheMap<Pair<IdentityWrapper, Expression>, Object> deadEndsCache 
 					= getDeadEndsCacheMap(rewriter, process);
@@ -171,7 +178,7 @@ public class RewriteOnce extends AbstractRewriter {
 				}
 			}
 		}
-		totalNumberOfSelections += numberOfSelections;
+		int totalNumberOfSelections = getTotalNumberOfSelections(process).addAndGet(numberOfSelections);
 		if (result != original) {
 
 			Justification.log(original);
@@ -194,7 +201,7 @@ public class RewriteOnce extends AbstractRewriter {
 			long relativeTime = System.currentTimeMillis() - start;
 			
 			if (Trace.isEnabled()) {
-				Trace.log(indent+"   ----> ("+rewroteWith.getName()+",  "+relativeTime+" ms, #"+(++rewritingCount)+", "+numberOfSelections+" rewriter selections ("+totalNumberOfSelections+" since start))");
+				Trace.log(indent+"   ----> ("+rewroteWith.getName()+",  "+relativeTime+" ms, #"+rewritingCount.incrementAndGet()+", "+numberOfSelections+" rewriter selections ("+totalNumberOfSelections+" since start))");
 			}
 			if (isWholeExpressionRewrite) {
 				if (Trace.isEnabled()) {
@@ -219,7 +226,22 @@ public class RewriteOnce extends AbstractRewriter {
 	//
 	private CacheMap<Pair<IdentityWrapper, Expression>, Object> getDeadEndsCacheMap(Rewriter rewriter, final RewritingProcess process) {
 		CacheMap<Pair<IdentityWrapper, Expression>, Object> result =
-			Util.getValuePossiblyCreatingIt(deadEndsByRewriter, rewriter, new RewriterDeadEndsCacheMaker(rewriteOnceDeadEndsCacheMaximumSize, rewriteOnceDeadEndsCacheGarbageCollectionPeriod, process));
+			Util.getValuePossiblyCreatingIt(getDeadEndsByRewriter(process), rewriter, new RewriterDeadEndsCacheMaker(rewriteOnceDeadEndsCacheMaximumSize, rewriteOnceDeadEndsCacheGarbageCollectionPeriod, process));
+		return result;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private ConcurrentHashMap<Rewriter, CacheMap<Pair<IdentityWrapper, Expression>, Object>> getDeadEndsByRewriter(RewritingProcess process) {
+		// created on demand because rewriters only reachable through the rewriter lookup
+		// are not notified of the beginning of a rewriting process.
+		ConcurrentHashMap<Rewriter, CacheMap<Pair<IdentityWrapper, Expression>, Object>> result =
+				(ConcurrentHashMap<Rewriter, CacheMap<Pair<IdentityWrapper, Expression>, Object>>) process.getGlobalObjects().computeIfAbsent(
+						deadEndsByRewriterGlobalObjectKey, key -> new ConcurrentHashMap<Rewriter, CacheMap<Pair<IdentityWrapper, Expression>, Object>>());
+		return result;
+	}
+	
+	private AtomicInteger getTotalNumberOfSelections(RewritingProcess process) {
+		AtomicInteger result = (AtomicInteger) process.getGlobalObjects().computeIfAbsent(totalNumberOfSelectionsGlobalObjectKey, key -> new AtomicInteger(0));
 		return result;
 	}
 	
@@ -319,7 +341,7 @@ public class RewriteOnce extends AbstractRewriter {
 	
 	/**
 	 * An extension to {@link RewriterWithinProcessFunction} that registers the trace
-	 * of the rewriting happening.
+	 * of the rewriting happening (made per rewriting, and therefore used by a single thread).
 	 */
 	private static class RewriteOnceWithinProcessFunction extends AbstractReplacementFunctionWithContextuallyUpdatedProcess {
 		private Rewriter   rewriter           = null;
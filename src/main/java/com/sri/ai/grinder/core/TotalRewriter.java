@@ -81,18 +81,17 @@ public class TotalRewriter extends AbstractRewriter {
 	//
 	private List<Rewriter>  childRewriters          = null;
 	private List<Rewriter>  activeRewriters         = new ArrayList<Rewriter>();
-	private int             totalNumberOfSelections = 0;
-	private int             rewritingCount          = 0; 
+	private AtomicInteger   rewritingCount          = new AtomicInteger(0);
 	private boolean         outerTraceEnabled       = true;
 	//
-	private ExpressionCache deadEndsCache = new ExpressionCache(
-			GrinderConfiguration.getRewriteDeadEndsCacheMaximumSize(),
-			null,
-			CacheMap.NO_GARBAGE_COLLECTION);
+	// the dead ends and the number of selections since the start of a process are kept per rewriting process, in its global objects,
+	// so that this rewriter can be shared by processes.
+	private Pair<String, Rewriter> deadEndsCacheGlobalObjectKey           = new Pair<String, Rewriter>("TotalRewriter dead ends", this);
+	private Pair<String, Rewriter> totalNumberOfSelectionsGlobalObjectKey = new Pair<String, Rewriter>("TotalRewriter total number of selections", this);
 	private PruningPredicate deadEndPruner = new PruningPredicate() {
 		@Override
 		public boolean apply(Expression expression, Function<Expression, Expression> replacementFunction, RewritingProcess process) {
-			boolean result = deadEndsCache.containsKeyFor(expression, process);
+			boolean result = getDeadEndsCache(process).containsKeyFor(expression, process);
 			return result;
 		}
 	};
@@ -102,7 +101,7 @@ public class TotalRewriter extends AbstractRewriter {
 			// the listener is invoked after the whole expression, including its sub-expressions, are checked for changes.
 			// If there are none, the expression is a dead end.
 			if (o1 == o2) {
-				deadEndsCache.putUnderKeyFor(o1, o2, process);
+				getDeadEndsCache(process).putUnderKeyFor(o1, o2, process);
 			}
 //			registerEquivalency(o1, o2, process);
 		}
@@ -182,7 +181,9 @@ public class TotalRewriter extends AbstractRewriter {
 	
 	@Override
 	public void rewritingProcessInitiated(RewritingProcess process) {
-		totalNumberOfSelections = 0;
+		// replaces any dead ends and number of selections inherited from the global objects of a parent process.
+		process.putGlobalObject(deadEndsCacheGlobalObjectKey, makeDeadEndsCache());
+		process.putGlobalObject(totalNumberOfSelectionsGlobalObjectKey, new AtomicInteger(0));
 	}
 	
 	@Override
@@ -197,6 +198,7 @@ public class TotalRewriter extends AbstractRewriter {
 		final boolean       justificationEnabled = Justification.isEnabled();
 
 		final AtomicInteger numberOfSelections   = new AtomicInteger(0);
+		final AtomicInteger totalNumberOfSelections = getTotalNumberOfSelections(process);
 		ReplacementFunctionWithContextuallyUpdatedProcess rewriteCurrentExpressionExhaustivelyFunction = new AbstractReplacementFunctionWithContextuallyUpdatedProcess() {
 			@Override
 			public Expression apply(Expression expression, RewritingProcess process) {
@@ -216,6 +218,9 @@ public class TotalRewriter extends AbstractRewriter {
 				do {
 					priorResult = result;
 
+					// checked per selection since selections whose reified tests all fail call no rewriter at all
+					process.getCancellationToken().throwIfCancelled();
+
 					if (traceEnabled) {
 						startTime = System.currentTimeMillis();
 					}
@@ -234,7 +239,7 @@ public class TotalRewriter extends AbstractRewriter {
 
 					// Track Selections
 					numberOfSelections.addAndGet(1);
-					totalNumberOfSelections += 1;
+					totalNumberOfSelections.incrementAndGet();
 
 					// Output trace and justification information if a change occurred
 					if (result != priorResult) {
@@ -253,7 +258,7 @@ public class TotalRewriter extends AbstractRewriter {
 							}
 							Trace.log("   ----> (" + rewriter.getName() + ",  "
 									+ relativeTime + " ms, #"
-									+ (++rewritingCount) + ", "
+									+ rewritingCount.incrementAndGet() + ", "
 									+ numberOfSelections
 									+ " rewriter selections ("
 									+ totalNumberOfSelections
@@ -397,6 +402,26 @@ public class TotalRewriter extends AbstractRewriter {
 		}		
 	}
 	
+	// created on demand because rewriters only reachable through the rewriter lookup
+	// are not notified of the beginning of a rewriting process.
+	private ExpressionCache getDeadEndsCache(RewritingProcess process) {
+		ExpressionCache result = (ExpressionCache) process.getGlobalObjects().computeIfAbsent(deadEndsCacheGlobalObjectKey, key -> makeDeadEndsCache());
+		return result;
+	}
+	
+	private static ExpressionCache makeDeadEndsCache() {
+		ExpressionCache result = new ExpressionCache(
+				GrinderConfiguration.getRewriteDeadEndsCacheMaximumSize(),
+				null,
+				CacheMap.NO_GARBAGE_COLLECTION);
+		return result;
+	}
+	
+	private AtomicInteger getTotalNumberOfSelections(RewritingProcess process) {
+		AtomicInteger result = (AtomicInteger) process.getGlobalObjects().computeIfAbsent(totalNumberOfSelectionsGlobalObjectKey, key -> new AtomicInteger(0));
+		return result;
+	}
+	
 	// BEGIN -- EQUIVALENCY CACHE
 	
 	// The equivalency cache remembers what expressions were rewritten to, ultimately.
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.grinder.helper;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.helpers.MessageFormatter;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * Reads files written by {@link BinaryTraceRecorder} and rebuilds
+ * the textual trace and justification trees from them, offline.
+ * <p>
+ * Messages are formatted with the same formatter used by LogX,
+ * so the decoded messages are the same as the ones that would have been logged by {@link Trace} and {@link Justification}.
+ * 
+ * @author braz
+ *
+ */
+@Beta
+public class BinaryTraceDecoder {
+
+	/** How values not written to the dictionary (because it was full) are decoded. */
+	public static final String NOT_IN_DICTIONARY = "<not in dictionary>";
+
+	/**
+	 * A decoded event.
+	 */
+	public static class Event {
+		public final byte   type;
+		public final int    depth;
+		public final int    threadId;
+		public final long   nanoTime;
+		public final String message;
+		
+		public Event(byte type, int depth, int threadId, long nanoTime, String message) {
+			this.type     = type;
+			this.depth    = depth;
+			this.threadId = threadId;
+			this.nanoTime = nanoTime;
+			this.message  = message;
+		}
+		
+		public boolean isTrace() {
+			return type < BinaryTraceRecorder.JUSTIFICATION_BEGIN;
+		}
+		
+		public boolean isJustification() {
+			return ! isTrace();
+		}
+		
+		@Override
+		public String toString() {
+			return depth + ": " + message;
+		}
+	}
+
+	/**
+	 * Decodes the events in a file written by a closed {@link BinaryTraceRecorder}, in the order they were recorded
+	 * (if the ring buffer wrapped around, only the most recent events are available).
+	 */
+	public static List<Event> decode(File file) throws IOException {
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+			FileChannel channel = randomAccessFile.getChannel();
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, BinaryTraceRecorder.HEADER_SIZE);
+			if (header.getInt(0) != BinaryTraceRecorder.MAGIC_NUMBER) {
+				throw new Error(file + " is not a binary trace file");
+			}
+			if (header.getInt(4) != BinaryTraceRecorder.VERSION) {
+				throw new Error(file + " has unsupported binary trace version " + header.getInt(4));
+			}
+			int  capacity         = header.getInt(8);
+			int  recordSize       = header.getInt(12);
+			long numberOfEvents   = header.getLong(16);
+			long dictionaryOffset = header.getLong(24);
+			int  numberOfIds      = header.getInt(32);
+			if (dictionaryOffset < 0) {
+				throw new Error(file + " was not closed by its recorder");
+			}
+			
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, dictionaryOffset);
+			Dictionary dictionary = new Dictionary(numberOfIds);
+			dictionary.read(channel, dictionaryOffset);
+			
+			long first = Math.max(0, numberOfEvents - capacity);
+			List<Event> result = new ArrayList<Event>((int) (numberOfEvents - first));
+			Object[] arguments = new Object[BinaryTraceRecorder.MAXIMUM_NUMBER_OF_ARGUMENTS];
+			for (long index = first; index != numberOfEvents; index++) {
+				int position = (int) (BinaryTraceRecorder.HEADER_SIZE + (index % capacity)*recordSize);
+				byte   type              = buffer.get(position);
+				int    numberOfArguments = buffer.get(position + 1);
+				int    depth             = buffer.getShort(position + 2);
+				int    threadId          = buffer.getInt(position + 4);
+				long   nanoTime          = buffer.getLong(position + 8);
+				String format            = dictionary.lookUp(buffer.getInt(position + 16));
+				String message;
+				if (numberOfArguments == 0) {
+					message = format;
+				}
+				else {
+					Object[] eventArguments = numberOfArguments == arguments.length? arguments : new Object[numberOfArguments];
+					for (int i = 0; i != numberOfArguments; i++) {
+						eventArguments[i] = dictionary.lookUp(buffer.getInt(position + 20 + 4*i));
+					}
+					message = MessageFormatter.arrayFormat(format, eventArguments).getMessage();
+				}
+				result.add(new Event(type, depth, threadId, nanoTime, message));
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Renders the trace or justification tree (according to given flag) of given events as text,
+	 * one message per line, indented by its depth.
+	 * If <code>withTimes</code> is true, events closing a nesting level
+	 * are followed by the time elapsed since the matching opening event.
+	 */
+	public static String toText(List<Event> events, boolean justification, boolean withTimes) {
+		StringBuilder result = new StringBuilder();
+		// per depth, the time of the last event opening it
+		long[] openingTimes = new long[16];
+		for (Event event : events) {
+			if (event.isJustification() == justification) {
+				for (int i = 0; i != event.depth; i++) {
+					result.append("  ");
+				}
+				result.append(event.message);
+				if (event.type == BinaryTraceRecorder.TRACE_IN || event.type == BinaryTraceRecorder.JUSTIFICATION_BEGIN) {
+					if (event.depth >= openingTimes.length) {
+						long[] newOpeningTimes = new long[Math.max(2*openingTimes.length, event.depth + 1)];
+						System.arraycopy(openingTimes, 0, newOpeningTimes, 0, openingTimes.length);
+						openingTimes = newOpeningTimes;
+					}
+					openingTimes[event.depth] = event.nanoTime;
+				}
+				else if (withTimes && (event.type == BinaryTraceRecorder.TRACE_OUT || event.type == BinaryTraceRecorder.JUSTIFICATION_END) && event.depth < openingTimes.length) {
+					result.append(" [" + (event.nanoTime - openingTimes[event.depth])/1000 + " us]");
+				}
+				result.append("\n");
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Prints the trace and justification trees in the binary trace file given as argument.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: BinaryTraceDecoder <binary trace file>");
+			System.exit(1);
+		}
+		List<Event> events = decode(new File(args[0]));
+		System.out.println("Trace:");
+		System.out.print(toText(events, false, true));
+		System.out.println("Justification:");
+		System.out.print(toText(events, true, false));
+	}
+
+	//
+	// PRIVATE CLASSES
+	//
+	
+	/**
+	 * The strings and collections (as ids of their elements) written by a recorder,
+	 * with collections rendered as by {@link java.util.AbstractCollection#toString()} when looked up,
+	 * and ids without entries rendered as {@link BinaryTraceDecoder#NOT_IN_DICTIONARY}.
+	 */
+	private static class Dictionary {
+		private String[] strings;
+		private int[][]  collections;
+		
+		public Dictionary(int numberOfIds) {
+			strings     = new String[numberOfIds];
+			collections = new int[numberOfIds][];
+		}
+		
+		public void read(FileChannel channel, long offset) throws IOException {
+			channel.position(offset);
+			DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+			try {
+				while (true) {
+					int  id   = input.readInt();
+					byte kind = input.readByte();
+					int  size = input.readInt();
+					if (kind == BinaryTraceRecorder.STRING_ENTRY) {
+						byte[] bytes = new byte[size];
+						input.readFully(bytes);
+						if (isNew(id)) {
+							strings[id] = new String(bytes, StandardCharsets.UTF_8);
+						}
+					}
+					else {
+						int[] elementIds = new int[size];
+						for (int i = 0; i != size; i++) {
+							elementIds[i] = input.readInt();
+						}
+						if (isNew(id)) {
+							collections[id] = elementIds;
+						}
+					}
+				}
+			}
+			catch (EOFException endOfDictionary) {
+				// entries being written when the recorder was closed may be incomplete, and are ignored (their values are not in the dictionary)
+			}
+		}
+		
+		public String lookUp(int id) {
+			String result;
+			if (id == BinaryTraceRecorder.NULL_ID) {
+				result = null;
+			}
+			else if (id < 0 || id >= strings.length || (strings[id] == null && collections[id] == null)) {
+				result = NOT_IN_DICTIONARY;
+			}
+			else if (collections[id] != null) {
+				StringBuilder builder = new StringBuilder("[");
+				for (int i = 0; i != collections[id].length; i++) {
+					builder.append(i == 0? "" : ", ").append(lookUp(collections[id][i]));
+				}
+				result = builder.append("]").toString();
+			}
+			else {
+				result = strings[id];
+			}
+			return result;
+		}
+		
+		private boolean isNew(int id) {
+			return id >= 0 && id < strings.length && strings[id] == null && collections[id] == null;
+		}
+	}
+}
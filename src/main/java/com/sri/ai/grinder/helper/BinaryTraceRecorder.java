@@ -0,0 +1,484 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.grinder.helper;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.helpers.MessageFormatter;
+
+import com.google.common.annotations.Beta;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sri.ai.expresso.api.Expression;
+
+/**
+ * A low-overhead alternative sink for {@link Trace} and {@link Justification}
+ * that records compact binary events in a ring buffer memory-mapped onto a local file,
+ * without formatting messages.
+ * <p>
+ * While a recorder is {@link #install(BinaryTraceRecorder) installed}, trace and justification events
+ * are sent to it instead of to LogX, and {@link Trace#isEnabled()} and {@link Justification#isEnabled()} return true.
+ * Each event is a fixed-size record holding its type, nesting depth, thread id, {@link System#nanoTime()},
+ * and the ids of its message format and arguments.
+ * Formats and arguments receive their ids from a dictionary written to the file, after the ring buffer, as they are first seen;
+ * values already in the dictionary are remembered in a cache of bounded size
+ * (so memory use does not grow with the length of the trace, and only the most recently used values are kept reachable).
+ * {@link Expression}s, strings, numbers and booleans, being immutable, are their own keys in that cache,
+ * and are converted to strings only when written to the dictionary,
+ * which is done by a thread of the recorder, through a buffer, so recording threads neither convert them nor write to the file.
+ * Collections (such as the contextual symbols) are keyed by the ids of their elements at the time they are recorded,
+ * and any other arguments are converted to strings right away, since they may change after being recorded.
+ * <p>
+ * When more events than the buffer capacity are recorded, the oldest ones are overwritten.
+ * The dictionary is not overwritten, but its size is bounded by a given maximum;
+ * values first seen once it is full are decoded as {@link BinaryTraceDecoder#NOT_IN_DICTIONARY}.
+ * <p>
+ * {@link BinaryTraceDecoder} reads the resulting file and rebuilds the textual trace and justification trees.
+ * 
+ * @author braz
+ *
+ */
+@Beta
+public class BinaryTraceRecorder implements Closeable {
+
+	public static final byte TRACE_IN            = 1;
+	public static final byte TRACE_OUT           = 2;
+	public static final byte TRACE_LOG           = 3;
+	public static final byte JUSTIFICATION_BEGIN = 4;
+	public static final byte JUSTIFICATION_END   = 5;
+	public static final byte JUSTIFICATION_LOG   = 6;
+	
+	/** The default maximum size of the dictionary, in bytes. */
+	public static final long DEFAULT_MAXIMUM_DICTIONARY_SIZE = 256L*1024*1024;
+	
+	static final int MAGIC_NUMBER                = 0x47524254; // "GRBT"
+	static final int VERSION                     = 2;
+	static final int HEADER_SIZE                 = 40;
+	static final int RECORD_SIZE                 = 64;
+	static final int MAXIMUM_NUMBER_OF_ARGUMENTS = 11;
+	static final int NULL_ID                     = -1;
+	static final int NOT_IN_DICTIONARY_ID        = -2;
+	static final byte STRING_ENTRY              = 0;
+	static final byte COLLECTION_ENTRY          = 1;
+	
+	private static final int DICTIONARY_CACHE_MAXIMUM_SIZE = 10000;
+	private static final int PENDING_ENTRIES_CAPACITY      = 4096;
+	private static final int DICTIONARY_BUFFER_SIZE        = 64*1024;
+	
+	private static final int TRACE_CHANNEL         = 0;
+	private static final int JUSTIFICATION_CHANNEL = 1;
+	
+	private static final PendingEntry END_OF_DICTIONARY = new PendingEntry(NULL_ID, null);
+	
+	private static volatile BinaryTraceRecorder installed = null;
+
+	private File                        file;
+	private RandomAccessFile            randomAccessFile;
+	private FileChannel                 channel;
+	private MappedByteBuffer            buffer;
+	private int                         capacity;
+	private long                        dictionaryOffset;
+	private long                        maximumDictionarySize;
+	private AtomicLong                  numberOfEvents = new AtomicLong(0);
+	private Cache<Object, Integer>      fromObjectToId = CacheBuilder.newBuilder().maximumSize(DICTIONARY_CACHE_MAXIMUM_SIZE).build();
+	private AtomicInteger               nextId         = new AtomicInteger(0);
+	private BlockingQueue<PendingEntry> pendingEntries = new ArrayBlockingQueue<PendingEntry>(PENDING_ENTRIES_CAPACITY);
+	private Thread                      dictionaryWriter;
+	private volatile boolean            dictionaryIsFull = false;
+	private volatile IOException        dictionaryFailure = null;
+	private ThreadLocal<int[]>          depths         = ThreadLocal.withInitial(() -> new int[2]);
+	private volatile boolean            closed         = false;
+
+	/**
+	 * Creates a recorder writing to a given file, with a ring buffer holding up to a given number of events,
+	 * and a dictionary of at most {@link #DEFAULT_MAXIMUM_DICTIONARY_SIZE} bytes.
+	 */
+	public BinaryTraceRecorder(File file, int capacity) throws IOException {
+		this(file, capacity, DEFAULT_MAXIMUM_DICTIONARY_SIZE);
+	}
+
+	/**
+	 * Creates a recorder writing to a given file, with a ring buffer holding up to a given number of events,
+	 * and a dictionary of at most a given number of bytes.
+	 */
+	public BinaryTraceRecorder(File file, int capacity, long maximumDictionarySize) throws IOException {
+		if (capacity <= 0 || HEADER_SIZE + ((long) capacity)*RECORD_SIZE > Integer.MAX_VALUE) {
+			throw new Error("Binary trace capacity must be positive and at most " + (Integer.MAX_VALUE - HEADER_SIZE)/RECORD_SIZE + " events, but is " + capacity);
+		}
+		if (maximumDictionarySize < 0) {
+			throw new Error("Binary trace maximum dictionary size must not be negative, but is " + maximumDictionarySize);
+		}
+		this.file = file;
+		this.capacity = capacity;
+		this.maximumDictionarySize = maximumDictionarySize;
+		this.randomAccessFile = new RandomAccessFile(file, "rw");
+		this.randomAccessFile.setLength(0);
+		this.channel = randomAccessFile.getChannel();
+		this.dictionaryOffset = HEADER_SIZE + ((long) capacity)*RECORD_SIZE;
+		this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, dictionaryOffset);
+		writeHeader(-1);
+		this.channel.position(dictionaryOffset);
+		this.dictionaryWriter = new Thread(this::writeDictionary, "binary trace dictionary writer");
+		this.dictionaryWriter.setDaemon(true); // so that recorders that are not closed do not keep the application running
+		this.dictionaryWriter.start();
+	}
+
+	/**
+	 * Makes given recorder the sink of {@link Trace} and {@link Justification} events
+	 * (<code>null</code> restores LogX as their sink).
+	 */
+	public static void install(BinaryTraceRecorder recorder) {
+		installed = recorder;
+	}
+
+	/**
+	 * Returns the installed recorder, or <code>null</code> if there is none.
+	 */
+	public static BinaryTraceRecorder getInstalled() {
+		return installed;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * The total number of events recorded so far, including the ones overwritten in the ring buffer.
+	 */
+	public long getNumberOfEvents() {
+		return numberOfEvents.get();
+	}
+
+	public int getTraceDepth() {
+		return depths.get()[TRACE_CHANNEL];
+	}
+
+	public void setTraceDepth(int depth) {
+		depths.get()[TRACE_CHANNEL] = depth;
+	}
+
+	public int getJustificationDepth() {
+		return depths.get()[JUSTIFICATION_CHANNEL];
+	}
+
+	public void setJustificationDepth(int depth) {
+		depths.get()[JUSTIFICATION_CHANNEL] = depth;
+	}
+
+	/**
+	 * Records an event of a given type (one of the constants of this class),
+	 * with a message given by a format, in the same notation as the ones used by LogX (<code>{}</code> for arguments),
+	 * and its arguments.
+	 * Events entering a nesting level ({@link #TRACE_IN} and {@link #JUSTIFICATION_BEGIN}) are recorded at the current depth,
+	 * which is then incremented;
+	 * events leaving it ({@link #TRACE_OUT} and {@link #JUSTIFICATION_END}) decrement the depth before being recorded.
+	 * Events recorded once the recorder is closed are ignored.
+	 */
+	public void record(byte type, String format, Object... arguments) {
+		if (closed) {
+			return;
+		}
+		int[] threadDepths = depths.get();
+		int channel = type >= JUSTIFICATION_BEGIN? JUSTIFICATION_CHANNEL : TRACE_CHANNEL;
+		int depth;
+		if (type == TRACE_IN || type == JUSTIFICATION_BEGIN) {
+			depth = threadDepths[channel]++;
+		}
+		else if (type == TRACE_OUT || type == JUSTIFICATION_END) {
+			depth = --threadDepths[channel];
+		}
+		else {
+			depth = threadDepths[channel];
+		}
+		
+		int numberOfArguments = arguments == null? 0 : arguments.length;
+		if (numberOfArguments > MAXIMUM_NUMBER_OF_ARGUMENTS) {
+			// rare enough to be formatted right away
+			format = MessageFormatter.arrayFormat(format, arguments).getMessage();
+			numberOfArguments = 0;
+		}
+		
+		long index = numberOfEvents.getAndIncrement();
+		int position = (int) (HEADER_SIZE + (index % capacity)*RECORD_SIZE); // fits in an int, as checked by constructor
+		buffer.put(position, type);
+		buffer.put(position + 1, (byte) numberOfArguments);
+		buffer.putShort(position + 2, (short) depth);
+		buffer.putInt(position + 4, (int) Thread.currentThread().getId());
+		buffer.putLong(position + 8, System.nanoTime());
+		buffer.putInt(position + 16, getId(format));
+		for (int i = 0; i != numberOfArguments; i++) {
+			buffer.putInt(position + 20 + 4*i, getId(arguments[i]));
+		}
+	}
+
+	/**
+	 * Uninstalls this recorder if it is installed, stops recording, waits for the dictionary to be written,
+	 * writes the final header and closes the file.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if ( ! closed) {
+			closed = true;
+			if (installed == this) {
+				install(null);
+			}
+			try {
+				pendingEntries.put(END_OF_DICTIONARY);
+				dictionaryWriter.join();
+			}
+			catch (InterruptedException exception) {
+				dictionaryWriter.interrupt();
+				randomAccessFile.close();
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while writing binary trace dictionary to " + file);
+			}
+			writeHeader(dictionaryOffset);
+			buffer.force();
+			randomAccessFile.close();
+			if (dictionaryFailure != null) {
+				throw new IOException("Could not write binary trace dictionary to " + file, dictionaryFailure);
+			}
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private int getId(Object object) {
+		int result;
+		if (object == null) {
+			result = NULL_ID;
+		}
+		else if (object instanceof Collection) {
+			// keyed by the ids of its elements, since collections may change after being recorded
+			List<Integer> elementIds = getElementIds((Collection<?>) object);
+			result = getId(elementIds, elementIds);
+		}
+		else {
+			Object key =
+					object instanceof Expression || object instanceof String || object instanceof Number || object instanceof Boolean?
+							object : String.valueOf(object);
+			result = getId(key, key);
+		}
+		return result;
+	}
+
+	private List<Integer> getElementIds(Collection<?> collection) {
+		int size = collection.size();
+		List<Integer> result = new ArrayList<Integer>(size);
+		for (Object element : collection) {
+			if (result.size() == size) { // collection grew while being recorded
+				break;
+			}
+			result.add(getId(element));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the id of a key in the dictionary, making a new entry for a given value if it is not there yet
+	 * and the dictionary is not full.
+	 */
+	private int getId(Object key, Object value) {
+		Integer result = fromObjectToId.getIfPresent(key);
+		if (result == null) {
+			if (dictionaryIsFull) {
+				result = NOT_IN_DICTIONARY_ID;
+			}
+			else {
+				try {
+					result = fromObjectToId.get(key, () -> makeEntry(value));
+				}
+				catch (ExecutionException exception) {
+					throw new Error("Unexpected error recording " + key + " in binary trace dictionary", exception.getCause());
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gives a value a new id and queues it to be written to the dictionary by {@link #writeDictionary()};
+	 * entries queued while closing the recorder, or by interrupted threads, are dropped.
+	 */
+	private int makeEntry(Object value) {
+		int id = nextId.getAndIncrement();
+		PendingEntry entry = new PendingEntry(id, value);
+		try {
+			while ( ! pendingEntries.offer(entry, 10, TimeUnit.MILLISECONDS) && ! closed) {
+				// waits for the writer to catch up
+			}
+		}
+		catch (InterruptedException exception) {
+			Thread.currentThread().interrupt(); // leaves the interruption to be handled by the code being traced
+		}
+		return id;
+	}
+
+	/**
+	 * Writes queued entries to the dictionary, through a buffer that is flushed whenever there are no more entries to be written,
+	 * until {@link #END_OF_DICTIONARY} is queued.
+	 * Entries that would make the dictionary larger than its maximum size are not written
+	 * (the first one also prevents new values from being given ids).
+	 * If writing fails, queued entries are discarded and the failure is reported by {@link #close()}.
+	 */
+	private void writeDictionary() {
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), DICTIONARY_BUFFER_SIZE));
+		long dictionarySize = 0;
+		try {
+			PendingEntry entry;
+			while ((entry = takePendingEntry(output)) != END_OF_DICTIONARY) {
+				if (dictionaryFailure == null && ! dictionaryIsFull) {
+					try {
+						byte[] bytes;
+						int[] elementIds;
+						int size;
+						if (entry.value instanceof List) {
+							bytes = null;
+							elementIds = toArray(entry.value);
+							size = 4 + 1 + 4 + 4*elementIds.length;
+						}
+						else {
+							bytes = entry.value.toString().getBytes(StandardCharsets.UTF_8);
+							elementIds = null;
+							size = 4 + 1 + 4 + bytes.length;
+						}
+						if (dictionarySize + size > maximumDictionarySize) {
+							dictionaryIsFull = true;
+						}
+						else {
+							dictionarySize += size;
+							output.writeInt(entry.id);
+							if (bytes != null) {
+								output.writeByte(STRING_ENTRY);
+								output.writeInt(bytes.length);
+								output.write(bytes);
+							}
+							else {
+								output.writeByte(COLLECTION_ENTRY);
+								output.writeInt(elementIds.length);
+								for (int elementId : elementIds) {
+									output.writeInt(elementId);
+								}
+							}
+						}
+					}
+					catch (IOException exception) {
+						dictionaryFailure = exception;
+					}
+				}
+			}
+			output.flush();
+		}
+		catch (IOException exception) {
+			if (dictionaryFailure == null) {
+				dictionaryFailure = exception;
+			}
+		}
+		catch (InterruptedException exception) {
+			// close() was interrupted and gave up on the dictionary
+		}
+	}
+
+	private PendingEntry takePendingEntry(DataOutputStream output) throws IOException, InterruptedException {
+		PendingEntry result = pendingEntries.poll();
+		if (result == null) {
+			if (dictionaryFailure == null) {
+				output.flush(); // writes batched entries while there is nothing else to do
+			}
+			result = pendingEntries.take();
+		}
+		return result;
+	}
+
+	private static int[] toArray(Object elementIds) {
+		List<?> list = (List<?>) elementIds;
+		int[] result = new int[list.size()];
+		for (int i = 0; i != result.length; i++) {
+			result[i] = (Integer) list.get(i);
+		}
+		return result;
+	}
+
+	private void writeHeader(long dictionaryOffset) {
+		buffer.putInt(0, MAGIC_NUMBER);
+		buffer.putInt(4, VERSION);
+		buffer.putInt(8, capacity);
+		buffer.putInt(12, RECORD_SIZE);
+		buffer.putLong(16, numberOfEvents.get());
+		buffer.putLong(24, dictionaryOffset);
+		buffer.putInt(32, nextId.get());
+	}
+
+	//
+	// PRIVATE CLASSES
+	//
+	
+	/**
+	 * A value given an id but not yet written to the dictionary:
+	 * a list of element ids for collections, or an object to be converted to a string otherwise.
+	 */
+	private static class PendingEntry {
+		public final int    id;
+		public final Object value;
+		
+		public PendingEntry(int id, Object value) {
+			this.id    = id;
+			this.value = value;
+		}
+	}
+}
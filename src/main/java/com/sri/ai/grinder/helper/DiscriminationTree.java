@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.grinder.helper;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Predicate;
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.library.function.InjectiveModule;
+import com.sri.ai.util.base.Pair;
+
+/**
+ * A discrimination tree indexing values by (possibly nested) injective expressions used as keys,
+ * which, given a query expression, returns the values whose keys may unify with it
+ * in the sense of {@link GrinderUtil#getListsOfElementsToBeUnifiedInInjectiveExpressions(Expression, Expression, RewritingProcess)}
+ * (that is, such that the two expressions have the same injective function tokens at the same positions,
+ * and no position of theirs holds two distinct uniquely named constants).
+ * <p>
+ * Keys and queries are indexed by their pre-order sequence of tokens:
+ * non-symbol sub-expressions are represented by their injective function token and number of sub-expressions
+ * (so, for function applications, functor and arity are filtered by the index, the functor being the first sub-expression),
+ * uniquely named constants by themselves, and other symbols by a wildcard matching any symbol.
+ * Symbols given as always variables when a key is put (typically the indices of an intensional set) are also indexed as wildcards.
+ * The index is conservative: the returned values are a superset of the ones whose keys unify with the query,
+ * and still need to be checked by a full unification.
+ * Keys or queries with non-symbol sub-expressions which are not injective cannot be indexed;
+ * the values of such keys are always returned, and such queries return all values.
+ * <p>
+ * Since tokens depend on the injective module and constants on the uniquely named constant predicate of the rewriting process,
+ * the tree is rebuilt whenever it is used with a process with a different module or predicate than the one it was built with.
+ * Values are returned in the order in which they were put.
+ * 
+ * @author braz
+ *
+ */
+@Beta
+public class DiscriminationTree<T> {
+
+	private static final Object WILDCARD = new Object() {
+		@Override
+		public String toString() {
+			return "*";
+		}
+	};
+	
+	private List<Expression>             keys                            = new ArrayList<Expression>();
+	private List<Collection<Expression>> alwaysVariablesOfKeys           = new ArrayList<Collection<Expression>>();
+	private List<T>                      values                          = new ArrayList<T>();
+	private Node                         root                            = new Node();
+	private BitSet                       idsOfUnindexedKeys              = new BitSet();
+	private Predicate<Expression>        isUniquelyNamedConstantPredicate = null;
+	private InjectiveModule              injectiveModule                 = null;
+
+	/**
+	 * Puts a value under a given key, whose symbols in a given collection are to be taken as variables.
+	 */
+	public synchronized void put(Expression key, Collection<Expression> alwaysVariables, T value, RewritingProcess process) {
+		updateIfNeeded(process);
+		int id = keys.size();
+		keys.add(key);
+		alwaysVariablesOfKeys.add(alwaysVariables);
+		values.add(value);
+		index(id, process);
+	}
+
+	/**
+	 * Returns the values whose keys may unify with given query (see class description), in the order in which they were put.
+	 */
+	public synchronized List<T> getCandidates(Expression query, RewritingProcess process) {
+		updateIfNeeded(process);
+		List<Object> tokens = new ArrayList<Object>();
+		boolean indexable = addTokens(query, Collections.<Expression>emptySet(), tokens, process);
+		List<T> result;
+		if (indexable) {
+			BitSet ids = (BitSet) idsOfUnindexedKeys.clone();
+			root.collect(tokens, 0, ids);
+			result = new ArrayList<T>(ids.cardinality());
+			for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+				result.add(values.get(id));
+			}
+		}
+		else {
+			result = new ArrayList<T>(values);
+		}
+		return result;
+	}
+
+	public synchronized int size() {
+		return values.size();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private void updateIfNeeded(RewritingProcess process) {
+		Predicate<Expression> processIsUniquelyNamedConstantPredicate = process.getIsUniquelyNamedConstantPredicate();
+		InjectiveModule processInjectiveModule = (InjectiveModule) process.findModule(InjectiveModule.class);
+		if (processIsUniquelyNamedConstantPredicate != isUniquelyNamedConstantPredicate || processInjectiveModule != injectiveModule) {
+			isUniquelyNamedConstantPredicate = processIsUniquelyNamedConstantPredicate;
+			injectiveModule = processInjectiveModule;
+			root = new Node();
+			idsOfUnindexedKeys = new BitSet();
+			for (int id = 0; id != keys.size(); id++) {
+				index(id, process);
+			}
+		}
+	}
+
+	private void index(int id, RewritingProcess process) {
+		List<Object> tokens = new ArrayList<Object>();
+		if (addTokens(keys.get(id), alwaysVariablesOfKeys.get(id), tokens, process)) {
+			root.add(tokens, 0, id);
+		}
+		else {
+			idsOfUnindexedKeys.set(id);
+		}
+	}
+
+	/**
+	 * Adds the pre-order tokens of an expression to a list, returning false if the expression cannot be indexed.
+	 */
+	private boolean addTokens(Expression expression, Collection<Expression> alwaysVariables, List<Object> tokens, RewritingProcess process) {
+		if (expression.getSyntacticFormType().equals("Symbol")) {
+			tokens.add(process.isUniquelyNamedConstant(expression) && ! alwaysVariables.contains(expression)? expression : WILDCARD);
+			return true;
+		}
+		Object injectiveFunctionToken = injectiveModule == null? null : injectiveModule.getInjectiveFunctionToken(expression, process);
+		if (injectiveFunctionToken == null) {
+			return false;
+		}
+		List<Expression> subExpressions = expression.getSubExpressions();
+		tokens.add(Pair.make(injectiveFunctionToken, subExpressions.size()));
+		for (Expression subExpression : subExpressions) {
+			if ( ! addTokens(subExpression, alwaysVariables, tokens, process)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static class Node {
+		// children for non-symbol tokens and for uniquely named constants, respectively
+		private Map<Object, Node>     fromTokenToChild    = null;
+		private Map<Expression, Node> fromConstantToChild = null;
+		private Node                  wildcardChild       = null;
+		private BitSet                ids                 = null;
+
+		public void add(List<Object> tokens, int position, int id) {
+			Node node = this;
+			for (int i = position; i != tokens.size(); i++) {
+				node = node.getOrMakeChild(tokens.get(i));
+			}
+			if (node.ids == null) {
+				node.ids = new BitSet();
+			}
+			node.ids.set(id);
+		}
+
+		public void collect(List<Object> tokens, int position, BitSet result) {
+			if (position == tokens.size()) {
+				if (ids != null) {
+					result.or(ids);
+				}
+				return;
+			}
+			Object token = tokens.get(position);
+			if (token instanceof Pair) {
+				Node child = fromTokenToChild == null? null : fromTokenToChild.get(token);
+				if (child != null) {
+					child.collect(tokens, position + 1, result);
+				}
+			}
+			else {
+				// a symbol in the query matches wildcards, and constants it may be equal to
+				if (wildcardChild != null) {
+					wildcardChild.collect(tokens, position + 1, result);
+				}
+				if (fromConstantToChild != null) {
+					if (token == WILDCARD) {
+						for (Node child : fromConstantToChild.values()) {
+							child.collect(tokens, position + 1, result);
+						}
+					}
+					else {
+						Node child = fromConstantToChild.get(token);
+						if (child != null) {
+							child.collect(tokens, position + 1, result);
+						}
+					}
+				}
+			}
+		}
+
+		private Node getOrMakeChild(Object token) {
+			Node result;
+			if (token == WILDCARD) {
+				if (wildcardChild == null) {
+					wildcardChild = new Node();
+				}
+				result = wildcardChild;
+			}
+			else if (token instanceof Pair) {
+				if (fromTokenToChild == null) {
+					fromTokenToChild = new LinkedHashMap<Object, Node>();
+				}
+				result = fromTokenToChild.computeIfAbsent(token, t -> new Node());
+			}
+			else {
+				if (fromConstantToChild == null) {
+					fromConstantToChild = new LinkedHashMap<Expression, Node>();
+				}
+				result = fromConstantToChild.computeIfAbsent((Expression) token, t -> new Node());
+			}
+			return result;
+		}
+	}
+}
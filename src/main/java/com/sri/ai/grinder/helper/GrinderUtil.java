@@ -52,7 +52,6 @@ import java.util.Map;
 import java.util.Set;
 
 import com.google.common.annotations.Beta;
-import com.google.common.base.Throwables;
 import com.sri.ai.expresso.api.Expression;
 import com.sri.ai.expresso.api.ExpressionAndContext;
 import com.sri.ai.expresso.api.IndexExpressionsSet;
@@ -66,6 +65,7 @@ import com.sri.ai.grinder.GrinderConfiguration;
 import com.sri.ai.grinder.api.Rewriter;
 import com.sri.ai.grinder.api.RewritingProcess;
 import com.sri.ai.grinder.core.DefaultRewritingProcess;
+import com.sri.ai.grinder.helper.concurrent.BranchAndMergeExecutor;
 import com.sri.ai.grinder.helper.concurrent.BranchRewriteTask;
 import com.sri.ai.grinder.helper.concurrent.CallableRewriteOnBranch;
 import com.sri.ai.grinder.helper.concurrent.CallableRewriteOnConditionedBranch;
@@ -94,7 +94,6 @@ import com.sri.ai.util.base.NotContainedBy;
 import com.sri.ai.util.base.Pair;
 import com.sri.ai.util.collect.StackedHashMap;
 import com.sri.ai.util.concurrent.BranchAndMerge;
-import com.sri.ai.util.concurrent.CancelOutstandingOnFailure;
 import com.sri.ai.util.concurrent.CancelOutstandingOnSuccess;
 
 /**
@@ -303,17 +302,11 @@ public class GrinderUtil {
 			
 			rewriteTasks.add(elseRewriteTask);
 			
-			CancelOutstandingOnFailure failurePredicate = new CancelOutstandingOnFailure(true);
-			BranchAndMerge.Result<List<Expression>> branchResults = 
-					BranchAndMerge.execute(rewriteTasks,
+			List<Expression> results = 
+					BranchAndMergeExecutor.execute(rewriteTasks,
 							new CancelOutstandingOnSuccess<Expression>(false),
-							failurePredicate);
+							process);
 			
-			if (branchResults.failureOccurred()) {
-				throw Throwables.propagate(failurePredicate.getThrowable());
-			}
-			
-			List<Expression> results = branchResults.getResult();
 			Expression thenBranch = results.get(0);
 			Expression elseBranch = results.get(1);
 			
@@ -370,21 +363,16 @@ public class GrinderUtil {
 			
 			ShortCircuitOnValue shortCircuitOnTrue = new ShortCircuitOnValue(Expressions.TRUE);
 			
-			CancelOutstandingOnFailure failurePredicate = new CancelOutstandingOnFailure(true);
-			BranchAndMerge.Result<List<Expression>> branchResults = 
-					BranchAndMerge.execute(disjunctTasks,
+			List<Expression> branchResults = 
+					BranchAndMergeExecutor.execute(disjunctTasks,
 							shortCircuitOnTrue,
-							failurePredicate);
-			
-			if (branchResults.failureOccurred()) {
-				throw Throwables.propagate(failurePredicate.getThrowable());
-			} 
+							process);
 			
 			if (shortCircuitOnTrue.isShortCircuited()) {
 				result = Expressions.TRUE;
 			} 
 			else {
-				result = Or.make(branchResults.getResult());
+				result = Or.make(branchResults);
 			}
 		}
 		
@@ -418,21 +406,16 @@ public class GrinderUtil {
 			
 			ShortCircuitOnValue shortCircuitOnFalse = new ShortCircuitOnValue(Expressions.FALSE);
 			
-			CancelOutstandingOnFailure failurePredicate = new CancelOutstandingOnFailure(true);
-			BranchAndMerge.Result<List<Expression>> branchResults = 
-					BranchAndMerge.execute(conjunctTasks,
+			List<Expression> branchResults = 
+					BranchAndMergeExecutor.execute(conjunctTasks,
 							shortCircuitOnFalse,
-							failurePredicate);
-			
-			if (branchResults.failureOccurred()) {
-				throw Throwables.propagate(failurePredicate.getThrowable());
-			} 
+							process);
 			
 			if (shortCircuitOnFalse.isShortCircuited()) {
 				result = Expressions.FALSE;
 			} 
 			else {
-				result = And.make(branchResults.getResult());
+				result = And.make(branchResults);
 			}
 		}
 		
@@ -463,17 +446,12 @@ public class GrinderUtil {
 						process));
 			}
 			
-			CancelOutstandingOnFailure failurePredicate = new CancelOutstandingOnFailure(true);
-			BranchAndMerge.Result<List<Expression>> branchResults = 
-					BranchAndMerge.execute(rewriteTasks,
+			List<Expression> branchResults = 
+					BranchAndMergeExecutor.execute(rewriteTasks,
 							new CancelOutstandingOnSuccess<Expression>(false),
-							failurePredicate);
+							process);
 			
-			if (branchResults.failureOccurred()) {
-				throw Throwables.propagate(failurePredicate.getThrowable());
-			} 
-			
-			result.addAll(branchResults.getResult());
+			result.addAll(branchResults);
 		}
 		
 		return result;
@@ -508,21 +486,16 @@ public class GrinderUtil {
 			
 			ShortCircuitOnValue shortCircuitOnValue = new ShortCircuitOnValue(shortCircuitValue);
 			
-			CancelOutstandingOnFailure failurePredicate = new CancelOutstandingOnFailure(true);
-			BranchAndMerge.Result<List<Expression>> branchResults = 
-					BranchAndMerge.execute(rewriteTasks,
+			List<Expression> branchResults = 
+					BranchAndMergeExecutor.execute(rewriteTasks,
 							shortCircuitOnValue,
-							failurePredicate);
-			
-			if (branchResults.failureOccurred()) {
-				throw Throwables.propagate(failurePredicate.getThrowable());
-			} 
+							process);
 			
 			if (shortCircuitOnValue.isShortCircuited()) {
 				result.add(shortCircuitValue);
 			} 
 			else {
-				result.addAll(branchResults.getResult());
+				result.addAll(branchResults);
 			}
 		}
 		
@@ -1063,6 +1036,13 @@ public class GrinderUtil {
 	}
 
 	public static boolean isKnownToBeIndependentOfIndex(Expression expression, Expression index, RewritingProcess process) {
+		// The top functor or symbol of every sub-expression is itself a sub-expression,
+		// so if the index's functor or symbol does not occur at all, the expression is independent of it.
+		// This is checked against the expression's cached summary without a traversal.
+		Expression indexFunctorOrSymbol = index.getFunctorOrSymbol();
+		if (indexFunctorOrSymbol != null && ! Expressions.isSubExpressionOf(indexFunctorOrSymbol, expression)) {
+			return true;
+		}
 		Iterator<Expression> subExpressionsIterator = new SubExpressionsDepthFirstIterator(expression);
 		while (subExpressionsIterator.hasNext()) {
 			Expression subExpression = subExpressionsIterator.next();
@@ -1181,6 +1161,11 @@ public class GrinderUtil {
 		return result;
 	}
 
+	private static final Expression BOOLEAN_TYPE                  = parse("Boolean");
+	private static final Expression NULLARY_BOOLEAN_FUNCTION_TYPE = parse("'->'(Boolean)");
+	private static final Expression BOOL_TYPE                     = parse("bool");
+	private static final Expression LOWER_CASE_BOOLEAN_TYPE       = parse("boolean");
+
 	/**
 	 * Indicates whether an expression is boolean-typed by having its {@link getType}
 	 * type be "Boolean", "'->'(Boolean)", or "bool", or "boolean".
@@ -1193,10 +1178,10 @@ public class GrinderUtil {
 		boolean result =
 				type != null &&
 				(
-				type.equals(parse("Boolean")) ||
-				type.equals(parse("'->'(Boolean)")) ||
-				type.equals(parse("bool")) ||
-				type.equals(parse("boolean")));
+				type.equals(BOOLEAN_TYPE) ||
+				type.equals(NULLARY_BOOLEAN_FUNCTION_TYPE) ||
+				type.equals(BOOL_TYPE) ||
+				type.equals(LOWER_CASE_BOOLEAN_TYPE));
 		return result;
 	}
 }
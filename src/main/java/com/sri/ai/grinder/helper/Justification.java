@@ -60,6 +60,8 @@ import com.sri.ai.util.log.LogXFactory;
  * justifications are enabled with {@link #isEnabled()} first.
  * 
  * There are versions of the methods above accepting a {@link Marker} argument.
+ * 
+ * If a {@link BinaryTraceRecorder} is installed, justifications are recorded by it instead.
  *
  * @see LogX
  * 
@@ -98,6 +100,10 @@ public class Justification extends RewriterLogging {
 	 * @return the current justification level.
 	 */
 	public static int getJustificationLevel() {
+		BinaryTraceRecorder recorder = BinaryTraceRecorder.getInstalled();
+		if (recorder != null) {
+			return recorder.getJustificationDepth();
+		}
 		return _defaultRewriterJustification.getTraceLevel();
 	}
 
@@ -110,7 +116,13 @@ public class Justification extends RewriterLogging {
 	 *            the justification level the RewriterTrace should be set to.
 	 */
 	public static void setJustificationLevel(int level) {
-		_defaultRewriterJustification.setTraceLevel(level);
+		BinaryTraceRecorder recorder = BinaryTraceRecorder.getInstalled();
+		if (recorder != null) {
+			recorder.setJustificationDepth(level);
+		}
+		else {
+			_defaultRewriterJustification.setTraceLevel(level);
+		}
 	}
 
 	/**
@@ -119,7 +131,7 @@ public class Justification extends RewriterLogging {
 	 *         out.
 	 */
 	public static boolean isEnabled() {
-		return getDefaultLogX().isTraceEnabled();
+		return BinaryTraceRecorder.getInstalled() != null || getDefaultLogX().isTraceEnabled();
 	}
 
 	/**
@@ -153,13 +165,21 @@ public class Justification extends RewriterLogging {
 	}
 
 	public static void log(Marker marker, String format, Object... args) {
-		if (isEnabled()) {
+		BinaryTraceRecorder recorder = BinaryTraceRecorder.getInstalled();
+		if (recorder != null) {
+			recorder.record(BinaryTraceRecorder.JUSTIFICATION_LOG, format, args);
+		}
+		else if (isEnabled()) {
 			getDefaultLogX().trace(marker, format, args);
 		}
 	}
 
 	public static void log(Marker marker, Expression lhs) {
-		if (isEnabled()) {
+		BinaryTraceRecorder recorder = BinaryTraceRecorder.getInstalled();
+		if (recorder != null) {
+			recorder.record(BinaryTraceRecorder.JUSTIFICATION_LOG, "{}", lhs);
+		}
+		else if (isEnabled()) {
 			getDefaultLogX().trace(marker, "{}", lhs);
 		}
 	}
@@ -175,14 +195,22 @@ public class Justification extends RewriterLogging {
 	}
 
 	public static void begin(Marker marker, String format, Object... args) {
-		if (isEnabled()) {
+		BinaryTraceRecorder recorder = BinaryTraceRecorder.getInstalled();
+		if (recorder != null) {
+			recorder.record(BinaryTraceRecorder.JUSTIFICATION_BEGIN, format, args);
+		}
+		else if (isEnabled()) {
 			getDefaultLogX().trace(marker, format, args);
 			getDefaultLogX().setTraceLevel(getDefaultLogX().getTraceLevel() + 1);
 		}
 	}
 
 	public static void end(Marker marker, String format, Object... args) {
-		if (isEnabled()) {
+		BinaryTraceRecorder recorder = BinaryTraceRecorder.getInstalled();
+		if (recorder != null) {
+			recorder.record(BinaryTraceRecorder.JUSTIFICATION_END, format, args);
+		}
+		else if (isEnabled()) {
 			getDefaultLogX().setTraceLevel(getDefaultLogX().getTraceLevel() - 1);
 			getDefaultLogX().trace(marker, format, args);
 		}
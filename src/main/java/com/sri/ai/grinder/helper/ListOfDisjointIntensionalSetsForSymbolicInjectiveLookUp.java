@@ -11,6 +11,9 @@ import com.sri.ai.grinder.library.set.tuple.Tuple;
 /**
  * A class keeping a list of intensional sets to be looked up in the manner of {@link SymbolicInjectiveLookUp}.
  * The sets are supposed to be disjoint and this allows it to cache which intensional set corresponds to a given expression's key.
+ * When that is not cached, only the sets indicated by a {@link DiscriminationTree} over their keys are examined.
+ * Sets are indexed as they are added to the list (either through {@link #putIntensionalSetWithKeyKnownToBeDisjointFromOthers(Expression, RewritingProcess)}
+ * or directly to the list given by {@link #getIntensionalSets()}), which therefore must not have its elements replaced or removed.
  * 
  * @author braz
  *
@@ -20,6 +23,7 @@ public class ListOfDisjointIntensionalSetsForSymbolicInjectiveLookUp {
 	private List<Expression> intensionalSets;
 	private SymbolicInjectiveLookUp symbolicLookUp;
 	private ExpressionToIntensionalSetIndexCache expressionToIntensionalSetCache;
+	private DiscriminationTree<Integer> intensionalSetIndicesIndex = new DiscriminationTree<Integer>();
 
 	public ListOfDisjointIntensionalSetsForSymbolicInjectiveLookUp(List<Expression> intensionalSets, SymbolicInjectiveLookUp symbolicLookUp, boolean useCache) {
 		super();
@@ -68,8 +72,10 @@ public class ListOfDisjointIntensionalSetsForSymbolicInjectiveLookUp {
 		} 
 		else {
 			Trace.log("No cached intensional set index for {}", expression);
-			// for each i in 1..length(msg_values)
-			for (int i = 0; i < intensionalSets.size(); i++) {
+			indexNewIntensionalSets(process);
+			result = expression; // in case no candidate succeeds
+			// for each i in the indices of candidate intensional sets
+			for (int i : symbolicLookUp.getCandidatesInIndex(expression, intensionalSetIndicesIndex, process)) {
 				Trace.log("Examining candidate {}", intensionalSets.get(i));
 				intensionalSet = intensionalSets.get(i);
 				result = symbolicLookUp.lookUp(expression, intensionalSet, process);
@@ -89,6 +95,14 @@ public class ListOfDisjointIntensionalSetsForSymbolicInjectiveLookUp {
 		return result;
 	}
 	
+	private void indexNewIntensionalSets(RewritingProcess process) {
+		synchronized (intensionalSetIndicesIndex) {
+			for (int i = intensionalSetIndicesIndex.size(); i < intensionalSets.size(); i++) {
+				symbolicLookUp.putIntensionalSetInIndex(intensionalSets.get(i), i, intensionalSetIndicesIndex, process);
+			}
+		}
+	}
+	
 	@Override
 	public boolean equals(Object another) {
 		boolean result = false;;
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.grinder.helper;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.api.SyntaxLeaf;
+import com.sri.ai.expresso.api.SyntaxTree;
+import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.library.FunctorConstants;
+
+/**
+ * Utilities for renaming symbols in expressions:
+ * the allocation of fresh symbols from a monotonic counter kept in the rewriting process's global objects,
+ * and the simultaneous renaming of several symbols in a single traversal.
+ * 
+ * @author braz
+ *
+ */
+@Beta
+public class SymbolRenaming {
+
+	private static final String  FRESH_SYMBOLS_COUNTER_GLOBAL_OBJECTS_KEY = "fresh symbols counter";
+	private static final Pattern FRESH_SYMBOL_SUFFIX                      = Pattern.compile("('+|_[0-9]+)$");
+
+	/**
+	 * Returns a new symbol based on a given one (with any trailing primes or fresh-symbol suffix removed)
+	 * followed by <code>_n</code>, where <code>n</code> is taken from a counter shared by all processes
+	 * with the same global objects, so that symbols allocated in the same process are always distinct
+	 * from each other.
+	 * The counter is advanced until the symbol satisfies a given predicate indicating novelty.
+	 */
+	public static Expression makeFreshSymbol(Expression symbol, Predicate<Expression> isNovel, RewritingProcess process) {
+		AtomicLong counter = (AtomicLong) process.getGlobalObjects().computeIfAbsent(FRESH_SYMBOLS_COUNTER_GLOBAL_OBJECTS_KEY, key -> new AtomicLong());
+		String base = symbol.getValue().toString();
+		String previousBase;
+		do {
+			previousBase = base;
+			base = FRESH_SYMBOL_SUFFIX.matcher(base).replaceFirst("");
+		} while ( ! base.equals(previousBase));
+		if (base.isEmpty()) {
+			base = previousBase;
+		}
+		Expression result;
+		do {
+			result = Expressions.makeSymbol(base + "_" + counter.incrementAndGet());
+		} while ( ! isNovel.apply(result));
+		return result;
+	}
+
+	/**
+	 * Returns an expression with all occurrences of the symbols in a map's keys
+	 * (free or not, including occurrences as indices and functors)
+	 * replaced by the corresponding values, which must be symbols.
+	 * Unlike a sequence of calls to {@link Expression#replaceSymbol(Expression, Expression, RewritingProcess)},
+	 * the renamings are simultaneous (so <code>X -> Y, Y -> X</code> swaps the two symbols)
+	 * and take a single traversal of the expression, however many they are.
+	 */
+	public static Expression renameSymbols(Expression expression, Map<Expression, Expression> renamings, RewritingProcess process) {
+		Expression result = expression;
+		if (renamings.size() == 1) {
+			Map.Entry<Expression, Expression> renaming = renamings.entrySet().iterator().next();
+			result = expression.replaceSymbol(renaming.getKey(), renaming.getValue(), process);
+		}
+		else if (renamings.size() > 1) {
+			SyntaxTreeRenamer renamer = new SyntaxTreeRenamer(renamings);
+			SyntaxTree syntaxTree = expression.getSyntaxTree();
+			SyntaxTree renamedSyntaxTree = syntaxTree.replaceSubTreesAllOccurrences(renamer);
+			if (renamer.foundBracketedExpression) {
+				// bracketed expressions keep information (their random predicates) that is not in their syntax trees,
+				// so we rename them one symbol at a time with Expression.replaceSymbol
+				for (Map.Entry<Expression, Expression> renaming : renamings.entrySet()) {
+					if (renamings.containsKey(renaming.getValue())) {
+						throw new Error("Simultaneous renaming of chained symbols not supported in bracketed expressions: " + renamings + " in " + expression);
+					}
+					result = result.replaceSymbol(renaming.getKey(), renaming.getValue(), process);
+				}
+			}
+			else if (renamedSyntaxTree != syntaxTree) {
+				result = Expressions.makeFromSyntaxTree(renamedSyntaxTree);
+			}
+		}
+		return result;
+	}
+
+	private static class SyntaxTreeRenamer implements Function<SyntaxTree, SyntaxTree> {
+		private Map<SyntaxTree, SyntaxTree> fromSyntaxLeafToItsRenaming = new HashMap<SyntaxTree, SyntaxTree>();
+		private boolean foundBracketedExpression = false;
+
+		public SyntaxTreeRenamer(Map<Expression, Expression> renamings) {
+			for (Map.Entry<Expression, Expression> renaming : renamings.entrySet()) {
+				fromSyntaxLeafToItsRenaming.put(renaming.getKey().getSyntaxTree(), renaming.getValue().getSyntaxTree());
+			}
+		}
+
+		@Override
+		public SyntaxTree apply(SyntaxTree syntaxTree) {
+			SyntaxTree result = null;
+			if (syntaxTree instanceof SyntaxLeaf) {
+				result = fromSyntaxLeafToItsRenaming.get(syntaxTree);
+			}
+			else if (syntaxTree.getLabel().equals(FunctorConstants.LEFT_DOT_RIGHT)) {
+				foundBracketedExpression = true;
+			}
+			return result;
+		}
+	}
+}
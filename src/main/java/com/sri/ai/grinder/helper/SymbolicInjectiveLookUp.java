@@ -39,6 +39,7 @@ package com.sri.ai.grinder.helper;
 
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -46,9 +47,12 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Function;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.sri.ai.expresso.api.Expression;
 import com.sri.ai.expresso.api.IntensionalSet;
 import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.grinder.GrinderConfiguration;
 import com.sri.ai.grinder.api.RewritingProcess;
 import com.sri.ai.grinder.library.Equality;
 import com.sri.ai.grinder.library.StandardizedApartFrom;
@@ -88,6 +92,11 @@ import com.sri.ai.util.base.Pair;
  * Note that it is always the case that the set is either empty or a singleton from the fact that <code>K</code> contains all variables in <code>I</code>.
  * <p>
  * Finally, the method allows some more flexibility by allowing functions to be provided that map the given expression and set's head to the keys and values to be used.
+ * <p>
+ * When an expression is to be looked up in many intensional sets, the sets can be put in a {@link DiscriminationTree}
+ * with {@link #putIntensionalSetInIndex(Expression, Object, DiscriminationTree, RewritingProcess)},
+ * and {@link #getCandidatesInIndex(Expression, DiscriminationTree, RewritingProcess)} then provides
+ * the only ones in which the look up may succeed, without unifying the expression with each of them.
  */
 @Beta
 public class SymbolicInjectiveLookUp {
@@ -163,6 +172,26 @@ public class SymbolicInjectiveLookUp {
 		return lookUpExpressionWithAlreadyCalculatedKey(expression, expressionKey, intensionalSet, process);
 	}
 
+	/**
+	 * Puts a value (typically an intensional set or a reference to it) in a {@link DiscriminationTree}
+	 * under the key of an intensional set, with its indices taken as variables.
+	 */
+	public <T> void putIntensionalSetInIndex(Expression intensionalSet, T value, DiscriminationTree<T> index, RewritingProcess process) {
+		Expression key = fromIntensionalSetHeadToKey.apply(((IntensionalSet) intensionalSet).getHead());
+		List<Expression> indices = IndexExpressions.getIndices(((IntensionalSet) intensionalSet).getIndexExpressions());
+		index.put(key, new LinkedHashSet<Expression>(indices), value, process);
+	}
+
+	/**
+	 * Returns the values put in a {@link DiscriminationTree} by {@link #putIntensionalSetInIndex(Expression, Object, DiscriminationTree, RewritingProcess)}
+	 * for the intensional sets in which the look up of an expression may succeed, in the order in which they were put.
+	 */
+	public <T> List<T> getCandidatesInIndex(Expression expression, DiscriminationTree<T> index, RewritingProcess process) {
+		Expression expressionKey = fromExpressionToKey.apply(expression);
+		List<T> result = index.getCandidates(expressionKey, process);
+		return result;
+	}
+
 	private Expression lookUpExpressionWithAlreadyCalculatedKey(Expression expression, Expression expressionKey, Expression intensionalSet, RewritingProcess process) {
 		Expression head = ((IntensionalSet) intensionalSet).getHead();
 		Expression key = fromIntensionalSetHeadToKey.apply(head);
@@ -214,69 +243,97 @@ public class SymbolicInjectiveLookUp {
 		if (result == null) {
 			result = new UnificationToIntensionalSetResult();
 
-			// just here for now while we switch algorithms
-			result.conditionOnExpressionVariables = Expressions.FALSE; // by default, it fails
+			// The unification itself does not depend on the contextual constraint,
+			// so it is cached separately and only the normalization of its condition is redone under new contextual constraints.
+			// It does depend on which symbols are uniquely named constants, so the predicate deciding that is part of the key.
+			// It does not depend on the fresh symbols used to standardize the set apart, either, because all indices occur in the key
+			// and are therefore replaced by sub-expressions of the expression in the condition and map of the result.
+			List<Object> unificationCacheKey = Util.list(expression, intensionalSet, process.getIsUniquelyNamedConstantPredicate());
+			UnificationToIntensionalSetResult unnormalizedResult = unificationCache.getIfPresent(unificationCacheKey);
+			if (unnormalizedResult == null) {
+				unnormalizedResult = unifyToIntensionalSetAssumingInjectiveExpressionsWithoutNormalizing(expression, intensionalSet, process);
+				unificationCache.put(unificationCacheKey, unnormalizedResult);
+			}
+
+			if (unnormalizedResult.isSuccessful()) {
+				result.conditionOnExpressionVariables = process.rewrite(completeNormalizerName, unnormalizedResult.conditionOnExpressionVariables);
+				result.mapOfUnifiedVariables = unnormalizedResult.mapOfUnifiedVariables;
+			}
+			else {
+				result.conditionOnExpressionVariables = Expressions.FALSE;
+			}
+			
+			cache.put((List<Object>) cacheKey, result);
+		}
+		
+		return result;
+	}
+
+	/**
+	 * Performs the work of {@link #unifyToIntensionalSetAssumingInjectiveExpressions(Expression, Expression, String, RewritingProcess)}
+	 * but for the normalization of the resulting condition (which is <code>false</code> if unification fails syntactically).
+	 */
+	private UnificationToIntensionalSetResult unifyToIntensionalSetAssumingInjectiveExpressionsWithoutNormalizing(Expression expression, Expression intensionalSet, RewritingProcess process) {
+		UnificationToIntensionalSetResult result = new UnificationToIntensionalSetResult();
 
-			Expression originalIntensionalSet = intensionalSet;
-			intensionalSet = StandardizedApartFrom.standardizedApartFrom(originalIntensionalSet, expression, process);
+		// just here for now while we switch algorithms
+		result.conditionOnExpressionVariables = Expressions.FALSE; // by default, it fails
 
-			Expression intensionalSetHead = ((IntensionalSet) intensionalSet).getHead();
+		Expression originalIntensionalSet = intensionalSet;
+		intensionalSet = StandardizedApartFrom.standardizedApartFromWithFreshSymbols(originalIntensionalSet, expression, process);
 
-			Pair<List<Expression>, List<Expression>> symbols = GrinderUtil.getListsOfElementsToBeUnifiedInInjectiveExpressions(expression, intensionalSetHead, process);
-			if (symbols == null) {
-				return result;
-			}
+		Expression intensionalSetHead = ((IntensionalSet) intensionalSet).getHead();
+
+		Pair<List<Expression>, List<Expression>> symbols = GrinderUtil.getListsOfElementsToBeUnifiedInInjectiveExpressions(expression, intensionalSetHead, process);
+		if (symbols == null) {
+			return result;
+		}
 
-			// Prepare data structure for storing condition on variables of looked up value.
-			List<Expression> conjunctsOfConditionOnExpressionVariables = new LinkedList<Expression>();
+		// Prepare data structure for storing condition on variables of looked up value.
+		List<Expression> conjunctsOfConditionOnExpressionVariables = new LinkedList<Expression>();
 
-			// Go over random variable arguments pairs, compare them for obvious contradictions (distinct constants having to be equal)
-			// and collect mapping from logical variables in message value set to logical variables in previous message
-			Iterator<Expression> argumentsFromExpressionIterator         = symbols.first.iterator();
-			Iterator<Expression> argumentsFromIntensionalSetHeadIterator = symbols.second.iterator();
-			while (argumentsFromIntensionalSetHeadIterator.hasNext()) {
-				if ( ! argumentsFromExpressionIterator.hasNext()) {
-					throw new Error("Iterators over arguments have ranges of difference lengths even though injective tokens were equal: " + intensionalSet + " and " + expression);
-				}
+		// Go over random variable arguments pairs, compare them for obvious contradictions (distinct constants having to be equal)
+		// and collect mapping from logical variables in message value set to logical variables in previous message
+		Iterator<Expression> argumentsFromExpressionIterator         = symbols.first.iterator();
+		Iterator<Expression> argumentsFromIntensionalSetHeadIterator = symbols.second.iterator();
+		while (argumentsFromIntensionalSetHeadIterator.hasNext()) {
+			if ( ! argumentsFromExpressionIterator.hasNext()) {
+				throw new Error("Iterators over arguments have ranges of difference lengths even though injective tokens were equal: " + intensionalSet + " and " + expression);
+			}
 
-				Expression argumentFromExpression = argumentsFromIntensionalSetHeadIterator.next();
-				Expression argumentFromIntensionalSetHead = argumentsFromExpressionIterator.next();
+			Expression argumentFromExpression = argumentsFromIntensionalSetHeadIterator.next();
+			Expression argumentFromIntensionalSetHead = argumentsFromExpressionIterator.next();
 
-				if (process.isUniquelyNamedConstant(argumentFromExpression)) {
-					if (process.isUniquelyNamedConstant(argumentFromIntensionalSetHead)) {
-						if ( ! argumentFromExpression.equals(argumentFromIntensionalSetHead)) {
-							return result; // two distinct constants, no possible match
-						}
-						else {
-							// no need to do anything, equality becomes tautology
-						}
+			if (process.isUniquelyNamedConstant(argumentFromExpression)) {
+				if (process.isUniquelyNamedConstant(argumentFromIntensionalSetHead)) {
+					if ( ! argumentFromExpression.equals(argumentFromIntensionalSetHead)) {
+						return result; // two distinct constants, no possible match
 					}
 					else {
-						// keep track of the fact that expression's logical variable needs to be equal to this constant
-						conjunctsOfConditionOnExpressionVariables.add(Equality.make(argumentFromIntensionalSetHead, argumentFromExpression));
+						// no need to do anything, equality becomes tautology
 					}
 				}
 				else {
-					// keep track of that fact that the logical variable
-					// in intensional set head needs to be translated to the corresponding logical variable or constant in expression
-					result.mapOfUnifiedVariables.put(argumentFromExpression, argumentFromIntensionalSetHead);
+					// keep track of the fact that expression's logical variable needs to be equal to this constant
+					conjunctsOfConditionOnExpressionVariables.add(Equality.make(argumentFromIntensionalSetHead, argumentFromExpression));
 				}
 			}
+			else {
+				// keep track of that fact that the logical variable
+				// in intensional set head needs to be translated to the corresponding logical variable or constant in expression
+				result.mapOfUnifiedVariables.put(argumentFromExpression, argumentFromIntensionalSetHead);
+			}
+		}
 
-			// Conjoin unification equalities and intensional set condition, translated to logical variables in expression
-			Expression intensionalSetCondition = ((IntensionalSet) intensionalSet).getCondition();
-			Expression intensionalSetConditionInExpressionVariables = SyntacticSubstitute.replaceAll(intensionalSetCondition, result.mapOfUnifiedVariables, process);
-			conjunctsOfConditionOnExpressionVariables.add(intensionalSetConditionInExpressionVariables);
-			Expression unnormalizedCondition = And.make(conjunctsOfConditionOnExpressionVariables);
+		// Conjoin unification equalities and intensional set condition, translated to logical variables in expression
+		Expression intensionalSetCondition = ((IntensionalSet) intensionalSet).getCondition();
+		Expression intensionalSetConditionInExpressionVariables = SyntacticSubstitute.replaceAll(intensionalSetCondition, result.mapOfUnifiedVariables, process);
+		conjunctsOfConditionOnExpressionVariables.add(intensionalSetConditionInExpressionVariables);
+		result.conditionOnExpressionVariables = And.make(conjunctsOfConditionOnExpressionVariables);
 
-			result.conditionOnExpressionVariables = process.rewrite(completeNormalizerName, unnormalizedCondition);
+		// provide the "external world" with a map from the original indices to the symbols in expression
+		result.mapOfUnifiedVariables = getMapFromOriginalIndicesToExpressionSymbols(result.mapOfUnifiedVariables, intensionalSet, originalIntensionalSet);
 
-			// provide the "external world" with a map from the original indices to the symbols in expression
-			result.mapOfUnifiedVariables = getMapFromOriginalIndicesToExpressionSymbols(result.mapOfUnifiedVariables, intensionalSet, originalIntensionalSet);
-			
-			cache.put((List<Object>) cacheKey, result);
-		}
-		
 		return result;
 	}
 
@@ -291,4 +348,5 @@ public class SymbolicInjectiveLookUp {
 	}
 
 	private ConcurrentHashMap<List<Object>, UnificationToIntensionalSetResult> cache = new ConcurrentHashMap<List<Object>, UnificationToIntensionalSetResult>();
+	private Cache<List<Object>, UnificationToIntensionalSetResult> unificationCache = CacheBuilder.newBuilder().maximumSize(GrinderConfiguration.getInjectiveLookUpUnificationCacheMaximumSize()).build();
 }
\ No newline at end of file
@@ -47,6 +47,7 @@ import com.sri.ai.util.log.LogXFactory;
  * Helper class for obtaining and calling methods statically on the LogX
  * instance to be used exclusively by Rewriters for outputing a human readable
  * trace of their execution.
+ * If a {@link BinaryTraceRecorder} is installed, events are recorded by it instead.
  * 
  * @see LogX
  * 
@@ -84,7 +85,7 @@ public class Trace extends RewriterLogging {
 	 *         out.
 	 */
 	public static boolean isEnabled() {
-		return getDefaultLogX().isTraceEnabled();
+		return BinaryTraceRecorder.getInstalled() != null || getDefaultLogX().isTraceEnabled();
 	}
 
 	/**
@@ -92,6 +93,10 @@ public class Trace extends RewriterLogging {
 	 * @return the current trace level for RewriterTrace.
 	 */
 	public static int getTraceLevel() {
+		BinaryTraceRecorder recorder = BinaryTraceRecorder.getInstalled();
+		if (recorder != null) {
+			return recorder.getTraceDepth();
+		}
 		return _defaultRewriterTrace.getTraceLevel();
 	}
 
@@ -104,7 +109,13 @@ public class Trace extends RewriterLogging {
 	 *            the level the RewriterTrace should be set to.
 	 */
 	public static void setTraceLevel(int level) {
-		_defaultRewriterTrace.setTraceLevel(level);
+		BinaryTraceRecorder recorder = BinaryTraceRecorder.getInstalled();
+		if (recorder != null) {
+			recorder.setTraceDepth(level);
+		}
+		else {
+			_defaultRewriterTrace.setTraceLevel(level);
+		}
 	}
 
 	/**
@@ -120,7 +131,13 @@ public class Trace extends RewriterLogging {
 	 * @see LogX#in
 	 */
 	public static void in(Marker marker, String msg, Object... args) {
-		getDefaultLogX().indent(marker, msg, args);
+		BinaryTraceRecorder recorder = BinaryTraceRecorder.getInstalled();
+		if (recorder != null) {
+			recorder.record(BinaryTraceRecorder.TRACE_IN, msg, args);
+		}
+		else {
+			getDefaultLogX().indent(marker, msg, args);
+		}
 	}
 
 	/**
@@ -136,7 +153,13 @@ public class Trace extends RewriterLogging {
 	 * @see LogX#out
 	 */
 	public static void out(Marker marker, String msg, Object... args) {
-		getDefaultLogX().outdent(marker, msg, args);
+		BinaryTraceRecorder recorder = BinaryTraceRecorder.getInstalled();
+		if (recorder != null) {
+			recorder.record(BinaryTraceRecorder.TRACE_OUT, msg, args);
+		}
+		else {
+			getDefaultLogX().outdent(marker, msg, args);
+		}
 	}
 
 	/**
@@ -152,6 +175,12 @@ public class Trace extends RewriterLogging {
 	 * @see LogX#log
 	 */
 	public static void log(Marker marker, String msg, Object... args) {
-		getDefaultLogX().trace(marker, msg, args);
+		BinaryTraceRecorder recorder = BinaryTraceRecorder.getInstalled();
+		if (recorder != null) {
+			recorder.record(BinaryTraceRecorder.TRACE_LOG, msg, args);
+		}
+		else {
+			getDefaultLogX().trace(marker, msg, args);
+		}
 	}
 }
@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.grinder.helper.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.helper.ExpressionSummary;
+import com.sri.ai.grinder.GrinderConfiguration;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.util.concurrent.BranchAndMerge;
+import com.sri.ai.util.concurrent.CancelOutstandingOnFailure;
+
+/**
+ * Executes the rewriting tasks of GrinderUtil's branch and merge methods according to
+ * {@link GrinderConfiguration#KEY_BRANCH_AND_MERGE_EXECUTOR_POLICY}:
+ * <ul>
+ * <li> {@link GrinderConfiguration#BRANCH_AND_MERGE_EXECUTOR_POLICY_BRANCH_AND_MERGE}: aic-util's {@link BranchAndMerge} (the default);
+ * <li> {@link GrinderConfiguration#BRANCH_AND_MERGE_EXECUTOR_POLICY_FORK_JOIN}: a shared {@link ForkJoinPool} bounded by
+ * {@link GrinderConfiguration#KEY_BRANCH_AND_MERGE_FORK_JOIN_PARALLELISM} (read when the pool is first used), in which nested branching is forked into the same pool
+ * and waiting threads steal work instead of blocking;
+ * <li> {@link GrinderConfiguration#BRANCH_AND_MERGE_EXECUTOR_POLICY_CALLER_RUNS}: sequentially, in the calling thread.
+ * </ul>
+ * Regardless of policy, tasks whose arguments add up to fewer expression nodes than
+ * {@link GrinderConfiguration#KEY_BRANCH_AND_MERGE_SEQUENTIAL_CUTOFF} are run in the calling thread,
+ * since for small subproblems the overhead of running in parallel exceeds the work.
+ * Task timing is recorded in the process's {@link BranchAndMergeTaskStatistics} if so configured.
+ * <p>
+ * Tasks are run in sub-processes sharing a child of the process's {@link CancellationToken},
+ * which is cancelled as soon as a task short-circuits or fails,
+ * so that sibling tasks already running stop at their next rewriter call.
+ * The results of cancelled tasks are <code>null</code>, like those of tasks not executed,
+ * and if the process's own token is cancelled during execution, the cancellation is propagated
+ * instead of returning incomplete results.
+ * 
+ * @author braz
+ *
+ */
+@Beta
+public class BranchAndMergeExecutor {
+	
+	private static ForkJoinPool forkJoinPool;
+	
+	/**
+	 * Executes given tasks and returns their results in the same order as the tasks,
+	 * or throws the exception thrown by a failing task.
+	 * If the short-circuit predicate holds for the result of a task, outstanding tasks are cancelled
+	 * and the results of tasks not executed are <code>null</code>.
+	 */
+	public static List<Expression> execute(List<? extends CallableRewriteOnBranch> tasks, Predicate<Expression> shortCircuit, RewritingProcess process) {
+		List<Expression> result;
+		CancellationToken cancellationToken = process.getCancellationToken().newChild();
+		for (CallableRewriteOnBranch task : tasks) {
+			task.setCancellationToken(cancellationToken);
+		}
+		List<Callable<Expression>> callables = makeCallables(tasks, cancellationToken, process);
+		Predicate<Expression> shortCircuitAndCancel = new CancelOnShortCircuit(shortCircuit, cancellationToken);
+		String policy = GrinderConfiguration.getBranchAndMergeExecutorPolicy();
+		if (callables.isEmpty()) {
+			result = new ArrayList<Expression>();
+		}
+		else if (policy.equals(GrinderConfiguration.BRANCH_AND_MERGE_EXECUTOR_POLICY_CALLER_RUNS) || isBelowSequentialCutoff(tasks)) {
+			result = executeInCallerThread(callables, shortCircuitAndCancel);
+		}
+		else if (policy.equals(GrinderConfiguration.BRANCH_AND_MERGE_EXECUTOR_POLICY_FORK_JOIN)) {
+			result = executeInForkJoinPool(callables, shortCircuitAndCancel);
+		}
+		else if (policy.equals(GrinderConfiguration.BRANCH_AND_MERGE_EXECUTOR_POLICY_BRANCH_AND_MERGE)) {
+			result = executeWithBranchAndMerge(callables, shortCircuitAndCancel);
+		}
+		else {
+			throw new Error("Unknown branch and merge executor policy '" + policy + "'");
+		}
+		process.getCancellationToken().throwIfCancelled();
+		return result;
+	}
+	
+	/** Returns the total number of expression nodes in the arguments of given tasks. */
+	public static long getSize(List<? extends CallableRewriteOnBranch> tasks) {
+		long result = 0;
+		for (CallableRewriteOnBranch task : tasks) {
+			result += getSize(task);
+		}
+		return result;
+	}
+
+	//
+	// PRIVATE
+	//
+	
+	private static long getSize(CallableRewriteOnBranch task) {
+		long result = 0;
+		if (task.getBranchArguments() != null) {
+			for (Expression argument : task.getBranchArguments()) {
+				if (argument != null) {
+					result += ExpressionSummary.get(argument).getNumberOfNodes();
+				}
+			}
+		}
+		return result;
+	}
+
+	private static boolean isBelowSequentialCutoff(List<? extends CallableRewriteOnBranch> tasks) {
+		long cutoff = GrinderConfiguration.getBranchAndMergeSequentialCutoff();
+		boolean result = cutoff > 0 && getSize(tasks) < cutoff;
+		return result;
+	}
+	
+	private static List<Callable<Expression>> makeCallables(List<? extends CallableRewriteOnBranch> tasks, CancellationToken cancellationToken, RewritingProcess process) {
+		List<Callable<Expression>> result = new ArrayList<Callable<Expression>>(tasks.size());
+		if (GrinderConfiguration.isBranchAndMergeRecordTaskTiming()) {
+			BranchAndMergeTaskStatistics statistics = BranchAndMergeTaskStatistics.getFor(process);
+			Thread callerThread = Thread.currentThread();
+			for (CallableRewriteOnBranch task : tasks) {
+				result.add(new CancellableTask(new TimedTask(task, getSize(task), statistics, callerThread), cancellationToken));
+			}
+		}
+		else {
+			for (CallableRewriteOnBranch task : tasks) {
+				result.add(new CancellableTask(task, cancellationToken));
+			}
+		}
+		return result;
+	}
+
+	private static List<Expression> executeInCallerThread(List<Callable<Expression>> callables, Predicate<Expression> shortCircuit) {
+		List<Expression> result = new ArrayList<Expression>(callables.size());
+		try {
+			for (Callable<Expression> callable : callables) {
+				Expression value = callable.call();
+				result.add(value);
+				if (shortCircuit.apply(value)) {
+					break;
+				}
+			}
+		}
+		catch (Exception exception) {
+			throw Throwables.propagate(exception);
+		}
+		while (result.size() < callables.size()) {
+			result.add(null);
+		}
+		return result;
+	}
+
+	private static List<Expression> executeInForkJoinPool(List<Callable<Expression>> callables, Predicate<Expression> shortCircuit) {
+		ForkJoinPool pool = getForkJoinPool();
+		boolean inPool = ForkJoinTask.getPool() == pool;
+		// each task checks its own result as soon as it completes, so that a short-circuit cancels its siblings
+		// (through the shared cancellation token) even if they precede it in the order in which results are joined
+		AtomicBoolean someTaskShortCircuited = new AtomicBoolean(false);
+		List<ShortCircuitCheckingTask> checkedTasks = new ArrayList<ShortCircuitCheckingTask>(callables.size());
+		for (Callable<Expression> callable : callables) {
+			checkedTasks.add(new ShortCircuitCheckingTask(callable, shortCircuit, someTaskShortCircuited));
+		}
+		List<ForkJoinTask<Expression>> forkedTasks = new ArrayList<ForkJoinTask<Expression>>(callables.size());
+		// the first task is run by the calling thread itself, after forking the others
+		for (ShortCircuitCheckingTask checkedTask : checkedTasks.subList(1, checkedTasks.size())) {
+			ForkJoinTask<Expression> forkJoinTask = ForkJoinTask.adapt(checkedTask);
+			if (inPool) {
+				forkJoinTask.fork();
+			}
+			else {
+				pool.execute(forkJoinTask);
+			}
+			forkedTasks.add(forkJoinTask);
+		}
+		
+		List<Expression> result = new ArrayList<Expression>(callables.size());
+		try {
+			result.add(checkedTasks.get(0).call());
+			for (int i = 0; i != forkedTasks.size(); i++) {
+				ForkJoinTask<Expression> forkedTask = forkedTasks.get(i);
+				// the task that short-circuited is not cancelled, even if not yet completed, so that its result is kept
+				if (someTaskShortCircuited.get() && ! checkedTasks.get(i + 1).shortCircuited && forkedTask.cancel(true)) {
+					result.add(null);
+				}
+				else {
+					result.add(forkedTask.join());
+				}
+			}
+		}
+		catch (Exception exception) {
+			for (ForkJoinTask<Expression> forkedTask : forkedTasks) {
+				forkedTask.cancel(true);
+			}
+			throw Throwables.propagate(exception);
+		}
+		return result;
+	}
+	
+	private static synchronized ForkJoinPool getForkJoinPool() {
+		if (forkJoinPool == null) {
+			forkJoinPool = new ForkJoinPool(GrinderConfiguration.getBranchAndMergeForkJoinParallelism());
+		}
+		return forkJoinPool;
+	}
+
+	private static List<Expression> executeWithBranchAndMerge(List<Callable<Expression>> callables, Predicate<Expression> shortCircuit) {
+		CancelOutstandingOnFailure failurePredicate = new CancelOutstandingOnFailure(true);
+		BranchAndMerge.Result<List<Expression>> branchResults = BranchAndMerge.execute(callables, shortCircuit, failurePredicate);
+		if (branchResults.failureOccurred()) {
+			throw Throwables.propagate(failurePredicate.getThrowable());
+		}
+		List<Expression> result = branchResults.getResult();
+		return result;
+	}
+	
+	/**
+	 * Runs a task, cancelling the token shared with its siblings if it fails,
+	 * and returning <code>null</code> instead of throwing if it stops because the token was cancelled.
+	 */
+	private static class CancellableTask implements Callable<Expression> {
+		private Callable<Expression> task;
+		private CancellationToken cancellationToken;
+		
+		public CancellableTask(Callable<Expression> task, CancellationToken cancellationToken) {
+			this.task = task;
+			this.cancellationToken = cancellationToken;
+		}
+
+		@Override
+		public Expression call() throws Exception {
+			if (cancellationToken.isCancelled()) {
+				return null;
+			}
+			try {
+				return task.call();
+			}
+			catch (CancellationToken.RewritingCancelled cancelled) {
+				if (cancellationToken.isCancelled()) {
+					return null;
+				}
+				throw cancelled;
+			}
+			catch (Exception | Error failure) {
+				cancellationToken.cancel();
+				throw failure;
+			}
+		}
+	}
+	
+	/** A short-circuit predicate cancelling a token when the predicate it wraps holds. */
+	private static class CancelOnShortCircuit implements Predicate<Expression> {
+		private Predicate<Expression> shortCircuit;
+		private CancellationToken cancellationToken;
+		
+		public CancelOnShortCircuit(Predicate<Expression> shortCircuit, CancellationToken cancellationToken) {
+			this.shortCircuit = shortCircuit;
+			this.cancellationToken = cancellationToken;
+		}
+
+		@Override
+		public boolean apply(Expression value) {
+			boolean result = shortCircuit.apply(value);
+			if (result) {
+				cancellationToken.cancel();
+			}
+			return result;
+		}
+	}
+	
+	/** Runs a task and applies a short-circuit predicate to its result, recording whether it held. */
+	private static class ShortCircuitCheckingTask implements Callable<Expression> {
+		private Callable<Expression> task;
+		private Predicate<Expression> shortCircuit;
+		private AtomicBoolean someTaskShortCircuited;
+		private volatile boolean shortCircuited = false;
+		
+		public ShortCircuitCheckingTask(Callable<Expression> task, Predicate<Expression> shortCircuit, AtomicBoolean someTaskShortCircuited) {
+			this.task = task;
+			this.shortCircuit = shortCircuit;
+			this.someTaskShortCircuited = someTaskShortCircuited;
+		}
+
+		@Override
+		public Expression call() throws Exception {
+			Expression result = task.call();
+			if (shortCircuit.apply(result)) {
+				// set before the shared flag, so that whoever sees the latter does not cancel this task
+				shortCircuited = true;
+				someTaskShortCircuited.set(true);
+			}
+			return result;
+		}
+	}
+	
+	private static class TimedTask implements Callable<Expression> {
+		private CallableRewriteOnBranch task;
+		private long size;
+		private BranchAndMergeTaskStatistics statistics;
+		private Thread callerThread;
+		
+		public TimedTask(CallableRewriteOnBranch task, long size, BranchAndMergeTaskStatistics statistics, Thread callerThread) {
+			this.task = task;
+			this.size = size;
+			this.statistics = statistics;
+			this.callerThread = callerThread;
+		}
+
+		@Override
+		public Expression call() {
+			long start = System.nanoTime();
+			Expression result = task.call();
+			statistics.record(size, System.nanoTime() - start, Thread.currentThread() == callerThread);
+			return result;
+		}
+	}
+}
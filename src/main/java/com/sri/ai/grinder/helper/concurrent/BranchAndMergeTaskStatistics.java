@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.grinder.helper.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.grinder.GrinderConfiguration;
+import com.sri.ai.grinder.api.RewritingProcess;
+
+/**
+ * Timing of the tasks executed by {@link BranchAndMergeExecutor} in a rewriting process
+ * (and its sub-processes, which share its global objects), grouped by task size
+ * (the number of expression nodes in the task's arguments) in powers of two,
+ * for tuning {@link GrinderConfiguration#KEY_BRANCH_AND_MERGE_SEQUENTIAL_CUTOFF}.
+ * Tasks are only timed if {@link GrinderConfiguration#KEY_BRANCH_AND_MERGE_RECORD_TASK_TIMING} is true.
+ * 
+ * @author braz
+ *
+ */
+@Beta
+public class BranchAndMergeTaskStatistics {
+	
+	private static final String GLOBAL_OBJECT_KEY = BranchAndMergeTaskStatistics.class.getName();
+	
+	private static final int NUMBER_OF_SIZE_CLASSES = 64;
+	
+	private AtomicLongArray numberOfTasks = new AtomicLongArray(NUMBER_OF_SIZE_CLASSES);
+	private AtomicLongArray totalNanoseconds = new AtomicLongArray(NUMBER_OF_SIZE_CLASSES);
+	private AtomicLongArray numberOfSequentialTasks = new AtomicLongArray(NUMBER_OF_SIZE_CLASSES);
+
+	/** Returns the statistics of given process, creating them if needed. */
+	public static BranchAndMergeTaskStatistics getFor(RewritingProcess process) {
+		BranchAndMergeTaskStatistics result = (BranchAndMergeTaskStatistics) process.getGlobalObject(GLOBAL_OBJECT_KEY);
+		if (result == null) {
+			BranchAndMergeTaskStatistics newStatistics = new BranchAndMergeTaskStatistics();
+			result = (BranchAndMergeTaskStatistics) process.getGlobalObjects().putIfAbsent(GLOBAL_OBJECT_KEY, newStatistics);
+			if (result == null) {
+				result = newStatistics;
+			}
+		}
+		return result;
+	}
+	
+	public void record(long size, long nanoseconds, boolean sequential) {
+		int sizeClass = getSizeClass(size);
+		numberOfTasks.incrementAndGet(sizeClass);
+		totalNanoseconds.addAndGet(sizeClass, nanoseconds);
+		if (sequential) {
+			numberOfSequentialTasks.incrementAndGet(sizeClass);
+		}
+	}
+	
+	/** The size class of tasks of given size, that is, the number of bits needed to represent the size. */
+	public static int getSizeClass(long size) {
+		int result = NUMBER_OF_SIZE_CLASSES - Long.numberOfLeadingZeros(Math.max(size, 0));
+		return Math.min(result, NUMBER_OF_SIZE_CLASSES - 1);
+	}
+	
+	public long getNumberOfTasks(int sizeClass) {
+		return numberOfTasks.get(sizeClass);
+	}
+	
+	public long getNumberOfSequentialTasks(int sizeClass) {
+		return numberOfSequentialTasks.get(sizeClass);
+	}
+	
+	public long getTotalNanoseconds(int sizeClass) {
+		return totalNanoseconds.get(sizeClass);
+	}
+	
+	public long getTotalNumberOfTasks() {
+		long result = 0;
+		for (int i = 0; i != NUMBER_OF_SIZE_CLASSES; i++) {
+			result += numberOfTasks.get(i);
+		}
+		return result;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder("Branch and merge tasks by size (number of expression nodes in arguments):");
+		for (int i = 0; i != NUMBER_OF_SIZE_CLASSES; i++) {
+			long tasks = numberOfTasks.get(i);
+			if (tasks != 0) {
+				long minimumSize = i == 0? 0 : 1L << (i - 1);
+				result.append("\n  size >= " + minimumSize + ": " + tasks + " tasks (" + numberOfSequentialTasks.get(i) + " sequential), average " + (totalNanoseconds.get(i)/tasks/1000) + " microseconds");
+			}
+		}
+		return result.toString();
+	}
+}
@@ -93,6 +93,25 @@ public class CallableRewriteOnBranch implements CallableRewriter {
 		mdcParentContextMap = MDC.getCopyOfContextMap();
 	}
 
+	/**
+	 * 
+	 * @return the arguments passed to the RewriteOnBranch when it is called.
+	 */
+	public Expression[] getBranchArguments() {
+		return branchArguments;
+	}
+
+	/**
+	 * Makes the branch be rewritten in a sub-process of the current one with a given cancellation token,
+	 * typically shared with its sibling branches so that they can be cancelled together.
+	 * 
+	 * @param cancellationToken
+	 *            the cancellation token of the branch.
+	 */
+	public void setCancellationToken(CancellationToken cancellationToken) {
+		process = process.newSubProcessWithCancellationToken(cancellationToken);
+	}
+
 	@Override
 	public Expression call() {
 		Expression result = null;
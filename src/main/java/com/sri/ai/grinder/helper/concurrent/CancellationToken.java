@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.grinder.helper.concurrent;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.grinder.api.RewritingProcess;
+
+/**
+ * A token for the cooperative cancellation of rewritings, carried by {@link RewritingProcess}es
+ * and checked at rewriter call boundaries (see {@link #throwIfCancelled()}).
+ * <p>
+ * Tokens form a tree: a token is cancelled if it or any of its ancestors has been cancelled.
+ * {@link BranchAndMergeExecutor} gives each set of branches a child token of the token of the branching process,
+ * and cancels it when a branch short-circuits or fails, so that sibling branches still running
+ * stop at their next rewriter call instead of running to completion.
+ * 
+ * @author braz
+ *
+ */
+@Beta
+public class CancellationToken {
+
+	private final CancellationToken parent;
+	private volatile boolean cancelled = false;
+
+	/** Makes a root token. */
+	public CancellationToken() {
+		this(null);
+	}
+
+	/** Makes a token that is also cancelled when a given parent token (if not <code>null</code>) is. */
+	public CancellationToken(CancellationToken parent) {
+		this.parent = parent;
+	}
+
+	/** Makes a token that is cancelled when this one is, but that can be cancelled without cancelling this one. */
+	public CancellationToken newChild() {
+		return new CancellationToken(this);
+	}
+
+	/** Cancels this token and all its descendants. */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/** Indicates whether this token or one of its ancestors has been cancelled. */
+	public boolean isCancelled() {
+		CancellationToken token = this;
+		while (token != null) {
+			if (token.cancelled) {
+				return true;
+			}
+			token = token.parent;
+		}
+		return false;
+	}
+
+	/** Throws a {@link RewritingCancelled} error if this token has been cancelled. */
+	public void throwIfCancelled() {
+		if (isCancelled()) {
+			throw new RewritingCancelled();
+		}
+	}
+
+	/**
+	 * The error thrown by rewritings whose cancellation token has been cancelled.
+	 * It does not record a stack trace since it is used for control flow only.
+	 */
+	public static class RewritingCancelled extends Error {
+		private static final long serialVersionUID = 1L;
+
+		public RewritingCancelled() {
+			super("Rewriting cancelled.", null, false, false);
+		}
+	}
+}
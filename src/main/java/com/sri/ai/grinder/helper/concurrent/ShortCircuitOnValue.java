@@ -51,7 +51,7 @@ import com.sri.ai.expresso.api.Expression;
 @Beta
 public class ShortCircuitOnValue implements Predicate<Expression> {
 
-	private boolean    shortCircuited        = false;
+	private volatile boolean shortCircuited  = false;
 	private Expression valueToShortCircuitOn = null;
 
 	public ShortCircuitOnValue(Expression valueToShortCircuitOn) {
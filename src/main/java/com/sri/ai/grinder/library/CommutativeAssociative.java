@@ -39,22 +39,19 @@ package com.sri.ai.grinder.library;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Predicate;
-import com.google.common.base.Predicates;
 import com.sri.ai.expresso.api.Expression;
 import com.sri.ai.expresso.helper.Expressions;
 import com.sri.ai.grinder.api.RewritingProcess;
 import com.sri.ai.grinder.core.AbstractRewriter;
 import com.sri.ai.grinder.core.HasKind;
 import com.sri.ai.util.Util;
-import com.sri.ai.util.base.Equals;
 
 /**
  * Implements the basics for commutative, associative operators with a neutral
@@ -67,6 +64,13 @@ import com.sri.ai.util.base.Equals;
  * operable (for addition, e.g., 1 + 2 + 3 returns 6), or returning an
  * application of the operation on the result on operable arguments together
  * with the non-operable arguments (for addition, 1 + X + 3 becomes 4 + X).
+ * Nested applications of the operator (with more than one argument) are flattened at the same time,
+ * as {@link Associative} would do (for addition, 1 + (X + 3) also becomes 4 + X).
+ * <p>
+ * Since these operators are applied to nearly every node in rewriting,
+ * arguments are scanned without allocating intermediate collections
+ * unless there is something to be done,
+ * and the expression instance itself is returned when it does not change.
  * 
  * @author braz
  */
@@ -82,22 +86,21 @@ public abstract class CommutativeAssociative extends AbstractRewriter {
 	protected abstract Expression getAbsorbingElement();
 	protected abstract boolean isIdempotent();
 	protected abstract Predicate<Expression> getIsOperableArgumentSyntaxTreePredicate();
-	protected abstract Expression operationOnOperables(LinkedList<Expression> operableArguments);
-	protected abstract Expression operationOnExpressionOperables(LinkedList<Expression> operableArguments);
+	protected abstract Expression operationOnOperables(List<Expression> operableArguments);
+	protected abstract Expression operationOnExpressionOperables(List<Expression> operableArguments);
+
+	/**
+	 * The number of distinct arguments up to which repeated arguments are detected by linear search
+	 * rather than with a hash set.
+	 */
+	private static final int MAXIMUM_NUMBER_OF_ARGUMENTS_FOR_LINEAR_SEARCH_OF_REPEATED_ONES = 16;
 
 	public Expression getNeutralElementExpression() {
 		return getNeutralElement();
 	}
 
 	public Predicate<Expression> getIsOperableArgumentExpressionPredicate() {
-		Predicate<Expression> result = new Predicate<Expression>() {
-			@Override
-			public boolean apply(Expression expression) {
-				boolean result = getIsOperableArgumentSyntaxTreePredicate().apply(expression);
-				return result;
-			}
-		};
-		return result;
+		return getIsOperableArgumentSyntaxTreePredicate();
 	}
 	
 	@Override
@@ -117,50 +120,81 @@ public abstract class CommutativeAssociative extends AbstractRewriter {
 			return expression.get(0);
 		}
 		
-		LinkedList<Expression> operableArguments = new LinkedList<Expression>();
-		LinkedList<Expression> nonOperableArguments = new LinkedList<Expression>();
-		int indexOfFirstOperable =
-			Util.collect(
-					arguments,
-					operableArguments, getIsOperableArgumentExpressionPredicate(),
-					nonOperableArguments);
-	
-		if (operableArguments.size() == 0) {
-			return expression; // everything is an non-operable argument, nothing that can be done.
+		Expression functor = expression.getFunctor();
+		List<Expression> flattenedArguments = flattenNestedApplications(functor, arguments);
+		boolean flattened = flattenedArguments != arguments;
+		arguments = flattenedArguments;
+
+		// a single pass counts operable arguments, stopping at the absorbing element if any
+		Predicate<Expression> isOperable = getIsOperableArgumentSyntaxTreePredicate();
+		Expression absorbingElement = getAbsorbingElement();
+		int numberOfOperables = 0;
+		int indexOfFirstOperable = -1;
+		Expression firstOperable = null;
+		int i = 0;
+		for (Expression argument : arguments) {
+			if (isOperable.apply(argument)) {
+				if (absorbingElement != null && absorbingElement.equals(argument)) {
+					return absorbingElement;
+				}
+				if (numberOfOperables++ == 0) {
+					indexOfFirstOperable = i;
+					firstOperable = argument;
+				}
+			}
+			i++;
 		}
-		
-		if (operableArguments.contains(getAbsorbingElement())) {
-			return getAbsorbingElement();
+	
+		if (numberOfOperables == 0) {
+			// everything is an non-operable argument, nothing that can be done besides flattening.
+			return flattened? Expressions.makeExpressionOnSyntaxTreeWithLabelAndSubTrees(functor, arguments) : expression;
 		}
 		
-		// get result on operable arguments
-		Expression resultOnOperableArgumentsExpression = operationOnExpressionOperables(operableArguments);
-
 		// this next if then else is both an optimization for the case in which there is a single operable,
 		// and a way to make sure
 		// we return the same expression instance when it doesn't change (like x + 2), lest we generate
 		// a distinct but equal instance that would keep being re-evaluated by the same rewriter.
-		if (operableArguments.size() == 1) {
-			if (operableArguments.getFirst().equals(getNeutralElementExpression())) {
+		if (numberOfOperables == 1) {
+			if (firstOperable.equals(getNeutralElementExpression())) {
 				// we don't need to include the neutral element, and are left with non-operable arguments only, done.
+				List<Expression> nonOperableArguments = new ArrayList<Expression>(arguments.size() - 1);
+				i = 0;
+				for (Expression argument : arguments) {
+					if (i++ != indexOfFirstOperable) {
+						nonOperableArguments.add(argument);
+					}
+				}
 				Expression result = makeExpressionWithSameFunctorAsThis(nonOperableArguments);
 				return result;
 			}
 			else {
 				// the expression is formed by non-operable arguments and a single non-neutral operable argument, nothing else to do.
-				return expression;
+				return flattened? Expressions.makeExpressionOnSyntaxTreeWithLabelAndSubTrees(functor, arguments) : expression;
 			}
 		}
 
 		// now we deal with the case of more than one operable argument
+		List<Expression> operableArguments = new ArrayList<Expression>(numberOfOperables);
+		List<Expression> nonOperableArguments = new ArrayList<Expression>(arguments.size() - numberOfOperables + 1);
+		for (Expression argument : arguments) {
+			if (isOperable.apply(argument)) {
+				operableArguments.add(argument);
+			}
+			else {
+				nonOperableArguments.add(argument);
+			}
+		}
 		
+		// get result on operable arguments
+		Expression resultOnOperableArgumentsExpression = operationOnExpressionOperables(operableArguments);
+
 		// if there are no non-operable arguments, that's it.
 		if (nonOperableArguments.size() == 0) {
 			return resultOnOperableArgumentsExpression;
 		}
 
 		// if there are non-operable arguments, put them together with operables's result, unless this is the neutral element.
-		LinkedList<Expression> argumentsOfResultingExpression = nonOperableArguments; // changing semantics, and therefore, for clarity, the name. It's ok to modify it since it's been created locally.
+		List<Expression> argumentsOfResultingExpression = nonOperableArguments; // changing semantics, and therefore, for clarity, the name. It's ok to modify it since it's been created locally.
 		if ( ! resultOnOperableArgumentsExpression.equals(getNeutralElement())) {
 			argumentsOfResultingExpression.add(indexOfFirstOperable, resultOnOperableArgumentsExpression);
 		}
@@ -192,26 +226,69 @@ public abstract class CommutativeAssociative extends AbstractRewriter {
 	 * that is, its application but for the cases in which there are no arguments, or a single argument.
 	 * When there are no arguments, a given neutral element value is returned.
 	 * When a single argument is provided, it is returned itself.
-	 * @param isIdempotent TODO
+	 * Otherwise, arguments that are applications of the same operator (with more than one argument) are flattened.
+	 * Occurrences of the neutral element, and repeated arguments if the operator is idempotent,
+	 * are removed in the same pass over the arguments.
+	 * @param isIdempotent whether the operator is idempotent, in which case only the first occurrence of each argument is kept
 	 */
 	public static Expression make(Object functor, List<Expression> arguments, Expression neutralElement, boolean isIdempotent) {
-		Predicate<Expression> notEqualToNeutralElement = Predicates.not(new Equals<Expression>(neutralElement));
-		arguments = Util.collectToList(arguments, notEqualToNeutralElement);
-		if (isIdempotent) {
-			Set<Expression> argumentsSet = new LinkedHashSet<Expression>(arguments);
-			arguments = new ArrayList<Expression>(argumentsSet);
+		Expression functorExpression = Expressions.wrap(functor);
+		List<Expression> keptArguments = new ArrayList<Expression>(arguments.size());
+		Set<Expression> keptArgumentsSet = null; // only used for idempotent operators with many arguments
+		boolean thereAreNestedApplications = false;
+		for (Expression argument : arguments) {
+			if ( ! argument.equals(neutralElement)) {
+				if (isIdempotent) {
+					if (keptArgumentsSet == null && keptArguments.size() == MAXIMUM_NUMBER_OF_ARGUMENTS_FOR_LINEAR_SEARCH_OF_REPEATED_ONES) {
+						keptArgumentsSet = new HashSet<Expression>(keptArguments);
+					}
+					boolean repeated = keptArgumentsSet == null? keptArguments.contains(argument) : ! keptArgumentsSet.add(argument);
+					if (repeated) {
+						continue;
+					}
+				}
+				keptArguments.add(argument);
+				thereAreNestedApplications = thereAreNestedApplications || isNestedApplication(functorExpression, argument);
+			}
 		}
-		if (arguments.isEmpty()) {
+		if (keptArguments.isEmpty()) {
 			return Expressions.wrap(neutralElement);
 		}
-		if (arguments.size() == 1) {
-			return arguments.get(0);
+		if (keptArguments.size() == 1) {
+			return keptArguments.get(0);
+		}
+		if (thereAreNestedApplications) {
+			keptArguments = flattenNestedApplications(functorExpression, keptArguments);
 		}
-		Expression result = Expressions.makeExpressionOnSyntaxTreeWithLabelAndSubTrees(Expressions.wrap(functor), arguments);
-		result = Associative.associateWhenSureOperatorIsAssociative(result);
+		Expression result = Expressions.makeExpressionOnSyntaxTreeWithLabelAndSubTrees(functorExpression, keptArguments);
 		return result;
 	}
 
+	/**
+	 * Indicates whether a list of arguments contains repeated elements,
+	 * using a hash set only if there are many arguments.
+	 */
+	public static boolean hasRepeatedArguments(List<Expression> arguments) {
+		if (arguments.size() > MAXIMUM_NUMBER_OF_ARGUMENTS_FOR_LINEAR_SEARCH_OF_REPEATED_ONES) {
+			Set<Expression> argumentsSet = new HashSet<Expression>(arguments);
+			return argumentsSet.size() != arguments.size();
+		}
+		int i = 0;
+		for (Expression argument : arguments) {
+			int j = 0;
+			for (Expression previousArgument : arguments) {
+				if (j++ == i) {
+					break;
+				}
+				if (previousArgument.equals(argument)) {
+					return true;
+				}
+			}
+			i++;
+		}
+		return false;
+	}
+
 	public static Expression make(Object functor, Collection<Expression> arguments, Expression absorbingElement, Expression neutralElement, boolean isIdempotent) {
 		return make(functor, arguments.iterator(), absorbingElement, neutralElement, isIdempotent);
 	}
@@ -225,7 +302,7 @@ public abstract class CommutativeAssociative extends AbstractRewriter {
 	 */
 	public static Expression make(Object functor, Iterator<Expression> argumentsIterator, Expression absorbingElement, Expression neutralElement, boolean isIdempotent) {
 		absorbingElement = Expressions.wrap(absorbingElement);
-		List<Expression> arguments = new LinkedList<Expression>();
+		List<Expression> arguments = new ArrayList<Expression>();
 		while (argumentsIterator.hasNext()) {
 			Expression argument = argumentsIterator.next();
 			if (argument.equals(absorbingElement)) {
@@ -251,4 +328,47 @@ public abstract class CommutativeAssociative extends AbstractRewriter {
 		}
 		return Util.list(expression);
 	}
+
+	//
+	// PRIVATE METHODS
+	//
+	/**
+	 * Indicates whether an argument is an application of the given functor that is flattened into its parent,
+	 * which, as in {@link Associative}, is the case if it has more than one argument.
+	 */
+	private static boolean isNestedApplication(Expression functor, Expression argument) {
+		boolean result = argument.hasFunctor(functor) && argument.numberOfArguments() > 1;
+		return result;
+	}
+
+	/**
+	 * Returns a list with the arguments of nested applications (see {@link #isNestedApplication(Expression, Expression)})
+	 * in place of these applications, or the given list itself if there are none.
+	 */
+	private static List<Expression> flattenNestedApplications(Expression functor, List<Expression> arguments) {
+		int numberOfFlattenedArguments = 0;
+		boolean thereAreNestedApplications = false;
+		for (Expression argument : arguments) {
+			if (isNestedApplication(functor, argument)) {
+				numberOfFlattenedArguments += argument.numberOfArguments();
+				thereAreNestedApplications = true;
+			}
+			else {
+				numberOfFlattenedArguments++;
+			}
+		}
+		if ( ! thereAreNestedApplications) {
+			return arguments;
+		}
+		List<Expression> result = new ArrayList<Expression>(numberOfFlattenedArguments);
+		for (Expression argument : arguments) {
+			if (isNestedApplication(functor, argument)) {
+				result.addAll(argument.getArguments());
+			}
+			else {
+				result.add(argument);
+			}
+		}
+		return result;
+	}
 }
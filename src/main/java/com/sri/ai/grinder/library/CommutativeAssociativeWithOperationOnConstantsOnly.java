@@ -37,11 +37,12 @@
  */
 package com.sri.ai.grinder.library;
 
-import java.util.LinkedList;
 import java.util.List;
+import java.util.function.LongBinaryOperator;
 
 import com.google.common.annotations.Beta;
 import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.api.Symbol;
 import com.sri.ai.expresso.helper.Expressions;
 import com.sri.ai.expresso.helper.GetValue;
 import com.sri.ai.util.Util;
@@ -56,19 +57,66 @@ public abstract class CommutativeAssociativeWithOperationOnConstantsOnly extends
 
 	protected abstract Object operationOnOperableValues(List<? extends Object> listOfOperableArguments);
 
+	/**
+	 * Returns the operation on two <code>long</code> values, or <code>null</code> (the default) if there is none;
+	 * if there is one, operable arguments that are all integers fitting in a <code>long</code>
+	 * are operated on with it instead of {@link #operationOnOperableValues(List)}.
+	 * The operation must throw an {@link ArithmeticException} if the result overflows
+	 * (it is then performed with arbitrary precision instead).
+	 */
+	protected LongBinaryOperator getOperationOnLongValues() {
+		return null;
+	}
+
 	@Override
-	public Expression operationOnOperables(LinkedList<Expression> operableArguments) {
-		List<Object> operableArgumentValues = Util.mapIntoList(operableArguments.iterator(), GetValue.INSTANCE);
-		Object resultOnOperableArguments = operationOnOperableValues(operableArgumentValues);
-		Expression resultOnOperableArgumentsExpression = Expressions.makeSymbol(resultOnOperableArguments);
+	public Expression operationOnOperables(List<Expression> operableArguments) {
+		Expression resultOnOperableArgumentsExpression = operationOnLongValuedOperablesOrNull(operableArguments);
+		if (resultOnOperableArgumentsExpression == null) {
+			List<Object> operableArgumentValues = Util.mapIntoList(operableArguments.iterator(), GetValue.INSTANCE);
+			Object resultOnOperableArguments = operationOnOperableValues(operableArgumentValues);
+			resultOnOperableArgumentsExpression = Expressions.makeSymbol(resultOnOperableArguments);
+		}
 		return resultOnOperableArgumentsExpression;
 	}
 
 	@Override
-	public Expression operationOnExpressionOperables(LinkedList<Expression> operableArguments) {
-		List<Object> operableArgumentValues = Util.mapIntoList(operableArguments.iterator(), GetValue.INSTANCE);
-		Object resultOnOperableArguments = operationOnOperableValues(operableArgumentValues);
-		Expression result = Expressions.makeSymbol(resultOnOperableArguments);
+	public Expression operationOnExpressionOperables(List<Expression> operableArguments) {
+		Expression result = operationOnLongValuedOperablesOrNull(operableArguments);
+		if (result == null) {
+			List<Object> operableArgumentValues = Util.mapIntoList(operableArguments.iterator(), GetValue.INSTANCE);
+			Object resultOnOperableArguments = operationOnOperableValues(operableArgumentValues);
+			result = Expressions.makeSymbol(resultOnOperableArguments);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the result of the operation computed with primitive arithmetic if supported and all arguments have long values,
+	 * or <code>null</code> if that is not possible (including in case of overflow).
+	 */
+	private Expression operationOnLongValuedOperablesOrNull(List<Expression> operableArguments) {
+		LongBinaryOperator operationOnLongValues = getOperationOnLongValues();
+		if (operationOnLongValues == null || operableArguments.isEmpty()) {
+			return null;
+		}
+		
+		long resultValue = 0;
+		boolean first = true;
+		try {
+			for (Expression argument : operableArguments) {
+				if ( ! (argument instanceof Symbol && ((Symbol) argument).hasLongValue())) {
+					return null;
+				}
+				long argumentValue = ((Symbol) argument).longValue();
+				resultValue = first? argumentValue : operationOnLongValues.applyAsLong(resultValue, argumentValue);
+				first = false;
+			}
+		}
+		catch (ArithmeticException overflow) {
+			return null;
+		}
+		
+		Expression result = Expressions.makeSymbol(resultValue);
 		return result;
 	}
 }
@@ -39,14 +39,18 @@ package com.sri.ai.grinder.library;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Predicate;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
 import com.sri.ai.expresso.api.Expression;
 import com.sri.ai.expresso.helper.Expressions;
 import com.sri.ai.grinder.api.Rewriter;
 import com.sri.ai.grinder.api.RewritingProcess;
-import com.sri.ai.grinder.core.DefaultRewriterLookup;
+import com.sri.ai.grinder.core.RewriterLookup;
 import com.sri.ai.grinder.core.DefaultRewritingProcess;
 import com.sri.ai.grinder.core.PrologConstantPredicate;
 import com.sri.ai.grinder.library.equality.cardinality.direct.CardinalityConfiguration;
@@ -62,6 +66,7 @@ import com.sri.ai.grinder.library.equality.cardinality.direct.core.CardinalityEx
 import com.sri.ai.grinder.library.equality.cardinality.direct.core.CardinalityImplication;
 import com.sri.ai.grinder.library.equality.cardinality.direct.core.CompleteNormalize;
 import com.sri.ai.grinder.library.equality.cardinality.direct.core.DefaultCardinalityConfiguration;
+import com.sri.ai.grinder.library.equality.cardinality.direct.core.DefaultPickCheapestTopLevelCostFunction;
 import com.sri.ai.grinder.library.equality.cardinality.direct.core.EqualityInConjunction;
 import com.sri.ai.grinder.library.equality.cardinality.direct.core.FormulaSimplify;
 import com.sri.ai.grinder.library.equality.cardinality.direct.core.IncompleteTopImpliedCertainty;
@@ -81,6 +86,10 @@ import com.sri.ai.grinder.library.equality.cardinality.direct.core.TopSimplifyDi
 /**
  * A factory class for instantiating rewriting processes capable of performing a
  * cardinality computation on a given formula.
+ * <p>
+ * The rewriters used by the processes are built once per configuration into a
+ * {@link CardinalityRewriterGraph} and shared by all processes created for that configuration,
+ * so creating a process does not rebuild them.
  * 
  * @author oreilly
  * 
@@ -92,6 +101,11 @@ public class DirectCardinalityComputationFactory {
 	// https://code.google.com/p/aic-expresso/issues/detail?id=22
 	private static boolean _useExperimentalDPLLLogic = Boolean.getBoolean("expresso.cardinality.use.experimental.dpll.logic");
 	
+	private static CardinalityRewriterGraph defaultRewriterGraph = null;
+	// Keyed by identity of the cost function; values are soft since they reference their own keys.
+	private static Cache<CardinalityConfiguration.PickCheapestTopLevelCostFunction, CardinalityRewriterGraph> rewriterGraphsByCostFunction
+		= CacheBuilder.newBuilder().weakKeys().softValues().build();
+	
 	public static Rewriter getRootRewriter() {
 		return (new Simplify()).getRootRewriter();
 	}
@@ -110,7 +124,7 @@ public class DirectCardinalityComputationFactory {
 	}
 
 	public static RewritingProcess newCardinalityProcess(Expression rootExpression) {
-		return newCardinalityProcess(rootExpression, newCardinalityConfiguration());
+		return getDefaultRewriterGraph().newProcess(rootExpression, null);
 	}
 	
 	public static RewritingProcess newCardinalityProcess(Expression rootExpression, CardinalityConfiguration configuration) {
@@ -118,12 +132,112 @@ public class DirectCardinalityComputationFactory {
 	}
 	
 	public static RewritingProcess newCardinalityProcess(Expression rootExpression, RewritingProcess parentProcess) {
-		return newCardinalityProcess(rootExpression, newCardinalityConfiguration(), parentProcess);
+		return getDefaultRewriterGraph().newProcess(rootExpression, parentProcess);
 	}
 	
 	public static RewritingProcess newCardinalityProcess(Expression rootExpression, CardinalityConfiguration configuration, RewritingProcess parentProcess) {
-		DefaultRewriterLookup cardinalityRewriterLookup = new DefaultRewriterLookup(getCardinalityRewritersMap(configuration));
+		return getRewriterGraph(configuration).newProcess(rootExpression, parentProcess);
+	}
+
+	/**
+	 * Returns the (shared) rewriter graph for the default cardinality configuration.
+	 */
+	public static synchronized CardinalityRewriterGraph getDefaultRewriterGraph() {
+		if (defaultRewriterGraph == null) {
+			defaultRewriterGraph = new CardinalityRewriterGraph(newCardinalityConfiguration());
+		}
+		return defaultRewriterGraph;
+	}
+	
+	/**
+	 * Returns the (shared) rewriter graph for a given configuration,
+	 * building it only the first time its pick cheapest cost function is seen.
+	 */
+	public static CardinalityRewriterGraph getRewriterGraph(final CardinalityConfiguration configuration) {
+		CardinalityRewriterGraph result;
+		CardinalityConfiguration.PickCheapestTopLevelCostFunction costFunction = configuration.getPickCheapestTopLevelCostFunction();
+		if (costFunction.getClass() == DefaultPickCheapestTopLevelCostFunction.class) {
+			// the default cost function is stateless, so all of its instances are equivalent.
+			result = getDefaultRewriterGraph();
+		}
+		else {
+			try {
+				result = rewriterGraphsByCostFunction.get(costFunction, () -> new CardinalityRewriterGraph(configuration));
+			}
+			catch (ExecutionException executionException) {
+				throw new Error("Could not build cardinality rewriters", executionException.getCause());
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * An immutable set of cardinality rewriters (the root rewriter and the lookup of the cardinality rewriters)
+	 * for a given configuration, including the choice of experimental DPLL logic,
+	 * which is built once and shared by all rewriting processes created from it.
+	 * Binding a new process to it does not create any rewriters;
+	 * the rewriters keep their per-process state in the processes' global objects.
+	 * 
+	 * @author braz
+	 *
+	 */
+	@Beta
+	public static class CardinalityRewriterGraph {
+		private Rewriter              rootRewriter;
+		private Map<String, Rewriter> cardinalityRewriters;
+		private RewriterLookup        rewriterLookup;
+		private boolean               usingExperimentalDPLLLogic;
+		
+		public CardinalityRewriterGraph(CardinalityConfiguration configuration) {
+			this.rootRewriter               = DirectCardinalityComputationFactory.getRootRewriter();
+			this.cardinalityRewriters       = ImmutableMap.copyOf(getCardinalityRewritersMap(configuration));
+			this.rewriterLookup             = new ImmutableRewriterLookup(cardinalityRewriters);
+			this.usingExperimentalDPLLLogic = _useExperimentalDPLLLogic;
+		}
+		
+		public Rewriter getRootRewriter() {
+			return rootRewriter;
+		}
 		
+		/**
+		 * Returns an unmodifiable map from cardinality rewriter names to the shared rewriters.
+		 */
+		public Map<String, Rewriter> getCardinalityRewriters() {
+			return cardinalityRewriters;
+		}
+		
+		public RewriterLookup getRewriterLookup() {
+			return rewriterLookup;
+		}
+		
+		public boolean isUsingExperimentalDPLLLogic() {
+			return usingExperimentalDPLLLogic;
+		}
+		
+		/**
+		 * Creates a new cardinality process using this graph's rewriters,
+		 * inheriting contextual information and global objects from a parent process if it is not null.
+		 */
+		public RewritingProcess newProcess(Expression rootExpression, RewritingProcess parentProcess) {
+			return newCardinalityProcess(rootExpression, rootRewriter, rewriterLookup, parentProcess);
+		}
+	}
+	
+	private static class ImmutableRewriterLookup implements RewriterLookup {
+		private Map<String, Rewriter> rewriters;
+		
+		public ImmutableRewriterLookup(Map<String, Rewriter> rewriters) {
+			this.rewriters = rewriters;
+		}
+		
+		@Override
+		public Rewriter getRewriterFor(String rewriterName) {
+			Rewriter result = rewriters.get(rewriterName);
+			return result;
+		}
+	}
+	
+	private static RewritingProcess newCardinalityProcess(Expression rootExpression, Rewriter rootRewriter, RewriterLookup cardinalityRewriterLookup, RewritingProcess parentProcess) {
 		Map<Expression, Expression> contextualSymbolsAndTypes = null;
 		Expression contextualConstraint                           = null;
 		Predicate<Expression> isUniquelyNamedConstantPredicate                 = null;
@@ -144,7 +258,7 @@ public class DirectCardinalityComputationFactory {
 		
 		DefaultRewritingProcess cardinalityProcess = new DefaultRewritingProcess(
 				rootExpression,
-				getRootRewriter(),
+				rootRewriter,
 				cardinalityRewriterLookup,
 				contextualSymbolsAndTypes,
 				contextualConstraint,
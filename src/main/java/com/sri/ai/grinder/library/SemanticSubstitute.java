@@ -37,14 +37,24 @@
  */
 package com.sri.ai.grinder.library;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Function;
 import com.sri.ai.expresso.api.Expression;
 import com.sri.ai.expresso.api.ExpressionAndContext;
+import com.sri.ai.expresso.api.IndexExpressionsSet;
 import com.sri.ai.expresso.core.AbstractReplacementFunctionWithContextuallyUpdatedProcess;
+import com.sri.ai.expresso.core.ExtensionalIndexExpressionsSet;
 import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.expresso.helper.SubExpressionsDepthFirstIterator;
 import com.sri.ai.grinder.api.RewritingProcess;
 import com.sri.ai.grinder.core.PruningPredicate;
 import com.sri.ai.grinder.core.ReplacementFunctionMaker;
@@ -54,6 +64,8 @@ import com.sri.ai.grinder.library.boole.Not;
 import com.sri.ai.grinder.library.controlflow.IfThenElse;
 import com.sri.ai.grinder.library.equality.cardinality.direct.CardinalityRewriter;
 import com.sri.ai.grinder.library.equality.formula.FormulaUtil;
+import com.sri.ai.util.Util;
+import com.sri.ai.util.base.Pair;
 
 /**
  * A class providing a static method for substituting symbols or function applications in an expression
@@ -108,6 +120,16 @@ import com.sri.ai.grinder.library.equality.formula.FormulaUtil;
  *      p(X,Y)                 2  if W != X and Z != Y then p(W,Z) else p(a,Y)   if W != X and Z != Y then p(W,Z) else if X = a then 2 else p(a,Y)
  * </pre>
  * 
+ * When given several replacements, {@link #replaceAll(Expression, Map, RewritingProcess)} is equivalent to applying them
+ * one after the other in the map's order (as done by {@link #replaceAllSequentially(Expression, Map, RewritingProcess)}).
+ * When the replacements commute on the given expression
+ * (that is, no replaced symbol or function occurs in another's arguments, in a replacement,
+ * in the arguments of an occurrence of a replaced symbol or function in the expression,
+ * in a quantification, or in a condition constraining an occurrence),
+ * they are applied in a single traversal of the expression instead,
+ * with replacements indexed by functor or symbol and the conditions for occurrences to match replaced expressions
+ * memoized for the duration of the traversal.
+ * 
  * @see SyntacticSubstitute
  * @author braz
  *
@@ -118,6 +140,23 @@ public class SemanticSubstitute {
 	public static Expression replaceAll(Expression expression,
 			Map<? extends Expression, ? extends Expression> replacements,
 			RewritingProcess process) {
+		Expression result;
+		if (replacements.size() > 1 && replacementsCommuteOn(expression, replacements)) {
+			result = replaceAllInASinglePass(expression, replacements, process);
+		}
+		else {
+			result = replaceAllSequentially(expression, replacements, process);
+		}
+		return result;
+	}
+	
+	/**
+	 * Same as {@link #replaceAll(Expression, Map, RewritingProcess)},
+	 * but always applies replacements one at a time, each in its own traversal of the expression.
+	 */
+	public static Expression replaceAllSequentially(Expression expression,
+			Map<? extends Expression, ? extends Expression> replacements,
+			RewritingProcess process) {
 		for (Map.Entry<? extends Expression, ? extends Expression> entry : replacements.entrySet()) {
 			expression = substitute(expression, entry.getKey(), Expressions.TRUE, entry.getValue(), process);
 		}
@@ -158,20 +197,7 @@ public class SemanticSubstitute {
 			Expression result = expression;
 			Expression functorOrSymbol = expression.getFunctorOrSymbol();
 			if (functorOrSymbol != null && functorOrSymbol.equals(replaced.getFunctorOrSymbol())) {
-				Expression argumentsAreTheSame = Equality.makePairwiseEquality(expression.getArguments(), replaced.getArguments());
-				Expression argumentsAreTheSameAndConstraintOnReplaced = And.make(constraintOnReplaced, argumentsAreTheSame);
-				Expression conditionForExpressionToMatchReplaced = process.rewrite(CardinalityRewriter.R_complete_normalize, argumentsAreTheSameAndConstraintOnReplaced);
-				
-				// An assertion check.
-				if (!FormulaUtil.isFormula(conditionForExpressionToMatchReplaced, process)) {
-					System.err.println("IllegalArgumentException: replaced and expression to be replaced do not form a formula for determing matching: "+conditionForExpressionToMatchReplaced);
-					System.err.println("non formula condition:"+conditionForExpressionToMatchReplaced);
-					System.err.println("expression                                 ="+expression);
-					System.err.println("replaced                                   ="+replaced);
-					System.err.println("argumentsAreTheSame                        ="+argumentsAreTheSame);
-					System.err.println("argumentsAreTheSameAndReplacedIsConstrained="+argumentsAreTheSameAndConstraintOnReplaced);
-					throw new IllegalArgumentException("Unification of expression being search for being replaced (" + replaced + ") and candidate expression (" + expression + ") do not form a formula for determing matching: "+conditionForExpressionToMatchReplaced);
-				}
+				Expression conditionForExpressionToMatchReplaced = getConditionForExpressionToMatchReplaced(expression, replaced, constraintOnReplaced, process);
 				
 				if (!conditionForExpressionToMatchReplaced.equals(Expressions.FALSE)) {
 						RewritingProcess newProcess = GrinderUtil.extendContextualConstraint(conditionForExpressionToMatchReplaced, process);
@@ -186,6 +212,171 @@ public class SemanticSubstitute {
 		}
 	}
 
+	private static Expression getConditionForExpressionToMatchReplaced(Expression expression, Expression replaced, Expression constraintOnReplaced, RewritingProcess process) {
+		Expression argumentsAreTheSame = Equality.makePairwiseEquality(expression.getArguments(), replaced.getArguments());
+		Expression argumentsAreTheSameAndConstraintOnReplaced = And.make(constraintOnReplaced, argumentsAreTheSame);
+		Expression conditionForExpressionToMatchReplaced = process.rewrite(CardinalityRewriter.R_complete_normalize, argumentsAreTheSameAndConstraintOnReplaced);
+		
+		// An assertion check.
+		if (!FormulaUtil.isFormula(conditionForExpressionToMatchReplaced, process)) {
+			System.err.println("IllegalArgumentException: replaced and expression to be replaced do not form a formula for determing matching: "+conditionForExpressionToMatchReplaced);
+			System.err.println("non formula condition:"+conditionForExpressionToMatchReplaced);
+			System.err.println("expression                                 ="+expression);
+			System.err.println("replaced                                   ="+replaced);
+			System.err.println("argumentsAreTheSame                        ="+argumentsAreTheSame);
+			System.err.println("argumentsAreTheSameAndReplacedIsConstrained="+argumentsAreTheSameAndConstraintOnReplaced);
+			throw new IllegalArgumentException("Unification of expression being search for being replaced (" + replaced + ") and candidate expression (" + expression + ") do not form a formula for determing matching: "+conditionForExpressionToMatchReplaced);
+		}
+		
+		return conditionForExpressionToMatchReplaced;
+	}
+
+	//
+	// SINGLE PASS SUBSTITUTION OF MULTIPLE REPLACEMENTS
+	//
+
+	private static Expression replaceAllInASinglePass(Expression expression,
+			Map<? extends Expression, ? extends Expression> replacements,
+			RewritingProcess process) {
+		Map<Expression, List<Pair<Expression, Expression>>> fromFunctorOrSymbolToReplacedAndReplacements = new LinkedHashMap<Expression, List<Pair<Expression, Expression>>>();
+		for (Map.Entry<? extends Expression, ? extends Expression> entry : replacements.entrySet()) {
+			Expression functorOrSymbol = entry.getKey().getFunctorOrSymbol();
+			List<Pair<Expression, Expression>> replacedAndReplacements = fromFunctorOrSymbolToReplacedAndReplacements.get(functorOrSymbol);
+			if (replacedAndReplacements == null) {
+				replacedAndReplacements = new ArrayList<Pair<Expression, Expression>>();
+				fromFunctorOrSymbolToReplacedAndReplacements.put(functorOrSymbol, replacedAndReplacements);
+			}
+			replacedAndReplacements.add(new Pair<Expression, Expression>(entry.getKey(), entry.getValue()));
+		}
+		Expression result = expression.replaceAllOccurrences(new MultipleSubstituteReplacementFunction(fromFunctorOrSymbolToReplacedAndReplacements), process);
+		return result;
+	}
+
+	/**
+	 * Indicates whether applying given replacements in a single pass over expression
+	 * gives the same result as applying them sequentially.
+	 * This is the case if replacing one of them does not create or modify occurrences
+	 * of the others, nor modify their arguments or the context in which they occur.
+	 */
+	private static boolean replacementsCommuteOn(Expression expression, Map<? extends Expression, ? extends Expression> replacements) {
+		Map<Expression, Integer> fromReplacedFunctorOrSymbolToArity = new HashMap<Expression, Integer>();
+		for (Expression replaced : replacements.keySet()) {
+			Expression functorOrSymbol = replaced.getFunctorOrSymbol();
+			if (functorOrSymbol == null) {
+				return false;
+			}
+			// a symbol replaced both as a constant and as a function would have its occurrences as a functor replaced
+			// depending on the order of replacements
+			Integer previousArity = fromReplacedFunctorOrSymbolToArity.put(functorOrSymbol, replaced.numberOfArguments());
+			if (previousArity != null && previousArity.intValue() != replaced.numberOfArguments()) {
+				return false;
+			}
+		}
+		Set<Expression> replacedFunctorsOrSymbols = fromReplacedFunctorOrSymbolToArity.keySet();
+		for (Map.Entry<? extends Expression, ? extends Expression> entry : replacements.entrySet()) {
+			if (containsAnyOf(entry.getValue(), replacedFunctorsOrSymbols) || argumentsContainAnyOf(entry.getKey(), replacedFunctorsOrSymbols)) {
+				return false;
+			}
+		}
+		boolean result = replacementsCommuteOn(expression, replacedFunctorsOrSymbols, false);
+		return result;
+	}
+
+	private static boolean replacementsCommuteOn(Expression expression, Set<Expression> replacedFunctorsOrSymbols, boolean contextMentionsReplaced) {
+		if (replacedFunctorsOrSymbols.contains(expression.getFunctorOrSymbol())) {
+			boolean result = ! contextMentionsReplaced && ! argumentsContainAnyOf(expression, replacedFunctorsOrSymbols);
+			return result;
+		}
+		Iterator<ExpressionAndContext> subExpressionsAndContextsIterator = expression.getImmediateSubExpressionsAndContextsIterator();
+		while (subExpressionsAndContextsIterator.hasNext()) {
+			ExpressionAndContext subExpressionAndContext = subExpressionsAndContextsIterator.next();
+			if (subExpressionAndContext.getExpression() == null) {
+				continue;
+			}
+			IndexExpressionsSet indexExpressions = subExpressionAndContext.getIndexExpressions();
+			if (indexExpressions != null) {
+				if ( ! (indexExpressions instanceof ExtensionalIndexExpressionsSet)) {
+					return false;
+				}
+				for (Expression indexExpression : ((ExtensionalIndexExpressionsSet) indexExpressions).getList()) {
+					if (containsAnyOf(indexExpression, replacedFunctorsOrSymbols)) {
+						return false;
+					}
+				}
+			}
+			Expression constrainingCondition = subExpressionAndContext.getConstrainingCondition();
+			boolean subExpressionContextMentionsReplaced =
+					contextMentionsReplaced
+					|| (constrainingCondition != null && containsAnyOf(constrainingCondition, replacedFunctorsOrSymbols));
+			if ( ! replacementsCommuteOn(subExpressionAndContext.getExpression(), replacedFunctorsOrSymbols, subExpressionContextMentionsReplaced)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean argumentsContainAnyOf(Expression expression, Set<Expression> functorsOrSymbols) {
+		boolean result = Util.thereExists(expression.getArguments(), argument -> containsAnyOf(argument, functorsOrSymbols));
+		return result;
+	}
+
+	private static boolean containsAnyOf(Expression expression, Set<Expression> functorsOrSymbols) {
+		boolean result = Util.thereExists(new SubExpressionsDepthFirstIterator(expression), subExpression -> functorsOrSymbols.contains(subExpression.getFunctorOrSymbol()));
+		return result;
+	}
+
+	/**
+	 * Replaces occurrences of several replaced expressions in a single pass,
+	 * assuming the replacements commute on the expression being traversed
+	 * (as checked by <code>replacementsCommuteOn</code>).
+	 * Because replacements do not contain replaced symbols or functions in that case,
+	 * they do not need to be substituted themselves.
+	 * Conditions for occurrences to match replaced expressions are memoized for the duration of the traversal,
+	 * since the same occurrences (with the same context) tend to appear many times.
+	 */
+	private static class MultipleSubstituteReplacementFunction extends AbstractReplacementFunctionWithContextuallyUpdatedProcess {
+
+		private Map<Expression, List<Pair<Expression, Expression>>> fromFunctorOrSymbolToReplacedAndReplacements;
+		private Map<List<Object>, Expression> conditionsCache = new HashMap<List<Object>, Expression>();
+		
+		public MultipleSubstituteReplacementFunction(Map<Expression, List<Pair<Expression, Expression>>> fromFunctorOrSymbolToReplacedAndReplacements) {
+			this.fromFunctorOrSymbolToReplacedAndReplacements = fromFunctorOrSymbolToReplacedAndReplacements;
+		}
+		
+		@Override
+		public Expression apply(Expression expression, RewritingProcess process) {
+			Expression result = expression;
+			Expression functorOrSymbol = expression.getFunctorOrSymbol();
+			List<Pair<Expression, Expression>> replacedAndReplacements = functorOrSymbol == null? null : fromFunctorOrSymbolToReplacedAndReplacements.get(functorOrSymbol);
+			if (replacedAndReplacements != null) {
+				for (Pair<Expression, Expression> replacedAndReplacement : replacedAndReplacements) {
+					if (result == expression) {
+						Expression conditionForExpressionToMatchReplaced = getMemoizedConditionForExpressionToMatchReplaced(expression, replacedAndReplacement.first, process);
+						if (!conditionForExpressionToMatchReplaced.equals(Expressions.FALSE)) {
+							result = IfThenElse.make(conditionForExpressionToMatchReplaced, replacedAndReplacement.second, expression);
+						}
+					}
+					else {
+						// expression has already been replaced by a previous replacement of the same functor or symbol,
+						// so this one applies to the result, as it would if replacements were applied sequentially.
+						result = substitute(result, replacedAndReplacement.first, Expressions.TRUE, replacedAndReplacement.second, process);
+					}
+				}
+			}
+			return result;
+		}
+
+		private Expression getMemoizedConditionForExpressionToMatchReplaced(Expression expression, Expression replaced, RewritingProcess process) {
+			List<Object> key = Arrays.asList(expression, replaced, process.getContextualConstraint(), process.getContextualSymbolsAndTypes());
+			Expression result = conditionsCache.get(key);
+			if (result == null) {
+				result = getConditionForExpressionToMatchReplaced(expression, replaced, Expressions.TRUE, process);
+				conditionsCache.put(key, result);
+			}
+			return result;
+		}
+	}
+
 	private static class SubstitutePruningPredicate implements PruningPredicate {
 		@Override
 		public boolean apply(Expression expression, Function<Expression, Expression> replacementFunctionFunction, RewritingProcess process) {
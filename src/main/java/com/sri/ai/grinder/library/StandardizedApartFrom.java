@@ -38,8 +38,10 @@
 package com.sri.ai.grinder.library;
 
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Predicate;
@@ -48,8 +50,10 @@ import com.sri.ai.expresso.api.Expression;
 import com.sri.ai.expresso.api.ReplacementFunctionWithContextuallyUpdatedProcess;
 import com.sri.ai.expresso.api.SyntaxTree;
 import com.sri.ai.expresso.core.AbstractReplacementFunctionWithContextuallyUpdatedProcess;
+import com.sri.ai.expresso.helper.ExpressionSummary;
 import com.sri.ai.expresso.helper.Expressions;
 import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.helper.SymbolRenaming;
 import com.sri.ai.util.Util;
 import com.sri.ai.util.base.IsInstanceOf;
 import com.sri.ai.util.base.NotContainedBy;
@@ -66,11 +70,25 @@ public class StandardizedApartFrom {
 	 * Standardizes apart the scoped variables of expression1 so that they do not collide with any variables in expression2.
 	 */
 	public static Expression standardizedApartFrom(Expression expression1, Expression expression2, RewritingProcess process) {		
+		return standardizedApartFrom(expression1, expression2, false, process);
+	}
+	
+	/**
+	 * Same as {@link #standardizedApartFrom(Expression, Expression, RewritingProcess)},
+	 * but renaming scoped variables to fresh symbols obtained from {@link SymbolRenaming#makeFreshSymbol(Expression, Predicate, RewritingProcess)}
+	 * (such as <code>X_12</code>) instead of primed versions of themselves (such as <code>X'''</code>),
+	 * which avoids the search for an unused number of primes.
+	 */
+	public static Expression standardizedApartFromWithFreshSymbols(Expression expression1, Expression expression2, RewritingProcess process) {		
+		return standardizedApartFrom(expression1, expression2, true, process);
+	}
+	
+	private static Expression standardizedApartFrom(Expression expression1, Expression expression2, boolean useFreshSymbols, RewritingProcess process) {		
 		Collection<Expression> variablesThatCannotBeScopingInExpression = new LinkedHashSet<Expression>();
 		variablesThatCannotBeScopingInExpression.addAll(process.getContextualSymbols());
 		variablesThatCannotBeScopingInExpression.addAll(Expressions.getVariables(expression2, process));
 		
-		ReplacementFunctionWithContextuallyUpdatedProcess standardizer = new Standardizer(variablesThatCannotBeScopingInExpression);
+		ReplacementFunctionWithContextuallyUpdatedProcess standardizer = new Standardizer(variablesThatCannotBeScopingInExpression, useFreshSymbols);
 		
 		Expression result = standardizer.apply(expression1, process);
 		
@@ -84,10 +102,12 @@ public class StandardizedApartFrom {
 	 */
 	private static class Standardizer extends AbstractReplacementFunctionWithContextuallyUpdatedProcess {
 		private Collection<Expression> variablesThatCannotBeScopingInExpression;
+		private boolean useFreshSymbols;
 
-		public Standardizer(Collection<Expression> variablesThatCannotBeScopingInExpression) {
+		public Standardizer(Collection<Expression> variablesThatCannotBeScopingInExpression, boolean useFreshSymbols) {
 			super();
 			this.variablesThatCannotBeScopingInExpression = variablesThatCannotBeScopingInExpression;
+			this.useFreshSymbols = useFreshSymbols;
 		}
 
 		@Override
@@ -95,7 +115,7 @@ public class StandardizedApartFrom {
 			// Replace sub-expressions first because if top expressions is replaced, then sub-expressions are not checked by Expression.replace
 			// (it would make sense to add an option that does that to Expression.replace).
 			Expression result = expression.replace(this, false /* not just the first one */, null, true /* ignore top expression - this will be done in the next line! */, null, process);
-			result = standardizeTopExpressionScopedVariablesApartFrom(result, variablesThatCannotBeScopingInExpression, process);
+			result = standardizeTopExpressionScopedVariablesApartFrom(result, variablesThatCannotBeScopingInExpression, useFreshSymbols, process);
 			return result;
 		}
 	}
@@ -103,26 +123,37 @@ public class StandardizedApartFrom {
 	/**
 	 * Returns expression or a version of it with the <i>scoped</i> variables of the <i>top</i> expression
 	 * renamed so they don't collide with the ones in variablesThatCannotBeScopingInExpression.
+	 * All new names are chosen first and then applied in a single simultaneous renaming
+	 * (this is equivalent to renaming one variable at a time, since new names never occur in the expression).
 	 */
 	private static Expression standardizeTopExpressionScopedVariablesApartFrom(
-			Expression expression, Collection<Expression> variablesThatCannotBeScopingInExpression, RewritingProcess process) {
+			Expression expression, Collection<Expression> variablesThatCannotBeScopingInExpression, boolean useFreshSymbols, RewritingProcess process) {
 		List<Expression> scopedVariables = expression.getScopedExpressions(process);
 		List<SyntaxTree> scopedVariables1SyntaxTrees = Util.mapIntoArrayList(scopedVariables, Expression::getSyntaxTree);
 		if (Util.thereExists(scopedVariables1SyntaxTrees, new IsInstanceOf<SyntaxTree>(CompoundSyntaxTree.class))) {
 			throw new StandardizingApartOnScopingFunctionApplicationsNotSupported(expression);
 		}
 		Collection<Expression> variablesToBeRenamed  = Util.intersection(scopedVariables, variablesThatCannotBeScopingInExpression);
-		Collection<Expression> variablesInExpression = Expressions.getVariables(expression, process);
+		if (variablesToBeRenamed.isEmpty()) {
+			return expression;
+		}
+		// fresh symbols follow a naming scheme that may also be used by constants, so they must avoid all symbols in the expression
+		Collection<Expression> symbolsInExpression   = useFreshSymbols? ExpressionSummary.get(expression).getSymbols() : Expressions.getVariables(expression, process);
 		Collection<Expression> forbiddenVariables    = new LinkedHashSet<Expression>();
-		forbiddenVariables.addAll(variablesInExpression);
+		forbiddenVariables.addAll(scopedVariables); // indices not occurring elsewhere are not sub-expressions
+		forbiddenVariables.addAll(symbolsInExpression);
 		forbiddenVariables.addAll(variablesThatCannotBeScopingInExpression);
 		Predicate<Expression>  isNovel               = new NotContainedBy<Expression>(forbiddenVariables);
-		Expression result = expression;
+		Map<Expression, Expression> renamings = new LinkedHashMap<Expression, Expression>();
 		for (Expression variableToBeRenamed : variablesToBeRenamed) {
-			Expression replacement = Expressions.primedUntilUnique(variableToBeRenamed, isNovel);
-			result = result.replaceSymbol(variableToBeRenamed, replacement, process);
+			Expression replacement =
+					useFreshSymbols?
+							SymbolRenaming.makeFreshSymbol(variableToBeRenamed, isNovel, process)
+							: Expressions.primedUntilUnique(variableToBeRenamed, isNovel);
+			renamings.put(variableToBeRenamed, replacement);
 			forbiddenVariables.add(replacement); // note that this affects the isNovel predicate!
 		}
+		Expression result = SymbolRenaming.renameSymbols(expression, renamings, process);
 		return result;
 	}
 
@@ -44,7 +44,6 @@ import com.sri.ai.expresso.api.Expression;
 import com.sri.ai.grinder.api.RewritingProcess;
 import com.sri.ai.grinder.library.CommutativeAssociative;
 import com.sri.ai.grinder.library.CommutativeAssociativeWithOperationOnConstantsOnly;
-import com.sri.ai.util.Util;
 
 /**
  * An abstract rewriter for boolean commutative associative expressions.
@@ -65,11 +64,10 @@ public abstract class BooleanCommutativeAssociative extends CommutativeAssociati
 	}
 
 	private Expression processIdempotency(Expression expression) {
-		List<Expression> argumentsReplacement =
-			(List<Expression>) Util.removeRepeatedNonDestructively(expression.getArguments());
-		if (argumentsReplacement.size() != expression.getArguments().size()) {
-			boolean useIdempotency = false; // no need to use it anymore
-			return CommutativeAssociative.make(getFunctor(), argumentsReplacement, getNeutralElementExpression(), useIdempotency);
+		List<Expression> arguments = expression.getArguments();
+		if (CommutativeAssociative.hasRepeatedArguments(arguments)) {
+			boolean useIdempotency = true; // removes repeated arguments
+			return CommutativeAssociative.make(getFunctor(), arguments, getNeutralElementExpression(), useIdempotency);
 		}
 		return expression;
 	}
@@ -37,10 +37,16 @@
  */
 package com.sri.ai.grinder.library.controlflow;
 
+import java.util.Arrays;
+import java.util.List;
+
 import com.google.common.annotations.Beta;
 import com.google.common.base.Predicate;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.sri.ai.expresso.api.Expression;
 import com.sri.ai.expresso.api.ExpressionAndContext;
+import com.sri.ai.grinder.GrinderConfiguration;
 import com.sri.ai.grinder.api.Rewriter;
 import com.sri.ai.grinder.api.RewritingProcess;
 import com.sri.ai.grinder.core.AbstractHierarchicalRewriter;
@@ -49,29 +55,103 @@ import com.sri.ai.grinder.helper.RewriterReplacementFunction;
 import com.sri.ai.grinder.library.boole.Not;
 import com.sri.ai.grinder.library.equality.cardinality.direct.core.FormulaSimplify;
 import com.sri.ai.util.Util;
+import com.sri.ai.util.base.Pair;
 
 /**
  * Receives a basic expression (basic operators plus products of intensional sets with basic expressions in the head)
  * and returns an equivalent expression in which all conditional expressions are on the top of the expression,
  * but for the ones constrained to be inside sets because they use their indices.
+ * <p>
+ * Externalizing a conditional sub-expression creates then- and else- copies of the enclosing expression
+ * which are normalized in turn, so expressions with several conditionals
+ * give rise to the same sub-problems (same expression under the same contextual constraint) many times.
+ * Unless {@link #setMemoize(boolean)} is used to turn it off, normalizations of sub-problems are memoized
+ * for the duration of each top-level externalization
+ * (in a cache kept in the process's global objects, whose maximum size is given by
+ * {@link GrinderConfiguration#getIfThenElseExternalizationCacheMaximumSize()}),
+ * so each one is solved only once and the result shares the instances of repeated sub-results
+ * (it is a directed acyclic graph rather than a tree).
+ * Sub-problems are keyed by the entire contextual constraint, even though only part of it may be relevant to them,
+ * because results computed under unsatisfiable contextual constraints may be arbitrary
+ * and must not be reused under satisfiable ones.
+ * The result is the same as without memoization.
 */
 @Beta
 public class IfThenElseExternalizationHierarchical extends AbstractHierarchicalRewriter {
 
 	private Rewriter formulaSimplify;
 	
+	private boolean memoize = true;
+	
+	/** The key of the cache of normalized sub-problems in the global objects of rewriting processes. */
+	private Pair<String, IfThenElseExternalizationHierarchical> cacheKey = new Pair<String, IfThenElseExternalizationHierarchical>("if then else externalization cache", this);
+	
 	public IfThenElseExternalizationHierarchical() {
 		super();
 		formulaSimplify = new FormulaSimplify();
 	}
 
+	public boolean getMemoize() {
+		return memoize;
+	}
+
+	public void setMemoize(boolean newValue) {
+		this.memoize = newValue;
+	}
+
 	@Override
 	public Expression rewriteAfterBookkeeping(Expression expression, RewritingProcess process) {
-		Expression result = normalize(expression, false, process);
-		return result;
+		// sub-expressions are externalized by recursive invocations of this rewriter, which use the cache of the top-level one;
+		// only the externalization that puts the cache there removes it
+		boolean ownsCache =
+				memoize
+				&& ! process.getGlobalObjects().containsKey(cacheKey) // only to avoid making caches that would not be used
+				&& process.getGlobalObjects().putIfAbsent(cacheKey, makeCache()) == null;
+		try {
+			Expression result = normalize(expression, false, process);
+			return result;
+		}
+		finally {
+			if (ownsCache) {
+				process.getGlobalObjects().remove(cacheKey);
+			}
+		}
 	}
 
 	private Expression normalize(Expression expression, boolean subExpressionsAreNormalized, RewritingProcess process) {
+		Expression result;
+		Cache<List<Object>, Expression> cache = memoize? getCache(process) : null;
+		if (cache != null) {
+			List<Object> key = Arrays.asList(expression, subExpressionsAreNormalized, process.getContextualConstraint(), process.getContextualSymbolsAndTypes());
+			result = cache.getIfPresent(key);
+			if (result == null) {
+				result = normalizeWithoutMemoization(expression, subExpressionsAreNormalized, process);
+				cache.put(key, result);
+			}
+		}
+		else {
+			result = normalizeWithoutMemoization(expression, subExpressionsAreNormalized, process);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the cache put in the process's global objects by the top-level externalization,
+	 * or null if there is none (as when it was removed by the owner of a cache shared by a racing externalization),
+	 * in which case normalizations are not memoized, since caches made here would never be removed.
+	 */
+	@SuppressWarnings("unchecked")
+	private Cache<List<Object>, Expression> getCache(RewritingProcess process) {
+		Cache<List<Object>, Expression> result = (Cache<List<Object>, Expression>) process.getGlobalObject(cacheKey);
+		return result;
+	}
+
+	private static Cache<List<Object>, Expression> makeCache() {
+		Cache<List<Object>, Expression> result = CacheBuilder.newBuilder().maximumSize(GrinderConfiguration.getIfThenElseExternalizationCacheMaximumSize()).build();
+		return result;
+	}
+
+	private Expression normalizeWithoutMemoization(Expression expression, boolean subExpressionsAreNormalized, RewritingProcess process) {
 
 		expression = formulaSimplify.rewrite(expression, process);
 
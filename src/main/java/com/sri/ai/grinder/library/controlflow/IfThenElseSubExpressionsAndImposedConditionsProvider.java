@@ -38,14 +38,20 @@
 package com.sri.ai.grinder.library.controlflow;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import com.google.common.annotations.Beta;
 import com.sri.ai.expresso.api.Expression;
 import com.sri.ai.expresso.api.SubExpressionAddress;
+import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.grinder.api.Module;
 import com.sri.ai.grinder.api.NoOpRewriter;
 import com.sri.ai.grinder.api.RewritingProcess;
 import com.sri.ai.grinder.core.AbstractRewriter;
+import com.sri.ai.grinder.library.FunctorConstants;
 import com.sri.ai.grinder.library.boole.Not;
 import com.sri.ai.util.base.Pair;
 
@@ -61,8 +67,11 @@ import com.sri.ai.util.base.Pair;
 public class IfThenElseSubExpressionsAndImposedConditionsProvider extends AbstractRewriter
 implements
 NoOpRewriter,
-ImposedConditionsModule.Provider
+ImposedConditionsModule.Provider,
+Module.ProviderWithDispatchKeys
 {
+	private static final Collection<Expression> _handledFunctors = Collections.unmodifiableList(Arrays.asList(Expressions.makeSymbol(FunctorConstants.IF_THEN_ELSE)));
+
 	//
 	// START-ImposedConditionsModule.Provider 
 	@Override
@@ -79,6 +88,15 @@ ImposedConditionsModule.Provider
 	}
 	// END-ImposedConditionsModule.Provider 
 	//
+
+	//
+	// START-Module.ProviderWithDispatchKeys
+	@Override
+	public Collection<Expression> getHandledFunctors() {
+		return _handledFunctors;
+	}
+	// END-Module.ProviderWithDispatchKeys
+	//
 	
 	// 
 	// START-Rewriter
@@ -37,6 +37,7 @@
  */
 package com.sri.ai.grinder.library.controlflow;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import com.google.common.annotations.Beta;
@@ -111,19 +112,19 @@ public class ImposedConditionsModule extends AbstractModuleNoOpRewriter {
 	}
 
 	/**
+	 * Returns the first non-null result given by the providers that may know about the expression
+	 * (see {@link #getProvidersFor(Expression)}), memoized per expression in this module.
+	 * Callers receive a fresh copy of the memoized list, which they are free to modify.
 	 * 
 	 * @see Provider#getConditionsExpressionImposesOnSubExpressions
 	 */
 	public List<Pair<Expression, SubExpressionAddress>> getConditionsExpressionImposesOnSubExpressions(
 			Expression expression, RewritingProcess process) {
-		List<Pair<Expression, SubExpressionAddress>> result = null;
-
-		for (Module.Provider moduleProvider : providers.keySet()) {
-			Provider provider = (Provider) moduleProvider;
-			result = provider.getConditionsExpressionImposesOnSubExpressions(expression, process);
-			if (result != null) {
-				break;
-			}
+		List<Pair<Expression, SubExpressionAddress>> result = getFirstNonNullResult(
+				"conditions imposed on sub-expressions", expression,
+				(Provider provider) -> provider.getConditionsExpressionImposesOnSubExpressions(expression, process));
+		if (result != null) {
+			result = new ArrayList<Pair<Expression, SubExpressionAddress>>(result);
 		}
 
 		return result;
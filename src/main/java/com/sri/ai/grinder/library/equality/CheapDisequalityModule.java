@@ -59,7 +59,7 @@ public class CheapDisequalityModule extends AbstractModuleNoOpRewriter {
 	 */
 	public boolean isCheapDisequality(Expression e1, Expression e2, RewritingProcess process) {
 		boolean result = false;
-		for (Module.Provider moduleProvider : providers.keySet()) {
+		for (Module.Provider moduleProvider : providers) {
 			Provider provider = (Provider) moduleProvider;
 			result = provider.isCheapDisequality(e1, e2, process);
 			if (result) {
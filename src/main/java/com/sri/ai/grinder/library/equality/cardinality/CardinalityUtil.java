@@ -1020,15 +1020,17 @@ public class CardinalityUtil {
 		return result;
 	}
 	
-	//
-	// PRIVATE
-	//
-	protected  static List<Pair<Set<Expression>, List<Expression>>> findIndependentProblems(List<Expression> conjuncts, IndexExpressionsSet indexExpressions, RewritingProcess process) {
+	/**
+	 * The original implementation of the search for independent problems used by
+	 * {@link #findIndependentProblemsInConjunction(Expression, IndexExpressionsSet, RewritingProcess)} and
+	 * {@link #findIndependentProblemsInDisjunction(Expression, IndexExpressionsSet, RewritingProcess)},
+	 * which now use the memoized {@link IndependentProblemsFinder}.
+	 * It is kept as a reference for testing and benchmarking the latter.
+	 */
+	public static List<Pair<Set<Expression>, List<Expression>>> findIndependentProblemsWithoutMemoization(List<Expression> conjuncts, List<Expression> indices, RewritingProcess process) {
 		// indices and corresponding conjuncts
 		List<Pair<Set<Expression>, List<Expression>>> result = new ArrayList<Pair<Set<Expression>, List<Expression>>>();
 		
-		List<Expression> indices = IndexExpressions.getIndices(indexExpressions);
-			
 		// For efficiency work with a set of the indices
 		Set<Expression>                   indicesSet                  = new LinkedHashSet<Expression>(indices);
 		// Track conjuncts and their corresponding variables in the index
@@ -1106,6 +1108,15 @@ public class CardinalityUtil {
 		return result;
 	}
 
+	//
+	// PRIVATE
+	//
+	protected  static List<Pair<Set<Expression>, List<Expression>>> findIndependentProblems(List<Expression> conjuncts, IndexExpressionsSet indexExpressions, RewritingProcess process) {
+		List<Expression> indices = IndexExpressions.getIndices(indexExpressions);
+		List<Pair<Set<Expression>, List<Expression>>> result = IndependentProblemsFinder.find(conjuncts, indices, process);
+		return result;
+	}
+
 	private static void collectConjunctToItsVariablesMapAndDisjointSetsOfVariables(List<Expression> conjuncts, Map<Expression, List<Expression>> fromConjunctToItsVariables, Set<Expression> knownVariables, DisjointSets<Expression> disjointVariableSets, RewritingProcess process) {
 		for (Expression conjunct : conjuncts) {
 			Set<Expression> variablesInConjunct = Expressions.freeVariables(conjunct, process);
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.grinder.library.equality.cardinality;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.annotations.Beta;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.api.IndexExpressionsSet;
+import com.sri.ai.expresso.helper.ExpressionSummary;
+import com.sri.ai.grinder.GrinderConfiguration;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.util.base.Pair;
+
+/**
+ * Finds the independent problems in a list of sub-formulas (conjuncts or disjuncts) with respect to a list of indices,
+ * as described in {@link CardinalityUtil#findIndependentProblemsInConjunction(Expression, IndexExpressionsSet, RewritingProcess)},
+ * producing the same result as {@link CardinalityUtil#findIndependentProblemsWithoutMemoization(List, List, RewritingProcess)}.
+ * <p>
+ * The variables of each sub-formula are taken from the free symbols cached in its {@link ExpressionSummary},
+ * and are merged into a union-find over integer variable ids (with path halving and union by rank)
+ * as the sub-formulas are scanned, so a call takes time nearly linear in the number of variable occurrences.
+ * Since cardinality rewriters ask for the independent problems of the same formulas repeatedly
+ * (for example, as DPLL conditioning proceeds), results are also memoized per (sub-formulas, indices)
+ * in a cache kept in the rewriting process's global objects
+ * (whose maximum size is given by {@link GrinderConfiguration#getIndependentProblemsCacheMaximumSize()}).
+ * Callers receive a fresh copy of the memoized result, which they are free to modify.
+ *
+ * @author braz
+ *
+ */
+@Beta
+public class IndependentProblemsFinder {
+
+	private static final String GLOBAL_OBJECTS_KEY = "independent problems cache";
+
+	/**
+	 * Returns the independent problems of given sub-formulas with respect to given indices,
+	 * as a list of pairs of an index set and the sub-formulas depending on it (see class description).
+	 */
+	public static List<Pair<Set<Expression>, List<Expression>>> find(List<Expression> subFormulas, List<Expression> indices, RewritingProcess process) {
+		Pair<List<Expression>, List<Expression>> key = new Pair<List<Expression>, List<Expression>>(subFormulas, indices);
+		Cache<Pair<List<Expression>, List<Expression>>, List<Pair<Set<Expression>, List<Expression>>>> cache = getCache(process);
+		List<Pair<Set<Expression>, List<Expression>>> memoized = cache.getIfPresent(key);
+		if (memoized == null) {
+			memoized = findWithoutMemoization(subFormulas, indices, process);
+			// the key lists are copied since callers may modify theirs afterwards
+			cache.put(new Pair<List<Expression>, List<Expression>>(new ArrayList<Expression>(subFormulas), new ArrayList<Expression>(indices)), memoized);
+		}
+		List<Pair<Set<Expression>, List<Expression>>> result = copy(memoized);
+		return result;
+	}
+
+	/**
+	 * Same as {@link #find(List, List, RewritingProcess)}, but without memoization.
+	 */
+	public static List<Pair<Set<Expression>, List<Expression>>> findWithoutMemoization(List<Expression> subFormulas, List<Expression> indices, RewritingProcess process) {
+		List<Pair<Set<Expression>, List<Expression>>> result = new ArrayList<Pair<Set<Expression>, List<Expression>>>();
+
+		UnionFind unionFind = new UnionFind(indices.size() + 16);
+		for (Expression index : indices) {
+			unionFind.getId(index);
+		}
+		int numberOfIndices = unionFind.size();
+
+		// the variable ids of each distinct sub-formula, in order of first occurrence
+		Map<Expression, int[]> fromSubFormulaToItsVariables = new LinkedHashMap<Expression, int[]>();
+		for (Expression subFormula : subFormulas) {
+			if ( ! fromSubFormulaToItsVariables.containsKey(subFormula)) {
+				List<Expression> freeSymbols = ExpressionSummary.get(subFormula).getFreeSymbols();
+				int[] variables = new int[freeSymbols.size()];
+				int numberOfVariables = 0;
+				for (Expression freeSymbol : freeSymbols) {
+					if (process.isVariable(freeSymbol)) {
+						int variable = unionFind.getId(freeSymbol);
+						variables[numberOfVariables++] = variable;
+						if (numberOfVariables > 1) {
+							unionFind.union(variables[0], variable);
+						}
+					}
+				}
+				fromSubFormulaToItsVariables.put(subFormula, numberOfVariables == variables.length? variables : Arrays.copyOf(variables, numberOfVariables));
+			}
+		}
+
+		if (unionFind.getNumberOfSets() > 1) {
+			// Group sub-formulas by the root of their variables (-1 for sub-formulas without variables),
+			// in order of first occurrence of each group.
+			Map<Integer, List<Expression>> fromRootToSubFormulas = new LinkedHashMap<Integer, List<Expression>>();
+			for (Map.Entry<Expression, int[]> subFormulaAndVariables : fromSubFormulaToItsVariables.entrySet()) {
+				int[] variables = subFormulaAndVariables.getValue();
+				Integer root = variables.length == 0? -1 : unionFind.find(variables[0]);
+				List<Expression> subFormulasOfRoot = fromRootToSubFormulas.get(root);
+				if (subFormulasOfRoot == null) {
+					subFormulasOfRoot = new ArrayList<Expression>();
+					fromRootToSubFormulas.put(root, subFormulasOfRoot);
+				}
+				subFormulasOfRoot.add(subFormulaAndVariables.getKey());
+			}
+
+			// the indices of each root
+			Map<Integer, Set<Expression>> fromRootToIndices = new LinkedHashMap<Integer, Set<Expression>>();
+			for (int index = 0; index != numberOfIndices; index++) {
+				int root = unionFind.find(index);
+				Set<Expression> indicesOfRoot = fromRootToIndices.get(root);
+				if (indicesOfRoot == null) {
+					indicesOfRoot = new LinkedHashSet<Expression>();
+					fromRootToIndices.put(root, indicesOfRoot);
+				}
+				indicesOfRoot.add(unionFind.getVariable(index));
+			}
+
+			List<Expression> subFormulasWithNoLinksToIndices = new ArrayList<Expression>();
+			for (Map.Entry<Integer, List<Expression>> rootAndSubFormulas : fromRootToSubFormulas.entrySet()) {
+				Set<Expression> indicesOfRoot = fromRootToIndices.remove(rootAndSubFormulas.getKey());
+				if (indicesOfRoot == null) {
+					subFormulasWithNoLinksToIndices.addAll(rootAndSubFormulas.getValue());
+				}
+				else {
+					result.add(new Pair<Set<Expression>, List<Expression>>(indicesOfRoot, rootAndSubFormulas.getValue()));
+				}
+			}
+			if (subFormulasWithNoLinksToIndices.size() > 0) {
+				Set<Expression> emptySet = Collections.emptySet();
+				result.add(new Pair<Set<Expression>, List<Expression>>(emptySet, subFormulasWithNoLinksToIndices));
+			}
+
+			// indices not occurring in any of the sub-formulas are independent problems on true, i.e. | True |_X
+			for (Set<Expression> remainingIndices : fromRootToIndices.values()) {
+				result.add(new Pair<Set<Expression>, List<Expression>>(remainingIndices, new ArrayList<Expression>()));
+			}
+		}
+
+		return result;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	@SuppressWarnings("unchecked")
+	private static Cache<Pair<List<Expression>, List<Expression>>, List<Pair<Set<Expression>, List<Expression>>>> getCache(RewritingProcess process) {
+		Cache<Pair<List<Expression>, List<Expression>>, List<Pair<Set<Expression>, List<Expression>>>> result =
+				(Cache<Pair<List<Expression>, List<Expression>>, List<Pair<Set<Expression>, List<Expression>>>>) process.getGlobalObjects().computeIfAbsent(
+						GLOBAL_OBJECTS_KEY,
+						key -> CacheBuilder.newBuilder().maximumSize(GrinderConfiguration.getIndependentProblemsCacheMaximumSize()).build());
+		return result;
+	}
+
+	private static List<Pair<Set<Expression>, List<Expression>>> copy(List<Pair<Set<Expression>, List<Expression>>> problems) {
+		List<Pair<Set<Expression>, List<Expression>>> result = new ArrayList<Pair<Set<Expression>, List<Expression>>>(problems.size());
+		for (Pair<Set<Expression>, List<Expression>> problem : problems) {
+			Set<Expression> indices = problem.first.isEmpty()? Collections.<Expression>emptySet() : new LinkedHashSet<Expression>(problem.first);
+			result.add(new Pair<Set<Expression>, List<Expression>>(indices, new ArrayList<Expression>(problem.second)));
+		}
+		return result;
+	}
+
+	/**
+	 * A union-find over variables, identified by consecutive integer ids in order of first occurrence.
+	 */
+	private static class UnionFind {
+		private Map<Expression, Integer> fromVariableToId = new LinkedHashMap<Expression, Integer>();
+		private List<Expression>         variables        = new ArrayList<Expression>();
+		private int[]                    parent;
+		private int[]                    rank;
+		private int                      numberOfSets     = 0;
+
+		public UnionFind(int initialCapacity) {
+			parent = new int[initialCapacity];
+			rank   = new int[initialCapacity];
+		}
+
+		public int size() {
+			return variables.size();
+		}
+
+		public int getNumberOfSets() {
+			return numberOfSets;
+		}
+
+		public Expression getVariable(int id) {
+			return variables.get(id);
+		}
+
+		/** Returns the id of a variable, making a singleton set for it if it is new. */
+		public int getId(Expression variable) {
+			Integer result = fromVariableToId.get(variable);
+			if (result == null) {
+				result = variables.size();
+				if (result == parent.length) {
+					parent = Arrays.copyOf(parent, 2*parent.length);
+					rank   = Arrays.copyOf(rank,   2*rank.length);
+				}
+				parent[result] = result;
+				rank[result]   = 0;
+				fromVariableToId.put(variable, result);
+				variables.add(variable);
+				numberOfSets++;
+			}
+			return result;
+		}
+
+		public int find(int id) {
+			while (parent[id] != id) {
+				parent[id] = parent[parent[id]];
+				id = parent[id];
+			}
+			return id;
+		}
+
+		public void union(int id1, int id2) {
+			int root1 = find(id1);
+			int root2 = find(id2);
+			if (root1 != root2) {
+				if (rank[root1] < rank[root2]) {
+					parent[root1] = root2;
+				}
+				else if (rank[root1] > rank[root2]) {
+					parent[root2] = root1;
+				}
+				else {
+					parent[root2] = root1;
+					rank[root1]++;
+				}
+				numberOfSets--;
+			}
+		}
+	}
+}
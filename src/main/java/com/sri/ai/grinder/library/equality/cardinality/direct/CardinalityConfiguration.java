@@ -74,6 +74,28 @@ public interface CardinalityConfiguration {
 		 */
 		double cost(Expression expression, Deque<Expression> nestedStructure);
 	}
+	
+	/**
+	 * Implemented by {@link PickCheapestTopLevelCostFunction}s that learn from
+	 * the actual cost of the choices made with them. Pick cheapest informs them,
+	 * for each chosen candidate, of the time taken by the rewriting that followed the choice
+	 * and of its result.
+	 * 
+	 * @author braz
+	 * 
+	 */
+	interface PickCheapestChoiceRecorder {
+		/**
+		 * 
+		 * @param chosen
+		 *            the candidate formula chosen by pick cheapest.
+		 * @param rewriteTimeInNanoseconds
+		 *            the time taken by the rewriting following the choice.
+		 * @param result
+		 *            the result of that rewriting.
+		 */
+		void recordChoice(Expression chosen, long rewriteTimeInNanoseconds, Expression result);
+	}
 
 	/**
 	 * 
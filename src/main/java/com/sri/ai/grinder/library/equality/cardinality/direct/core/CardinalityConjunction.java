@@ -257,6 +257,7 @@ public class CardinalityConjunction extends AbstractCardinalityRewriter {
 			Trace.log("(Fi, i) <- pick_cheapest( Candidates )");
 			int cheapestIndex = pickCheapest.pickIndex(candidates);
 			Expression fi     = candidates[cheapestIndex];
+			long choiceStart  = System.nanoTime();
 			Trace.log("// Fi={}", fi);
 			List<Expression> fConjuncts = new ArrayList<Expression>(f.getArguments());
 			int indexI = -1;
@@ -363,6 +364,8 @@ public class CardinalityConjunction extends AbstractCardinalityRewriter {
 			else {
 				throw new IllegalStateException("Unhandled Fi case:"+fi);
 			}
+			
+			pickCheapest.recordChoice(fi, System.nanoTime() - choiceStart, result);
 		}
 		else {
 			throw new IllegalArgumentException("F is not a conjunction:"+f);
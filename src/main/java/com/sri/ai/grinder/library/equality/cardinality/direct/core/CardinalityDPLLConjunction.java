@@ -328,6 +328,7 @@ public class CardinalityDPLLConjunction extends AbstractCardinalityRewriter {
 			Trace.log("(Fi, i) <- pick_cheapest( Candidates )");
 			int cheapestIndex = pickCheapest.pickIndex(candidates);
 			Expression fi     = candidates[cheapestIndex];
+			long choiceStart  = System.nanoTime();
 			Trace.log("// Fi={}", fi);
 			List<Expression> fConjuncts = new ArrayList<Expression>(f.getArguments());
 			int indexI = -1;
@@ -426,6 +427,8 @@ public class CardinalityDPLLConjunction extends AbstractCardinalityRewriter {
 			else {
 				throw new IllegalStateException("Unhandled Fi case:"+fi);
 			}
+			
+			pickCheapest.recordChoice(fi, System.nanoTime() - choiceStart, result);
 		}
 		else {
 			throw new IllegalArgumentException("F is not a conjunction:"+f);
@@ -261,8 +261,10 @@ public class CardinalityDisjunction extends AbstractCardinalityRewriter {
 			cardinalityOfIndices = process.rewrite(R_normalize, cardinalityOfIndices);
 			
 			Trace.log("N1 <- R_card(| F1 |_X, quantification)");
+			long n1Start  = System.nanoTime();
 			Expression n1 = process.rewrite(R_card,
 								CardinalityUtil.argForCardinalityWithQuantifierSpecifiedCall(cardF1x, quantification));
+			sortPair.getPickCheapest().recordChoice(f1, System.nanoTime() - n1Start, n1);
 			
 			if (n1.equals(Expressions.ZERO)) {
 				Trace.log("if N1 = 0");
@@ -279,8 +281,10 @@ public class CardinalityDisjunction extends AbstractCardinalityRewriter {
 			Expression n2 = null;
 			if (result == null) {
 				Trace.log("N2 <- R_card(| F2 |_X, quantification)");
+				long n2Start = System.nanoTime();
 				n2 = process.rewrite(R_card,
 						CardinalityUtil.argForCardinalityWithQuantifierSpecifiedCall(cardF2x, quantification));
+				sortPair.getPickCheapest().recordChoice(f2, System.nanoTime() - n2Start, n2);
 				if (n2.equals(Expressions.ZERO)) {
 					Trace.log("if N2 = 0");
 					Trace.log("    return N1 // | F1 and F2 |_X is 0");
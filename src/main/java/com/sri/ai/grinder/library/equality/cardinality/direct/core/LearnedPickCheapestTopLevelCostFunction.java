@@ -0,0 +1,442 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.grinder.library.equality.cardinality.direct.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Properties;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.helper.ExpressionSummary;
+import com.sri.ai.grinder.library.FunctorConstants;
+import com.sri.ai.grinder.library.boole.And;
+import com.sri.ai.grinder.library.boole.BooleanUtil;
+import com.sri.ai.grinder.library.boole.ForAll;
+import com.sri.ai.grinder.library.boole.ThereExists;
+import com.sri.ai.grinder.library.equality.cardinality.direct.CardinalityConfiguration;
+
+/**
+ * A {@link CardinalityConfiguration.PickCheapestTopLevelCostFunction} that learns,
+ * from the choices made with it, a linear model of the time taken to solve a formula.
+ * <p>
+ * Each node of a formula is described by a few structural features (see {@link #getNumberOfFeatures()}),
+ * and the top level cost of a node is the dot product of its features with learned weights.
+ * Because pick cheapest adds up the top level costs of all the nodes of a candidate,
+ * its cost is the dot product of the weights with the <i>sum</i> of the features of its nodes,
+ * and it is that sum that is regressed (by least squares with a small ridge term)
+ * on the rewriting time recorded for each chosen formula.
+ * The size of the results of those rewritings is regressed in the same way
+ * and can be predicted with {@link #predictResultSize(Expression)}.
+ * <p>
+ * Until enough choices have been recorded, costs are those of {@link DefaultPickCheapestTopLevelCostFunction}.
+ * The model is kept as sufficient statistics, so it can be saved to and loaded from a file
+ * and keep learning across runs.
+ * Instances are thread-safe and can be shared by concurrent rewriting processes.
+ *
+ * @author braz
+ *
+ */
+@Beta
+public class LearnedPickCheapestTopLevelCostFunction implements CardinalityConfiguration.PickCheapestTopLevelCostFunction, CardinalityConfiguration.PickCheapestChoiceRecorder {
+
+	private static final int NUMBER_OF_FEATURES = 7;
+	//
+	private static final int BIAS                            = 0;
+	private static final int NUMBER_OF_ARGUMENTS             = 1;
+	private static final int DISJUNCTIVE                     = 2;
+	private static final int NUMBER_OF_DISJUNCTIVE_ARGUMENTS = 3;
+	private static final int CONJUNCTIVE                     = 4;
+	private static final int QUANTIFIED                      = 5;
+	private static final int EQUALITY_OR_DISEQUALITY         = 6;
+	//
+	// keeps pick cheapest's early termination valid, since it requires costs to be positive.
+	private static final double MINIMUM_COST = 1e-3;
+	//
+	private static final String KEY_NUMBER_OF_FEATURES          = "numberOfFeatures";
+	private static final String KEY_NUMBER_OF_RECORDED_CHOICES  = "numberOfRecordedChoices";
+	private static final String KEY_FEATURES_PRODUCTS           = "featuresProducts";
+	private static final String KEY_FEATURES_TIMES_REWRITE_TIME = "featuresTimesRewriteTimeInMicroseconds";
+	private static final String KEY_FEATURES_TIMES_RESULT_SIZE  = "featuresTimesResultSize";
+
+	private CardinalityConfiguration.PickCheapestTopLevelCostFunction defaultCostFunction = new DefaultPickCheapestTopLevelCostFunction();
+	//
+	private double[][] featuresProducts                       = new double[NUMBER_OF_FEATURES][NUMBER_OF_FEATURES];
+	private double[]   featuresTimesRewriteTimeInMicroseconds = new double[NUMBER_OF_FEATURES];
+	private double[]   featuresTimesResultSize                = new double[NUMBER_OF_FEATURES];
+	private long       numberOfRecordedChoices                = 0;
+	//
+	private volatile double[] rewriteTimeWeights = null;
+	private volatile double[] resultSizeWeights  = null;
+	private volatile boolean  learning           = true;
+	//
+	private int    minimumNumberOfChoicesForFitting = 2*NUMBER_OF_FEATURES;
+	private int    refittingPeriod                  = 16;
+	private double ridge                            = 1e-3;
+
+	public LearnedPickCheapestTopLevelCostFunction() {
+	}
+
+	/**
+	 * Creates a cost function from a model saved with {@link #save(File)}.
+	 */
+	public static LearnedPickCheapestTopLevelCostFunction load(File file) throws IOException {
+		LearnedPickCheapestTopLevelCostFunction result = new LearnedPickCheapestTopLevelCostFunction();
+		result.loadModel(file);
+		return result;
+	}
+
+	public static int getNumberOfFeatures() {
+		return NUMBER_OF_FEATURES;
+	}
+
+	public boolean isLearning() {
+		return learning;
+	}
+
+	/**
+	 * Sets whether recorded choices are used to update the model (the default);
+	 * if not, the model is kept fixed (for example, for evaluating it).
+	 */
+	public void setLearning(boolean learning) {
+		this.learning = learning;
+	}
+
+	public synchronized long getNumberOfRecordedChoices() {
+		return numberOfRecordedChoices;
+	}
+
+	/**
+	 * Sets the number of recorded choices before which the model is not fit
+	 * and costs are those of {@link DefaultPickCheapestTopLevelCostFunction}.
+	 */
+	public synchronized void setMinimumNumberOfChoicesForFitting(int minimumNumberOfChoicesForFitting) {
+		this.minimumNumberOfChoicesForFitting = minimumNumberOfChoicesForFitting;
+	}
+
+	/**
+	 * Sets the number of recorded choices between automatic refittings of the model.
+	 */
+	public synchronized void setRefittingPeriod(int refittingPeriod) {
+		this.refittingPeriod = refittingPeriod;
+	}
+
+	/**
+	 * Indicates whether a model has been fit, as opposed to costs still being the default ones.
+	 */
+	public boolean isFit() {
+		return rewriteTimeWeights != null;
+	}
+
+	/**
+	 * Returns a copy of the weights of the rewriting time model, or null if it has not been fit yet.
+	 */
+	public double[] getRewriteTimeWeights() {
+		double[] weights = rewriteTimeWeights;
+		return weights == null? null : Arrays.copyOf(weights, weights.length);
+	}
+
+	//
+	// START-CardinalityConfiguration.PickCheapestTopLevelCostFunction
+	@Override
+	public double cost(Expression expression, Deque<Expression> nestedStructure) {
+		double result;
+		double[] weights = rewriteTimeWeights;
+		if (weights == null) {
+			result = defaultCostFunction.cost(expression, nestedStructure);
+		}
+		else {
+			double[] features = new double[NUMBER_OF_FEATURES];
+			addFeatures(expression, features, nestedStructure);
+			result = Math.max(MINIMUM_COST, dotProduct(weights, features));
+		}
+		return result;
+	}
+	// END-CardinalityConfiguration.PickCheapestTopLevelCostFunction
+	//
+
+	//
+	// START-CardinalityConfiguration.PickCheapestChoiceRecorder
+	@Override
+	public void recordChoice(Expression chosen, long rewriteTimeInNanoseconds, Expression result) {
+		if (learning) {
+			double[] features = getFormulaFeatures(chosen);
+			record(features, rewriteTimeInNanoseconds/1000.0, ExpressionSummary.get(result).getNumberOfNodes());
+		}
+	}
+	// END-CardinalityConfiguration.PickCheapestChoiceRecorder
+	//
+
+	/**
+	 * Predicts the time, in microseconds, taken to solve a formula
+	 * (or the default cost of the formula if the model has not been fit yet).
+	 */
+	public double predictRewriteTimeInMicroseconds(Expression formula) {
+		double result = predict(rewriteTimeWeights, formula);
+		return result;
+	}
+
+	/**
+	 * Predicts the number of nodes of the result of solving a formula
+	 * (or the default cost of the formula if the model has not been fit yet).
+	 */
+	public double predictResultSize(Expression formula) {
+		double result = predict(resultSizeWeights, formula);
+		return result;
+	}
+
+	/**
+	 * Fits the model to the choices recorded so far;
+	 * this is also done automatically every so many recorded choices.
+	 * Returns whether there were enough choices for fitting.
+	 */
+	public synchronized boolean fit() {
+		boolean result = false;
+		if (numberOfRecordedChoices >= minimumNumberOfChoicesForFitting) {
+			double[] newRewriteTimeWeights = solveRidgeRegression(featuresTimesRewriteTimeInMicroseconds);
+			double[] newResultSizeWeights  = solveRidgeRegression(featuresTimesResultSize);
+			if (newRewriteTimeWeights != null && newResultSizeWeights != null) {
+				rewriteTimeWeights = newRewriteTimeWeights;
+				resultSizeWeights  = newResultSizeWeights;
+				result = true;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Saves the model to a file, from which it can be loaded with {@link #load(File)}.
+	 */
+	public synchronized void save(File file) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty(KEY_NUMBER_OF_FEATURES,          Integer.toString(NUMBER_OF_FEATURES));
+		properties.setProperty(KEY_NUMBER_OF_RECORDED_CHOICES,  Long.toString(numberOfRecordedChoices));
+		double[] flatFeaturesProducts = new double[NUMBER_OF_FEATURES*NUMBER_OF_FEATURES];
+		for (int i = 0; i != NUMBER_OF_FEATURES; i++) {
+			System.arraycopy(featuresProducts[i], 0, flatFeaturesProducts, i*NUMBER_OF_FEATURES, NUMBER_OF_FEATURES);
+		}
+		properties.setProperty(KEY_FEATURES_PRODUCTS,           toString(flatFeaturesProducts));
+		properties.setProperty(KEY_FEATURES_TIMES_REWRITE_TIME, toString(featuresTimesRewriteTimeInMicroseconds));
+		properties.setProperty(KEY_FEATURES_TIMES_RESULT_SIZE,  toString(featuresTimesResultSize));
+		try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+			properties.store(writer, "Learned pick cheapest cost model");
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private synchronized void loadModel(File file) throws IOException {
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		}
+		if ( ! Integer.toString(NUMBER_OF_FEATURES).equals(properties.getProperty(KEY_NUMBER_OF_FEATURES))) {
+			throw new Error("Cost model in " + file + " has " + properties.getProperty(KEY_NUMBER_OF_FEATURES) + " features instead of " + NUMBER_OF_FEATURES);
+		}
+		numberOfRecordedChoices = Long.parseLong(properties.getProperty(KEY_NUMBER_OF_RECORDED_CHOICES));
+		double[] flatFeaturesProducts = fromString(properties.getProperty(KEY_FEATURES_PRODUCTS), NUMBER_OF_FEATURES*NUMBER_OF_FEATURES, file);
+		for (int i = 0; i != NUMBER_OF_FEATURES; i++) {
+			System.arraycopy(flatFeaturesProducts, i*NUMBER_OF_FEATURES, featuresProducts[i], 0, NUMBER_OF_FEATURES);
+		}
+		featuresTimesRewriteTimeInMicroseconds = fromString(properties.getProperty(KEY_FEATURES_TIMES_REWRITE_TIME), NUMBER_OF_FEATURES, file);
+		featuresTimesResultSize                = fromString(properties.getProperty(KEY_FEATURES_TIMES_RESULT_SIZE),  NUMBER_OF_FEATURES, file);
+		fit();
+	}
+
+	private synchronized void record(double[] features, double rewriteTimeInMicroseconds, double resultSize) {
+		for (int i = 0; i != NUMBER_OF_FEATURES; i++) {
+			for (int j = 0; j != NUMBER_OF_FEATURES; j++) {
+				featuresProducts[i][j] += features[i]*features[j];
+			}
+			featuresTimesRewriteTimeInMicroseconds[i] += features[i]*rewriteTimeInMicroseconds;
+			featuresTimesResultSize[i]                += features[i]*resultSize;
+		}
+		numberOfRecordedChoices++;
+		if (numberOfRecordedChoices >= minimumNumberOfChoicesForFitting && numberOfRecordedChoices % refittingPeriod == 0) {
+			fit();
+		}
+	}
+
+	private double predict(double[] weights, Expression formula) {
+		double result;
+		if (weights == null) {
+			result = 0;
+			Deque<Expression> nestedStructure = new ArrayDeque<Expression>();
+			nestedStructure.add(formula);
+			while ( ! nestedStructure.isEmpty()) {
+				result += defaultCostFunction.cost(nestedStructure.removeFirst(), nestedStructure);
+			}
+		}
+		else {
+			result = dotProduct(weights, getFormulaFeatures(formula));
+		}
+		return result;
+	}
+
+	/** The sum of the features of all the nodes of a formula, as visited by pick cheapest. */
+	private static double[] getFormulaFeatures(Expression formula) {
+		double[] result = new double[NUMBER_OF_FEATURES];
+		Deque<Expression> nestedStructure = new ArrayDeque<Expression>();
+		nestedStructure.add(formula);
+		while ( ! nestedStructure.isEmpty()) {
+			addFeatures(nestedStructure.removeFirst(), result, nestedStructure);
+		}
+		return result;
+	}
+
+	/**
+	 * Adds the features of the top level of an expression to a features vector,
+	 * and adds its arguments to the nested structure (as required by {@link #cost(Expression, Deque)}).
+	 */
+	private static void addFeatures(Expression expression, double[] features, Deque<Expression> nestedStructure) {
+		features[BIAS]                += 1;
+		features[NUMBER_OF_ARGUMENTS] += expression.numberOfArguments();
+		if (isDisjunctive(expression)) {
+			features[DISJUNCTIVE] += 1;
+		}
+		if (And.isConjunction(expression)) {
+			features[CONJUNCTIVE] += 1;
+		}
+		if (ForAll.isForAll(expression) || ThereExists.isThereExists(expression)) {
+			features[QUANTIFIED] += 1;
+		}
+		if (BooleanUtil.isEquality(expression) || BooleanUtil.isNotEquality(expression)) {
+			features[EQUALITY_OR_DISEQUALITY] += 1;
+		}
+		for (Expression argument : expression.getArguments()) {
+			nestedStructure.addLast(argument);
+			if (isDisjunctive(argument)) {
+				features[NUMBER_OF_DISJUNCTIVE_ARGUMENTS] += 1;
+			}
+		}
+	}
+
+	// or, => and <=> are disjunctive operators
+	private static boolean isDisjunctive(Expression expression) {
+		boolean result =
+				expression.hasFunctor(FunctorConstants.OR) ||
+				expression.hasFunctor(FunctorConstants.IMPLICATION) ||
+				expression.hasFunctor(FunctorConstants.EQUIVALENCE);
+		return result;
+	}
+
+	/**
+	 * Solves (featuresProducts + ridge * I) w = featuresTimesTarget by Gaussian elimination with partial pivoting,
+	 * returning null if the system is singular.
+	 */
+	private double[] solveRidgeRegression(double[] featuresTimesTarget) {
+		int n = NUMBER_OF_FEATURES;
+		double[][] a = new double[n][n + 1];
+		for (int i = 0; i != n; i++) {
+			System.arraycopy(featuresProducts[i], 0, a[i], 0, n);
+			a[i][i] += ridge;
+			a[i][n]  = featuresTimesTarget[i];
+		}
+		for (int column = 0; column != n; column++) {
+			int pivot = column;
+			for (int row = column + 1; row != n; row++) {
+				if (Math.abs(a[row][column]) > Math.abs(a[pivot][column])) {
+					pivot = row;
+				}
+			}
+			if (Math.abs(a[pivot][column]) < 1e-12) {
+				return null;
+			}
+			double[] swap = a[column];
+			a[column] = a[pivot];
+			a[pivot]  = swap;
+			for (int row = column + 1; row != n; row++) {
+				double factor = a[row][column]/a[column][column];
+				for (int k = column; k <= n; k++) {
+					a[row][k] -= factor*a[column][k];
+				}
+			}
+		}
+		double[] result = new double[n];
+		for (int row = n - 1; row >= 0; row--) {
+			double sum = a[row][n];
+			for (int k = row + 1; k != n; k++) {
+				sum -= a[row][k]*result[k];
+			}
+			result[row] = sum/a[row][row];
+		}
+		return result;
+	}
+
+	private static double dotProduct(double[] weights, double[] features) {
+		double result = 0;
+		for (int i = 0; i != weights.length; i++) {
+			result += weights[i]*features[i];
+		}
+		return result;
+	}
+
+	private static String toString(double[] values) {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i != values.length; i++) {
+			if (i != 0) {
+				result.append(',');
+			}
+			result.append(Double.toString(values[i]));
+		}
+		return result.toString();
+	}
+
+	private static double[] fromString(String string, int length, File file) {
+		if (string == null) {
+			throw new Error("Cost model in " + file + " is incomplete");
+		}
+		String[] values = string.split(",");
+		if (values.length != length) {
+			throw new Error("Cost model in " + file + " has " + values.length + " values where " + length + " were expected");
+		}
+		double[] result = new double[length];
+		for (int i = 0; i != length; i++) {
+			result[i] = Double.parseDouble(values[i].trim());
+		}
+		return result;
+	}
+}
@@ -184,6 +184,24 @@ public class PickCheapest {
 		return lowestIndex;
 	}
 
+	/**
+	 * Indicates whether the top level cost function learns from the choices made with it,
+	 * in which case callers should inform it of the outcome of each choice with {@link #recordChoice(Expression, long, Expression)}.
+	 */
+	public boolean isRecordingChoices() {
+		return topLevelCostFunction instanceof CardinalityConfiguration.PickCheapestChoiceRecorder;
+	}
+	
+	/**
+	 * Informs the top level cost function, if it is a {@link CardinalityConfiguration.PickCheapestChoiceRecorder},
+	 * of the time taken by the rewriting following the choice of a candidate and of its result.
+	 */
+	public void recordChoice(Expression chosen, long rewriteTimeInNanoseconds, Expression result) {
+		if (isRecordingChoices()) {
+			((CardinalityConfiguration.PickCheapestChoiceRecorder) topLevelCostFunction).recordChoice(chosen, rewriteTimeInNanoseconds, result);
+		}
+	}
+
 	// END-PickCheapest
 	//
 }
@@ -97,7 +97,7 @@ import com.sri.ai.grinder.library.set.intensional.IntensionalUniSetWithIndicesNo
  */
 @Beta
 public class Simplify extends AbstractCardinalityRewriter {
-	private Rewriter rRootRewriter = null;
+	private volatile Rewriter rRootRewriter = null;
 	
 	public Simplify() {
 	}
@@ -110,6 +110,14 @@ public class Simplify extends AbstractCardinalityRewriter {
 	public Rewriter getRootRewriter() {
 		// Lazy initialize so that required supporting classes
 		// can be setup an configured as necessary.
+		// Rewriters are shared by concurrent rewriting processes, so the root rewriter is made under a lock, once.
+		if (rRootRewriter == null) {
+			makeRootRewriter();
+		}
+		return rRootRewriter;
+	}
+	
+	private synchronized void makeRootRewriter() {
 		if (rRootRewriter == null) {
 			TotalRewriter rootRewriter = new TotalRewriter(getName()+" Total Rewriter", getAtomicRewriters());
 			RewriterLoggingNamedRewriterFilter rewriterFilter = new RewriterLoggingNamedRewriterFilter();
@@ -120,10 +128,9 @@ public class Simplify extends AbstractCardinalityRewriter {
 				rootRewriter.setOuterTraceEnabled(true);
 			}
 			
+			this.updateChildRewriter(null, rootRewriter);
 			rRootRewriter = rootRewriter;
-			this.updateChildRewriter(null, rRootRewriter);
 		}
-		return rRootRewriter;
 	}
 	
 	@Override
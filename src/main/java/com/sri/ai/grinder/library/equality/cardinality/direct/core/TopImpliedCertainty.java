@@ -37,9 +37,10 @@
  */
 package com.sri.ai.grinder.library.equality.cardinality.direct.core;
 
+import java.util.Collections;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.common.annotations.Beta;
 import com.sri.ai.expresso.api.Expression;
@@ -58,6 +59,7 @@ import com.sri.ai.grinder.library.equality.cardinality.direct.CardinalityRewrite
 import com.sri.ai.grinder.library.equality.formula.FormulaUtil;
 import com.sri.ai.grinder.library.equality.sat.SATSolver;
 import com.sri.ai.grinder.library.equality.sat.SATSolverFactory;
+import com.sri.ai.util.base.Pair;
 
 /**
  * Rewriter replacing expression by true or false if it or its negation is implied by the context.
@@ -68,7 +70,8 @@ import com.sri.ai.grinder.library.equality.sat.SATSolverFactory;
 @Beta
 public class TopImpliedCertainty extends AbstractCardinalityRewriter {
 	
-	private Set<ExpressionCacheKey> testing      = new LinkedHashSet<ExpressionCacheKey>();
+	// the expressions being tested are kept per rewriting process, in its global objects, so that this rewriter can be shared by processes.
+	private Pair<String, TopImpliedCertainty> testingGlobalObjectKey = new Pair<String, TopImpliedCertainty>("TopImpliedCertainty testing", this);
 	private boolean                 useSATSolver = GrinderConfiguration.isCompleteSimplifyUseSATSolver();
 	private SATSolver               satSolver    = SATSolverFactory.newInstance();
 	
@@ -93,14 +96,9 @@ public class TopImpliedCertainty extends AbstractCardinalityRewriter {
 			// which this rewriter is a part of, ensure we do not
 			// recurse indefinitely in the case where a similar formula
 			// is generated by the is_tautology call.
-			boolean test = false;
+			Set<ExpressionCacheKey> testing = getTesting(process);
 			ExpressionCacheKey key = new ExpressionCacheKey(expression, process.getContextualConstraint());
-			synchronized (testing) {
-				if (!testing.contains(key)) {
-					testing.add(key);
-					test = true;
-				}
-			}
+			boolean test = testing.add(key);
 			if (test) {
 				Expression c         = process.getContextualConstraint();
 				Expression cImpliesF = Implication.make(c, expression);
@@ -153,12 +151,17 @@ public class TopImpliedCertainty extends AbstractCardinalityRewriter {
 					}
 				}
 				
-				synchronized (testing) {
-					testing.remove(key);
-				}
+				testing.remove(key);
 			}
 		}
 
 		return result;
 	}
+	
+	@SuppressWarnings("unchecked")
+	private Set<ExpressionCacheKey> getTesting(RewritingProcess process) {
+		Set<ExpressionCacheKey> result = (Set<ExpressionCacheKey>) process.getGlobalObjects().computeIfAbsent(
+				testingGlobalObjectKey, key -> Collections.newSetFromMap(new ConcurrentHashMap<ExpressionCacheKey, Boolean>()));
+		return result;
+	}
 }
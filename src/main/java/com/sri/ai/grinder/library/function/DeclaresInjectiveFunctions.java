@@ -38,10 +38,12 @@
 package com.sri.ai.grinder.library.function;
 
 import java.util.Collection;
+import java.util.Collections;
 
 import com.google.common.annotations.Beta;
 import com.sri.ai.expresso.api.Expression;
 import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.grinder.api.Module;
 import com.sri.ai.grinder.api.NoOpRewriter;
 import com.sri.ai.grinder.api.RewritingProcess;
 import com.sri.ai.grinder.core.AbstractRewriter;
@@ -54,7 +56,7 @@ import com.sri.ai.grinder.core.AbstractRewriter;
  */
 @Beta
 public class DeclaresInjectiveFunctions extends AbstractRewriter
-implements NoOpRewriter, InjectiveModule.Provider {
+implements NoOpRewriter, InjectiveModule.Provider, Module.ProviderWithDispatchKeys {
 
 	private Collection<? extends Expression> functors;
 
@@ -78,6 +80,11 @@ implements NoOpRewriter, InjectiveModule.Provider {
 		return expression; // will be removed eventually, not a real rewriter, just a module.
 	}
 
+	@Override
+	public Collection<Expression> getHandledFunctors() {
+		return Collections.unmodifiableCollection(functors);
+	}
+
 	@Override
 	public Object getInjectiveFunctionToken(Expression expression, RewritingProcess process) {
 		if (isApplicationOfOneOfTheDeclaredFunctions(expression)) {
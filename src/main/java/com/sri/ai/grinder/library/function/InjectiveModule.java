@@ -96,15 +96,13 @@ public class InjectiveModule extends AbstractModuleNoOpRewriter {
 		register(InjectiveModule.class, provider, process);
 	}
 
+	/**
+	 * Returns the first non-null injective function token given by the providers that may know about the expression
+	 * (see {@link #getProvidersFor(Expression)}), memoized per expression in this module.
+	 */
 	public Object getInjectiveFunctionToken(Expression expression, RewritingProcess process) {
-		for (Module.Provider moduleProvider : providers.keySet()) {
-			Provider provider = (Provider) moduleProvider;
-			Object result = provider.getInjectiveFunctionToken(expression, process);
-			if (result != null) {
-				return result;
-			}
-		}
-		return null;
+		Object result = getFirstNonNullResult("injective function token", expression, (Provider provider) -> provider.getInjectiveFunctionToken(expression, process));
+		return result;
 	}
 
 	public boolean injectiveFunctionTokensAreEqual(Expression expression1, Expression expression2, RewritingProcess process) {
@@ -88,7 +88,7 @@ public class MutuallyExclusiveCoDomainsModule extends AbstractModuleNoOpRewriter
 
 	public boolean haveMutuallyExclusiveCoDomains(Expression expression1, Expression expression2, RewritingProcess process) {
 		boolean result;
-		for (Module.Provider moduleProvider : providers.keySet()) {
+		for (Module.Provider moduleProvider : providers) {
 			Provider provider = (Provider) moduleProvider;
 			result = provider.haveMutuallyExclusiveCoDomains(expression1, expression2, process);
 			if (result) {
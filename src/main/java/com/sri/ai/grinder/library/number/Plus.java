@@ -38,6 +38,7 @@
 package com.sri.ai.grinder.library.number;
 
 import java.util.List;
+import java.util.function.LongBinaryOperator;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Predicate;
@@ -91,6 +92,11 @@ public class Plus extends CommutativeAssociativeWithOperationOnConstantsOnly {
 		return Util.sumArbitraryPrecision(listOfConstants);
 	}
 
+	@Override
+	protected LongBinaryOperator getOperationOnLongValues() {
+		return Math::addExact;
+	}
+
 	/**
 	 * Makes an addition, automatically accounting for neutral element occurrences.
 	 */
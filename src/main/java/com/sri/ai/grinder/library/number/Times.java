@@ -39,6 +39,7 @@ package com.sri.ai.grinder.library.number;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.LongBinaryOperator;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Predicate;
@@ -93,6 +94,11 @@ public class Times extends CommutativeAssociativeWithOperationOnConstantsOnly {
 	protected Object operationOnOperableValues(List listOfConstants) {
 		return Util.productArbitraryPrecision(listOfConstants);
 	}
+
+	@Override
+	protected LongBinaryOperator getOperationOnLongValues() {
+		return Math::multiplyExact;
+	}
 	
 	/**
 	 * Makes a product, automatically accounting for neutral element occurrences.
@@ -38,6 +38,7 @@
 package com.sri.ai.grinder.library.set.extensional;
 
 import java.util.LinkedList;
+import java.util.List;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Predicate;
@@ -82,7 +83,7 @@ public class UnionOnExtensionalSets extends CommutativeAssociative {
 	}
 
 	@Override
-	protected Expression operationOnOperables(LinkedList<Expression> operableArguments) {
+	protected Expression operationOnOperables(List<Expression> operableArguments) {
 		LinkedList<Expression> elements = new LinkedList<Expression>();
 		boolean multiset = false;
 		for (Expression extensionalSet : operableArguments) {
@@ -94,7 +95,7 @@ public class UnionOnExtensionalSets extends CommutativeAssociative {
 	}
 
 	@Override
-	protected Expression operationOnExpressionOperables(LinkedList<Expression> operableArguments) {
+	protected Expression operationOnExpressionOperables(List<Expression> operableArguments) {
 		LinkedList<Expression> elements = new LinkedList<Expression>();
 		boolean multiset = false;
 		for (Expression extensionalSet : operableArguments) {
@@ -38,6 +38,7 @@
 package com.sri.ai.grinder.library.set.tuple;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -45,6 +46,7 @@ import com.google.common.annotations.Beta;
 import com.sri.ai.expresso.api.Expression;
 import com.sri.ai.expresso.helper.Expressions;
 import com.sri.ai.expresso.helper.SyntaxTrees;
+import com.sri.ai.grinder.api.Module;
 import com.sri.ai.grinder.api.NoOpRewriter;
 import com.sri.ai.grinder.api.RewritingProcess;
 import com.sri.ai.grinder.core.AbstractRewriter;
@@ -65,11 +67,14 @@ implements
 NoOpRewriter,
 CheapDisequalityModule.Provider,
 InjectiveModule.Provider,
-MutuallyExclusiveCoDomainsModule.Provider {
+MutuallyExclusiveCoDomainsModule.Provider,
+Module.ProviderWithDispatchKeys {
 
 	public static final String TUPLE_LABEL = "( . )";
 	//
 	private static final List<Integer> _pathZero = Collections.unmodifiableList(Arrays.asList(new Integer(0)));
+	private static final Collection<Expression> _handledFunctors = Collections.unmodifiableList(Arrays.asList(Expressions.makeSymbol("tuple")));
+	private static final Collection<Object> _handledSyntacticFormTypes = Collections.unmodifiableList(Arrays.asList((Object) "Tuple"));
 
 	@Override
 	public Expression rewriteAfterBookkeeping(Expression expression, RewritingProcess process) {
@@ -165,6 +170,16 @@ MutuallyExclusiveCoDomainsModule.Provider {
 		return result;
 	}
 
+	@Override
+	public Collection<Expression> getHandledFunctors() {
+		return _handledFunctors;
+	}
+
+	@Override
+	public Collection<Object> getHandledSyntacticFormTypes() {
+		return _handledSyntacticFormTypes;
+	}
+
 	@Override
 	public Object getInjectiveFunctionToken(Expression expression, RewritingProcess process) {
 		if ( ! isTuple(expression)) {
@@ -39,17 +39,24 @@ package com.sri.ai.grinder.parser.antlr;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTree;
 
 import com.google.common.annotations.Beta;
 import com.sri.ai.expresso.api.Expression;
 import com.sri.ai.expresso.api.Parser;
+import com.sri.ai.expresso.helper.ParseResult;
 import com.sri.ai.grinder.helper.FunctionSignature;
 
 /**
@@ -83,46 +90,61 @@ public class AntlrGrinderParserWrapper implements Parser {
 	
 	@Override
 	public Expression parse(String string) {
-		Expression result = null;
-		try {			
-			ErrorListener lexerErrorListener = new ErrorListener("Lexer Error");
-			ErrorListener parseErrorListener = new ErrorListener("Parse Error");
-			
-			ANTLRInputStream input = new ANTLRInputStream(string);
-			AntlrGrinderLexer lexer = new AntlrGrinderLexer(input);
-			
-			CommonTokenStream tokens = new CommonTokenStream(lexer);
-			AntlrGrinderParser parser = new AntlrGrinderParser(tokens);
+		ParseResult parseResult = parseWithErrorReport(string);
+		for (String error : parseResult.getErrors()) {
+			System.err.println(error);
+		}
+		Expression result = parseResult.getExpression();
+		return result;
+	}
 
-			lexer.removeErrorListeners();
-			parser.removeErrorListeners();
-			lexer.addErrorListener(lexerErrorListener);
-			parser.addErrorListener(parseErrorListener);
-			
-			ParseTree tree = parser.expression();
+	@Override
+	public ParseResult parseWithErrorReport(String string) {
+		Expression expression = null;
+		List<String> errors = new LinkedList<String>();
+		try {
+			ParsingComponents components = threadParsingComponents.get();
+			ParseTree tree = components.parse(string, errors);
 			
-			boolean eof = parser.getInputStream().LA(1) == Recognizer.EOF;
+			boolean eof = components.parser.getInputStream().LA(1) == Recognizer.EOF;
 			
-			if (!lexerErrorListener.errorsDetected && !parseErrorListener.errorsDetected) {
+			if (errors.isEmpty()) {
 				if (!eof) {
-					System.err.println("Unable to parse the complete input expression: "+input);
+					errors.add("Unable to parse the complete input expression: "+string);
 				}
 				else {
-					lexer.removeErrorListeners();
-					parser.removeErrorListeners();
 					ExpressionVisitor expressionVisitor = new ExpressionVisitor(getRandomPredicatesSignatures());
-					result = expressionVisitor.visit(tree);
+					expression = expressionVisitor.visit(tree);
 				}
 			}
-		} catch (RecognitionException re) {
-			re.printStackTrace();
 		} catch (RuntimeException re) {
-			re.printStackTrace();
+			errors.add("Unable to parse " + string + ": " + re);
 		}
 
+		ParseResult result = new ParseResult(string, expression, errors);
 		return result;
 	}
 
+	/**
+	 * Since parsers are kept per thread, this parser can parse the top-level expressions of a source
+	 * in as many threads as there are available processors.
+	 */
+	@Override
+	public int getNumberOfBatchParsingThreads() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Parses a few representative expressions in the current thread so that the ATN/DFA caches
+	 * (shared by all parser instances) are populated before timing-sensitive parsing takes place.
+	 */
+	public static void warmUp() {
+		AntlrGrinderParserWrapper parser = new AntlrGrinderParserWrapper();
+		for (String expression : WARM_UP_EXPRESSIONS) {
+			parser.parse(expression);
+		}
+	}
+
 	@Override
 	public void close() {
 
@@ -131,8 +153,76 @@ public class AntlrGrinderParserWrapper implements Parser {
 	//
 	// PRIVATE
 	//
-	private class ErrorListener extends BaseErrorListener {
-		public boolean errorsDetected = false;
+	private static final String[] WARM_UP_EXPRESSIONS = new String[] {
+		"f(X, g(Y), 'a string', 1.5, -2)",
+		"if X = a and Y != b or not Z then 1 + 2 * 3 - 4 / 5 ^ 6 else X < Y",
+		"{ (on X in Type, Y) f(X, Y) | X != Y and (Y = a => Z) }",
+		"{{ (on X, Y in {a, b, c}) (X, Y) | X = Y }}",
+		"for all X : there exists Y : X = Y <=> true",
+		"| { ( on X ) X | X != a } | + | type(X) | + [ if X then 1 else 0 ]",
+		"lambda X, Y : X + Y",
+		"(1, 2, 3)",
+		"<X + 1>",
+	};
+
+	/** Lexer, token stream, parser and error listeners reused by successive parses in the same thread. */
+	private static ThreadLocal<ParsingComponents> threadParsingComponents = new ThreadLocal<ParsingComponents>() {
+		@Override
+		protected ParsingComponents initialValue() {
+			return new ParsingComponents();
+		}
+	};
+	
+	private static class ParsingComponents {
+		public ErrorListener lexerErrorListener = new ErrorListener("Lexer Error");
+		public ErrorListener parseErrorListener = new ErrorListener("Parse Error");
+		public AntlrGrinderLexer lexer;
+		public CommonTokenStream tokens;
+		public AntlrGrinderParser parser;
+		
+		public ParsingComponents() {
+			lexer = new AntlrGrinderLexer(new ANTLRInputStream(""));
+			tokens = new CommonTokenStream(lexer);
+			parser = new AntlrGrinderParser(tokens);
+			lexer.removeErrorListeners();
+			lexer.addErrorListener(lexerErrorListener);
+		}
+		
+		/**
+		 * Parses given string with the fast SLL prediction mode first, bailing out at the first error,
+		 * and only re-parses it with full LL prediction and error reporting if that fails.
+		 * Since SLL succeeding on an input implies LL producing the same tree,
+		 * the result is the same as a plain LL parse, and errors are reported by the second stage only.
+		 */
+		public ParseTree parse(String string, List<String> errors) {
+			lexerErrorListener.errors = errors;
+			parseErrorListener.errors = errors;
+			
+			lexer.setInputStream(new ANTLRInputStream(string));
+			tokens.setTokenSource(lexer);
+			parser.setTokenStream(tokens);
+			
+			ParseTree result;
+			parser.removeErrorListeners();
+			parser.setErrorHandler(new BailErrorStrategy());
+			parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+			try {
+				result = parser.expression();
+			}
+			catch (ParseCancellationException exception) {
+				tokens.seek(0);
+				parser.reset();
+				parser.addErrorListener(parseErrorListener);
+				parser.setErrorHandler(new DefaultErrorStrategy());
+				parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+				result = parser.expression();
+			}
+			return result;
+		}
+	}
+	
+	private static class ErrorListener extends BaseErrorListener {
+		public List<String> errors;
 		private String name;
 		
 		public ErrorListener(String name) {
@@ -143,8 +233,7 @@ public class AntlrGrinderParserWrapper implements Parser {
 		public void syntaxError(Recognizer<?, ?> recognizer,
 				Object offendingSymbol, int line, int charPositionInLine,
 				String msg, RecognitionException e) {
-			System.err.println(name+": line " + line + ":" + charPositionInLine + " " + msg);
-			errorsDetected = true;
+			errors.add(name+": line " + line + ":" + charPositionInLine + " " + msg);
 		}
 	}
 }
@@ -338,34 +338,36 @@ abstract public class AbstractConstraintTheory implements ConstraintTheory {
 	 * Indicates whether variable is chosen after otherTerm in model counting choosing ordering.
 	 */
 	public static boolean variableIsChosenAfterOtherTerm(Expression variable, Expression otherTerm, Collection<Expression> indices, RewritingProcess process) {
-		boolean result = process.isUniquelyNamedConstant(otherTerm) || variableIsChosenAfterOtherVariable(variable, otherTerm, indices);
+		boolean result = process.isUniquelyNamedConstant(otherTerm) || variableIsChosenAfterOtherVariable(variable, otherTerm, indices, process);
 		return result;
 	}
 
 	/**
 	 * Indicates whether variable in chosen after otherVariable in choosing ordering.
 	 */
-	protected static boolean variableIsChosenAfterOtherVariable(Expression variable, Expression otherVariable, Collection<Expression> indices) {
+	protected static boolean variableIsChosenAfterOtherVariable(Expression variable, Expression otherVariable, Collection<Expression> indices, RewritingProcess process) {
 		boolean result;
 		if (indices.contains(variable)) { // index
 			if ( ! indices.contains(otherVariable)) { // free variable
 				result = true; // free variables always precedes indices
 			}
 			else { // both are indices
-				result = choosingOrderTieBreaker.compare(otherVariable, variable) > 0;
+				result = ChoosingOrderRegistry.get(process).compare(otherVariable, variable) > 0;
 			}
 		}
 		else if (indices.contains(otherVariable)) { // variable is free variable and otherVariable is index
 			result = false; // free variable always precedes indices
 		}
 		else { // neither is index
-			result = choosingOrderTieBreaker.compare(otherVariable, variable) > 0;		
+			result = ChoosingOrderRegistry.get(process).compare(otherVariable, variable) > 0;		
 		}
 		return result;
 	}
 	
 	/**
 	 * The tie-breaker used for choosing order within the same group (indices, free variables and constants).
+	 * {@link #variableIsChosenAfterOtherVariable(Expression, Expression, Collection, RewritingProcess)} uses
+	 * the process's {@link ChoosingOrderRegistry} instead, which is equivalent but does not build strings at every comparison.
 	 */
 	public static final Comparator<Expression> choosingOrderTieBreaker = (a, b) -> a.toString().compareTo(b.toString());
 }
\ No newline at end of file
@@ -40,13 +40,17 @@ package com.sri.ai.grinder.plaindpll.core;
 import static com.sri.ai.expresso.helper.Expressions.FALSE;
 import static com.sri.ai.expresso.helper.Expressions.TRUE;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 import com.google.common.base.Predicate;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.sri.ai.expresso.api.Expression;
 import com.sri.ai.expresso.api.IndexExpressionsSet;
+import com.sri.ai.grinder.GrinderConfiguration;
 import com.sri.ai.grinder.api.Rewriter;
 import com.sri.ai.grinder.api.RewritingProcess;
 import com.sri.ai.grinder.core.AbstractHierarchicalRewriter;
@@ -86,6 +90,14 @@ abstract public class AbstractSolver extends AbstractHierarchicalRewriter implem
 		this.debug = newValue;
 	}
 	
+	public boolean getMemoizeSymbolicAdditions() {
+		return memoizeSymbolicAdditions;
+	}
+	
+	public void setMemoizeSymbolicAdditions(boolean newValue) {
+		this.memoizeSymbolicAdditions = newValue;
+	}
+	
 	/** The background theory for the solver's input in the algorithm. */
 	protected ConstraintTheory inputTheory;
 	
@@ -98,6 +110,12 @@ abstract public class AbstractSolver extends AbstractHierarchicalRewriter implem
 	/** A {@link CountsDeclaration} encapsulating sort size information. */
 	protected CountsDeclaration countsDeclaration;
 	
+	/** Whether additions of symbolic results are memoized (see {@link #addSymbolicResults(Expression, Expression, RewritingProcess)}). */
+	protected boolean memoizeSymbolicAdditions = true;
+	
+	/** The key of the cache of symbolic additions in the global objects of rewriting processes. */
+	private Pair<String, AbstractSolver> symbolicAdditionsCacheKey = new Pair<String, AbstractSolver>("symbolic additions cache", this);
+	
 	public AbstractSolver(ConstraintTheory theory, GroupProblemType problemType) {
 		this(theory, problemType, null);
 	}
@@ -160,14 +178,41 @@ abstract public class AbstractSolver extends AbstractHierarchicalRewriter implem
 		Constraint contextualConstraint = constraintTheory.makeConstraint(Util.list()); // contextual constraint does not involve any indices -- defined on free variables only
 		process.initializeDPLLContextualConstraint(contextualConstraint);
 
-		Constraint constraint = constraintTheory.makeConstraint(indices);
-		Expression simplifiedInput = constraintTheory.simplify(input, process);
-		Expression result = solve(simplifiedInput, indices, constraint, process);
-		if (result == null) { // constraint is unsatisfiable, so result is identity element.
-			result = problemType.additiveIdentityElement();
+		// symbolic additions are memoized for the duration of this top-level solving only,
+		// since they are keyed by contextual constraints that are only meaningful in its context;
+		// nested solvings (and solvings racing for the same process) use the cache of the one that put it there
+		boolean ownsSymbolicAdditionsCache =
+				memoizeSymbolicAdditions
+				&& ! process.getGlobalObjects().containsKey(symbolicAdditionsCacheKey) // only to avoid making caches that would not be used
+				&& process.getGlobalObjects().putIfAbsent(symbolicAdditionsCacheKey, makeSymbolicAdditionsCache()) == null;
+
+		try {
+			Constraint constraint = constraintTheory.makeConstraint(indices);
+			Expression simplifiedInput = constraintTheory.simplify(input, process);
+			Expression result = solveTopLevel(simplifiedInput, indices, constraint, process);
+			if (result == null) { // constraint is unsatisfiable, so result is identity element.
+				result = problemType.additiveIdentityElement();
+			}
+			return result;
 		}
-		
-		process.initializeDPLLContextualConstraint(oldConstraint);
+		finally {
+			if (ownsSymbolicAdditionsCache) {
+				process.getGlobalObjects().remove(symbolicAdditionsCacheKey);
+			}
+			process.initializeDPLLContextualConstraint(oldConstraint);
+		}
+	}
+
+	/**
+	 * Hook method solving the problem set up by {@link #solve(Expression, Collection, RewritingProcess)}
+	 * and returning the expression to be returned by it,
+	 * or null if the contextual constraint is found to be inconsistent
+	 * (default simply invokes {@link #solve(Expression, Collection, Constraint, RewritingProcess)}).
+	 * Extending classes using another representation of solutions internally
+	 * can override it to set that representation up for this solving only and convert the solution back to an expression.
+	 */
+	protected Expression solveTopLevel(Expression expression, Collection<Expression> indices, Constraint constraint, RewritingProcess process) {
+		Expression result = solve(expression, indices, constraint, process);
 		return result;
 	}
 
@@ -203,8 +248,71 @@ abstract public class AbstractSolver extends AbstractHierarchicalRewriter implem
 	/**
 	 * If solutions are unconditional expressions, simply add them.
 	 * If they are conditional (symbolic), perform distributive on conditions.
+	 * <p>
+	 * Unless {@link #setMemoizeSymbolicAdditions(boolean)} has been used to turn it off,
+	 * additions made while solving are memoized per solutions and contextual constraint
+	 * (or per solutions only, for unconditional solutions, whose sum does not depend on the contextual constraint),
+	 * so that sub-solutions occurring under many branches of the solutions (or added again at later merges) are added only once,
+	 * and results share the sub-expressions of such repeated additions.
 	 */
 	protected Expression addSymbolicResults(Expression solution1, Expression solution2, RewritingProcess process) {
+		
+		Expression result;
+		
+		Cache<List<Expression>, Expression> cache = memoizeSymbolicAdditions? getSymbolicAdditionsCache(process) : null;
+		if (cache == null || solution1 == null || solution2 == null || process.getDPLLContextualConstraint() == null) {
+			result = addSymbolicResultsWithoutMemoization(solution1, solution2, process);
+		}
+		else {
+			List<Expression> key = makeSymbolicAdditionKey(solution1, solution2, process);
+			result = cache.getIfPresent(key);
+			if (result == null) {
+				result = addSymbolicResultsWithoutMemoization(solution1, solution2, process);
+				if (result != null) { // null results (inconsistent contextual constraints) are rare and not memoized
+					cache.put(key, result);
+				}
+			}
+		}
+		
+		return result;
+	}
+
+	private List<Expression> makeSymbolicAdditionKey(Expression solution1, Expression solution2, RewritingProcess process) {
+		Expression relevantConstraint;
+		if (solution1.equals(problemType.additiveIdentityElement())
+				|| solution2.equals(problemType.additiveIdentityElement())
+				|| DPLLUtil.isConditionalSolution(solution1, constraintTheory, process)
+				|| DPLLUtil.isConditionalSolution(solution2, constraintTheory, process)) {
+			relevantConstraint = process.getDPLLContextualConstraint();
+		}
+		else {
+			relevantConstraint = null;
+		}
+		List<Expression> result = Arrays.asList(solution1, solution2, relevantConstraint);
+		return result;
+	}
+
+	/**
+	 * Returns the cache put in the process's global objects by the top-level solving,
+	 * or null if there is none (as when it was removed by the owner of a cache shared by a racing solving),
+	 * in which case additions are not memoized, since caches made here would never be removed.
+	 */
+	@SuppressWarnings("unchecked")
+	private Cache<List<Expression>, Expression> getSymbolicAdditionsCache(RewritingProcess process) {
+		Cache<List<Expression>, Expression> result = (Cache<List<Expression>, Expression>) process.getGlobalObject(symbolicAdditionsCacheKey);
+		return result;
+	}
+
+	private static Cache<List<Expression>, Expression> makeSymbolicAdditionsCache() {
+		Cache<List<Expression>, Expression> result = CacheBuilder.newBuilder().maximumSize(GrinderConfiguration.getSymbolicAdditionsCacheMaximumSize()).build();
+		return result;
+	}
+
+	/**
+	 * Performs one step of {@link #addSymbolicResults(Expression, Expression, RewritingProcess)} without looking up memoized results,
+	 * although its recursive invocations on branches of conditional solutions do so.
+	 */
+	protected Expression addSymbolicResultsWithoutMemoization(Expression solution1, Expression solution2, RewritingProcess process) {
 
 		Expression result;
 		
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.grinder.plaindpll.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.grinder.api.RewritingProcess;
+
+/**
+ * Assigns ordinals to expressions (typically variables) that agree with the order of their string representations,
+ * so that the choosing order of variables ({@link AbstractConstraintTheory#choosingOrderTieBreaker})
+ * can be decided by comparing two integers instead of materializing two strings at every comparison.
+ * <p>
+ * An expression's string representation is computed only once, when it is first compared,
+ * and placed among those of the expressions already registered;
+ * its ordinal is chosen between the ordinals of its neighbors,
+ * with all ordinals being evenly spread again in the rare case there is no room between them.
+ * The resulting orderings are therefore the same as before, and do not depend on the order in which expressions are seen.
+ * <p>
+ * A registry is kept for each rewriting process (and shared by its sub-processes) in its global objects.
+ * 
+ * @author braz
+ *
+ */
+@Beta
+public class ChoosingOrderRegistry {
+
+	private static final String GLOBAL_OBJECTS_KEY = "choosing order registry";
+	
+	private static final long SPACING = 1L << 32;
+
+	/** Ordinals are kept in single-element arrays shared by both maps, so that they can be updated when spread again. */
+	private Map<Expression, long[]>  fromExpressionToOrdinal = new HashMap<Expression, long[]>();
+	private TreeMap<String, long[]>  fromStringToOrdinal     = new TreeMap<String, long[]>();
+
+	/** Returns the registry of a rewriting process, creating it if needed. */
+	public static ChoosingOrderRegistry get(RewritingProcess process) {
+		ChoosingOrderRegistry result = (ChoosingOrderRegistry) process.getGlobalObjects().computeIfAbsent(GLOBAL_OBJECTS_KEY, key -> new ChoosingOrderRegistry());
+		return result;
+	}
+
+	/**
+	 * Compares two expressions in the same way as the comparison of their string representations.
+	 */
+	public synchronized int compare(Expression expression1, Expression expression2) {
+		int result;
+		if (expression1 == expression2) {
+			result = 0;
+		}
+		else {
+			long[] ordinal1 = getOrdinal(expression1);
+			long[] ordinal2 = getOrdinal(expression2);
+			result = Long.compare(ordinal1[0], ordinal2[0]);
+		}
+		return result;
+	}
+	
+	/** The number of expressions registered so far. */
+	public synchronized int size() {
+		return fromExpressionToOrdinal.size();
+	}
+
+	private long[] getOrdinal(Expression expression) {
+		long[] result = fromExpressionToOrdinal.get(expression);
+		if (result == null) {
+			String string = expression.toString();
+			result = fromStringToOrdinal.get(string);
+			if (result == null) {
+				result = new long[1];
+				fromStringToOrdinal.put(string, result);
+				if ( ! placeBetweenNeighbors(string, result)) {
+					spreadOrdinals();
+				}
+			}
+			fromExpressionToOrdinal.put(expression, result);
+		}
+		return result;
+	}
+
+	/** Sets an ordinal between those of the neighbors of the string, returning false if there is no room between them. */
+	private boolean placeBetweenNeighbors(String string, long[] ordinal) {
+		Map.Entry<String, long[]> lower  = fromStringToOrdinal.lowerEntry(string);
+		Map.Entry<String, long[]> higher = fromStringToOrdinal.higherEntry(string);
+		long lowerOrdinal  = lower  == null? Long.MIN_VALUE/2 : lower.getValue()[0];
+		long higherOrdinal = higher == null? Long.MAX_VALUE/2 : higher.getValue()[0];
+		ordinal[0] = lowerOrdinal + (higherOrdinal - lowerOrdinal)/2;
+		boolean result = ordinal[0] != lowerOrdinal && ordinal[0] != higherOrdinal;
+		return result;
+	}
+
+	private void spreadOrdinals() {
+		long next = 0;
+		for (long[] ordinal : fromStringToOrdinal.values()) {
+			ordinal[0] = next;
+			next += SPACING;
+		}
+	}
+}
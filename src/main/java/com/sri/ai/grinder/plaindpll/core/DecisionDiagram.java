@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.grinder.plaindpll.core;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.helper.AbstractExpressionWrapper;
+import com.sri.ai.grinder.library.controlflow.IfThenElse;
+
+/**
+ * A node of a reduced, ordered algebraic decision diagram representing a conditional solution,
+ * that is, either a terminal holding an unconditional value,
+ * or a splitter with a then-branch and an else-branch that are themselves decision diagrams.
+ * <p>
+ * Decision diagrams are created by a {@link DecisionDiagramFactory} only,
+ * which guarantees that isomorphic sub-diagrams are the same instance,
+ * that no node has identical branches,
+ * and that splitters appear in the same order in all paths.
+ * <p>
+ * As an {@link Expression}, a decision diagram is equal to the equivalent if-then-else expression
+ * (which is computed lazily and shares the expressions of repeated sub-diagrams),
+ * so diagrams can be used wherever solutions are expected;
+ * however, converting them with {@link DecisionDiagramFactory#toExpression(DecisionDiagram, com.sri.ai.grinder.api.RewritingProcess)}
+ * at the boundary of the solver is much preferable, since it prunes branches that are inconsistent with the contextual constraint.
+ * 
+ * @author braz
+ *
+ */
+@Beta
+public class DecisionDiagram extends AbstractExpressionWrapper {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The index of splitters in terminals, which is greater than that of any splitter. */
+	public static final int TERMINAL_SPLITTER_INDEX = Integer.MAX_VALUE;
+	
+	private int splitterIndex;
+	private Expression splitter;
+	private Expression value;
+	private DecisionDiagram thenBranch;
+	private DecisionDiagram elseBranch;
+	
+	/** Makes a terminal; to be used by {@link DecisionDiagramFactory} only. */
+	DecisionDiagram(Expression value) {
+		this.splitterIndex = TERMINAL_SPLITTER_INDEX;
+		this.value = value;
+	}
+
+	/** Makes a non-terminal; to be used by {@link DecisionDiagramFactory} only. */
+	DecisionDiagram(int splitterIndex, Expression splitter, DecisionDiagram thenBranch, DecisionDiagram elseBranch) {
+		this.splitterIndex = splitterIndex;
+		this.splitter = splitter;
+		this.thenBranch = thenBranch;
+		this.elseBranch = elseBranch;
+	}
+	
+	public boolean isTerminal() {
+		return splitterIndex == TERMINAL_SPLITTER_INDEX;
+	}
+
+	/** The unconditional value of a terminal (null for non-terminals). */
+	public Expression getValue() {
+		return value;
+	}
+	
+	/** The position of the splitter in the order of splitters of the factory, or {@link #TERMINAL_SPLITTER_INDEX} for terminals. */
+	public int getSplitterIndex() {
+		return splitterIndex;
+	}
+	
+	/** The splitter of a non-terminal (null for terminals). */
+	public Expression getSplitter() {
+		return splitter;
+	}
+
+	public DecisionDiagram getThenBranch() {
+		return thenBranch;
+	}
+
+	public DecisionDiagram getElseBranch() {
+		return elseBranch;
+	}
+	
+	/** The number of distinct nodes (terminals included) in this diagram. */
+	public int getNumberOfNodes() {
+		Set<DecisionDiagram> visited = Collections.newSetFromMap(new IdentityHashMap<DecisionDiagram, Boolean>());
+		collectNodes(visited);
+		return visited.size();
+	}
+	
+	private void collectNodes(Set<DecisionDiagram> visited) {
+		if (visited.add(this) && ! isTerminal()) {
+			thenBranch.collectNodes(visited);
+			elseBranch.collectNodes(visited);
+		}
+	}
+
+	@Override
+	protected Expression computeInnerExpression() {
+		Expression result;
+		if (isTerminal()) {
+			result = value;
+		}
+		else {
+			result = IfThenElse.make(splitter, thenBranch, elseBranch, false /* no simplification to condition */);
+		}
+		return result;
+	}
+
+	/** Decision diagrams are immutable, so cloning returns the same instance. */
+	@Override
+	public DecisionDiagram clone() {
+		return this;
+	}
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.grinder.plaindpll.core;
+
+import static com.sri.ai.expresso.helper.Expressions.FALSE;
+import static com.sri.ai.expresso.helper.Expressions.TRUE;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.library.controlflow.IfThenElse;
+import com.sri.ai.grinder.plaindpll.api.Constraint;
+import com.sri.ai.grinder.plaindpll.api.ConstraintTheory;
+import com.sri.ai.grinder.plaindpll.group.AssociativeCommutativeGroup;
+import com.sri.ai.grinder.plaindpll.util.DPLLUtil;
+
+/**
+ * Creates and combines {@link DecisionDiagram}s representing conditional solutions on the splitters of a constraint theory,
+ * with values in a given {@link AssociativeCommutativeGroup}.
+ * <p>
+ * Splitters are ordered by the order in which they are first given to {@link #getSplitterIndex(Expression)}
+ * (directly or through the construction of diagrams), so solvers should register splitters top-down, as they split on them,
+ * in order to avoid reordering of diagrams built bottom-up.
+ * Nodes are kept in a unique table, so isomorphic diagrams are the same instance,
+ * and the results of {@link #makeIfThenElse(Expression, DecisionDiagram, DecisionDiagram)}
+ * and {@link #add(DecisionDiagram, DecisionDiagram, RewritingProcess)} are memoized.
+ * <p>
+ * Diagrams treat splitters as independent propositions, so they may contain paths on combinations of splitters
+ * that are inconsistent in the theory (for example, <code>X = a</code> and <code>X = b</code>).
+ * These are pruned by {@link #toExpression(DecisionDiagram, RewritingProcess)},
+ * which must be used to convert diagrams back to the if-then-else solutions expected by users of solvers.
+ * <p>
+ * Factories are meant to be used by a single solving at a time and are not thread-safe.
+ * 
+ * @author braz
+ *
+ */
+@Beta
+public class DecisionDiagramFactory {
+
+	private ConstraintTheory constraintTheory;
+	private AssociativeCommutativeGroup group;
+
+	private Map<Expression, Integer>         fromSplitterToIndex = new HashMap<Expression, Integer>();
+	private List<Expression>                 splitters           = new ArrayList<Expression>();
+	private Map<Expression, DecisionDiagram> terminals           = new HashMap<Expression, DecisionDiagram>();
+	private Map<NodeKey, DecisionDiagram>    uniqueTable         = new HashMap<NodeKey, DecisionDiagram>();
+	private Map<NodeKey, DecisionDiagram>    ifThenElseTable     = new HashMap<NodeKey, DecisionDiagram>();
+	private Map<NodeKey, DecisionDiagram>    additionTable       = new HashMap<NodeKey, DecisionDiagram>();
+	
+	public DecisionDiagramFactory(ConstraintTheory constraintTheory, AssociativeCommutativeGroup group) {
+		this.constraintTheory = constraintTheory;
+		this.group = group;
+	}
+
+	/** Returns the position of a splitter in the order of splitters, placing it last if it is new. */
+	public int getSplitterIndex(Expression splitter) {
+		Integer result = fromSplitterToIndex.get(splitter);
+		if (result == null) {
+			result = splitters.size();
+			fromSplitterToIndex.put(splitter, result);
+			splitters.add(splitter);
+		}
+		return result;
+	}
+	
+	/** The number of distinct nodes (terminals included) created by this factory. */
+	public int getNumberOfNodes() {
+		return terminals.size() + uniqueTable.size();
+	}
+
+	public DecisionDiagram makeTerminal(Expression value) {
+		DecisionDiagram result = terminals.get(value);
+		if (result == null) {
+			result = new DecisionDiagram(value);
+			terminals.put(value, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the diagram equivalent to <code>if splitter then thenBranch else elseBranch</code>,
+	 * regardless of the position of the splitter with respect to the splitters in the branches.
+	 */
+	public DecisionDiagram makeIfThenElse(Expression splitter, DecisionDiagram thenBranch, DecisionDiagram elseBranch) {
+		DecisionDiagram result = ifThenElse(getSplitterIndex(splitter), thenBranch, elseBranch);
+		return result;
+	}
+
+	/**
+	 * Returns the diagram of the sum (according to the group) of two diagrams.
+	 */
+	public DecisionDiagram add(DecisionDiagram diagram1, DecisionDiagram diagram2, RewritingProcess process) {
+		DecisionDiagram result;
+		if (diagram1.isTerminal() && diagram1.getValue().equals(group.additiveIdentityElement())) {
+			result = diagram2;
+		}
+		else if (diagram2.isTerminal() && diagram2.getValue().equals(group.additiveIdentityElement())) {
+			result = diagram1;
+		}
+		else if (diagram1.isTerminal() && diagram2.isTerminal()) {
+			result = makeTerminal(group.add(diagram1.getValue(), diagram2.getValue(), process));
+		}
+		else {
+			NodeKey key = new NodeKey(-1, diagram1, diagram2);
+			result = additionTable.get(key);
+			if (result == null) {
+				int top = Math.min(diagram1.getSplitterIndex(), diagram2.getSplitterIndex());
+				DecisionDiagram newThenBranch = add(cofactor(diagram1, top, true),  cofactor(diagram2, top, true),  process);
+				DecisionDiagram newElseBranch = add(cofactor(diagram1, top, false), cofactor(diagram2, top, false), process);
+				result = makeNode(top, newThenBranch, newElseBranch);
+				additionTable.put(key, result);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the diagram of a solution, which may be a diagram of this factory already,
+	 * a conditional solution (an if-then-else expression on a splitter), or an unconditional value.
+	 */
+	public DecisionDiagram fromExpression(Expression solution, RewritingProcess process) {
+		DecisionDiagram result;
+		if (solution instanceof DecisionDiagram) {
+			result = (DecisionDiagram) solution;
+		}
+		else if (DPLLUtil.isConditionalSolution(solution, constraintTheory, process)) {
+			int splitterIndex = getSplitterIndex(IfThenElse.condition(solution));
+			DecisionDiagram thenBranch = fromExpression(IfThenElse.thenBranch(solution), process);
+			DecisionDiagram elseBranch = fromExpression(IfThenElse.elseBranch(solution), process);
+			result = ifThenElse(splitterIndex, thenBranch, elseBranch);
+		}
+		else {
+			result = makeTerminal(solution);
+		}
+		return result;
+	}
+
+	/**
+	 * Converts a diagram to an if-then-else expression,
+	 * normalizing its splitters given the process's contextual constraint and pruning branches inconsistent with it,
+	 * in the same way as the symbolic addition of solutions does.
+	 * Returns null if the contextual constraint is found to be inconsistent.
+	 */
+	public Expression toExpression(DecisionDiagram diagram, RewritingProcess process) {
+		Expression result;
+		Constraint constraint = process.getDPLLContextualConstraint();
+		if (constraint == null) {
+			result = null;
+		}
+		else if (diagram.isTerminal()) {
+			result = diagram.getValue();
+		}
+		else {
+			Expression normalizedSplitter = constraint.normalizeSplitterGivenConstraint(diagram.getSplitter(), process);
+			if (normalizedSplitter.equals(TRUE)) {
+				result = toExpression(diagram.getThenBranch(), process);
+			}
+			else if (normalizedSplitter.equals(FALSE)) {
+				result = toExpression(diagram.getElseBranch(), process);
+			}
+			else {
+				Expression thenBranch = toExpression(diagram.getThenBranch(), process.extendDPLLContextualConstraint(true,  normalizedSplitter));
+				Expression elseBranch = toExpression(diagram.getElseBranch(), process.extendDPLLContextualConstraint(false, normalizedSplitter));
+				if (thenBranch == null) {
+					result = elseBranch;
+				}
+				else if (elseBranch == null || thenBranch.equals(elseBranch)) {
+					result = thenBranch;
+				}
+				else {
+					result = IfThenElse.make(normalizedSplitter, thenBranch, elseBranch, false /* no simplification to condition */);
+				}
+			}
+		}
+		return result;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	
+	/** Makes a node whose splitter precedes the splitters of both branches, reusing an existing one if possible. */
+	private DecisionDiagram makeNode(int splitterIndex, DecisionDiagram thenBranch, DecisionDiagram elseBranch) {
+		DecisionDiagram result;
+		if (thenBranch == elseBranch) {
+			result = thenBranch;
+		}
+		else {
+			NodeKey key = new NodeKey(splitterIndex, thenBranch, elseBranch);
+			result = uniqueTable.get(key);
+			if (result == null) {
+				result = new DecisionDiagram(splitterIndex, splitters.get(splitterIndex), thenBranch, elseBranch);
+				uniqueTable.put(key, result);
+			}
+		}
+		return result;
+	}
+
+	private DecisionDiagram ifThenElse(int splitterIndex, DecisionDiagram thenBranch, DecisionDiagram elseBranch) {
+		DecisionDiagram result;
+		if (thenBranch == elseBranch) {
+			result = thenBranch;
+		}
+		else {
+			int top = Math.min(splitterIndex, Math.min(thenBranch.getSplitterIndex(), elseBranch.getSplitterIndex()));
+			if (top == splitterIndex) {
+				result = makeNode(splitterIndex, cofactor(thenBranch, splitterIndex, true), cofactor(elseBranch, splitterIndex, false));
+			}
+			else { // splitter comes after some splitter in the branches, so we need to push it down
+				NodeKey key = new NodeKey(splitterIndex, thenBranch, elseBranch);
+				result = ifThenElseTable.get(key);
+				if (result == null) {
+					DecisionDiagram newThenBranch = ifThenElse(splitterIndex, cofactor(thenBranch, top, true),  cofactor(elseBranch, top, true));
+					DecisionDiagram newElseBranch = ifThenElse(splitterIndex, cofactor(thenBranch, top, false), cofactor(elseBranch, top, false));
+					result = makeNode(top, newThenBranch, newElseBranch);
+					ifThenElseTable.put(key, result);
+				}
+			}
+		}
+		return result;
+	}
+
+	/** The diagram under a given value of a splitter preceding or equal to the diagram's top splitter. */
+	private static DecisionDiagram cofactor(DecisionDiagram diagram, int splitterIndex, boolean splitterValue) {
+		DecisionDiagram result;
+		if (diagram.getSplitterIndex() == splitterIndex) {
+			result = splitterValue? diagram.getThenBranch() : diagram.getElseBranch();
+		}
+		else {
+			result = diagram;
+		}
+		return result;
+	}
+
+	/** A key made of an integer and two diagrams compared by identity (which is sufficient since nodes are unique). */
+	private static class NodeKey {
+		private int index;
+		private DecisionDiagram first;
+		private DecisionDiagram second;
+		private int hashCode;
+		
+		public NodeKey(int index, DecisionDiagram first, DecisionDiagram second) {
+			this.index  = index;
+			this.first  = first;
+			this.second = second;
+			this.hashCode = (31*index + System.identityHashCode(first))*31 + System.identityHashCode(second);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+		
+		@Override
+		public boolean equals(Object another) {
+			boolean result = another instanceof NodeKey
+					&& index  == ((NodeKey) another).index
+					&& first  == ((NodeKey) another).first
+					&& second == ((NodeKey) another).second;
+			return result;
+		}
+	}
+}
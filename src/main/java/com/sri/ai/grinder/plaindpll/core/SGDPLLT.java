@@ -37,6 +37,7 @@
  */
 package com.sri.ai.grinder.plaindpll.core;
 
+import static com.sri.ai.expresso.helper.Expressions.TRUE;
 import static com.sri.ai.util.Util.myAssert;
 
 import java.util.Collection;
@@ -89,6 +90,20 @@ public class SGDPLLT extends AbstractSolver {
 	 */
 	public final static boolean earlyExternalizationOfFreeVariableSplittersOptimization = true; // IMPORTANT: unit tests will break if set to false. However DPLL stress tests can still be used. As of this writing (12/4/2014) the false setting was slightly slower.
 	
+	/**
+	 * Whether sub-solutions are represented and combined as {@link DecisionDiagram}s during solving,
+	 * instead of if-then-else expressions.
+	 * Diagrams share isomorphic sub-solutions and are combined by memoized operations,
+	 * which saves memory and time when conditional solutions are large,
+	 * but are only pruned of branches inconsistent with the contextual constraint when converted back to expressions
+	 * at the end of {@link #solve(Expression, Collection, RewritingProcess)}, so results may differ in form
+	 * (though not in value) from those obtained with if-then-else expressions.
+	 * Each such solving uses a factory of its own throughout, since factories are not thread-safe.
+	 * Direct invocations of {@link #solve(Expression, Collection, Constraint, RewritingProcess)}
+	 * always use if-then-else expressions, since then there is no opportunity for converting diagrams back to expressions.
+	 */
+	protected boolean useDecisionDiagrams = false;
+	
 	public SGDPLLT(ConstraintTheory theory, GroupProblemType problemType) {
 		this(theory, problemType, null);
 	}
@@ -97,8 +112,59 @@ public class SGDPLLT extends AbstractSolver {
 		super(theory, problemType, countsDeclaration);
 	}
 
+	public boolean getUseDecisionDiagrams() {
+		return useDecisionDiagrams;
+	}
+
+	public void setUseDecisionDiagrams(boolean newValue) {
+		this.useDecisionDiagrams = newValue;
+	}
+
+	@Override
+	protected Expression solveTopLevel(Expression expression, Collection<Expression> indices, Constraint constraint, RewritingProcess process) {
+		Expression result;
+		if (useDecisionDiagrams) {
+			DecisionDiagramFactory factory = new DecisionDiagramFactory(constraintTheory, problemType);
+			Expression solution = solve(expression, indices, constraint, factory, process);
+			if (solution instanceof DecisionDiagram) {
+				result = factory.toExpression((DecisionDiagram) solution, process);
+			}
+			else {
+				result = solution;
+			}
+		}
+		else {
+			result = super.solveTopLevel(expression, indices, constraint, process);
+		}
+		return result;
+	}
+
+	/**
+	 * Same as {@link #solve(Expression, Collection, Constraint, RewritingProcess)},
+	 * but combining sub-solutions as decision diagrams made by the given factory,
+	 * or as if-then-else expressions if it is null.
+	 */
+	private Expression solve(Expression expression, Collection<Expression> indices, Constraint constraint, DecisionDiagramFactory factory, RewritingProcess process) {
+		checkInterrupted();
+		
+		Expression result;
+		if (expression instanceof Constraint && constraint.equals(TRUE)) {
+			result = solveAfterBookkeeping(TRUE, indices, (Constraint) expression, factory, process);
+		}
+		else {
+			result = solveAfterBookkeeping(expression, indices, constraint, factory, process);
+		}
+		
+		return result;
+	}
+
 	@Override
 	protected Expression solveAfterBookkeeping(Expression expression, Collection<Expression> indices, Constraint constraint, RewritingProcess process) {
+		Expression result = solveAfterBookkeeping(expression, indices, constraint, null, process);
+		return result;
+	}
+
+	private Expression solveAfterBookkeeping(Expression expression, Collection<Expression> indices, Constraint constraint, DecisionDiagramFactory factory, RewritingProcess process) {
 		
 		long startTime = 0;
 		if (debug(process)) {
@@ -118,7 +184,7 @@ public class SGDPLLT extends AbstractSolver {
 		Expression splitter = pickSplitter(expression, indices, constraint, process);
 
 		if (splitter != null) {
-			result = solveBasedOnSplitting(splitter, expression, indices, constraint, process);
+			result = solveBasedOnSplitting(splitter, expression, indices, constraint, factory, process);
 		}
 		else {
 			Expression unconditionalValue = normalizeUnconditionalExpression(expression, process);
@@ -183,7 +249,7 @@ public class SGDPLLT extends AbstractSolver {
 	 */
 	private static interface Combiner extends QuarternaryFunction<Expression, Expression, Expression, RewritingProcess, Expression> {};
 
-	private Expression solveBasedOnSplitting(Expression splitter, Expression expression, Collection<Expression> indices, Constraint constraint, RewritingProcess process) {
+	private Expression solveBasedOnSplitting(Expression splitter, Expression expression, Collection<Expression> indices, Constraint constraint, DecisionDiagramFactory factory, RewritingProcess process) {
 		
 		// Keep in mind that splitter may already be implied as true or false by theoryWithEquality constraint.
 		// This should not happen if the theoryWithEquality application of splitters to expressions only replaced them by true or false,
@@ -198,8 +264,16 @@ public class SGDPLLT extends AbstractSolver {
 		// This prevents a more elegant formalization in which the splitter is applied to the three of them,
 		// as if conceptually applied to the whole problem at once.
 		
-		Combiner conditionalCombiner = (s, solution1, solution2, p) -> IfThenElse.make(s, solution1, solution2, false /* no simplification to condition */);
-		Combiner additionCombiner    = (s, solution1, solution2, p) -> addSymbolicResults(solution1, solution2, p);
+		Combiner conditionalCombiner;
+		Combiner additionCombiner;
+		if (factory == null) {
+			conditionalCombiner = (s, solution1, solution2, p) -> IfThenElse.make(s, solution1, solution2, false /* no simplification to condition */);
+			additionCombiner    = (s, solution1, solution2, p) -> addSymbolicResults(solution1, solution2, p);
+		}
+		else {
+			conditionalCombiner = (s, solution1, solution2, p) -> factory.makeIfThenElse(s, factory.fromExpression(solution1, p), factory.fromExpression(solution2, p));
+			additionCombiner    = (s, solution1, solution2, p) -> factory.add(factory.fromExpression(solution1, p), factory.fromExpression(solution2, p), p);
+		}
 		
 		Combiner combiner;
 		boolean splitterMustBeInContextualConstraint;
@@ -208,21 +282,36 @@ public class SGDPLLT extends AbstractSolver {
 		if (earlyExternalizationOfFreeVariableSplittersOptimization && splitterDependsOnFreeVariablesOnly) {
 			combiner = conditionalCombiner;
 			splitterMustBeInContextualConstraint = true;
+			if (factory != null) {
+				factory.getSplitterIndex(splitter); // registers splitter before those in sub-solutions, so diagrams are built in order
+			}
 		}
 		else { // default, generic procedure
 			combiner = additionCombiner;
 			splitterMustBeInContextualConstraint = false;
 		}
 
-		Expression solutionUnderSplitter = solveUnderSplitter(true, splitter, expression, indices, constraint, splitterMustBeInContextualConstraint, process);
-		boolean noNeedToComputeNegation  = solutionUnderSplitter != null && combiner == additionCombiner && problemType.isAdditiveAbsorbingElement(solutionUnderSplitter);
+		Expression solutionUnderSplitter = solveUnderSplitter(true, splitter, expression, indices, constraint, splitterMustBeInContextualConstraint, factory, process);
+		boolean noNeedToComputeNegation  = solutionUnderSplitter != null && combiner == additionCombiner && isAdditiveAbsorbingElement(solutionUnderSplitter);
 		Expression solutionUnderSplitterNegation = 
-				noNeedToComputeNegation? null : solveUnderSplitter(false, splitter, expression, indices, constraint, splitterMustBeInContextualConstraint, process);
+				noNeedToComputeNegation? null : solveUnderSplitter(false, splitter, expression, indices, constraint, splitterMustBeInContextualConstraint, factory, process);
 		Expression result = combine(combiner, splitter, solutionUnderSplitter, solutionUnderSplitterNegation, process);
 		
 		return result;
 	}
 	
+	private boolean isAdditiveAbsorbingElement(Expression solution) {
+		boolean result;
+		if (solution instanceof DecisionDiagram) { // avoids converting non-terminal diagrams to expressions
+			DecisionDiagram diagram = (DecisionDiagram) solution;
+			result = diagram.isTerminal() && problemType.isAdditiveAbsorbingElement(diagram.getValue());
+		}
+		else {
+			result = problemType.isAdditiveAbsorbingElement(solution);
+		}
+		return result;
+	}
+	
 	/**
 	 * Combines two sub-solutions under a splitter and its negation, where a null sub-solution means the respective splitter or negation cannot be true,
 	 * in which case the combination is simply the other sub-solution.
@@ -262,10 +351,11 @@ public class SGDPLLT extends AbstractSolver {
 	 * @param expression
 	 * @param constraint
 	 * @param splitterInContextualConstraint
+	 * @param factory
 	 * @param process
 	 * @return
 	 */
-	private Expression solveUnderSplitter(boolean splitterSign, Expression splitter, Expression expression, Collection<Expression> indices, Constraint constraint, boolean splitterInContextualConstraint, RewritingProcess process) {
+	private Expression solveUnderSplitter(boolean splitterSign, Expression splitter, Expression expression, Collection<Expression> indices, Constraint constraint, boolean splitterInContextualConstraint, DecisionDiagramFactory factory, RewritingProcess process) {
 		Expression result;
 		myAssert(() -> process.getDPLLContextualConstraint() != null, () -> "SGDPLL(T) should not operate under a contradictory contextual constraint");
 		RewritingProcess processUnderSplitter = splitterInContextualConstraint? process.extendDPLLContextualConstraint(splitterSign, splitter) : process;
@@ -281,7 +371,7 @@ public class SGDPLLT extends AbstractSolver {
 			else {
 				incrementLevel(processUnderSplitter, process);
 				Expression expressionUnderSplitter = constraintTheory.simplifyExpressionGivenSplitter(splitterSign, splitter, expression, process);
-				result = solve(expressionUnderSplitter, indices, constraintUnderSplitter, processUnderSplitter);
+				result = solve(expressionUnderSplitter, indices, constraintUnderSplitter, factory, processUnderSplitter);
 				decrementLevel(processUnderSplitter);
 			}
 		}
@@ -45,6 +45,7 @@ import static com.sri.ai.util.Util.list;
 
 import com.google.common.annotations.Beta;
 import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.api.Symbol;
 import com.sri.ai.expresso.helper.Expressions;
 import com.sri.ai.grinder.api.Rewriter;
 import com.sri.ai.grinder.api.RewritingProcess;
@@ -78,14 +79,54 @@ public class SymbolicPlusGroup extends AbstractSymbolicNumbersGroup {
 
 	@Override
 	public Expression add(Expression value1, Expression value2, RewritingProcess process) {
-		Expression result;
-		if (value1.getValue() instanceof Number && value2.getValue() instanceof Number) { // not necessary, as else clause is generic enough to deal with this case as well, but hopefully this saves time.
-			result = Expressions.makeSymbol(value1.rationalValue().add(value2.rationalValue()));
+		// most sums of model counts are on integers fitting in a long, which we add without arbitrary precision unless there is overflow
+		Expression result = addLongValuesOrNull(value1, value2);
+		if (result == null) {
+			if (value1.getValue() instanceof Number && value2.getValue() instanceof Number) { // not necessary, as else clause is generic enough to deal with this case as well, but hopefully this saves time.
+				result = Expressions.makeSymbol(value1.rationalValue().add(value2.rationalValue()));
+			}
+			else {
+				Expression sum = Plus.make(arrayList(value1, value2));
+				result = plusAndMinusRewriter.rewrite(sum, process);
+			}
 		}
-		else {
-			Expression sum = Plus.make(arrayList(value1, value2));
-			result = plusAndMinusRewriter.rewrite(sum, process);
+		return result;
+	}
+
+	/**
+	 * Returns the sum of two symbols with long values, or <code>null</code> if they are not such symbols or the sum overflows.
+	 */
+	private static Expression addLongValuesOrNull(Expression value1, Expression value2) {
+		if (bothHaveLongValues(value1, value2)) {
+			try {
+				return Expressions.makeSymbol(Math.addExact(((Symbol) value1).longValue(), ((Symbol) value2).longValue()));
+			}
+			catch (ArithmeticException overflow) {
+				// fall through to null, so that arbitrary precision is used
+			}
 		}
+		return null;
+	}
+
+	/**
+	 * Returns the product of two symbols with long values, or <code>null</code> if they are not such symbols or the product overflows.
+	 */
+	private static Expression multiplyLongValuesOrNull(Expression value1, Expression value2) {
+		if (bothHaveLongValues(value1, value2)) {
+			try {
+				return Expressions.makeSymbol(Math.multiplyExact(((Symbol) value1).longValue(), ((Symbol) value2).longValue()));
+			}
+			catch (ArithmeticException overflow) {
+				// fall through to null, so that arbitrary precision is used
+			}
+		}
+		return null;
+	}
+
+	private static boolean bothHaveLongValues(Expression value1, Expression value2) {
+		boolean result =
+				value1 instanceof Symbol && ((Symbol) value1).hasLongValue()
+				&& value2 instanceof Symbol && ((Symbol) value2).hasLongValue();
 		return result;
 	}
 
@@ -101,13 +142,16 @@ public class SymbolicPlusGroup extends AbstractSymbolicNumbersGroup {
 			result = n;
 		}
 		else {
-			Rational valueToBeAddedRationalValue = valueToBeAdded.rationalValue();
-			Rational nRationalValue = n.rationalValue();
-			if (valueToBeAddedRationalValue != null && nRationalValue != null) {
-				result = Expressions.makeSymbol(valueToBeAddedRationalValue.multiply(nRationalValue));
-			}
-			else {
-				result = Times.make(list(valueToBeAdded, n));
+			result = multiplyLongValuesOrNull(valueToBeAdded, n);
+			if (result == null) {
+				Rational valueToBeAddedRationalValue = valueToBeAdded.rationalValue();
+				Rational nRationalValue = n.rationalValue();
+				if (valueToBeAddedRationalValue != null && nRationalValue != null) {
+					result = Expressions.makeSymbol(valueToBeAddedRationalValue.multiply(nRationalValue));
+				}
+				else {
+					result = Times.make(list(valueToBeAdded, n));
+				}
 			}
 		}
 		return result;
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.grinder.plaindpll.problemtype;
+
+import static com.sri.ai.expresso.helper.Expressions.ZERO;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.api.IndexExpressionsSet;
+import com.sri.ai.expresso.api.UniversallyQuantifiedFormula;
+import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.library.controlflow.IfThenElse;
+import com.sri.ai.grinder.plaindpll.api.GroupProblemType;
+import com.sri.ai.util.base.Pair;
+
+/**
+ * Declares the problem type of determining whether a formula holds in all models of a constraint,
+ * fails in all of them, or neither, with a single solving.
+ * The expression to be solved is built by {@link #make(Expression, Expression)},
+ * and its value in each model is {@link #HOLDS} or {@link #FAILS} (or {@link #NO_MODELS} outside the constraint).
+ * These are combined by the semilattice in which {@link #NO_MODELS} is the identity,
+ * and {@link #HOLDS} and {@link #FAILS} add up to {@link #HOLDS_AND_FAILS}, which is absorbing,
+ * so solving stops as soon as the formula is known to hold in some models and fail in others.
+ * 
+ * @author braz
+ *
+ */
+@Beta
+public class ImplicationClassification implements GroupProblemType {
+
+	public static final Expression NO_MODELS       = Expressions.makeSymbol("no models");
+	public static final Expression HOLDS           = Expressions.makeSymbol("holds");
+	public static final Expression FAILS           = Expressions.makeSymbol("fails");
+	public static final Expression HOLDS_AND_FAILS = Expressions.makeSymbol("holds and fails");
+	
+	/**
+	 * Makes the expression whose solution classifies formula with respect to constraint.
+	 */
+	public static Expression make(Expression formula, Expression constraint) {
+		Expression result = IfThenElse.make(constraint, IfThenElse.make(formula, HOLDS, FAILS, false), NO_MODELS, false);
+		return result;
+	}
+
+	@Override
+	public Expression additiveIdentityElement() {
+		return NO_MODELS;
+	}
+
+	@Override
+	public boolean isAdditiveAbsorbingElement(Expression value) {
+		boolean result = value.equals(HOLDS_AND_FAILS);
+		return result;
+	}
+
+	@Override
+	public Expression add(Expression value1, Expression value2, RewritingProcess process) {
+		Expression result;
+		if (value1.equals(NO_MODELS) || value1.equals(value2)) {
+			result = value2;
+		}
+		else if (value2.equals(NO_MODELS)) {
+			result = value1;
+		}
+		else {
+			result = HOLDS_AND_FAILS;
+		}
+		return result;
+	}
+
+	/**
+	 * Values are idempotent, so adding them n times is the same as adding them once, unless n is zero.
+	 * A symbolic n is taken to be possibly greater than zero,
+	 * as in the tautologicality check that this problem type replaces.
+	 */
+	@Override
+	public Expression addNTimes(Expression value, Expression n, RewritingProcess process) {
+		Expression result = n.equals(ZERO)? NO_MODELS : value;
+		return result;
+	}
+
+	@Override
+	public Pair<Expression, IndexExpressionsSet> getExpressionAndIndexExpressionsFromRewriterProblemArgument(Expression expression, RewritingProcess process) {
+		UniversallyQuantifiedFormula universal = (UniversallyQuantifiedFormula) expression;
+		Pair<Expression, IndexExpressionsSet> formulaAndIndices = Pair.make(universal.getBody(), universal.getIndexExpressions());
+		return formulaAndIndices;
+	}
+}
@@ -46,6 +46,7 @@ import static com.sri.ai.grinder.library.FunctorConstants.EQUALITY;
 import static com.sri.ai.util.Util.filter;
 import static com.sri.ai.util.Util.myAssert;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -55,8 +56,12 @@ import java.util.Map;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Function;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.helper.ExpressionSummary;
 import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.grinder.GrinderConfiguration;
 import com.sri.ai.grinder.api.Rewriter;
 import com.sri.ai.grinder.api.RewritingProcess;
 import com.sri.ai.grinder.library.Disequality;
@@ -88,6 +93,7 @@ import com.sri.ai.grinder.plaindpll.problemtype.Tautologicality;
 import com.sri.ai.grinder.plaindpll.util.DPLLUtil;
 import com.sri.ai.util.Util;
 import com.sri.ai.util.base.BinaryFunction;
+import com.sri.ai.util.base.Pair;
 import com.sri.ai.util.collect.CopyOnWriteMap;
 import com.sri.ai.util.collect.StackedHashMap;
 @Beta
@@ -174,15 +180,58 @@ public abstract class AbstractEqualityConstraintTheory extends AbstractConstrain
 
 					);
 
+	// Solvers for quantified formulas are shared by all simplifications with this theory;
+	// they keep no state of their own between solvings (their caches live in the rewriting process's global objects),
+	// so sharing them is safe across processes and threads.
+	private SGDPLLT universalQuantificationSolver   = new SGDPLLT(this, new Tautologicality());
+	private SGDPLLT existentialQuantificationSolver = new SGDPLLT(this, new Satisfiability());
+
+	private Pair<String, AbstractEqualityConstraintTheory> quantifiedFormulasCacheKey = new Pair<String, AbstractEqualityConstraintTheory>("quantified formulas cache", this);
+
 	private Map<String, BinaryFunction<Expression, RewritingProcess, Expression>> syntacticFormTypeSimplifiers =
 			Util.<String, BinaryFunction<Expression, RewritingProcess, Expression>>map(
 					ForAll.SYNTACTIC_FORM_TYPE,                             (BinaryFunction<Expression, RewritingProcess, Expression>) (f, process) ->
-					(new SGDPLLT(this, new Tautologicality())).rewrite(f, process),
+					solveQuantifiedFormula(universalQuantificationSolver, f, process),
 
 					ThereExists.SYNTACTIC_FORM_TYPE,                        (BinaryFunction<Expression, RewritingProcess, Expression>) (f, process) ->
-					(new SGDPLLT(this, new Satisfiability())).rewrite(f, process)
+					solveQuantifiedFormula(existentialQuantificationSolver, f, process)
 					);
 
+	/**
+	 * Solves a quantified formula with a given solver, memoizing results in a cache
+	 * kept in the process's global objects
+	 * (whose maximum size is given by {@link GrinderConfiguration#getQuantifiedFormulasCacheMaximumSize()}).
+	 * Because the solver starts from an empty contextual constraint,
+	 * the only context a result depends on is the types of the free symbols of the formula,
+	 * so these are part of the key along with the formula itself.
+	 * Nested quantifiers are simplified again every time an enclosing solver splits,
+	 * so the same (closed) quantified formulas tend to be solved many times in a process.
+	 */
+	private Expression solveQuantifiedFormula(SGDPLLT solver, Expression formula, RewritingProcess process) {
+		List<Expression> freeSymbols = ExpressionSummary.get(formula).getFreeSymbols();
+		List<Expression> typesOfFreeSymbols = new ArrayList<Expression>(freeSymbols.size());
+		for (Expression freeSymbol : freeSymbols) {
+			typesOfFreeSymbols.add(process.getContextualSymbolType(freeSymbol));
+		}
+		Pair<Expression, List<Expression>> key = new Pair<Expression, List<Expression>>(formula, typesOfFreeSymbols);
+		Cache<Pair<Expression, List<Expression>>, Expression> cache = getQuantifiedFormulasCache(process);
+		Expression result = cache.getIfPresent(key);
+		if (result == null) {
+			result = solver.rewrite(formula, process);
+			cache.put(key, result);
+		}
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Cache<Pair<Expression, List<Expression>>, Expression> getQuantifiedFormulasCache(RewritingProcess process) {
+		Cache<Pair<Expression, List<Expression>>, Expression> result =
+				(Cache<Pair<Expression, List<Expression>>, Expression>) process.getGlobalObjects().computeIfAbsent(
+						quantifiedFormulasCacheKey,
+						key -> CacheBuilder.newBuilder().maximumSize(GrinderConfiguration.getQuantifiedFormulasCacheMaximumSize()).build());
+		return result;
+	}
+
 	@Override
 	public Map<String, BinaryFunction<Expression, RewritingProcess, Expression>> getFunctionApplicationSimplifiers() {
 		return functionApplicationSimplifiers;
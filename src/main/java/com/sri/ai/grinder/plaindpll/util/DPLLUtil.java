@@ -55,6 +55,7 @@ import com.google.common.annotations.Beta;
 import com.google.common.base.Predicate;
 import com.sri.ai.expresso.api.Expression;
 import com.sri.ai.expresso.api.FunctionApplication;
+import com.sri.ai.expresso.api.IndexExpressionsSet;
 import com.sri.ai.expresso.core.DefaultUniversallyQuantifiedFormula;
 import com.sri.ai.expresso.helper.Expressions;
 import com.sri.ai.grinder.api.Rewriter;
@@ -65,9 +66,11 @@ import com.sri.ai.grinder.helper.GrinderUtil;
 import com.sri.ai.grinder.library.boole.Implication;
 import com.sri.ai.grinder.library.boole.Not;
 import com.sri.ai.grinder.library.controlflow.IfThenElse;
+import com.sri.ai.grinder.library.indexexpression.IndexExpressions;
 import com.sri.ai.grinder.plaindpll.api.Constraint;
 import com.sri.ai.grinder.plaindpll.api.ConstraintTheory;
 import com.sri.ai.grinder.plaindpll.core.SGDPLLT;
+import com.sri.ai.grinder.plaindpll.problemtype.ImplicationClassification;
 import com.sri.ai.grinder.plaindpll.problemtype.Tautologicality;
 import com.sri.ai.grinder.plaindpll.theory.EqualityConstraintTheory;
 import com.sri.ai.grinder.plaindpll.theory.term.SymbolTermTheory;
@@ -242,16 +245,50 @@ public class DPLLUtil {
 		return result;
 	}
 
+	/** The solver used by {@link #impliesExpressionOrItsNegationOrNeither(Expression, Expression, RewritingProcess)}, which is stateless and can be shared. */
+	private static final SGDPLLT implicationClassifier = new SGDPLLT(new EqualityConstraintTheory(new SymbolTermTheory()), new ImplicationClassification());
+	
 	/**
 	 * Returns 'true' if expression is tautologically implied by constraint,
 	 * 'false' if its negation is tautologically implied by constraint,
 	 * and expression itself otherwise.
+	 * This is decided by a single solving of an {@link ImplicationClassification} problem,
+	 * which stops as soon as expression is found to be true in some model of the constraint and false in another.
 	 * @param expression
 	 * @param constraint
 	 * @param process
 	 * @return
 	 */
 	public static Expression impliesExpressionOrItsNegationOrNeither(Expression expression, Expression constraint, RewritingProcess process) {
+		Expression result;
+		
+		Expression classificationProblem = ImplicationClassification.make(expression, constraint);
+		IndexExpressionsSet indexExpressions = getIndexExpressionsFromSymbolsAndTypes(freeVariablesAndTypes(classificationProblem, process));
+		RewritingProcess subProcess = GrinderUtil.extendContextualSymbolsWithIndexExpressions(indexExpressions, process);
+		Expression classification = implicationClassifier.solve(classificationProblem, IndexExpressions.getIndices(indexExpressions), subProcess);
+		if (classification.equals(ImplicationClassification.HOLDS) || classification.equals(ImplicationClassification.NO_MODELS)) {
+			result = Expressions.TRUE;
+		}
+		else if (classification.equals(ImplicationClassification.FAILS)) {
+			result = Expressions.FALSE;
+		}
+		else {
+			result = expression;
+		}
+		
+		return result;
+	}
+
+	/**
+	 * The original implementation of {@link #impliesExpressionOrItsNegationOrNeither(Expression, Expression, RewritingProcess)},
+	 * which checks whether constraint implies expression and then, if not, whether it implies its negation, with two tautologicality solvings.
+	 * It is kept as a reference for testing the former.
+	 * @param expression
+	 * @param constraint
+	 * @param process
+	 * @return
+	 */
+	public static Expression impliesExpressionOrItsNegationOrNeitherWithTwoTautologicalityChecks(Expression expression, Expression constraint, RewritingProcess process) {
 		Expression result = null;
 	
 		Expression constraintImpliesExpression = Implication.make(constraint, expression);
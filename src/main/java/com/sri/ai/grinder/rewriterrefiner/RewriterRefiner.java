@@ -76,6 +76,11 @@ import com.sri.ai.util.functionalsequence.AbstractFunctionalRefiner;
  * refinement is possible. In this case, implementations can override
  * {@link #resultIndicatesThatRefinerIsDone(Expression)} (the default always
  * returns false).
+ * <p>
+ * Several threads may refine refiners sharing children at once:
+ * children are created at most once per invocation, and the argument and process
+ * assigned to a child by its parents are only read and updated under the child's lock,
+ * which is also held while the child computes its function.
  * 
  * @author braz
  * 
@@ -96,7 +101,7 @@ public abstract class RewriterRefiner extends AbstractFunctionalRefiner<Expressi
 	}
 
 	@Override
-	protected Expression computeFunction() {		
+	protected synchronized Expression computeFunction() {		
 		if (isRootRefiner) {
 			// This is the root refiner, therefore increment the timestep.
 			timestep++;
@@ -125,22 +130,31 @@ public abstract class RewriterRefiner extends AbstractFunctionalRefiner<Expressi
 	protected RewriterRefiner getChildRewriterFunctionalRefiner(ChildRewriterInvocation childRewriterInvocation, String childRewriterName, Expression childExpression, RewritingProcess childProcess) {
 		RewriterRefiner result = null;
 
-		result = sharedRewriterRefiners.get(childRewriterInvocation);
-		if (result == null) {
-			result = makeChildRewriterRefiner(childRewriterName, childExpression, childProcess);
-			sharedRewriterRefiners.put(childRewriterInvocation, result);
+		synchronized (sharedRewriterRefiners) {
+			result = sharedRewriterRefiners.get(childRewriterInvocation);
+			if (result == null) {
+				result = makeChildRewriterRefiner(childRewriterName, childExpression, childProcess);
+				sharedRewriterRefiners.put(childRewriterInvocation, result);
+			}
 		}
 
-		// TODO - need a thread safe version of these assignments (also, super class logic to be reviewed for thread safety)!
-		//
 		// Note: Need to always update the expression for the bounds rewriters as the timestep will
 		// have been incremented.
-		result.expression = childExpression;
-		result.process    = childProcess;
+		result.setExpressionAndProcess(childExpression, childProcess);
 		
 		return result;
 	}
 
+	/**
+	 * Sets the argument expression and process used by the next computation of this refiner;
+	 * synchronized with {@link #computeFunction()} so that a computation never sees
+	 * the expression set by one parent and the process set by another.
+	 */
+	protected synchronized void setExpressionAndProcess(Expression expression, RewritingProcess process) {
+		this.expression = expression;
+		this.process    = process;
+	}
+
 	protected boolean resultIndicatesThatRefinerIsDone(Expression result) {
 		return false;
 	}
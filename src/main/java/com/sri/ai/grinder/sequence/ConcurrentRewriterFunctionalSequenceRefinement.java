@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.grinder.sequence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.expresso.api.Expression;
+
+/**
+ * Advances several {@link RewriterFunctionalSequence}s concurrently, for example
+ * independent children of an anytime computation, so that their values improve
+ * on many cores before a deadline.
+ * <p>
+ * Each sequence is advanced one value at a time, by a task that re-schedules itself
+ * while the sequence has further values and the deadline has not passed,
+ * so all sequences make progress even when there are more of them than threads,
+ * and a sequence is never advanced by two threads at once.
+ * Sequences may share child sequences (see {@link RewriterFunctionalSequence} on thread safety).
+ * Only the given sequences are scheduled: their child sequences are advanced by them, when they need updated arguments,
+ * since advancing a child independently would produce values its parents never see.
+ * <p>
+ * The tasks of all refinements run on a single pool of daemon threads, created along with this object.
+ * 
+ * @author braz
+ *
+ */
+@Beta
+public class ConcurrentRewriterFunctionalSequenceRefinement {
+
+	private ExecutorService executor;
+	
+	public ConcurrentRewriterFunctionalSequenceRefinement(int numberOfThreads) {
+		this.executor = Executors.newFixedThreadPool(numberOfThreads, ConcurrentRewriterFunctionalSequenceRefinement::makeDaemonThread);
+	}
+	
+	/**
+	 * Advances given sequences until they are all over or a time limit (in milliseconds, with non-positive values meaning no limit) is reached,
+	 * and returns the latest value of each sequence, or <code>null</code> for sequences that have not produced any value.
+	 * When the time limit is reached, values being computed at that point are interrupted
+	 * and waited for (but not used), so sequences are no longer being advanced when this method returns.
+	 */
+	public List<Expression> refine(List<? extends RewriterFunctionalSequence> sequences, long timeLimitInMilliseconds) {
+		long deadline = timeLimitInMilliseconds > 0? System.currentTimeMillis() + timeLimitInMilliseconds : Long.MAX_VALUE;
+		Refinement refinement = new Refinement(sequences.size(), deadline);
+		try {
+			for (int i = 0; i != sequences.size(); i++) {
+				refinement.schedule(new Step(sequences.get(i), i, refinement));
+			}
+			refinement.awaitEndOrDeadline();
+		}
+		catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			refinement.end();
+		}
+		
+		if (refinement.failure.get() != null) {
+			throw new Error("Refinement of rewriter functional sequence failed", refinement.failure.get());
+		}
+		
+		List<Expression> result = new ArrayList<Expression>(sequences.size());
+		for (int i = 0; i != sequences.size(); i++) {
+			result.add(refinement.latestValues.get(i));
+		}
+		return result;
+	}
+	
+	//
+	// PRIVATE
+	//
+	
+	private class Refinement {
+		public AtomicReferenceArray<Expression> latestValues;
+		public AtomicReferenceArray<Future<?>> scheduledSteps;
+		public CountDownLatch numberOfSequencesNotOver;
+		public AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		public long deadline;
+		private boolean ended = false;
+		private int numberOfRunningSteps = 0;
+		
+		public Refinement(int numberOfSequences, long deadline) {
+			this.latestValues = new AtomicReferenceArray<Expression>(numberOfSequences);
+			this.scheduledSteps = new AtomicReferenceArray<Future<?>>(numberOfSequences);
+			this.numberOfSequencesNotOver = new CountDownLatch(numberOfSequences);
+			this.deadline = deadline;
+		}
+		
+		public boolean isActive() {
+			return failure.get() == null && System.currentTimeMillis() < deadline;
+		}
+
+		public synchronized void schedule(Step step) {
+			if (ended) {
+				numberOfSequencesNotOver.countDown();
+			}
+			else {
+				scheduledSteps.set(step.index, executor.submit(step));
+			}
+		}
+		
+		/** Registers the start of a step, unless the refinement has ended, in which case the step must not run. */
+		public synchronized boolean startStep() {
+			if ( ! ended) {
+				numberOfRunningSteps++;
+			}
+			return ! ended;
+		}
+		
+		public synchronized void endStep() {
+			numberOfRunningSteps--;
+			if (numberOfRunningSteps == 0) {
+				notifyAll();
+			}
+		}
+		
+		public synchronized boolean hasEnded() {
+			return ended;
+		}
+
+		public void awaitEndOrDeadline() throws InterruptedException {
+			long remaining;
+			while ((remaining = deadline - System.currentTimeMillis()) > 0) {
+				if (numberOfSequencesNotOver.await(remaining, TimeUnit.MILLISECONDS)) {
+					break;
+				}
+			}
+		}
+		
+		/**
+		 * Prevents further steps from running, interrupts the running ones and waits for them to finish.
+		 */
+		public void end() {
+			synchronized (this) {
+				ended = true;
+			}
+			for (int i = 0; i != scheduledSteps.length(); i++) {
+				Future<?> step = scheduledSteps.get(i);
+				if (step != null) {
+					step.cancel(true);
+				}
+			}
+			boolean interrupted = false;
+			synchronized (this) {
+				while (numberOfRunningSteps != 0) {
+					try {
+						wait();
+					}
+					catch (InterruptedException exception) {
+						interrupted = true; // steps must still be waited for, since they use the sequences
+					}
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	private static class Step implements Runnable {
+		private RewriterFunctionalSequence sequence;
+		private int index;
+		private Refinement refinement;
+		
+		public Step(RewriterFunctionalSequence sequence, int index, Refinement refinement) {
+			this.sequence = sequence;
+			this.index = index;
+			this.refinement = refinement;
+		}
+		
+		@Override
+		public void run() {
+			if (refinement.startStep()) {
+				try {
+					if (refinement.isActive() && sequence.hasNext()) {
+						refinement.latestValues.set(index, sequence.next());
+						refinement.schedule(this);
+					}
+					else {
+						refinement.numberOfSequencesNotOver.countDown();
+					}
+				}
+				catch (Throwable throwable) {
+					if ( ! refinement.hasEnded()) { // otherwise, it may have been caused by interrupting the step
+						refinement.failure.compareAndSet(null, throwable);
+					}
+					refinement.numberOfSequencesNotOver.countDown();
+				}
+				finally {
+					refinement.endStep();
+				}
+			}
+		}
+	}
+
+	private static Thread makeDaemonThread(Runnable runnable) {
+		Thread result = new Thread(runnable, "rewriter functional sequence refinement");
+		result.setDaemon(true); // so that the pool does not keep the application running
+		return result;
+	}
+}
@@ -70,14 +70,17 @@ import com.sri.ai.util.functionalsequence.AbstractFunctionalSequence;
  * , which always return false, pick the first argument sequence with available
  * values, and computes the function normally, respectively.
  * 
- * Because each invocation of a rewriter or sub-rewriter may involve a new
- * rewriting process instance, this class provides a getter and setter for the
- * rewriting process. This is used right before a new value in the rewriter's
- * functional sequence is requested, so it may be that the rewriter in a
- * RewriterFunctionalSequence is run under a different process than the one it
- * was constructed with. However, in these cases the context should still be the
- * same, since it is used to locate the RewriterFunctionalSequence to being
- * with.
+ * Each invocation of a rewriter or sub-rewriter may involve a new
+ * rewriting process instance, but a child sequence always runs its rewriter
+ * under the process it was constructed with, since the context of the processes
+ * of all invocations sharing it is the same (it is used to locate the
+ * RewriterFunctionalSequence to begin with).
+ * 
+ * Functional sequences sharing child sequences may be advanced by several threads at once
+ * (see {@link ConcurrentRewriterFunctionalSequenceRefinement}):
+ * child sequences are created at most once per invocation, and a sequence is only advanced
+ * (which includes computing its function and advancing its own arguments) under its lock,
+ * so a child shared by several parents is advanced by one of them at a time.
  * 
  * @author braz
  */
@@ -106,6 +109,16 @@ public abstract class RewriterFunctionalSequence extends AbstractFunctionalSeque
 	
 	protected abstract RewriterFunctionalSequence newInstance(String childRewriterName, Expression childCallExpression, RewritingProcess childCallProcess);
 
+	@Override
+	public synchronized boolean hasNext() {
+		return super.hasNext();
+	}
+
+	@Override
+	public synchronized Expression next() {
+		return super.next();
+	}
+
 	@Override
 	protected Expression computeFunction() {	
 		Expression result = process.rewrite(rewriterName, arguments, intercepter);
@@ -176,16 +189,14 @@ public abstract class RewriterFunctionalSequence extends AbstractFunctionalSeque
 	private RewriterFunctionalSequence getChildRewriterFunctionalSequence(ChildRewriterInvocation childRewriterInvocation, String childRewriterName, Expression childExpression, RewritingProcess childProcess) {
 		RewriterFunctionalSequence result = null;
 
-		result = sharedRewriterFunctionalSequences.get(childRewriterInvocation);
-		if (result == null) {
-			result = newInstance(childRewriterName, childExpression, childProcess);
-			sharedRewriterFunctionalSequences.put(childRewriterInvocation, result);
+		synchronized (sharedRewriterFunctionalSequences) {
+			result = sharedRewriterFunctionalSequences.get(childRewriterInvocation);
+			if (result == null) {
+				result = newInstance(childRewriterName, childExpression, childProcess);
+				sharedRewriterFunctionalSequences.put(childRewriterInvocation, result);
+			}
 		}
 		
-		// TODO - need a better way for the functional sequence
-		// to the childRequest information.
-		result.process = process;
-		
 		return result;
 	}
 
@@ -37,6 +37,9 @@
  */
 package com.sri.ai.grinder.shell;
 
+import java.io.IOException;
+import java.util.Arrays;
+
 import com.google.common.annotations.Beta;
 import com.sri.ai.expresso.api.Expression;
 import com.sri.ai.grinder.api.Library;
@@ -47,6 +50,10 @@ import com.sri.ai.grinder.parser.antlr.AntlrGrinderParserWrapper;
 import com.sri.ai.util.collect.ConsoleIterator;
 
 /**
+ * An interactive shell evaluating expressions with an {@link ExhaustiveRewriter} on the {@link CommonLibrary}.
+ * <p>
+ * If arguments are given, they are evaluated and the shell exits instead,
+ * unless the first one is <code>--daemon</code>, in which case a {@link ShellDaemon} is run with the remaining arguments.
  * 
  * @author braz
  *
@@ -54,13 +61,22 @@ import com.sri.ai.util.collect.ConsoleIterator;
 @Beta
 public class Shell {
 
-	public static void main(String[] args) {
-		run(new CommonLibrary());
+	public static void main(String[] args) throws IOException {
+		if (args.length > 0 && args[0].equals("--daemon")) {
+			ShellDaemon.main(Arrays.copyOfRange(args, 1, args.length));
+		}
+		else if (args.length > 0) {
+			evaluate(new CommonLibrary(), args);
+		}
+		else {
+			run(new CommonLibrary());
+		}
 	}
 
 	private static AntlrGrinderParserWrapper parser = new AntlrGrinderParserWrapper();
 	
 	public static void run(Library library) {
+		AntlrGrinderParserWrapper.warmUp();
 		Rewriter evaluator = new ExhaustiveRewriter(library);
 		ConsoleIterator consoleIterator = new ConsoleIterator();
 		
@@ -71,4 +87,16 @@ public class Shell {
 			System.out.println(result);
 		}
 	}
+	
+	/**
+	 * Evaluates the given expressions and prints their results.
+	 */
+	public static void evaluate(Library library, String[] expressions) {
+		Rewriter evaluator = new ExhaustiveRewriter(library);
+		for (String expression : expressions) {
+			Expression parse = parser.parse(expression);
+			Expression result = evaluator.rewrite(parse);
+			System.out.println(result);
+		}
+	}
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.grinder.shell;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * A client of a {@link ShellDaemon} running on the local machine.
+ * 
+ * @author braz
+ *
+ */
+@Beta
+public class ShellClient implements Closeable {
+
+	private Socket          socket;
+	private OutputStream    output;
+	private DataInputStream input;
+
+	public ShellClient(int port) throws IOException {
+		this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+		this.socket.setTcpNoDelay(true);
+		this.output = new BufferedOutputStream(socket.getOutputStream());
+		this.input  = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+	}
+
+	/**
+	 * Sends a request and waits for its response.
+	 */
+	public ShellDaemon.Response request(String request) throws IOException {
+		send(request);
+		output.flush();
+		ShellDaemon.Response result = receive();
+		return result;
+	}
+
+	/**
+	 * Sends all requests before reading their responses, so that the daemon can evaluate them concurrently.
+	 */
+	public List<ShellDaemon.Response> requestAll(List<String> requests) throws IOException {
+		for (String request : requests) {
+			send(request);
+		}
+		output.flush();
+		List<ShellDaemon.Response> result = new ArrayList<ShellDaemon.Response>(requests.size());
+		for (int i = 0; i != requests.size(); i++) {
+			result.add(receive());
+		}
+		return result;
+	}
+
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private void send(String request) throws IOException {
+		if (request.indexOf('\n') != -1 || request.indexOf('\r') != -1) {
+			throw new Error("Shell daemon requests must be single lines, but got " + request);
+		}
+		output.write(request.getBytes(StandardCharsets.UTF_8));
+		output.write('\n');
+	}
+
+	private ShellDaemon.Response receive() throws IOException {
+		String header = readLine();
+		int space = header.indexOf(' ');
+		if (space == -1) {
+			throw new IOException("Invalid response header from shell daemon: " + header);
+		}
+		String status = header.substring(0, space);
+		byte[] payload = new byte[Integer.parseInt(header.substring(space + 1))];
+		input.readFully(payload);
+		if (input.read() != '\n') {
+			throw new IOException("Response from shell daemon not terminated by new line");
+		}
+		ShellDaemon.Response result = new ShellDaemon.Response(status, new String(payload, StandardCharsets.UTF_8));
+		return result;
+	}
+
+	private String readLine() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		int b;
+		while ((b = input.read()) != '\n') {
+			if (b == -1) {
+				throw new EOFException("Shell daemon closed the connection");
+			}
+			bytes.write(b);
+		}
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.grinder.shell;
+
+import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.api.Parser;
+import com.sri.ai.expresso.helper.ParseResult;
+import com.sri.ai.grinder.api.Library;
+import com.sri.ai.grinder.api.Rewriter;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.core.ExhaustiveRewriter;
+import com.sri.ai.grinder.helper.GrinderUtil;
+import com.sri.ai.grinder.helper.concurrent.CancellationToken;
+import com.sri.ai.grinder.library.CommonLibrary;
+import com.sri.ai.grinder.parser.antlr.AntlrGrinderParserWrapper;
+
+/**
+ * A daemon version of {@link Shell}, which keeps a warm parser and {@link ExhaustiveRewriter}
+ * and evaluates requests received over loopback sockets, so that clients do not pay for JVM start up,
+ * class loading and rewriter construction at every query.
+ * <p>
+ * Requests are expressions, one per line. Each request is evaluated in a rewriting process of its own
+ * (so no contextual state is shared between requests), by a pool of threads,
+ * so requests from a connection (and from different connections) are evaluated concurrently.
+ * Evaluations taking longer than a time out (counted from the moment they start) are cancelled.
+ * <p>
+ * Responses are sent in the order of the requests of each connection, in frames made of a header line
+ * <code>&lt;status&gt; &lt;length&gt;</code>, where status is one of {@link #OK}, {@link #ERROR} or {@link #TIMEOUT},
+ * followed by a payload of <code>length</code> bytes (in UTF-8) and a new line.
+ * The payload is the result of the evaluation if status is {@link #OK}, and a message explaining the failure otherwise.
+ * {@link ShellClient} implements this protocol.
+ * 
+ * @author braz
+ *
+ */
+@Beta
+public class ShellDaemon implements Closeable {
+
+	public static final String OK      = "OK";
+	public static final String ERROR   = "ERROR";
+	public static final String TIMEOUT = "TIMEOUT";
+	
+	public static final int  DEFAULT_PORT                            = 7357;
+	public static final long DEFAULT_REQUEST_TIMEOUT_IN_MILLISECONDS = 60000;
+
+	/**
+	 * The status and payload of a response.
+	 */
+	public static class Response {
+		public final String status;
+		public final String payload;
+		
+		public Response(String status, String payload) {
+			this.status  = status;
+			this.payload = payload;
+		}
+		
+		public boolean isOK() {
+			return status.equals(OK);
+		}
+		
+		@Override
+		public String toString() {
+			return status + ": " + payload;
+		}
+	}
+	
+	// marks the end of the requests of a connection in its queue of responses
+	private static final Future<Response> END_OF_REQUESTS = new CompletableFuture<Response>();
+
+	private Rewriter                 evaluator;
+	private Parser                   parser;
+	private long                     requestTimeoutInMilliseconds;
+	private ServerSocket             serverSocket;
+	private ExecutorService          requestExecutor;
+	private ExecutorService          connectionExecutor;
+	private ScheduledExecutorService timeoutScheduler;
+	private volatile boolean         closed = false;
+
+	/**
+	 * Makes a daemon evaluating requests with an {@link ExhaustiveRewriter} on a given library,
+	 * listening on a given port of the loopback interface (0 for any free port),
+	 * with a given number of threads and request time out.
+	 */
+	public ShellDaemon(Library library, int port, int numberOfThreads, long requestTimeoutInMilliseconds) throws IOException {
+		this.evaluator                    = new ExhaustiveRewriter(library);
+		this.parser                       = new AntlrGrinderParserWrapper();
+		this.requestTimeoutInMilliseconds = requestTimeoutInMilliseconds;
+		this.serverSocket                 = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		this.requestExecutor              = Executors.newFixedThreadPool(numberOfThreads, runnable -> makeDaemonThread(runnable, "Shell daemon request"));
+		this.connectionExecutor           = Executors.newCachedThreadPool(runnable -> makeDaemonThread(runnable, "Shell daemon connection"));
+		this.timeoutScheduler             = Executors.newSingleThreadScheduledExecutor(runnable -> makeDaemonThread(runnable, "Shell daemon time out"));
+		warmUp();
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Starts accepting connections in a thread of its own.
+	 */
+	public void start() {
+		makeDaemonThread(this::acceptConnections, "Shell daemon").start();
+	}
+
+	/**
+	 * Evaluates a request (see class description), in the current thread.
+	 */
+	public Response evaluate(String request) {
+		ParseResult parseResult = parser.parseWithErrorReport(request);
+		Expression expression = parseResult.getExpression();
+		if (expression == null) {
+			return new Response(ERROR, String.join("\n", parseResult.getErrors()));
+		}
+		
+		RewritingProcess process = evaluator.makeRewritingProcess(expression);
+		process = GrinderUtil.extendContextualSymbolsWithFreeSymbolsInExpressionwithUnknownTypeForSetUpPurposesOnly(expression, process);
+		CancellationToken cancellationToken = process.getCancellationToken();
+		ScheduledFuture<?> timeout = timeoutScheduler.schedule(cancellationToken::cancel, requestTimeoutInMilliseconds, TimeUnit.MILLISECONDS);
+		Response result;
+		try {
+			Expression value = evaluator.rewrite(expression, process);
+			result = new Response(OK, value.toString());
+		}
+		catch (Throwable throwable) {
+			// cancellation may reach us wrapped by branch-and-merge executors,
+			// or as the failure of a cancelled sub-task, so we go by the token rather than by the type
+			if (cancellationToken.isCancelled() || isCausedByCancellation(throwable)) {
+				result = new Response(TIMEOUT, "Evaluation of " + request + " took longer than " + requestTimeoutInMilliseconds + " ms");
+			}
+			else {
+				result = new Response(ERROR, throwable.toString());
+			}
+		}
+		finally {
+			timeout.cancel(false);
+		}
+		return result;
+	}
+
+	private static boolean isCausedByCancellation(Throwable throwable) {
+		for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+			if (cause instanceof CancellationToken.RewritingCancelled) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		serverSocket.close();
+		connectionExecutor.shutdownNow();
+		requestExecutor.shutdownNow();
+		timeoutScheduler.shutdownNow();
+	}
+
+	/**
+	 * Runs a daemon for the {@link CommonLibrary}, with optional arguments port, number of threads, and request time out in milliseconds.
+	 */
+	public static void main(String[] args) throws IOException {
+		int  port                         = args.length > 0? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int  numberOfThreads              = args.length > 1? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		long requestTimeoutInMilliseconds = args.length > 2? Long.parseLong(args[2])   : DEFAULT_REQUEST_TIMEOUT_IN_MILLISECONDS;
+		ShellDaemon daemon = new ShellDaemon(new CommonLibrary(), port, numberOfThreads, requestTimeoutInMilliseconds);
+		System.out.println("Shell daemon listening on port " + daemon.getPort());
+		System.out.flush();
+		daemon.acceptConnections();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private void warmUp() {
+		AntlrGrinderParserWrapper.warmUp();
+		evaluate("if X = a then 1 + 2 else 3");
+	}
+
+	private void acceptConnections() {
+		while ( ! closed) {
+			try {
+				Socket socket = serverSocket.accept();
+				connectionExecutor.execute(() -> serve(socket));
+			}
+			catch (IOException ioException) {
+				if ( ! closed) {
+					System.err.println("Shell daemon could not accept connection: " + ioException);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the requests of a connection and submits them for evaluation,
+	 * while another thread writes their responses in order.
+	 */
+	private void serve(Socket socket) {
+		BlockingQueue<Future<Response>> responses = new LinkedBlockingQueue<Future<Response>>();
+		Future<?> writer = connectionExecutor.submit(() -> writeResponses(socket, responses));
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+			String request;
+			while ( ! closed && (request = reader.readLine()) != null) {
+				if ( ! request.trim().isEmpty()) {
+					String finalRequest = request;
+					responses.add(requestExecutor.submit(() -> evaluate(finalRequest)));
+				}
+			}
+		}
+		catch (IOException ioException) {
+			// connection closed by client; pending responses are still attempted
+		}
+		finally {
+			responses.add(END_OF_REQUESTS);
+		}
+		try {
+			writer.get();
+		}
+		catch (InterruptedException | ExecutionException exception) {
+			// the connection is closed below anyway
+		}
+		finally {
+			try {
+				socket.close();
+			}
+			catch (IOException ioException) {
+				// nothing else to do
+			}
+		}
+	}
+
+	private Void writeResponses(Socket socket, BlockingQueue<Future<Response>> responses) throws IOException, InterruptedException {
+		OutputStream output = new BufferedOutputStream(socket.getOutputStream());
+		Future<Response> future;
+		while ((future = responses.take()) != END_OF_REQUESTS) {
+			Response response;
+			try {
+				response = future.get();
+			}
+			catch (ExecutionException executionException) {
+				response = new Response(ERROR, executionException.getCause().toString());
+			}
+			writeFrame(response, output);
+			if (responses.isEmpty()) {
+				output.flush();
+			}
+		}
+		output.flush();
+		return null;
+	}
+
+	private static void writeFrame(Response response, OutputStream output) throws IOException {
+		byte[] payload = response.payload.getBytes(StandardCharsets.UTF_8);
+		output.write((response.status + " " + payload.length + "\n").getBytes(StandardCharsets.UTF_8));
+		output.write(payload);
+		output.write('\n');
+	}
+
+	private static Thread makeDaemonThread(Runnable runnable, String name) {
+		Thread result = new Thread(runnable, name);
+		result.setDaemon(true);
+		return result;
+	}
+}
@@ -7,8 +7,12 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.api.Symbol;
 import com.sri.ai.expresso.helper.Expressions;
 import com.sri.ai.expresso.helper.SyntaxTrees;
+import com.sri.ai.grinder.plaindpll.group.SymbolicPlusGroup;
+import com.sri.ai.util.math.Rational;
 
 public class DefaultSymbolTest {
 	int oldPrecision;
@@ -82,6 +86,30 @@ public class DefaultSymbolTest {
 		Assert.assertEquals("-1234567890",  Expressions.makeSymbol(-1234567890).toString());
 	}
 	
+	@Test
+	public void testIntegerSymbols() {
+		// small integers are shared regardless of how they are created
+		Assert.assertSame(Expressions.makeSymbol(7),    Expressions.makeSymbol(new Rational(7)));
+		Assert.assertSame(Expressions.makeSymbol(1000), Expressions.makeSymbol(1000L));
+		Assert.assertSame(Expressions.makeSymbol(-5),   Expressions.makeSymbol(new Rational(-5)));
+		
+		// longs are converted exactly
+		Symbol large = Expressions.makeSymbol(9007199254740993L);
+		Assert.assertTrue(large.hasLongValue());
+		Assert.assertEquals(9007199254740993L, large.longValue());
+		Assert.assertEquals(new Rational("9007199254740993"), large.rationalValue());
+		
+		Assert.assertFalse(Expressions.makeSymbol(0.5).hasLongValue());
+		Assert.assertFalse(Expressions.makeSymbol("a").hasLongValue());
+		
+		// primitive arithmetic is promoted to arbitrary precision on overflow
+		SymbolicPlusGroup group = new SymbolicPlusGroup();
+		Assert.assertEquals(Expressions.makeSymbol(5), group.add(Expressions.makeSymbol(2), Expressions.makeSymbol(3), null));
+		Expression overflown = group.add(Expressions.makeSymbol(Long.MAX_VALUE), Expressions.ONE, null);
+		Assert.assertEquals(new Rational(Long.toString(Long.MAX_VALUE)).add(new Rational(1)), overflown.rationalValue());
+		Assert.assertFalse(((Symbol) overflown).hasLongValue());
+	}
+	
 	@Test
 	public void testScientificOutput() {
 		//
@@ -61,6 +61,7 @@ import com.sri.ai.expresso.helper.Expressions;
 import com.sri.ai.expresso.helper.SubExpressionsDepthFirstIterator;
 import com.sri.ai.expresso.helper.SyntaxTrees;
 import com.sri.ai.grinder.api.Library;
+import com.sri.ai.grinder.api.Module;
 import com.sri.ai.grinder.api.Rewriter;
 import com.sri.ai.grinder.api.RewritingProcess;
 import com.sri.ai.grinder.core.AbstractRewriter;
@@ -71,6 +72,7 @@ import com.sri.ai.grinder.core.ExhaustiveRewriter;
 import com.sri.ai.grinder.core.OpenInterpretationModule;
 import com.sri.ai.grinder.core.TotalRewriter;
 import com.sri.ai.grinder.helper.GrinderUtil;
+import com.sri.ai.grinder.helper.SymbolRenaming;
 import com.sri.ai.grinder.library.Associative;
 import com.sri.ai.grinder.library.Basic;
 import com.sri.ai.grinder.library.CommonLibrary;
@@ -99,6 +101,7 @@ import com.sri.ai.grinder.library.equality.injective.DisequalityOnInjectiveSubEx
 import com.sri.ai.grinder.library.equality.injective.DisequalityOnMutuallyExclusiveCoDomainExpressions;
 import com.sri.ai.grinder.library.equality.injective.EqualityOnInjectiveSubExpressions;
 import com.sri.ai.grinder.library.equality.injective.EqualityOnMutuallyExclusiveCoDomainExpressions;
+import com.sri.ai.grinder.library.function.DeclaresInjectiveFunctions;
 import com.sri.ai.grinder.library.function.InjectiveModule;
 import com.sri.ai.grinder.library.function.MutuallyExclusiveCoDomainsModule;
 import com.sri.ai.grinder.library.lambda.LambdaApplication;
@@ -122,6 +125,7 @@ import com.sri.ai.grinder.library.set.intensional.IntensionalSetWithFalseConditi
 import com.sri.ai.grinder.library.set.intensional.IntensionalUniSetWithIndicesNotUsedInHead;
 import com.sri.ai.grinder.library.set.tuple.Tuple;
 import com.sri.ai.util.Util;
+import com.sri.ai.util.base.Pair;
 import com.sri.ai.util.math.Rational;
 
 public class GrinderTest extends AbstractGrinderTest {
@@ -928,6 +932,85 @@ public class GrinderTest extends AbstractGrinderTest {
 		testSemanticSubstitute(replacements, process);
 	}
 
+	@Test
+	public void testSemanticSubstituteWithMultipleReplacementsAgreesWithSequentialSubstitution() {
+		Library library = new DefaultLibrary(
+				new IntensionalSetWithFalseConditionIsEmptySet(),
+				new ImposedConditionsModule(),
+				new Tuple(),
+				new SyntacticFunctionsSubExpressionsProvider("type"),
+				new IfThenElseSubExpressionsAndImposedConditionsProvider(),
+				new CompleteNormalize());
+		evaluator = new ExhaustiveRewriter(library);
+
+		Map<Expression, Expression> replacements;
+
+		RewritingProcess process = newRewritingProcessWithCardinalityAndCounts(evaluator);
+
+		// commuting replacements, applied in a single pass
+		expression   = parse("p(X) + q(a) + r");
+		replacements = Util.map(parse("p(a)"), parse("1"), parse("q(a)"), parse("2"), parse("r"), parse("3"));
+		expected     = parse("(if X = a then 1 else p(X)) + 2 + 3");
+		testSemanticSubstituteAgreesWithSequentialSubstitution(replacements, process);
+
+		// replacements on the same function apply in order to the result of the previous ones
+		expression   = parse("p(X) + p(b)");
+		replacements = Util.map(parse("p(a)"), parse("1"), parse("p(b)"), parse("2"));
+		expected     = parse("(if X = a then 1 else if X = b then 2 else p(X)) + 2");
+		testSemanticSubstituteAgreesWithSequentialSubstitution(replacements, process);
+
+		// the same occurrences many times
+		expression   = parse("f(p(X), q(Y), p(X), q(Y), p(X), g(q(Y), p(X)))");
+		replacements = Util.map(parse("p(a)"), parse("1"), parse("q(b)"), parse("2"), parse("r(c)"), parse("3"));
+		expected     = parse("f(if X = a then 1 else p(X), if Y = b then 2 else q(Y), if X = a then 1 else p(X), if Y = b then 2 else q(Y), if X = a then 1 else p(X), g(if Y = b then 2 else q(Y), if X = a then 1 else p(X)))");
+		testSemanticSubstituteAgreesWithSequentialSubstitution(replacements, process);
+
+		// quantifications not involving replaced functions
+		expression   = parse("{(on Z) p(Z) + q(X)}");
+		replacements = Util.map(parse("p(a)"), parse("1"), parse("q(b)"), parse("2"));
+		expected     = parse("{(on Z) (if Z = a then 1 else p(Z)) + (if X = b then 2 else q(X))}");
+		testSemanticSubstituteAgreesWithSequentialSubstitution(replacements, process);
+
+		// non-commuting replacements (replaced symbol in a replacement), applied sequentially
+		expression   = parse("x + 2");
+		replacements = Util.map(parse("x"), parse("2"), parse("2"), parse("10"));
+		expected     = parse("10 + 10");
+		testSemanticSubstituteAgreesWithSequentialSubstitution(replacements, process);
+
+		// non-commuting replacements (replaced symbol in an argument of another's occurrence), applied sequentially
+		expression   = parse("p(X)");
+		replacements = Util.map(parse("p(a)"), parse("1"), parse("X"), parse("b"));
+		expected     = parse("if b = a then 1 else p(b)");
+		testSemanticSubstituteAgreesWithSequentialSubstitution(replacements, process);
+
+		// non-commuting replacements (replaced function in a quantification), applied sequentially
+		expression   = parse("{(on p(Y)) p(a) + q(a)}");
+		replacements = Util.map(parse("p(a)"), parse("1"), parse("q(a)"), parse("2"));
+		expected     = parse("{(on p(Y)) (if Y != a then 1 else p(a)) + 2}");
+		testSemanticSubstituteAgreesWithSequentialSubstitution(replacements, process);
+
+		// non-commuting replacements (replaced symbol in a condition constraining an occurrence), applied sequentially
+		expression   = parse("if X = c then p(X) else 0");
+		replacements = Util.map(parse("p(a)"), parse("1"), parse("X"), parse("a"));
+		testSemanticSubstituteAgreesWithSequentialSubstitution(replacements, process);
+	}
+
+	/**
+	 * Checks that semantic substitution of given replacements in {@link #expression}
+	 * gives the same result as applying them sequentially,
+	 * and that this result is {@link #expected} if the latter is not null (and then sets it to null).
+	 */
+	private void testSemanticSubstituteAgreesWithSequentialSubstitution(Map<Expression, Expression> replacements, RewritingProcess process) {
+		RewritingProcess subProcess = extendContext(expression, replacements, expected == null? Expressions.TRUE : expected, process);
+		Expression sequentialResult = SemanticSubstitute.replaceAllSequentially(expression, replacements, subProcess);
+		Expression result = SemanticSubstitute.replaceAll(expression, replacements, subProcess);
+		assertEquals(sequentialResult, result);
+		if (expected != null) {
+			assertEquals(expected, result);
+			expected = null;
+		}
+	}
+
 	private void testSemanticSubstitute(Map<Expression, Expression> replacements, RewritingProcess process) {
 		Expression result;
 		RewritingProcess subProcess;
@@ -1102,6 +1185,98 @@ public class GrinderTest extends AbstractGrinderTest {
 		Assert.assertEquals("true", expressionsAndContext.get(1).getConstrainingCondition().toString());
 	}
 
+	@Test
+	public void testModuleDispatchAgreesWithLinearScanOfProviders() {
+		Tuple tuple = new Tuple();
+		IfThenElseSubExpressionsAndImposedConditionsProvider ifThenElseProvider = new IfThenElseSubExpressionsAndImposedConditionsProvider();
+		DeclaresInjectiveFunctions declaresInjectiveF = new DeclaresInjectiveFunctions("f");
+		Library library = new DefaultLibrary(
+				new ImposedConditionsModule(),
+				new InjectiveModule(),
+				tuple,
+				ifThenElseProvider,
+				declaresInjectiveF);
+		
+		evaluator = new ExhaustiveRewriter(library);
+		
+		Expression expression = parse("aConstantSymbol");
+		RewritingProcess process = new DefaultRewritingProcess(expression, evaluator);
+		ImposedConditionsModule imposedConditionsModule = (ImposedConditionsModule) process.findModule(ImposedConditionsModule.class);
+		InjectiveModule injectiveModule = (InjectiveModule) process.findModule(InjectiveModule.class);
+
+		// a provider not declaring what it knows about is consulted for all expressions
+		InjectiveModule.Provider undeclaredProvider = (e, p) -> e.hasFunctor("g")? "g application" : null;
+		injectiveModule.register(undeclaredProvider);
+		Assert.assertEquals(Util.list(undeclaredProvider), injectiveModule.getProvidersFor(parse("h(X)")));
+		Assert.assertEquals(Util.list(declaresInjectiveF, undeclaredProvider), injectiveModule.getProvidersFor(parse("f(X)")));
+		Assert.assertEquals(Util.list(tuple, undeclaredProvider), injectiveModule.getProvidersFor(parse("(a, b)")));
+		Assert.assertEquals(Util.list(ifThenElseProvider), imposedConditionsModule.getProvidersFor(parse("if A = B then 1 else 2")));
+		Assert.assertEquals(Util.list(), imposedConditionsModule.getProvidersFor(parse("f(X)")));
+		
+		for (String expressionString : Util.list(
+				"if A = B then f(X) else g(Y)",
+				"if f(X) = a then (a, b) else if X = Y then g(1, 2) else tuple(h(X))",
+				"f(X, Y) + g(X) + h(X)",
+				"{(on X) if X = a then f(X) else (X, a) | X != b}",
+				"there exists X : if X = Y then f(X) = g(Y) else (X, Y) = (Y, X)")) {
+			
+			expression = parse(expressionString);
+			for (Expression subExpression : Util.listFrom(new SubExpressionsDepthFirstIterator(expression))) {
+				for (int i = 0; i != 2; i++) { // second time around, results come from the memoization cache
+					Assert.assertEquals(
+							getConditionsExpressionImposesOnSubExpressionsByLinearScan(imposedConditionsModule, subExpression, process),
+							imposedConditionsModule.getConditionsExpressionImposesOnSubExpressions(subExpression, process));
+					Assert.assertEquals(
+							getInjectiveFunctionTokenByLinearScan(injectiveModule, subExpression, process),
+							injectiveModule.getInjectiveFunctionToken(subExpression, process));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testModuleKeepsProvidersWhileAnyProcessUsingItIsActive() {
+		InjectiveModule injectiveModule = new InjectiveModule();
+		Tuple tuple = new Tuple();
+		evaluator = new ExhaustiveRewriter(new DefaultLibrary(injectiveModule, tuple));
+		RewritingProcess process1 = new DefaultRewritingProcess(parse("a"), evaluator);
+		RewritingProcess process2 = new DefaultRewritingProcess(parse("b"), evaluator);
+		
+		InjectiveModule.register(tuple, process1);
+		injectiveModule.rewritingProcessInitiated(process2);
+		Assert.assertEquals(Util.list(tuple), injectiveModule.getProviders());
+		
+		// the end of a process does not take providers away from another one still using the module,
+		// even if it is notified more than once (as happens when its root rewriter is run again)
+		injectiveModule.rewritingProcessFinalized(process1);
+		injectiveModule.rewritingProcessFinalized(process1);
+		Assert.assertEquals(Util.list(tuple), injectiveModule.getProviders());
+		Assert.assertEquals("tuple/2", injectiveModule.getInjectiveFunctionToken(parse("(a, b)"), process2).toString());
+		
+		injectiveModule.rewritingProcessFinalized(process2);
+		Assert.assertEquals(Util.list(), injectiveModule.getProviders());
+	}
+	
+	private static List<Pair<Expression, SubExpressionAddress>> getConditionsExpressionImposesOnSubExpressionsByLinearScan(ImposedConditionsModule module, Expression expression, RewritingProcess process) {
+		for (Module.Provider provider : module.getProviders()) {
+			List<Pair<Expression, SubExpressionAddress>> result = ((ImposedConditionsModule.Provider) provider).getConditionsExpressionImposesOnSubExpressions(expression, process);
+			if (result != null) {
+				return result;
+			}
+		}
+		return null;
+	}
+	
+	private static Object getInjectiveFunctionTokenByLinearScan(InjectiveModule module, Expression expression, RewritingProcess process) {
+		for (Module.Provider provider : module.getProviders()) {
+			Object result = ((InjectiveModule.Provider) provider).getInjectiveFunctionToken(expression, process);
+			if (result != null) {
+				return result;
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * @param expectedPath
 	 * @param actualAddress
@@ -1346,6 +1521,92 @@ public class GrinderTest extends AbstractGrinderTest {
 		assertEquals(result, expected);
 	}
 	
+	@Test
+	public void testStandardizedApartWithFreshSymbols() {
+		Library library = new CommonLibrary();
+		
+		evaluator = new ExhaustiveRewriter(library);
+
+		Expression expression1;
+		Expression expression2;
+		
+		expression1 = parse("g(X',X',X) and h(Y)");
+		expression2 = parse("f(X',X'',Y)");
+		expected    = expression1;
+		performTestOfStandardizedApartWithFreshSymbols(expression1, expression2);
+		
+		expression1 = parse("{(on X, Y) f(X,Y) | X != a }");
+		expression2 = parse("f(X)");
+		expected    = parse("{(on X_1, Y) f(X_1,Y) | X_1 != a }");
+		performTestOfStandardizedApartWithFreshSymbols(expression1, expression2);
+
+		expression1 = parse("{(on X, Y) f(X,Y) | X != a }");
+		expression2 = parse("f(X, Y)");
+		expected    = parse("{(on X_1, Y_2) f(X_1,Y_2) | X_1 != a }"); // a single counter is used for all symbols
+		performTestOfStandardizedApartWithFreshSymbols(expression1, expression2);
+
+		expression1 = parse("{(on X, X') f(X,X') | X != a }");
+		expression2 = parse("f(X, X')");
+		expected    = parse("{(on X_1, X_2) f(X_1,X_2) | X_1 != a }"); // primes are not carried over to fresh symbols
+		performTestOfStandardizedApartWithFreshSymbols(expression1, expression2);
+
+		expression1 = parse("{(on X) f(X, X_1) }");
+		expression2 = parse("g(X)");
+		expected    = parse("{(on X_2) f(X_2, X_1) }"); // fresh symbol must not be captured by existing one
+		performTestOfStandardizedApartWithFreshSymbols(expression1, expression2);
+
+		expression1 = parse("{(on Z) {(on Z', Y) f(X,Y,Z') | X != a } | Z != c}");
+		expression2 = parse("{(on Y) f(X, Y, Z, Z') }");
+		expected    = parse("{(on Z_3) {(on Z_1, Y_2) f(X,Y_2,Z_1) | X != a } | Z_3 != c}"); // sub-expressions are standardized apart first
+		performTestOfStandardizedApartWithFreshSymbols(expression1, expression2);
+	}
+
+	private void performTestOfStandardizedApartWithFreshSymbols(Expression expression1, Expression expression2) {
+		Expression result;
+		RewritingProcess process = new DefaultRewritingProcess(expression1, evaluator);
+		Expression topExpressions = Tuple.make(expression1, expression2);
+		process = GrinderUtil.extendContextualSymbolsWithFreeSymbolsInExpressionwithUnknownTypeForSetUpPurposesOnly(topExpressions, process);
+		result = StandardizedApartFrom.standardizedApartFromWithFreshSymbols(expression1, expression2, process);
+		System.out.println("Standardization apart with fresh symbols of " + expression1 + "  wrt " + expression2 + ":\n                         " + result + "\n               Expected: " + expected);
+		assertEquals(expected, result);
+	}
+	
+	@Test
+	public void testSimultaneousSymbolRenaming() {
+		Library library = new CommonLibrary();
+		
+		evaluator = new ExhaustiveRewriter(library);
+
+		Expression expression;
+		Map<Expression, Expression> renamings;
+		RewritingProcess process;
+		
+		expression = parse("f(X, Y, {(on X) g(X, Y)})");
+		process    = new DefaultRewritingProcess(expression, evaluator);
+		renamings  = Util.map(parse("X"), parse("Y"), parse("Y"), parse("X"));
+		assertEquals(parse("f(Y, X, {(on Y) g(Y, X)})"), SymbolRenaming.renameSymbols(expression, renamings, process));
+		
+		// indices of quantified sub-expressions are renamed as well, so their bodies are not captured
+		expression = parse("(X, W, {(on X in T) g(X)})");
+		process    = new DefaultRewritingProcess(expression, evaluator);
+		renamings  = Util.map(parse("X"), parse("Z"), parse("T"), parse("U"));
+		assertEquals(parse("(Z, W, {(on Z in U) g(Z)})"), SymbolRenaming.renameSymbols(expression, renamings, process));
+		
+		expression = parse("there exists X : f(X) = Y");
+		process    = new DefaultRewritingProcess(expression, evaluator);
+		renamings  = Util.map(parse("V"), parse("W"), parse("Z"), parse("V"));
+		Assert.assertSame(expression, SymbolRenaming.renameSymbols(expression, renamings, process));
+		
+		expression = parse("f(X)");
+		process    = new DefaultRewritingProcess(expression, evaluator);
+		Expression fresh1 = SymbolRenaming.makeFreshSymbol(parse("X"), symbol -> ! symbol.equals(parse("X_1")), process);
+		Expression fresh2 = SymbolRenaming.makeFreshSymbol(parse("X_2"), symbol -> true, process);
+		Expression fresh3 = SymbolRenaming.makeFreshSymbol(parse("X''"), symbol -> true, process);
+		assertEquals(parse("X_2"), fresh1); // X_1 is not novel
+		assertEquals(parse("X_3"), fresh2); // the counter is shared by all symbols
+		assertEquals(parse("X_4"), fresh3);
+	}
+	
 	@Test
 	public void testIntensionalSet() {
 		Library library = new DefaultLibrary(
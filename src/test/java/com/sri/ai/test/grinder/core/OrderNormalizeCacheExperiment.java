@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.grinder.core.OrderNormalize;
+import com.sri.ai.grinder.helper.GrinderUtil;
+import com.sri.ai.util.Util;
+import com.sri.ai.util.base.IdentityWrapper;
+import com.sri.ai.util.cache.DefaultCacheMap;
+
+/**
+ * Measures the throughput of {@link OrderNormalize} with several threads normalizing expressions concurrently,
+ * comparing its structurally keyed cache to the identity-keyed {@link DefaultCacheMap} it previously used
+ * (reproduced here, made thread-safe by synchronization, since it is not otherwise safe to share among threads).
+ * Expressions are re-created for each thread, so structurally equal expressions are distinct instances.
+ * 
+ * @author braz
+ *
+ */
+public class OrderNormalizeCacheExperiment {
+
+	public static int SEED = 1;
+	public static int numberOfExpressions = 2000;
+	public static int depth = 4;
+	public static int numberOfThreads = 8;
+	public static int numberOfRoundsPerThread = 5;
+	
+	public static void main(String[] args) throws Exception {
+		GrinderUtil.setTraceAndJustificationOffAndTurnOffConcurrency();
+		
+		Random random = new Random(SEED);
+		List<String> expressionStrings = new ArrayList<String>();
+		for (int i = 0; i != numberOfExpressions; i++) {
+			expressionStrings.add(makeRandomExpression(random, depth).toString());
+		}
+		List<List<Expression>> expressionsPerThread = new ArrayList<List<Expression>>();
+		for (int thread = 0; thread != numberOfThreads; thread++) {
+			expressionsPerThread.add(Util.mapIntoArrayList(expressionStrings, s -> Expressions.parse(s)));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try {
+			for (int round = 0; round != 3; round++) {
+				System.out.println("Round " + round);
+				run("identity-keyed cache", new PreviousOrderNormalize(),                                  expressionsPerThread, executor);
+				run("structurally keyed cache", new OrderNormalize(OrderNormalize.makeCache(3000))::orderNormalize, expressionsPerThread, executor);
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	private static void run(String description, Function<Expression, Expression> normalizer, List<List<Expression>> expressionsPerThread, ExecutorService executor) throws Exception {
+		long start = System.nanoTime();
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (List<Expression> expressions : expressionsPerThread) {
+			futures.add(executor.submit(() -> {
+				for (int round = 0; round != numberOfRoundsPerThread; round++) {
+					for (Expression expression : expressions) {
+						normalizer.apply(expression);
+					}
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		long elapsed = System.nanoTime() - start;
+		long numberOfNormalizations = (long) numberOfThreads*numberOfRoundsPerThread*numberOfExpressions;
+		System.out.println(String.format("  %-25s: %10.0f normalizations per second", description, numberOfNormalizations/(elapsed/1000000000.0)));
+	}
+
+	private static Expression makeRandomExpression(Random random, int depth) {
+		if (depth == 0 || random.nextInt(4) == 0) {
+			return Expressions.makeSymbol("x" + random.nextInt(10));
+		}
+		String[] functors = {"+", "*", "and", "or", "=", "f"};
+		int numberOfArguments = 2 + random.nextInt(3);
+		Expression[] arguments = new Expression[numberOfArguments];
+		for (int i = 0; i != numberOfArguments; i++) {
+			arguments[i] = makeRandomExpression(random, depth - 1);
+		}
+		Expression result = Expressions.apply(functors[random.nextInt(functors.length)], (Object[]) arguments);
+		return result;
+	}
+
+	/**
+	 * The previous implementation of {@link OrderNormalize#orderNormalize(Expression)}.
+	 */
+	private static class PreviousOrderNormalize implements Function<Expression, Expression> {
+		
+		private Map<IdentityWrapper, Expression> cache = Collections.synchronizedMap(new DefaultCacheMap<IdentityWrapper, Expression>(3000));
+
+		private static Set<String> symmetricFunctorNames = Util.set("+", "*", "and", "or", "<=>", "=", "!=", "union");
+		
+		@Override
+		public Expression apply(Expression expression) {
+			Expression functor = expression.getFunctor();
+			if (functor != null && symmetricFunctorNames.contains(functor.toString())) {
+				IdentityWrapper originalCacheKey = new IdentityWrapper(expression);
+				Expression cached = cache.get(originalCacheKey);
+				if (cached == null) {
+					List<Expression> arguments = expression.getArguments();
+					List<Expression> newArguments = Util.mapIntoArrayList(arguments, e -> apply(e));
+					Collections.sort(newArguments);
+					if (! Util.sameInstancesInSameIterableOrder(newArguments, arguments)) {
+						expression = Expressions.apply(functor, newArguments);
+					}
+					cache.put(originalCacheKey, expression);
+				}
+				else {
+					expression = cached;
+				}
+			}
+			return expression;
+		}
+	}
+}
@@ -38,10 +38,21 @@
 package com.sri.ai.test.grinder.core;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Test;
 
+import com.google.common.cache.Cache;
 import com.sri.ai.expresso.api.Expression;
 import com.sri.ai.expresso.helper.Expressions;
 import com.sri.ai.grinder.api.RewritingProcess;
@@ -85,5 +96,96 @@ public class OrderNormalizeTest {
 		assertTrue(comparator.compare(a, b) < 0);
 		// normalized a and normalized b have the same "prefix" but normalized a is shorter
 	}
+
+	@Test
+	public void testCacheIsKeyedStructurally() {
+		Cache<Expression, Expression> cache = OrderNormalize.makeCache(100);
+		OrderNormalize orderNormalize = new OrderNormalize(cache);
+		
+		Expression a = Expressions.parse("r and (q or p)");
+		Expression b = Expressions.parse("r and (q or p)");
+		Expression normalizedA = orderNormalize.orderNormalize(a);
+		long sizeAfterA = cache.size();
+		Expression normalizedB = orderNormalize.orderNormalize(b);
+		assertSame(normalizedA, normalizedB); // structurally equal expressions share the cached normalization
+		assertEquals(sizeAfterA, cache.size());
+		
+		// expressions already normalized are returned as they are
+		assertSame(normalizedA, orderNormalize.orderNormalize(normalizedA));
+		assertSame(normalizedA, orderNormalize.orderNormalize(normalizedA));
+		Expression c = Expressions.parse("p and q and r");
+		assertSame(c, orderNormalize.orderNormalize(c));
+	}
+
+	@Test
+	public void testProcessCache() {
+		RewritingProcess process = DirectCardinalityComputationFactory.newCardinalityProcess();
+		Cache<Expression, Expression> cache = OrderNormalize.getProcessCache(process);
+		assertSame(cache, OrderNormalize.getProcessCache(process));
+		
+		OrderNormalize orderNormalize = new OrderNormalize(cache);
+		assertEquals(Expressions.parse("p and q and r"), orderNormalize.orderNormalize(Expressions.parse("r and p and q")));
+		assertTrue(cache.size() > 0);
+	}
+
+	@Test
+	public void testConcurrentNormalization() throws InterruptedException, ExecutionException {
+		Random random = new Random(1);
+		List<Expression> expressions = new ArrayList<Expression>();
+		for (int i = 0; i != 300; i++) {
+			expressions.add(makeRandomExpression(random, 3));
+		}
+		
+		OrderNormalize sequential = new OrderNormalize(OrderNormalize.makeCache(100000));
+		List<Expression> expected = new ArrayList<Expression>();
+		for (Expression expression : expressions) {
+			expected.add(sequential.orderNormalize(expression));
+		}
+
+		// a small cache shared by many threads, so that entries are evicted while others are being written
+		OrderNormalize concurrent = new OrderNormalize(OrderNormalize.makeCache(20));
+		int numberOfThreads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try {
+			List<Future<List<Expression>>> futures = new ArrayList<Future<List<Expression>>>();
+			for (int thread = 0; thread != numberOfThreads; thread++) {
+				int offset = thread;
+				Callable<List<Expression>> task = () -> {
+					List<Expression> results = new ArrayList<Expression>(expressions.size());
+					for (int i = 0; i != expressions.size(); i++) {
+						results.add(null);
+					}
+					for (int round = 0; round != 10; round++) {
+						for (int i = 0; i != expressions.size(); i++) {
+							int index = (i + offset*37) % expressions.size();
+							results.set(index, concurrent.orderNormalize(expressions.get(index)));
+						}
+					}
+					return results;
+				};
+				futures.add(executor.submit(task));
+			}
+			for (Future<List<Expression>> future : futures) {
+				assertEquals(expected, future.get());
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	private static Expression makeRandomExpression(Random random, int depth) {
+		if (depth == 0 || random.nextInt(4) == 0) {
+			return Expressions.makeSymbol("x" + random.nextInt(5));
+		}
+		String[] functors = {"+", "*", "and", "or", "=", "f"};
+		int numberOfArguments = 2 + random.nextInt(3);
+		Expression[] arguments = new Expression[numberOfArguments];
+		for (int i = 0; i != numberOfArguments; i++) {
+			arguments[i] = makeRandomExpression(random, depth - 1);
+		}
+		Expression result = Expressions.apply(functors[random.nextInt(functors.length)], (Object[]) arguments);
+		return result;
+	}
 	
 }
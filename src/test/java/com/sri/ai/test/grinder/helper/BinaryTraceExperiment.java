@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.helper;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.grinder.GrinderConfiguration;
+import com.sri.ai.grinder.api.Rewriter;
+import com.sri.ai.grinder.core.DefaultLibrary;
+import com.sri.ai.grinder.core.DefaultRewritingProcess;
+import com.sri.ai.grinder.core.ExhaustiveRewriter;
+import com.sri.ai.grinder.helper.BinaryTraceRecorder;
+import com.sri.ai.grinder.helper.Justification;
+import com.sri.ai.grinder.helper.Trace;
+import com.sri.ai.grinder.library.Associative;
+import com.sri.ai.grinder.library.number.Plus;
+import com.sri.ai.grinder.library.number.Times;
+import com.sri.ai.util.Configuration;
+
+/**
+ * Compares the time taken by the same rewriting with tracing and justifications off,
+ * logged by LogX (with no appenders attached, so only the cost of producing the events is measured),
+ * and recorded by a {@link BinaryTraceRecorder}.
+ *
+ * @author braz
+ *
+ */
+public class BinaryTraceExperiment {
+
+	public static int numberOfRuns = 200;
+	public static String expressionString = "1 + x + (2 * (y + 3)) + (x + 0) + 4 * (z + (w * 0) + 2) + (3 * (x + 1))";
+
+	public static void main(String[] args) throws IOException {
+		Configuration.setProperty(GrinderConfiguration.KEY_DISPLAY_TREE_UTIL_UI, "false");
+		Expression expression = Expressions.parse(expressionString);
+
+		Logger traceLogger         = (Logger) LoggerFactory.getLogger(Trace.getDefaultLoggerName());
+		Logger justificationLogger = (Logger) LoggerFactory.getLogger(Justification.getDefaultLoggerName());
+		traceLogger.detachAndStopAllAppenders();
+		justificationLogger.detachAndStopAllAppenders();
+		traceLogger.setAdditive(false);
+		justificationLogger.setAdditive(false);
+
+		traceLogger.setLevel(Level.OFF);
+		justificationLogger.setLevel(Level.OFF);
+		run(expression); // warm-up
+		long untracedTime = run(expression);
+
+		traceLogger.setLevel(Level.TRACE);
+		justificationLogger.setLevel(Level.TRACE);
+		run(expression); // warm-up
+		long loggedTime = run(expression);
+		traceLogger.setLevel(Level.OFF);
+		justificationLogger.setLevel(Level.OFF);
+
+		File file = File.createTempFile("binary-trace", ".bin");
+		file.deleteOnExit();
+		BinaryTraceRecorder recorder = new BinaryTraceRecorder(file, 1 << 20);
+		BinaryTraceRecorder.install(recorder);
+		run(expression); // warm-up
+		long recordedTime = run(expression);
+		recorder.close();
+
+		System.out.println("Time for " + numberOfRuns + " rewritings of " + expression + ":");
+		System.out.println("  untraced:              " + untracedTime/1000000 + " ms");
+		System.out.println("  traced by LogX:        " + loggedTime/1000000 + " ms");
+		System.out.println("  recorded in binary:    " + recordedTime/1000000 + " ms (" + recorder.getNumberOfEvents() + " events, " + file.length()/1024 + " KB)");
+	}
+
+	private static long run(Expression expression) {
+		long start = System.nanoTime();
+		for (int i = 0; i != numberOfRuns; i++) {
+			Rewriter rewriter = new ExhaustiveRewriter(new DefaultLibrary(new Plus(), new Times(), new Associative("+"), new Associative("*")));
+			rewriter.rewrite(expression, new DefaultRewritingProcess(expression, rewriter));
+		}
+		long result = System.nanoTime() - start;
+		return result;
+	}
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.grinder.api.Rewriter;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.core.DefaultLibrary;
+import com.sri.ai.grinder.core.DefaultRewritingProcess;
+import com.sri.ai.grinder.core.ExhaustiveRewriter;
+import com.sri.ai.grinder.helper.BinaryTraceDecoder;
+import com.sri.ai.grinder.helper.BinaryTraceRecorder;
+import com.sri.ai.grinder.helper.Justification;
+import com.sri.ai.grinder.helper.Trace;
+import com.sri.ai.grinder.library.Associative;
+import com.sri.ai.grinder.library.number.Plus;
+import com.sri.ai.grinder.library.number.Times;
+import com.sri.ai.test.grinder.AbstractGrinderTest;
+import com.sri.ai.util.Util;
+
+public class BinaryTraceRecorderTest extends AbstractGrinderTest {
+
+	@Override
+	public RewritingProcess makeRewritingProcess(Expression topExpression) {
+		return new DefaultRewritingProcess(topExpression, makeRewriter());
+	}
+
+	@Test
+	public void testDecodedTreesAreIndentedByDepth() throws IOException {
+		File file = File.createTempFile("binary-trace", ".bin");
+		try {
+			BinaryTraceRecorder recorder = new BinaryTraceRecorder(file, 100);
+			BinaryTraceRecorder.install(recorder);
+			Trace.in("+R({})", parse("x + 1"));
+			Justification.log(parse("x + 1"));
+			Justification.beginEqualityStep("addition");
+			Justification.log("{} and {}", "x", null);
+			Justification.endEqualityStep(parse("1 + x"));
+			Trace.log("{} is {}", "x", 1);
+			Trace.out("-R={}", parse("1 + x"));
+			recorder.close();
+			assertTrue(BinaryTraceRecorder.getInstalled() == null);
+
+			List<BinaryTraceDecoder.Event> events = BinaryTraceDecoder.decode(file);
+			assertEquals(7, events.size());
+			assertEquals(
+					"+R(x + 1)\n" +
+					"  x is 1\n" +
+					"-R=1 + x\n",
+					BinaryTraceDecoder.toText(events, false, false));
+			assertEquals(
+					"x + 1\n" +
+					"= (addition)\n" +
+					"  x and null\n" +
+					"1 + x\n",
+					BinaryTraceDecoder.toText(events, true, false));
+		}
+		finally {
+			BinaryTraceRecorder.install(null);
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testRingBufferKeepsMostRecentEvents() throws IOException {
+		File file = File.createTempFile("binary-trace", ".bin");
+		try {
+			BinaryTraceRecorder recorder = new BinaryTraceRecorder(file, 4);
+			BinaryTraceRecorder.install(recorder);
+			for (int i = 0; i != 10; i++) {
+				Trace.log("event {}", i);
+			}
+			recorder.close();
+			assertEquals(10, recorder.getNumberOfEvents());
+			List<BinaryTraceDecoder.Event> events = BinaryTraceDecoder.decode(file);
+			assertEquals(Util.list("event 6", "event 7", "event 8", "event 9"), getMessages(events));
+		}
+		finally {
+			BinaryTraceRecorder.install(null);
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testCollectionsAndRecordingAfterClose() throws IOException {
+		File file = File.createTempFile("binary-trace", ".bin");
+		try {
+			BinaryTraceRecorder recorder = new BinaryTraceRecorder(file, 10);
+			List<Object> collection = new ArrayList<Object>(Util.list(parse("X"), "a", null, Util.list(1, 2)));
+			recorder.record(BinaryTraceRecorder.TRACE_LOG, "symbols {}", collection);
+			collection.add(parse("Y")); // changing a collection does not change the way it was recorded
+			recorder.record(BinaryTraceRecorder.TRACE_LOG, "symbols {}", collection);
+			recorder.close();
+			recorder.record(BinaryTraceRecorder.TRACE_LOG, "after close"); // ignored
+			assertEquals(2, recorder.getNumberOfEvents());
+			
+			List<BinaryTraceDecoder.Event> events = BinaryTraceDecoder.decode(file);
+			assertEquals(Util.list("symbols [X, a, null, [1, 2]]", "symbols [X, a, null, [1, 2], Y]"), getMessages(events));
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testRepeatedCollectionsShareEntriesAndDictionaryIsBounded() throws IOException {
+		File file = File.createTempFile("binary-trace", ".bin");
+		try {
+			BinaryTraceRecorder recorder = new BinaryTraceRecorder(file, 100);
+			for (int i = 0; i != 10; i++) {
+				recorder.record(BinaryTraceRecorder.TRACE_LOG, "symbols {}", Util.list(parse("X"), parse("Y")));
+			}
+			recorder.close();
+			long sizeWithRepeatedCollections = file.length();
+			assertEquals("symbols [X, Y]", getMessages(BinaryTraceDecoder.decode(file)).get(9));
+
+			recorder = new BinaryTraceRecorder(file, 100);
+			recorder.record(BinaryTraceRecorder.TRACE_LOG, "symbols {}", Util.list(parse("X"), parse("Y")));
+			recorder.close();
+			assertEquals(sizeWithRepeatedCollections, file.length()); // the collection is written only once
+
+			// format entry takes 17 bytes and each digit 10, so only "0" and "1" fit in 40 bytes
+			recorder = new BinaryTraceRecorder(file, 10, 40);
+			for (int i = 0; i != 4; i++) {
+				recorder.record(BinaryTraceRecorder.TRACE_LOG, "event {}", i);
+			}
+			recorder.close();
+			assertEquals(
+					Util.list("event 0", "event 1", "event " + BinaryTraceDecoder.NOT_IN_DICTIONARY, "event " + BinaryTraceDecoder.NOT_IN_DICTIONARY),
+					getMessages(BinaryTraceDecoder.decode(file)));
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	@Test(expected=Error.class)
+	public void testCapacityTooLargeForBuffer() throws IOException {
+		File file = File.createTempFile("binary-trace", ".bin");
+		try {
+			new BinaryTraceRecorder(file, Integer.MAX_VALUE); // record positions would overflow an int
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testDecodedMessagesAreTheSameAsLoggedOnes() throws IOException {
+		Expression expression = parse("1 + x + (2 * (y + 3)) + (x + 0)");
+
+		// logged by LogX
+		Logger traceLogger         = (Logger) LoggerFactory.getLogger(Trace.getDefaultLoggerName());
+		Logger justificationLogger = (Logger) LoggerFactory.getLogger(Justification.getDefaultLoggerName());
+		Level traceLevel         = traceLogger.getLevel();
+		Level justificationLevel = justificationLogger.getLevel();
+		ListAppender<ILoggingEvent> appender = new ListAppender<ILoggingEvent>();
+		appender.start();
+		traceLogger.setLevel(Level.TRACE);
+		justificationLogger.setLevel(Level.TRACE);
+		traceLogger.addAppender(appender);
+		justificationLogger.addAppender(appender);
+		Expression loggedResult;
+		try {
+			Rewriter rewriter = makeRewriter();
+			loggedResult = rewriter.rewrite(expression, new DefaultRewritingProcess(expression, rewriter));
+		}
+		finally {
+			traceLogger.detachAppender(appender);
+			justificationLogger.detachAppender(appender);
+			traceLogger.setLevel(traceLevel);
+			justificationLogger.setLevel(justificationLevel);
+		}
+		List<String> loggedMessages = new ArrayList<String>();
+		for (ILoggingEvent event : appender.list) {
+			loggedMessages.add(event.getFormattedMessage());
+		}
+
+		// recorded in binary form
+		File file = File.createTempFile("binary-trace", ".bin");
+		try {
+			BinaryTraceRecorder recorder = new BinaryTraceRecorder(file, 100000);
+			BinaryTraceRecorder.install(recorder);
+			Expression recordedResult;
+			try {
+				Rewriter rewriter = makeRewriter();
+				recordedResult = rewriter.rewrite(expression, new DefaultRewritingProcess(expression, rewriter));
+			}
+			finally {
+				recorder.close();
+			}
+			assertEquals(loggedResult, recordedResult);
+			assertEquals(0, recorder.getTraceDepth());
+			assertEquals(0, recorder.getJustificationDepth());
+
+			List<BinaryTraceDecoder.Event> events = BinaryTraceDecoder.decode(file);
+			assertTrue(events.size() > 0);
+			assertEquals(loggedMessages, getMessages(events));
+		}
+		finally {
+			BinaryTraceRecorder.install(null);
+			file.delete();
+		}
+	}
+
+	private static Rewriter makeRewriter() {
+		return new ExhaustiveRewriter(new DefaultLibrary(new Plus(), new Times(), new Associative("+"), new Associative("*")));
+	}
+
+	private static List<String> getMessages(List<BinaryTraceDecoder.Event> events) {
+		List<String> result = new ArrayList<String>();
+		for (BinaryTraceDecoder.Event event : events) {
+			result.add(event.message);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.helper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.base.Function;
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.grinder.api.Rewriter;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.core.DefaultRewriterLookup;
+import com.sri.ai.grinder.core.DefaultRewritingProcess;
+import com.sri.ai.grinder.helper.GrinderUtil;
+import com.sri.ai.grinder.helper.ListOfDisjointIntensionalSetsForSymbolicInjectiveLookUp;
+import com.sri.ai.grinder.helper.SymbolicInjectiveLookUp;
+import com.sri.ai.grinder.library.Basic;
+import com.sri.ai.grinder.library.set.tuple.Tuple;
+
+/**
+ * Compares the time taken to look up expressions in thousands of disjoint intensional sets
+ * by unifying them with each set in turn, and by {@link ListOfDisjointIntensionalSetsForSymbolicInjectiveLookUp},
+ * which only examines the candidates given by a discrimination tree over the sets' keys.
+ *
+ * @author braz
+ *
+ */
+public class DiscriminationTreeExperiment {
+
+	public static int SEED = 1;
+	public static int[] numbersOfIntensionalSets = { 1000, 2000, 5000 };
+	public static int numberOfQueries = 100;
+
+	public static void main(String[] args) {
+		GrinderUtil.setTraceAndJustificationOffAndTurnOffConcurrency();
+
+		for (int numberOfIntensionalSets : numbersOfIntensionalSets) {
+			Random random = new Random(SEED);
+			List<Expression> intensionalSets = new ArrayList<Expression>();
+			for (int i = 0; i != numberOfIntensionalSets; i++) {
+				intensionalSets.add(Expressions.parse("{ (on X) ((X, c" + i + ", (Y, d" + (i % 7) + ")), " + i + ") | X != e" + i + " }"));
+			}
+			List<Expression> queries = new ArrayList<Expression>();
+			for (int i = 0; i != numberOfQueries; i++) {
+				int set = random.nextInt(numberOfIntensionalSets);
+				queries.add(Expressions.parse("(Z, c" + set + ", (W, d" + random.nextInt(7) + "))"));
+			}
+
+			Rewriter basic = new Basic();
+			DefaultRewriterLookup rewriterLookup = new DefaultRewriterLookup();
+			rewriterLookup.put("normalizer", basic);
+
+			// a new symbolic look up for each method, so they do not share its unification caches
+			RewritingProcess process = new DefaultRewritingProcess(basic, rewriterLookup);
+			SymbolicInjectiveLookUp linearLookUp = makeSymbolicLookUp();
+			long start = System.nanoTime();
+			Expression[] expected = new Expression[numberOfQueries];
+			for (int i = 0; i != numberOfQueries; i++) {
+				Expression query = queries.get(i);
+				expected[i] = query;
+				for (Expression intensionalSet : intensionalSets) {
+					expected[i] = linearLookUp.lookUp(query, intensionalSet, process);
+					if (expected[i] != query) {
+						break;
+					}
+				}
+			}
+			long linearTime = System.nanoTime() - start;
+
+			process = new DefaultRewritingProcess(basic, rewriterLookup);
+			ListOfDisjointIntensionalSetsForSymbolicInjectiveLookUp indexed = new ListOfDisjointIntensionalSetsForSymbolicInjectiveLookUp(new ArrayList<Expression>(), makeSymbolicLookUp(), false);
+			start = System.nanoTime();
+			for (Expression intensionalSet : intensionalSets) {
+				indexed.putIntensionalSetWithKeyKnownToBeDisjointFromOthers(intensionalSet, process);
+			}
+			for (int i = 0; i != numberOfQueries; i++) {
+				Expression actual = indexed.lookUp(queries.get(i), process);
+				if ( ! actual.equals(expected[i])) {
+					throw new Error("Indexed look up of " + queries.get(i) + " produced " + actual + " instead of " + expected[i]);
+				}
+			}
+			long indexedTime = System.nanoTime() - start;
+
+			System.out.println(numberOfQueries + " look ups in " + numberOfIntensionalSets + " intensional sets:");
+			System.out.println("  unifying with each set:   " + linearTime/1000000 + " ms");
+			System.out.println("  discrimination tree:      " + indexedTime/1000000 + " ms (including indexing)");
+		}
+	}
+
+	private static SymbolicInjectiveLookUp makeSymbolicLookUp() {
+		Function<Expression, Expression> identity = e -> e;
+		Function<Expression, Expression> first    = head -> Tuple.get(head, 0);
+		Function<Expression, Expression> second   = head -> Tuple.get(head, 1);
+		return new SymbolicInjectiveLookUp(identity, first, second, "normalizer", false);
+	}
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.helper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Function;
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.grinder.api.Rewriter;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.core.DefaultRewriterLookup;
+import com.sri.ai.grinder.core.DefaultRewritingProcess;
+import com.sri.ai.grinder.helper.DiscriminationTree;
+import com.sri.ai.grinder.helper.ListOfDisjointIntensionalSetsForSymbolicInjectiveLookUp;
+import com.sri.ai.grinder.helper.SymbolicInjectiveLookUp;
+import com.sri.ai.grinder.library.Basic;
+import com.sri.ai.grinder.library.function.InjectiveModule;
+import com.sri.ai.grinder.library.set.tuple.Tuple;
+import com.sri.ai.test.grinder.AbstractGrinderTest;
+import com.sri.ai.util.Util;
+
+public class DiscriminationTreeTest extends AbstractGrinderTest {
+
+	public static int SEED = 1;
+	public static int numberOfKeys = 200;
+	public static int numberOfQueries = 200;
+
+	private static final List<String> keySymbols   = Util.list("a", "b", "c", "X", "Y");
+	private static final List<String> querySymbols = Util.list("a", "b", "c", "d", "Z", "W");
+
+	@Override
+	public RewritingProcess makeRewritingProcess(Expression topExpression) {
+		return new DefaultRewritingProcess(topExpression, new Basic());
+	}
+
+	@Test
+	public void testCandidatesAreTheKeysUnifyingSyntactically() {
+		Random random = new Random(SEED);
+		RewritingProcess process = makeRewritingProcess(parse("true"));
+		Set<Expression> alwaysVariables = Util.set(parse("X"), parse("a"));
+
+		DiscriminationTree<Integer> tree = new DiscriminationTree<Integer>();
+		List<Expression> keys = new ArrayList<Expression>();
+		for (int i = 0; i != numberOfKeys; i++) {
+			Expression key = parse(makeRandomTuple(random, keySymbols, 2));
+			keys.add(key);
+			tree.put(key, alwaysVariables, i, process);
+		}
+		// a key with a non-injective sub-expression cannot be indexed and is always a candidate
+		int unindexedKeyId = keys.size();
+		keys.add(parse("(a, X + 1)"));
+		tree.put(parse("(a, X + 1)"), alwaysVariables, unindexedKeyId, process);
+
+		for (int i = 0; i != numberOfQueries; i++) {
+			Expression query = parse(makeRandomTuple(random, querySymbols, 2));
+			List<Integer> expected = new ArrayList<Integer>();
+			for (int id = 0; id != keys.size(); id++) {
+				if (id == unindexedKeyId || mayUnify(query, keys.get(id), alwaysVariables, process)) {
+					expected.add(id);
+				}
+			}
+			Assert.assertEquals("Candidates for " + query, expected, tree.getCandidates(query, process));
+		}
+		
+		// a query with a non-injective sub-expression gets all values
+		Assert.assertEquals(keys.size(), tree.getCandidates(parse("(a, Z + 1)"), process).size());
+	}
+
+	@Test
+	public void testLookUpAgreesWithLinearScan() {
+		Rewriter basic = new Basic();
+		DefaultRewriterLookup rewriterLookup = new DefaultRewriterLookup();
+		rewriterLookup.put("normalizer", basic);
+		RewritingProcess process = new DefaultRewritingProcess(basic, rewriterLookup);
+		
+		Function<Expression, Expression> identity = e -> e;
+		Function<Expression, Expression> first    = head -> Tuple.get(head, 0);
+		Function<Expression, Expression> second   = head -> Tuple.get(head, 1);
+		SymbolicInjectiveLookUp symbolicLookUp = new SymbolicInjectiveLookUp(identity, first, second, "normalizer", false);
+
+		List<Expression> intensionalSets = new ArrayList<Expression>();
+		for (int i = 0; i != 30; i++) {
+			intensionalSets.add(parse("{ (on X) ((X, c" + i + ", (Y, d" + (i % 3) + ")), " + i + ") | X != e" + i + " }"));
+		}
+		ListOfDisjointIntensionalSetsForSymbolicInjectiveLookUp indexed = new ListOfDisjointIntensionalSetsForSymbolicInjectiveLookUp(new ArrayList<Expression>(), symbolicLookUp, false);
+		for (Expression intensionalSet : intensionalSets) {
+			indexed.putIntensionalSetWithKeyKnownToBeDisjointFromOthers(intensionalSet, process);
+		}
+
+		for (String queryString : Util.list("(Z, c3, (Y, d0))", "(e7, c7, (Y, d1))", "(e7, c7, (Y, d2))", "(Z, c30, (Y, d0))", "(Z, W, (Y, d0))", "(Z, c3)")) {
+			Expression query = parse(queryString);
+			Expression expected = query;
+			for (Expression intensionalSet : intensionalSets) {
+				expected = symbolicLookUp.lookUp(query, intensionalSet, process);
+				if (expected != query) {
+					break;
+				}
+			}
+			Assert.assertEquals("Looking up " + query, expected, indexed.lookUp(query, process));
+		}
+	}
+
+	private static String makeRandomTuple(Random random, List<String> symbols, int depth) {
+		int size = 2 + random.nextInt(2);
+		List<String> elements = new ArrayList<String>();
+		for (int i = 0; i != size; i++) {
+			elements.add(depth > 0 && random.nextInt(4) == 0? makeRandomTuple(random, symbols, depth - 1) : Util.randomPick(random, symbols));
+		}
+		return "(" + String.join(", ", elements) + ")";
+	}
+
+	/**
+	 * Straightforward syntactic unification of injective expressions, where symbols in a given collection are taken as variables.
+	 */
+	private static boolean mayUnify(Expression query, Expression key, Collection<Expression> alwaysVariables, RewritingProcess process) {
+		boolean queryIsSymbol = query.getSyntacticFormType().equals("Symbol");
+		boolean keyIsSymbol   = key.getSyntacticFormType().equals("Symbol");
+		if (queryIsSymbol && keyIsSymbol) {
+			boolean queryIsConstant = process.isUniquelyNamedConstant(query);
+			boolean keyIsConstant   = process.isUniquelyNamedConstant(key) && ! alwaysVariables.contains(key);
+			return ! (queryIsConstant && keyIsConstant && ! query.equals(key));
+		}
+		if (queryIsSymbol || keyIsSymbol) {
+			return false;
+		}
+		InjectiveModule injectiveModule = (InjectiveModule) process.findModule(InjectiveModule.class);
+		Object queryToken = injectiveModule.getInjectiveFunctionToken(query, process);
+		if (queryToken == null || ! queryToken.equals(injectiveModule.getInjectiveFunctionToken(key, process))) {
+			return false;
+		}
+		List<Expression> querySubExpressions = query.getSubExpressions();
+		List<Expression> keySubExpressions   = key.getSubExpressions();
+		if (querySubExpressions.size() != keySubExpressions.size()) {
+			return false;
+		}
+		for (int i = 0; i != querySubExpressions.size(); i++) {
+			if ( ! mayUnify(querySubExpressions.get(i), keySubExpressions.get(i), alwaysVariables, process)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -40,6 +40,11 @@ package com.sri.ai.test.grinder.helper;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -47,6 +52,8 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.helper.ExpressionBinaryFormat;
+import com.sri.ai.expresso.helper.ExpressionSummary;
 import com.sri.ai.expresso.helper.Expressions;
 import com.sri.ai.grinder.api.RewritingProcess;
 import com.sri.ai.grinder.core.DefaultRewritingProcess;
@@ -72,6 +79,93 @@ public class ExpressionsTest extends AbstractGrinderTest {
 		Assert.assertEquals(Util.set(parse("and"), parse("X")), Expressions.freeSymbols(e, process));
 	}
 
+	@Test
+	public void testExpressionSummary() {
+		RewritingProcess process = makeRewritingProcess(parse("true"));
+		
+		Expression e = parse("f(X, g(Y, a)) and {(on X) h(X, Z)}");
+		ExpressionSummary summary = ExpressionSummary.get(e);
+		assertSame(summary, ExpressionSummary.get(e));
+		assertEquals(Util.list(parse("and"), parse("f"), parse("X"), parse("g"), parse("Y"), parse("a"), parse("h"), parse("Z")), summary.getSymbols());
+		assertEquals(Util.set(parse("X"), parse("Y"), parse("Z")), Expressions.getVariables(e, process));
+		assertEquals(Util.set(parse("X"), parse("Y"), parse("Z")), Expressions.freeVariables(e, process));
+		assertEquals(Util.set(parse("Y")), Expressions.freeVariables(parse("{(on X) h(X, Y)}"), process));
+		assertEquals(4, summary.getDepth());
+		
+		// as many free symbols as symbols, but in a different order of first (free) occurrence
+		summary = ExpressionSummary.get(parse("f({(on X) X and Y}, X)"));
+		assertEquals(Util.list(parse("f"), parse("and"), parse("Y"), parse("X")), summary.getFreeSymbols());
+		assertEquals(4, summary.getSymbols().size());
+		Assert.assertTrue(summary.containsSymbol(parse("Y")));
+		Assert.assertFalse(summary.containsSymbol(parse("Z")));
+		
+		Assert.assertTrue(Expressions.isSubExpressionOf(parse("g(Y, a)"), e));
+		Assert.assertTrue(Expressions.isSubExpressionOf(parse("a"), e));
+		Assert.assertTrue(Expressions.isSubExpressionOf(e, e));
+		Assert.assertFalse(Expressions.isSubExpressionOf(parse("g(a, Y)"), e));
+		Assert.assertFalse(Expressions.isSubExpressionOf(parse("b"), e));
+		Assert.assertFalse(Expressions.isSubExpressionOf(parse("f(X, g(Y, a), b)"), e));
+	}
+
+	@Test
+	public void testParseCache() {
+		Expression first = Expressions.parse("if X = a then f(X, 1) else {(on Y in People) g(Y) | Y != X}");
+		assertSame(first, Expressions.parse("if X = a then f(X, 1) else {(on Y in People) g(Y) | Y != X}"));
+		Expressions.flushParseCache();
+		Expression afterFlush = Expressions.parse("if X = a then f(X, 1) else {(on Y in People) g(Y) | Y != X}");
+		assertEquals(first, afterFlush);
+	}
+
+	@Test
+	public void testBinaryFormat() throws IOException {
+		List<Expression> expressions = Util.list(
+				parse("if X = a then f(X, 1) else {(on Y in People) g(Y) | Y != X}"),
+				parse("for all X in People : there exists Y in People : X != Y and 'hello world'(Y)"),
+				parse("(lambda X : X or not X)(true)"),
+				parse("{{ (on X) 0.25 * X + 123456789012345 - 2/3 }}"),
+				parse("f(x)(y, (a, b), {a, b}, {{a, a}}, |People|, <X + 1>)"),
+				parse("-10 + 9223372036854775807 * 2"),
+				Expressions.apply("f", Expressions.makeSymbol(String.join("", Collections.nCopies(30000, "long string ")))));
+		
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ExpressionBinaryFormat.write(expressions, output);
+		List<Expression> readExpressions = ExpressionBinaryFormat.read(new ByteArrayInputStream(output.toByteArray()));
+		assertEquals(expressions, readExpressions);
+		
+		for (Expression expression : expressions) {
+			assertEquals(expression, ExpressionBinaryFormat.fromBytes(ExpressionBinaryFormat.toBytes(expression)));
+		}
+		
+		// a stream with a tag other than the ones for supported values (such as the former Java serialization tag, 6 in version 1) is rejected
+		assertForgedBinaryFormatIsRejected(1, 100);
+		// so are huge counts and lengths not followed by the corresponding data, without trying to allocate memory for them
+		int[] maximumInt = { 0xFF, 0xFF, 0xFF, 0xFF, 0x07 };
+		assertForgedBinaryFormatIsRejected(maximumInt);
+		assertForgedBinaryFormatIsRejected(1, 8 /* compound */, 1 /* new string */, 0, 1, 'f', 0xFF, 0xFF, 0xFF, 0xFF, 0x07);
+		assertForgedBinaryFormatIsRejected(1, 9 /* long string */, 0xFF, 0xFF, 0xFF, 0xFF, 0x07);
+		// and references to strings that have not been read
+		assertForgedBinaryFormatIsRejected(1, 2 /* string */, 5);
+	}
+
+	/** Checks that reading a header followed by given bytes throws an {@link IOException}. */
+	private static void assertForgedBinaryFormatIsRejected(int... bytes) throws IOException {
+		ByteArrayOutputStream forged = new ByteArrayOutputStream();
+		DataOutputStream forgedOutput = new DataOutputStream(forged);
+		forgedOutput.writeInt(0x41494358);
+		forgedOutput.writeByte(2);
+		for (int b : bytes) {
+			forgedOutput.writeByte(b);
+		}
+		forgedOutput.flush();
+		try {
+			ExpressionBinaryFormat.read(new ByteArrayInputStream(forged.toByteArray()));
+			Assert.fail("Forged input should have been rejected: " + Arrays.toString(bytes));
+		}
+		catch (IOException exception) {
+			// expected
+		}
+	}
+
 	@Test
 	public void testSubExpressionInstance() {
 		// tests whether sub-expression instances are the same as the ones used for construction.
@@ -37,16 +37,27 @@
  */
 package com.sri.ai.test.grinder.helper;
 
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Assert;
 import org.junit.Test;
 
 import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.grinder.GrinderConfiguration;
 import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.core.AbstractRewriter;
 import com.sri.ai.grinder.core.DefaultRewritingProcess;
 import com.sri.ai.grinder.helper.GrinderUtil;
+import com.sri.ai.grinder.helper.concurrent.BranchRewriteTask;
+import com.sri.ai.grinder.helper.concurrent.CancellationToken;
+import com.sri.ai.grinder.helper.concurrent.RewriteOnBranch;
 import com.sri.ai.grinder.library.Basic;
 import com.sri.ai.test.grinder.AbstractGrinderTest;
 import com.sri.ai.test.grinder.TestData;
+import com.sri.ai.util.Configuration;
 
 public class GrinderUtilTest extends AbstractGrinderTest {
 	
@@ -200,4 +211,140 @@ public class GrinderUtilTest extends AbstractGrinderTest {
 		
 		perform(tests);
 	}
+
+	@Test
+	public void testShortCircuitCancelsRunningSiblingBranches() throws InterruptedException {
+		String previousPolicy = GrinderConfiguration.getBranchAndMergeExecutorPolicy();
+		// the fork join policy runs the first branch in this thread and the others in the pool
+		Configuration.setProperty(GrinderConfiguration.KEY_BRANCH_AND_MERGE_EXECUTOR_POLICY, GrinderConfiguration.BRANCH_AND_MERGE_EXECUTOR_POLICY_FORK_JOIN);
+		try {
+			RewritingProcess process = makeRewritingProcess(parse("p or q"));
+			SpinningBranch sibling = new SpinningBranch();
+			
+			Expression result = GrinderUtil.branchAndMergeOnADisjunction(makeTasks(returningOnceStarted(sibling, Expressions.TRUE), sibling), process);
+			
+			Assert.assertEquals(Expressions.TRUE, result);
+			Assert.assertTrue("Sibling branch did not stop after short-circuit", sibling.stopped.await(10, TimeUnit.SECONDS));
+			Assert.assertFalse(sibling.completed);
+			Assert.assertFalse(process.getCancellationToken().isCancelled()); // only the branches' token is cancelled
+			
+			sibling = new SpinningBranch();
+			List<Expression> results = GrinderUtil.branchAndMergeTasks(makeTasks(returningOnceStarted(sibling, Expressions.TRUE), sibling), Expressions.TRUE, process);
+			
+			Assert.assertEquals(1, results.size()); // only the short-circuit value, no partial results
+			Assert.assertEquals(Expressions.TRUE, results.get(0));
+			Assert.assertTrue("Sibling branch did not stop after short-circuit", sibling.stopped.await(10, TimeUnit.SECONDS));
+			Assert.assertFalse(sibling.completed);
+			
+			// a later branch short-circuiting stops an earlier one still running (here, in this thread)
+			sibling = new SpinningBranch();
+			result = GrinderUtil.branchAndMergeOnADisjunction(makeTasks(sibling, returningOnceStarted(sibling, Expressions.TRUE)), process);
+			
+			Assert.assertEquals(Expressions.TRUE, result);
+			Assert.assertFalse(sibling.completed);
+		}
+		finally {
+			Configuration.setProperty(GrinderConfiguration.KEY_BRANCH_AND_MERGE_EXECUTOR_POLICY, previousPolicy);
+		}
+	}
+	
+	@Test
+	public void testFailureCancelsRunningSiblingBranches() throws InterruptedException {
+		String previousPolicy = GrinderConfiguration.getBranchAndMergeExecutorPolicy();
+		Configuration.setProperty(GrinderConfiguration.KEY_BRANCH_AND_MERGE_EXECUTOR_POLICY, GrinderConfiguration.BRANCH_AND_MERGE_EXECUTOR_POLICY_FORK_JOIN);
+		try {
+			RewritingProcess process = makeRewritingProcess(parse("p and q"));
+			SpinningBranch sibling = new SpinningBranch();
+			RewriteOnBranch failing = (arguments, branchProcess) -> {
+				sibling.awaitStart();
+				throw new Error("Branch failure");
+			};
+			
+			try {
+				GrinderUtil.branchAndMergeOnAConjunction(makeTasks(failing, sibling), process);
+				Assert.fail("Branch failure should have been propagated");
+			}
+			catch (Error error) {
+				Assert.assertEquals("Branch failure", error.getMessage());
+			}
+			Assert.assertTrue("Sibling branch did not stop after failure", sibling.stopped.await(10, TimeUnit.SECONDS));
+			Assert.assertFalse(sibling.completed);
+		}
+		finally {
+			Configuration.setProperty(GrinderConfiguration.KEY_BRANCH_AND_MERGE_EXECUTOR_POLICY, previousPolicy);
+		}
+	}
+	
+	@Test
+	public void testCancelledProcessDoesNotReturnPartialBranchResults() {
+		RewritingProcess process = makeRewritingProcess(parse("p or q"));
+		RewriteOnBranch identity = (arguments, branchProcess) -> new Identity().rewrite(arguments[0], branchProcess);
+		Assert.assertEquals(parse("p or q"), GrinderUtil.branchAndMergeOnADisjunction(makeTasks(identity, identity), process));
+		
+		process.getCancellationToken().cancel();
+		try {
+			GrinderUtil.branchAndMergeOnADisjunction(makeTasks(identity, identity), process);
+			Assert.fail("Cancellation of the process should have been propagated");
+		}
+		catch (CancellationToken.RewritingCancelled cancelled) {
+			// expected
+		}
+	}
+	
+	private static BranchRewriteTask[] makeTasks(RewriteOnBranch first, RewriteOnBranch second) {
+		BranchRewriteTask[] result = new BranchRewriteTask[] {
+				new BranchRewriteTask(first,  new Expression[] { Expressions.parse("p") }),
+				new BranchRewriteTask(second, new Expression[] { Expressions.parse("q") })
+		};
+		return result;
+	}
+	
+	/** Makes a branch returning a given value once a spinning branch has started. */
+	private static RewriteOnBranch returningOnceStarted(SpinningBranch sibling, Expression value) {
+		return (arguments, branchProcess) -> {
+			sibling.awaitStart();
+			return value;
+		};
+	}
+	
+	/** A rewriter leaving expressions unchanged, used as a rewriter call boundary. */
+	private static class Identity extends AbstractRewriter {
+		@Override
+		public Expression rewriteAfterBookkeeping(Expression expression, RewritingProcess process) {
+			return expression;
+		}
+	}
+	
+	/** A branch that keeps calling a rewriter for up to a minute, recording whether it started, stopped, and completed. */
+	private static class SpinningBranch implements RewriteOnBranch {
+		public CountDownLatch    started   = new CountDownLatch(1);
+		public CountDownLatch    stopped   = new CountDownLatch(1);
+		public volatile boolean  completed = false;
+		private Identity         identity  = new Identity();
+		
+		@Override
+		public Expression rewrite(Expression[] expressions, RewritingProcess process) {
+			started.countDown();
+			try {
+				long end = System.currentTimeMillis() + 60000;
+				while (System.currentTimeMillis() < end) {
+					identity.rewrite(expressions[0], process);
+				}
+				completed = true;
+				return expressions[0];
+			}
+			finally {
+				stopped.countDown();
+			}
+		}
+		
+		public void awaitStart() {
+			try {
+				started.await(10, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
 }
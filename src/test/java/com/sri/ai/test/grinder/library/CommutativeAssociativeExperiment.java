@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.library;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.expresso.helper.SubExpressionsDepthFirstIterator;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.core.DefaultRewritingProcess;
+import com.sri.ai.grinder.helper.GrinderUtil;
+import com.sri.ai.grinder.library.Basic;
+import com.sri.ai.grinder.library.CommutativeAssociative;
+import com.sri.ai.grinder.library.boole.And;
+import com.sri.ai.grinder.library.boole.Or;
+import com.sri.ai.grinder.library.number.Plus;
+import com.sri.ai.grinder.library.number.Times;
+import com.sri.ai.util.Util;
+
+/**
+ * Measures time and memory allocated per call of {@link CommutativeAssociative#rewriteAfterBookkeeping(Expression, RewritingProcess)}
+ * for {@link And}, {@link Or}, {@link Plus} and {@link Times}, applied to every sub-expression of random expressions,
+ * and of {@link CommutativeAssociative#make(Object, List, Expression, boolean)},
+ * by the previous implementation ({@link PreviousCommutativeAssociative}) and the current one,
+ * checking that both produce the same results
+ * (except for rewriting expressions with nested applications of the same operator,
+ * which the previous implementation left to {@link com.sri.ai.grinder.library.Associative}).
+ * Allocation is measured with {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}.
+ * 
+ * @author braz
+ *
+ */
+public class CommutativeAssociativeExperiment {
+
+	public static int SEED = 1;
+	public static int numberOfExpressions = 2000;
+	public static int maximumNumberOfArguments = 8;
+	public static int depth = 3;
+	public static int numberOfRepetitions = 20;
+	
+	public static void main(String[] args) {
+		GrinderUtil.setTraceAndJustificationOffAndTurnOffConcurrency();
+		RewritingProcess process = new DefaultRewritingProcess(Expressions.TRUE, new Basic());
+
+		Random random = new Random(SEED);
+		List<Expression> booleanSubExpressions = new ArrayList<Expression>();
+		List<Expression> numericSubExpressions = new ArrayList<Expression>();
+		for (int i = 0; i != numberOfExpressions; i++) {
+			booleanSubExpressions.addAll(Util.listFrom(new SubExpressionsDepthFirstIterator(makeRandomExpression(random, true,  depth))));
+			numericSubExpressions.addAll(Util.listFrom(new SubExpressionsDepthFirstIterator(makeRandomExpression(random, false, depth))));
+		}
+		
+		CommutativeAssociative[] currentRewriters  = { new And(), new Or(), new Plus(), new Times() };
+		CommutativeAssociative[] previousRewriters = {
+				new PreviousCommutativeAssociative.PreviousAnd(),
+				new PreviousCommutativeAssociative.PreviousOr(),
+				new PreviousCommutativeAssociative.PreviousPlus(),
+				new PreviousCommutativeAssociative.PreviousTimes() };
+
+		for (int round = 0; round != 3; round++) {
+			System.out.println("Round " + round);
+			for (int r = 0; r != currentRewriters.length; r++) {
+				List<Expression> subExpressions = r < 2? booleanSubExpressions : numericSubExpressions;
+				Expression[] expected = new Expression[subExpressions.size()];
+				String name = currentRewriters[r].getFunctor().toString();
+				measure(name + ", previous", previousRewriters[r], subExpressions, expected, process);
+				measure(name + ", current",  currentRewriters[r],  subExpressions, expected, process);
+			}
+			
+			List<List<Expression>> argumentLists = new ArrayList<List<Expression>>();
+			for (Expression subExpression : booleanSubExpressions) {
+				argumentLists.add(subExpression.getArguments());
+			}
+			Expression[] expected = new Expression[argumentLists.size()];
+			measureMake("make (or), previous", argumentLists, expected, true);
+			measureMake("make (or), current",  argumentLists, expected, false);
+		}
+	}
+
+	private static void measure(String description, CommutativeAssociative rewriter, List<Expression> subExpressions, Expression[] expected, RewritingProcess process) {
+		long startBytes = allocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i != numberOfRepetitions; i++) {
+			int j = 0;
+			for (Expression subExpression : subExpressions) {
+				Expression result = rewriter.rewriteAfterBookkeeping(subExpression, process);
+				if ( ! hasNestedApplicationOfSameFunctor(subExpression)) {
+					check(subExpression, result, expected, j);
+				}
+				j++;
+			}
+		}
+		report(description, subExpressions.size()*numberOfRepetitions, start, startBytes);
+	}
+
+	private static void measureMake(String description, List<List<Expression>> argumentLists, Expression[] expected, boolean previous) {
+		long startBytes = allocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i != numberOfRepetitions; i++) {
+			int j = 0;
+			for (List<Expression> arguments : argumentLists) {
+				Expression result =
+						previous?
+								PreviousCommutativeAssociative.make("or", arguments, Expressions.FALSE, true)
+								: CommutativeAssociative.make("or", arguments, Expressions.FALSE, true);
+				check(arguments, result, expected, j++);
+			}
+		}
+		report(description, argumentLists.size()*numberOfRepetitions, start, startBytes);
+	}
+
+	/**
+	 * Records the first result for each position, and checks later ones against it.
+	 */
+	private static void check(Object input, Expression result, Expression[] expected, int index) {
+		if (expected[index] == null) {
+			expected[index] = result;
+		}
+		else if ( ! expected[index].equals(result)) {
+			throw new Error("Processing " + input + " produced " + result + " instead of " + expected[index]);
+		}
+	}
+	
+	private static boolean hasNestedApplicationOfSameFunctor(Expression expression) {
+		Expression functor = expression.getFunctor();
+		if (functor != null) {
+			for (Expression argument : expression.getArguments()) {
+				if (argument.hasFunctor(functor)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static long allocatedBytes() {
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long result = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+		return result;
+	}
+
+	private static Expression makeRandomExpression(Random random, boolean isBoolean, int depth) {
+		Expression result;
+		if (depth == 0 || random.nextInt(4) == 0) {
+			result = isBoolean?
+					Expressions.parse(Util.randomPick(random, Util.list("true", "false", "x", "y", "z", "w")))
+					: Expressions.parse(Util.randomPick(random, Util.list("0", "1", "2", "3", "x", "y", "z", "w")));
+		}
+		else {
+			String functor = isBoolean? (random.nextBoolean()? "and" : "or") : (random.nextBoolean()? "+" : "*");
+			int numberOfArguments = 2 + random.nextInt(maximumNumberOfArguments - 1);
+			List<Expression> arguments = new ArrayList<Expression>(numberOfArguments);
+			for (int i = 0; i != numberOfArguments; i++) {
+				arguments.add(makeRandomExpression(random, isBoolean, depth - 1));
+			}
+			result = Expressions.apply(functor, arguments);
+		}
+		return result;
+	}
+	
+	private static void report(String description, int numberOfCalls, long startInNanoseconds, long startInAllocatedBytes) {
+		long elapsed = System.nanoTime() - startInNanoseconds;
+		long allocated = allocatedBytes() - startInAllocatedBytes;
+		System.out.println(String.format("  %-25s: %8.1f nanoseconds and %8.1f bytes allocated per call", description, ((double) elapsed)/numberOfCalls, ((double) allocated)/numberOfCalls));
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.library;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.grinder.api.Rewriter;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.core.DefaultLibrary;
+import com.sri.ai.grinder.core.DefaultRewritingProcess;
+import com.sri.ai.grinder.core.ExhaustiveRewriter;
+import com.sri.ai.grinder.library.Associative;
+import com.sri.ai.grinder.library.CommutativeAssociative;
+import com.sri.ai.grinder.library.boole.And;
+import com.sri.ai.grinder.library.boole.Or;
+import com.sri.ai.grinder.library.number.Plus;
+import com.sri.ai.grinder.library.number.Times;
+import com.sri.ai.test.grinder.AbstractGrinderTest;
+import com.sri.ai.util.Util;
+
+public class CommutativeAssociativeTest extends AbstractGrinderTest {
+
+	public static int SEED = 1;
+	public static int numberOfRandomExpressions = 300;
+
+	private static final List<String> booleanFunctors  = Util.list("and", "or");
+	private static final List<String> numericFunctors  = Util.list("+", "*");
+	private static final List<String> booleanLeaves    = Util.list("true", "false", "x", "y", "z", "x");
+	private static final List<String> numericLeaves    = Util.list("0", "1", "2", "3", "x", "y", "z", "x");
+
+	@Override
+	public RewritingProcess makeRewritingProcess(Expression topExpression) {
+		return new DefaultRewritingProcess(topExpression, new ExhaustiveRewriter(new DefaultLibrary(new Plus())));
+	}
+
+	@Test
+	public void testMakeAgreesWithPreviousImplementation() {
+		Random random = new Random(SEED);
+		for (int i = 0; i != numberOfRandomExpressions; i++) {
+			boolean isBoolean = random.nextBoolean();
+			String functor = Util.randomPick(random, isBoolean? booleanFunctors : numericFunctors);
+			Expression neutralElement = Expressions.parse(functor.equals("and")? "true" : functor.equals("or")? "false" : functor.equals("+")? "0" : "1");
+			List<Expression> arguments = new ArrayList<Expression>();
+			int numberOfArguments = random.nextInt(6);
+			for (int j = 0; j != numberOfArguments; j++) {
+				arguments.add(makeRandomExpression(random, isBoolean, 2));
+			}
+			boolean isIdempotent = isBoolean;
+			assertEquals(
+					PreviousCommutativeAssociative.make(functor, arguments, neutralElement, isIdempotent),
+					CommutativeAssociative.make(functor, arguments, neutralElement, isIdempotent));
+		}
+		
+		// repeated arguments beyond the size for which they are searched linearly
+		List<Expression> arguments = new ArrayList<Expression>();
+		for (int i = 0; i != 40; i++) {
+			arguments.add(Expressions.makeSymbol("x" + (i % 25)));
+		}
+		assertEquals(
+				PreviousCommutativeAssociative.make("or", arguments, Expressions.FALSE, true),
+				CommutativeAssociative.make("or", arguments, Expressions.FALSE, true));
+		assertEquals(25, CommutativeAssociative.make("or", arguments, Expressions.FALSE, true).numberOfArguments());
+	}
+
+	@Test
+	public void testRewritingAgreesWithPreviousImplementation() {
+		Random random = new Random(SEED);
+		for (int i = 0; i != numberOfRandomExpressions; i++) {
+			boolean isBoolean = random.nextBoolean();
+			Expression expression = makeRandomExpression(random, isBoolean, 3);
+			Rewriter current;
+			Rewriter previous;
+			if (isBoolean) {
+				current  = new ExhaustiveRewriter(new DefaultLibrary(new And(), new Or(), new Associative("and"), new Associative("or")));
+				previous = new ExhaustiveRewriter(new DefaultLibrary(new PreviousCommutativeAssociative.PreviousAnd(), new PreviousCommutativeAssociative.PreviousOr(), new Associative("and"), new Associative("or")));
+			}
+			else {
+				current  = new ExhaustiveRewriter(new DefaultLibrary(new Plus(), new Times(), new Associative("+"), new Associative("*")));
+				previous = new ExhaustiveRewriter(new DefaultLibrary(new PreviousCommutativeAssociative.PreviousPlus(), new PreviousCommutativeAssociative.PreviousTimes(), new Associative("+"), new Associative("*")));
+			}
+			Expression expected = previous.rewrite(expression, new DefaultRewritingProcess(expression, previous));
+			Expression actual   = current.rewrite(expression, new DefaultRewritingProcess(expression, current));
+			assertEquals("Rewriting " + expression, expected, actual);
+		}
+	}
+
+	@Test
+	public void testSingleStep() {
+		RewritingProcess process = makeRewritingProcess(Expressions.TRUE);
+		
+		checkSingleStep(new Plus(), "x + 2", "x + 2", process);
+		checkSingleStep(new Plus(), "x + y + z", "x + y + z", process);
+		checkSingleStep(new Plus(), "x + 2 + y + 6", "x + 8 + y", process);
+		checkSingleStep(new Plus(), "1 + (x + 3)", "4 + x", process);
+		checkSingleStep(new Plus(), "x + (y + z)", "x + y + z", process);
+		checkSingleStep(new Plus(), "x + 0 + (y + z)", "x + y + z", process);
+		checkSingleStep(new Plus(), "1 + 2", "3", process);
+		checkSingleStep(new Times(), "x * 0 * y", "0", process);
+		checkSingleStep(new Times(), "x * (1 * y)", "x * y", process);
+		checkSingleStep(new And(), "x and y", "x and y", process);
+		checkSingleStep(new And(), "x and y and x", "x and y", process);
+		checkSingleStep(new And(), "x and (y and x) and true", "x and y", process);
+		checkSingleStep(new And(), "x and false and y", "false", process);
+		checkSingleStep(new Or(), "x or (y or z) or false", "x or y or z", process);
+		checkSingleStep(new Or(), "x or true", "true", process);
+	}
+
+	private void checkSingleStep(CommutativeAssociative rewriter, String expressionString, String expectedString, RewritingProcess process) {
+		Expression expression = parse(expressionString);
+		Expression actual = rewriter.rewriteAfterBookkeeping(expression, process);
+		assertEquals(parse(expectedString), actual);
+		if (expressionString.equals(expectedString)) {
+			assertSame(expression, actual); // unchanged expressions are returned themselves
+		}
+	}
+
+	private static Expression makeRandomExpression(Random random, boolean isBoolean, int depth) {
+		Expression result;
+		if (depth == 0 || random.nextInt(3) == 0) {
+			result = Expressions.parse(Util.randomPick(random, isBoolean? booleanLeaves : numericLeaves));
+		}
+		else {
+			String functor = Util.randomPick(random, isBoolean? booleanFunctors : numericFunctors);
+			int numberOfArguments = random.nextInt(5);
+			List<Expression> arguments = new ArrayList<Expression>(numberOfArguments);
+			for (int i = 0; i != numberOfArguments; i++) {
+				arguments.add(makeRandomExpression(random, isBoolean, depth - 1));
+			}
+			result = Expressions.apply(functor, arguments);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.library;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.grinder.helper.GrinderUtil;
+import com.sri.ai.grinder.library.DirectCardinalityComputationFactory;
+import com.sri.ai.grinder.library.controlflow.IfThenElse;
+import com.sri.ai.grinder.library.controlflow.IfThenElseExternalizationHierarchical;
+
+/**
+ * Measures the time taken by {@link IfThenElseExternalizationHierarchical} to externalize expressions
+ * with k independent conditional arguments, such as <code>f(if X0 = a0 then 0 else 1, if X1 = a1 then 2 else 3, ...)</code>,
+ * as well as expressions in which conditions repeat, with and without memoization of sub-problems,
+ * checking that both produce the same output.
+ * 
+ * @author braz
+ *
+ */
+public class IfThenElseExternalizationExperiment {
+
+	public static int maximumNumberOfConditionals = 8;
+	public static int numberOfVariables = 3;
+	
+	public static void main(String[] args) {
+		GrinderUtil.setTraceAndJustificationOffAndTurnOffConcurrency();
+		
+		IfThenElseExternalizationHierarchical memoized   = new IfThenElseExternalizationHierarchical();
+		IfThenElseExternalizationHierarchical unmemoized = new IfThenElseExternalizationHierarchical();
+		unmemoized.setMemoize(false);
+		
+		for (int round = 0; round != 2; round++) {
+			System.out.println("Round " + round);
+			for (int k = 1; k <= maximumNumberOfConditionals; k++) {
+				run("independent, k = " + k, makeExpression(k, false), memoized, unmemoized);
+				run("repeated,    k = " + k, makeExpression(k, true),  memoized, unmemoized);
+			}
+		}
+	}
+
+	/**
+	 * Makes an application of f on k conditional arguments;
+	 * if conditions are to be repeated, they are on a fixed number of variables and constants,
+	 * otherwise each is on a distinct variable.
+	 */
+	private static Expression makeExpression(int k, boolean repeatConditions) {
+		List<Expression> arguments = new ArrayList<Expression>();
+		for (int i = 0; i != k; i++) {
+			int conditionIndex = repeatConditions? i % numberOfVariables : i;
+			Expression condition = Expressions.parse("X" + conditionIndex + " = a" + conditionIndex);
+			arguments.add(IfThenElse.make(condition, Expressions.makeSymbol(2*i), Expressions.makeSymbol(2*i + 1)));
+		}
+		Expression result = Expressions.apply("f", arguments.toArray());
+		return result;
+	}
+
+	private static void run(String description, Expression expression, IfThenElseExternalizationHierarchical memoized, IfThenElseExternalizationHierarchical unmemoized) {
+		long start = System.nanoTime();
+		Expression expected = unmemoized.rewrite(expression, DirectCardinalityComputationFactory.newCardinalityProcess(expression));
+		long unmemoizedTime = System.nanoTime() - start;
+		
+		start = System.nanoTime();
+		Expression actual = memoized.rewrite(expression, DirectCardinalityComputationFactory.newCardinalityProcess(expression));
+		long memoizedTime = System.nanoTime() - start;
+		
+		if ( ! actual.equals(expected)) {
+			throw new Error("Memoized externalization of " + expression + " produced " + actual + " instead of " + expected);
+		}
+		System.out.println(String.format("  %-20s: %10.2f ms without memoization, %10.2f ms with memoization", description, unmemoizedTime/1000000.0, memoizedTime/1000000.0));
+	}
+}
@@ -39,12 +39,15 @@ package com.sri.ai.test.grinder.library;
 
 import java.util.Map;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.helper.Expressions;
 import com.sri.ai.grinder.api.RewritingProcess;
 import com.sri.ai.grinder.helper.GrinderUtil;
 import com.sri.ai.grinder.library.DirectCardinalityComputationFactory;
+import com.sri.ai.grinder.library.controlflow.IfThenElseExternalizationHierarchical;
 import com.sri.ai.grinder.library.equality.cardinality.direct.CardinalityRewriter;
 import com.sri.ai.grinder.library.equality.cardinality.direct.core.CardinalityOfType;
 import com.sri.ai.test.grinder.AbstractGrinderTest;
@@ -58,6 +61,29 @@ public class NormalizeAndCompleteNormalizeTest extends AbstractGrinderTest {
 		return DirectCardinalityComputationFactory.newCardinalityProcess(topExpression);
 	}
 
+	@Test
+	public void testMemoizedIfThenElseExternalizationAgreesWithUnmemoized() {
+		IfThenElseExternalizationHierarchical memoized   = new IfThenElseExternalizationHierarchical();
+		IfThenElseExternalizationHierarchical unmemoized = new IfThenElseExternalizationHierarchical();
+		unmemoized.setMemoize(false);
+		
+		String[] expressionStrings = new String[] {
+				"f(if X = a then 1 else 2, if Y = b then 3 else 4)",
+				"(if X = a then 1 else 2) + (if X = a then 3 else 4)",
+				"g(if X = a then if Y = b then 1 else 2 else 3, if Y = b then 4 else 5, if Z = c then 6 else 7)",
+				"h(if X = a then 1 else 2, if Y = b then 3 else 4, if X = a then 5 else 6, if Y = b then 7 else 8)",
+				"(if X = Y then 1 else 2) * (if Y = Z then 3 else 4) * (if X = Z then 5 else 6)",
+				// conditions on both related and unrelated variables
+				"k(if X = a then 1 else 2, if X = Y then 3 else 4, if Y = b then 5 else 6, if W = c then 7 else 8)",
+		};
+		for (String expressionString : expressionStrings) {
+			Expression expression = Expressions.parse(expressionString);
+			Expression expected = unmemoized.rewrite(expression, makeRewritingProcess(expression));
+			Expression actual   = memoized.rewrite(expression, makeRewritingProcess(expression));
+			Assert.assertEquals("Externalizing " + expression, expected, actual);
+		}
+	}
+
 	@Test
 	public void testNormalizePassesBasicTests() {
 
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.library;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.library.Associative;
+import com.sri.ai.grinder.library.CommutativeAssociative;
+import com.sri.ai.grinder.library.boole.And;
+import com.sri.ai.grinder.library.boole.Or;
+import com.sri.ai.grinder.library.number.Plus;
+import com.sri.ai.grinder.library.number.Times;
+import com.sri.ai.util.Util;
+import com.sri.ai.util.base.Equals;
+
+/**
+ * The previous implementation of {@link CommutativeAssociative#make(Object, List, Expression, boolean)}
+ * and of the simplification performed by {@link CommutativeAssociative} and its boolean extensions,
+ * collecting arguments into linked lists and sets,
+ * kept for checking that the current implementation produces the same results and for comparing their performance.
+ * 
+ * @author braz
+ *
+ */
+public class PreviousCommutativeAssociative {
+
+	public static Expression make(Object functor, List<Expression> arguments, Expression neutralElement, boolean isIdempotent) {
+		Predicate<Expression> notEqualToNeutralElement = Predicates.not(new Equals<Expression>(neutralElement));
+		arguments = Util.collectToList(arguments, notEqualToNeutralElement);
+		if (isIdempotent) {
+			Set<Expression> argumentsSet = new LinkedHashSet<Expression>(arguments);
+			arguments = new ArrayList<Expression>(argumentsSet);
+		}
+		if (arguments.isEmpty()) {
+			return Expressions.wrap(neutralElement);
+		}
+		if (arguments.size() == 1) {
+			return arguments.get(0);
+		}
+		Expression result = Expressions.makeExpressionOnSyntaxTreeWithLabelAndSubTrees(Expressions.wrap(functor), arguments);
+		result = Associative.associateWhenSureOperatorIsAssociative(result);
+		return result;
+	}
+
+	public static Expression rewriteAfterBookkeeping(
+			Expression expression,
+			Object functor, Expression neutralElement, Expression absorbingElement, boolean isIdempotent, boolean isBoolean,
+			final Predicate<Expression> isOperableArgument, Function<List<Expression>, Expression> operationOnExpressionOperables) {
+		
+		Expression result = rewriteAfterBookkeeping(expression, functor, neutralElement, absorbingElement, isIdempotent, isOperableArgument, operationOnExpressionOperables);
+		if (isBoolean && result.hasFunctor(functor)) {
+			@SuppressWarnings("unchecked")
+			List<Expression> argumentsReplacement =
+				(List<Expression>) Util.removeRepeatedNonDestructively(result.getArguments());
+			if (argumentsReplacement.size() != result.getArguments().size()) {
+				result = make(functor, argumentsReplacement, neutralElement, false);
+			}
+		}
+		return result;
+	}
+
+	private static Expression rewriteAfterBookkeeping(
+			Expression expression,
+			Object functor, Expression neutralElement, Expression absorbingElement, boolean isIdempotent,
+			final Predicate<Expression> isOperableArgument, Function<List<Expression>, Expression> operationOnExpressionOperables) {
+
+		if ( ! expression.hasFunctor(functor)) {
+			return expression;
+		}
+		
+		List<Expression> arguments = expression.getArguments();
+		
+		if (arguments.isEmpty()) {
+			return neutralElement;
+		}
+		
+		if (arguments.size() == 1) {
+			return expression.get(0);
+		}
+		
+		LinkedList<Expression> operableArguments = new LinkedList<Expression>();
+		LinkedList<Expression> nonOperableArguments = new LinkedList<Expression>();
+		Predicate<Expression> isOperableArgumentExpression = new Predicate<Expression>() {
+			@Override
+			public boolean apply(Expression expression) {
+				boolean result = isOperableArgument.apply(expression);
+				return result;
+			}
+		};
+		int indexOfFirstOperable =
+			Util.collect(
+					arguments,
+					operableArguments, isOperableArgumentExpression,
+					nonOperableArguments);
+	
+		if (operableArguments.size() == 0) {
+			return expression;
+		}
+		
+		if (operableArguments.contains(absorbingElement)) {
+			return absorbingElement;
+		}
+		
+		Expression resultOnOperableArgumentsExpression = operationOnExpressionOperables.apply(operableArguments);
+
+		if (operableArguments.size() == 1) {
+			if (operableArguments.getFirst().equals(neutralElement)) {
+				Expression result = make(functor, nonOperableArguments, neutralElement, isIdempotent);
+				return result;
+			}
+			else {
+				return expression;
+			}
+		}
+
+		if (nonOperableArguments.size() == 0) {
+			return resultOnOperableArgumentsExpression;
+		}
+
+		LinkedList<Expression> argumentsOfResultingExpression = nonOperableArguments;
+		if ( ! resultOnOperableArgumentsExpression.equals(neutralElement)) {
+			argumentsOfResultingExpression.add(indexOfFirstOperable, resultOnOperableArgumentsExpression);
+		}
+
+		Expression result = make(functor, argumentsOfResultingExpression, neutralElement, isIdempotent);
+		return result;
+	}
+
+	public static class PreviousAnd extends And {
+		@Override
+		public Expression rewriteAfterBookkeeping(Expression expression, RewritingProcess process) {
+			return PreviousCommutativeAssociative.rewriteAfterBookkeeping(expression, getFunctor(), getNeutralElement(), getAbsorbingElement(), isIdempotent(), true, getIsOperableArgumentSyntaxTreePredicate(), this::operationOnExpressionOperables);
+		}
+	}
+
+	public static class PreviousOr extends Or {
+		@Override
+		public Expression rewriteAfterBookkeeping(Expression expression, RewritingProcess process) {
+			return PreviousCommutativeAssociative.rewriteAfterBookkeeping(expression, getFunctor(), getNeutralElement(), getAbsorbingElement(), isIdempotent(), true, getIsOperableArgumentSyntaxTreePredicate(), this::operationOnExpressionOperables);
+		}
+	}
+
+	public static class PreviousPlus extends Plus {
+		@Override
+		public Expression rewriteAfterBookkeeping(Expression expression, RewritingProcess process) {
+			return PreviousCommutativeAssociative.rewriteAfterBookkeeping(expression, getFunctor(), getNeutralElement(), getAbsorbingElement(), isIdempotent(), false, getIsOperableArgumentSyntaxTreePredicate(), this::operationOnExpressionOperables);
+		}
+	}
+
+	public static class PreviousTimes extends Times {
+		@Override
+		public Expression rewriteAfterBookkeeping(Expression expression, RewritingProcess process) {
+			return PreviousCommutativeAssociative.rewriteAfterBookkeeping(expression, getFunctor(), getNeutralElement(), getAbsorbingElement(), isIdempotent(), false, getIsOperableArgumentSyntaxTreePredicate(), this::operationOnExpressionOperables);
+		}
+	}
+}
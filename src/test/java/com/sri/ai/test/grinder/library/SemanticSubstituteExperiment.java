@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.library;
+
+import static com.sri.ai.expresso.helper.Expressions.apply;
+import static com.sri.ai.expresso.helper.Expressions.makeSymbol;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.helper.GrinderUtil;
+import com.sri.ai.grinder.library.DirectCardinalityComputationFactory;
+import com.sri.ai.grinder.library.FunctorConstants;
+import com.sri.ai.grinder.library.SemanticSubstitute;
+import com.sri.ai.grinder.library.set.tuple.Tuple;
+
+/**
+ * Measures the time taken by {@link SemanticSubstitute} to apply large maps of (commuting) replacements
+ * to generated expressions, sequentially and in a single pass.
+ * 
+ * @author braz
+ *
+ */
+public class SemanticSubstituteExperiment {
+
+	public static int SEED = 1;
+	public static int numberOfProblems = 10;
+	public static int numberOfReplacements = 40;
+	public static int numberOfFunctions = 20;
+	public static int numberOfVariables = 4;
+	public static int numberOfConstants = 5;
+	public static int numberOfSummands = 100;
+	
+	public static void main(String[] args) {
+		GrinderUtil.setTraceAndJustificationOffAndTurnOffConcurrency();
+		
+		Random random = new Random(SEED);
+		List<Expression> expressions = new ArrayList<Expression>();
+		List<Map<Expression, Expression>> replacementsList = new ArrayList<Map<Expression, Expression>>();
+		for (int i = 0; i != numberOfProblems; i++) {
+			List<Expression> summands = new ArrayList<Expression>();
+			for (int j = 0; j != numberOfSummands; j++) {
+				summands.add(makeFunctionApplication(random, random.nextInt(numberOfVariables + numberOfConstants)));
+			}
+			expressions.add(apply(FunctorConstants.PLUS, summands.toArray()));
+			
+			Map<Expression, Expression> replacements = new LinkedHashMap<Expression, Expression>();
+			while (replacements.size() != numberOfReplacements) {
+				// replaced applications have constant arguments only, so that they do not mention each other
+				replacements.put(makeFunctionApplication(random, numberOfVariables + random.nextInt(numberOfConstants)), makeSymbol(replacements.size()));
+			}
+			replacementsList.add(replacements);
+		}
+
+		for (int round = 0; round != 3; round++) {
+			System.out.println("Round " + round);
+			
+			List<Expression> expected = new ArrayList<Expression>();
+			long start = System.nanoTime();
+			for (int i = 0; i != numberOfProblems; i++) {
+				RewritingProcess process = makeProcess(expressions.get(i), replacementsList.get(i));
+				expected.add(SemanticSubstitute.replaceAllSequentially(expressions.get(i), replacementsList.get(i), process));
+			}
+			report("sequentially", start);
+
+			start = System.nanoTime();
+			for (int i = 0; i != numberOfProblems; i++) {
+				RewritingProcess process = makeProcess(expressions.get(i), replacementsList.get(i));
+				Expression result = SemanticSubstitute.replaceAll(expressions.get(i), replacementsList.get(i), process);
+				if ( ! result.equals(expected.get(i))) {
+					throw new Error("Single pass substitution produced " + result + " instead of " + expected.get(i) + " for " + expressions.get(i));
+				}
+			}
+			report("in a single pass", start);
+		}
+	}
+
+	/**
+	 * Makes an application of a random function on a variable (if argumentIndex is less than the number of variables)
+	 * or constant.
+	 */
+	private static Expression makeFunctionApplication(Random random, int argumentIndex) {
+		Expression argument = makeSymbol(argumentIndex < numberOfVariables? "X" + argumentIndex : "a" + (argumentIndex - numberOfVariables));
+		Expression result = apply("f" + random.nextInt(numberOfFunctions), argument);
+		return result;
+	}
+
+	private static RewritingProcess makeProcess(Expression expression, Map<Expression, Expression> replacements) {
+		RewritingProcess process = DirectCardinalityComputationFactory.newCardinalityProcess();
+		List<Expression> topExpressions = new ArrayList<Expression>();
+		topExpressions.add(expression);
+		topExpressions.addAll(replacements.keySet());
+		topExpressions.addAll(replacements.values());
+		process = GrinderUtil.extendContextualSymbolsWithFreeSymbolsInExpressionwithUnknownTypeForSetUpPurposesOnly(Tuple.make(topExpressions), process);
+		return process;
+	}
+
+	private static void report(String description, long startInNanoseconds) {
+		long elapsed = System.nanoTime() - startInNanoseconds;
+		System.out.println(String.format("  %-25s: %10.2f ms per problem", description, elapsed/1000000.0/numberOfProblems));
+	}
+}
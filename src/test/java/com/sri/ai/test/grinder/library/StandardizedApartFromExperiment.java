@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.library;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import com.google.common.base.Predicate;
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.core.AbstractReplacementFunctionWithContextuallyUpdatedProcess;
+import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.core.DefaultRewritingProcess;
+import com.sri.ai.grinder.core.ExhaustiveRewriter;
+import com.sri.ai.grinder.helper.GrinderUtil;
+import com.sri.ai.grinder.library.CommonLibrary;
+import com.sri.ai.grinder.library.StandardizedApartFrom;
+import com.sri.ai.grinder.library.set.tuple.Tuple;
+import com.sri.ai.util.Util;
+import com.sri.ai.util.base.NotContainedBy;
+
+/**
+ * Measures the time taken to standardize apart deeply nested intensional sets,
+ * such as <code>{(on X1, Y1, Z1) {(on X2, Y2, Z2) f(X1, Y1, Z1, X2, Y2, Z2) | X2 != a} | X1 != a}</code>,
+ * from an expression containing all their indices, comparing
+ * the previous implementation of {@link StandardizedApartFrom} (one full traversal per renamed variable),
+ * the current one (a single simultaneous renaming per scope)
+ * and {@link StandardizedApartFrom#standardizedApartFromWithFreshSymbols(Expression, Expression, RewritingProcess)},
+ * checking that the first two produce the same output.
+ * 
+ * @author braz
+ *
+ */
+public class StandardizedApartFromExperiment {
+
+	public static int maximumDepth = 24;
+	public static int numberOfIndicesPerLevel = 3;
+	public static int numberOfRepetitions = 20;
+	
+	public static void main(String[] args) {
+		GrinderUtil.setTraceAndJustificationOffAndTurnOffConcurrency();
+		
+		for (int round = 0; round != 2; round++) {
+			System.out.println("Round " + round);
+			for (int depth = 4; depth <= maximumDepth; depth += 4) {
+				run(depth);
+			}
+		}
+	}
+
+	private static void run(int depth) {
+		List<Expression> indices = new ArrayList<Expression>();
+		Expression expression1 = makeNestedIntensionalSets(1, depth, indices);
+		Expression expression2 = Expressions.apply("g", indices.toArray());
+		
+		Expression expected = null;
+		long start = System.nanoTime();
+		for (int i = 0; i != numberOfRepetitions; i++) {
+			expected = PreviousStandardizedApartFrom.standardizedApartFrom(expression1, expression2, makeProcess(expression1, expression2));
+		}
+		long previousTime = System.nanoTime() - start;
+		
+		Expression actual = null;
+		start = System.nanoTime();
+		for (int i = 0; i != numberOfRepetitions; i++) {
+			actual = StandardizedApartFrom.standardizedApartFrom(expression1, expression2, makeProcess(expression1, expression2));
+		}
+		long currentTime = System.nanoTime() - start;
+		
+		start = System.nanoTime();
+		for (int i = 0; i != numberOfRepetitions; i++) {
+			StandardizedApartFrom.standardizedApartFromWithFreshSymbols(expression1, expression2, makeProcess(expression1, expression2));
+		}
+		long freshSymbolsTime = System.nanoTime() - start;
+		
+		if ( ! actual.equals(expected)) {
+			throw new Error("Standardizing apart " + expression1 + " from " + expression2 + " produced " + actual + " instead of " + expected);
+		}
+		System.out.println(String.format("  depth %3d: %10.2f ms previous, %10.2f ms simultaneous renaming, %10.2f ms fresh symbols", depth, previousTime/1000000.0, currentTime/1000000.0, freshSymbolsTime/1000000.0));
+	}
+
+	/**
+	 * Makes intensional sets nested from a given level to a given depth, adding their indices to a given list.
+	 */
+	private static Expression makeNestedIntensionalSets(int level, int depth, List<Expression> indices) {
+		List<Expression> indicesOfLevel = new ArrayList<Expression>();
+		for (int i = 0; i != numberOfIndicesPerLevel; i++) {
+			indicesOfLevel.add(Expressions.makeSymbol("X" + level + "_" + i));
+		}
+		indices.addAll(indicesOfLevel);
+		Expression head = level == depth? Expressions.apply("f", indices.toArray()) : makeNestedIntensionalSets(level + 1, depth, indices);
+		String indicesString = Util.join(", ", indicesOfLevel);
+		Expression result = Expressions.parse("{(on " + indicesString + ") " + head + " | " + indicesOfLevel.get(0) + " != a }");
+		return result;
+	}
+
+	private static RewritingProcess makeProcess(Expression expression1, Expression expression2) {
+		RewritingProcess process = new DefaultRewritingProcess(expression1, new ExhaustiveRewriter(new CommonLibrary()));
+		process = GrinderUtil.extendContextualSymbolsWithFreeSymbolsInExpressionwithUnknownTypeForSetUpPurposesOnly(Tuple.make(expression1, expression2), process);
+		return process;
+	}
+
+	/**
+	 * The previous implementation of {@link StandardizedApartFrom#standardizedApartFrom(Expression, Expression, RewritingProcess)},
+	 * renaming one variable at a time.
+	 */
+	private static class PreviousStandardizedApartFrom {
+
+		public static Expression standardizedApartFrom(Expression expression1, Expression expression2, RewritingProcess process) {		
+			Collection<Expression> variablesThatCannotBeScopingInExpression = new LinkedHashSet<Expression>();
+			variablesThatCannotBeScopingInExpression.addAll(process.getContextualSymbols());
+			variablesThatCannotBeScopingInExpression.addAll(Expressions.getVariables(expression2, process));
+			Expression result = new Standardizer(variablesThatCannotBeScopingInExpression).apply(expression1, process);
+			return result;
+		}
+
+		private static class Standardizer extends AbstractReplacementFunctionWithContextuallyUpdatedProcess {
+			private Collection<Expression> variablesThatCannotBeScopingInExpression;
+
+			public Standardizer(Collection<Expression> variablesThatCannotBeScopingInExpression) {
+				super();
+				this.variablesThatCannotBeScopingInExpression = variablesThatCannotBeScopingInExpression;
+			}
+
+			@Override
+			public Expression apply(Expression expression, RewritingProcess process) {
+				Expression result = expression.replace(this, false, null, true, null, process);
+				List<Expression> scopedVariables = result.getScopedExpressions(process);
+				Collection<Expression> variablesToBeRenamed  = Util.intersection(scopedVariables, variablesThatCannotBeScopingInExpression);
+				Collection<Expression> forbiddenVariables    = new LinkedHashSet<Expression>();
+				forbiddenVariables.addAll(Expressions.getVariables(result, process));
+				forbiddenVariables.addAll(variablesThatCannotBeScopingInExpression);
+				Predicate<Expression>  isNovel               = new NotContainedBy<Expression>(forbiddenVariables);
+				for (Expression variableToBeRenamed : variablesToBeRenamed) {
+					Expression replacement = Expressions.primedUntilUnique(variableToBeRenamed, isNovel);
+					result = result.replaceSymbol(variableToBeRenamed, replacement, process);
+					forbiddenVariables.add(replacement);
+				}
+				return result;
+			}
+		}
+	}
+}
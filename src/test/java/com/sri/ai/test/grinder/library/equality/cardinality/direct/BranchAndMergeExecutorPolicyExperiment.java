@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.library.equality.cardinality.direct;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.grinder.GrinderConfiguration;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.helper.concurrent.BranchAndMergeTaskStatistics;
+import com.sri.ai.grinder.library.DirectCardinalityComputationFactory;
+import com.sri.ai.grinder.library.equality.cardinality.core.CountsDeclaration;
+import com.sri.ai.grinder.library.equality.cardinality.direct.CardinalityRewriter;
+import com.sri.ai.util.AICUtilConfiguration;
+import com.sri.ai.util.Configuration;
+import com.sri.ai.util.Util;
+import com.sri.ai.util.concurrent.BranchAndMerge;
+
+/**
+ * Compares the time taken by R_card on cardinality problems made of many independent sub-problems
+ * (conjunctions of disjunctions on disjoint indices, which are split into independent tasks)
+ * under each branch and merge executor policy, with and without a sequential cutoff,
+ * and prints the task timing recorded by each run.
+ * 
+ * @author braz
+ *
+ */
+public class BranchAndMergeExecutorPolicyExperiment {
+
+	public static int numberOfIndependentSubProblems = 12;
+	public static int numberOfRuns = 5;
+	public static long[] sequentialCutoffs = {0, 50};
+
+	public static void main(String[] args) {
+		GrinderConfiguration.disableTrace();
+		GrinderConfiguration.disableJustification();
+		Configuration.setProperty(GrinderConfiguration.KEY_DISPLAY_TREE_UTIL_UI, "false");
+		Configuration.setProperty(AICUtilConfiguration.KEY_BRANCH_AND_MERGE_THREADING_ENABLED, "true");
+		Configuration.setProperty(GrinderConfiguration.KEY_BRANCH_AND_MERGE_RECORD_TASK_TIMING, "true");
+		BranchAndMerge.reset();
+		
+		Expression problem = makeProblem(numberOfIndependentSubProblems);
+		System.out.println("Problem: " + problem);
+		
+		List<String> policies = Util.list(
+				GrinderConfiguration.BRANCH_AND_MERGE_EXECUTOR_POLICY_CALLER_RUNS,
+				GrinderConfiguration.BRANCH_AND_MERGE_EXECUTOR_POLICY_BRANCH_AND_MERGE,
+				GrinderConfiguration.BRANCH_AND_MERGE_EXECUTOR_POLICY_FORK_JOIN);
+		
+		Expression expected = null;
+		for (long sequentialCutoff : sequentialCutoffs) {
+			for (String policy : policies) {
+				Configuration.setProperty(GrinderConfiguration.KEY_BRANCH_AND_MERGE_EXECUTOR_POLICY, policy);
+				Configuration.setProperty(GrinderConfiguration.KEY_BRANCH_AND_MERGE_SEQUENTIAL_CUTOFF, Long.toString(sequentialCutoff));
+				
+				solve(problem); // warm-up
+				long start = System.currentTimeMillis();
+				RewritingProcess process = null;
+				Expression result = null;
+				for (int i = 0; i != numberOfRuns; i++) {
+					process = DirectCardinalityComputationFactory.newCardinalityProcess(problem);
+					new CountsDeclaration(10).setup(process);
+					result = process.rewrite(CardinalityRewriter.R_card, problem);
+				}
+				long average = (System.currentTimeMillis() - start)/numberOfRuns;
+				
+				if (expected == null) {
+					expected = result;
+				}
+				else if ( ! expected.equals(result)) {
+					throw new Error("Policy " + policy + " produced " + result + " instead of " + expected);
+				}
+				
+				System.out.println("\nPolicy " + policy + ", sequential cutoff " + sequentialCutoff + ": " + average + " ms per problem");
+				System.out.println(BranchAndMergeTaskStatistics.getFor(process));
+			}
+		}
+		System.out.println("\nResult: " + expected);
+	}
+
+	private static Expression solve(Expression problem) {
+		RewritingProcess process = DirectCardinalityComputationFactory.newCardinalityProcess(problem);
+		new CountsDeclaration(10).setup(process);
+		Expression result = process.rewrite(CardinalityRewriter.R_card, problem);
+		return result;
+	}
+
+	/**
+	 * Makes | { ( on X1, Y1, ..., Xn, Yn ) ( X1, Y1, ..., Xn, Yn ) | (X1 = a1 or Y1 != X1) and ... and (Xn = an or Yn != Xn) } |.
+	 */
+	private static Expression makeProblem(int n) {
+		List<String> indices = new ArrayList<String>();
+		List<String> conjuncts = new ArrayList<String>();
+		for (int i = 1; i <= n; i++) {
+			indices.add("X" + i);
+			indices.add("Y" + i);
+			conjuncts.add("(X" + i + " = a" + i + " or Y" + i + " != X" + i + ")");
+		}
+		String indicesString = Util.join(", ", indices);
+		Expression result = Expressions.parse("| { ( on " + indicesString + " ) ( " + indicesString + " ) | " + Util.join(" and ", conjuncts) + " } |");
+		return result;
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.library.equality.cardinality.direct;
+
+import java.util.LinkedHashMap;
+
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.grinder.GrinderConfiguration;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.core.DefaultRewriterLookup;
+import com.sri.ai.grinder.core.DefaultRewritingProcess;
+import com.sri.ai.grinder.core.PrologConstantPredicate;
+import com.sri.ai.grinder.library.DirectCardinalityComputationFactory;
+import com.sri.ai.grinder.library.equality.cardinality.core.CountsDeclaration;
+import com.sri.ai.grinder.library.equality.cardinality.direct.CardinalityRewriter;
+import com.sri.ai.util.Configuration;
+
+/**
+ * Measures the time taken to create cardinality rewriting processes
+ * by building all cardinality rewriters for each process (as done before rewriter graphs were shared)
+ * and by binding them to the shared {@link DirectCardinalityComputationFactory.CardinalityRewriterGraph},
+ * as well as the time to create and solve a small cardinality problem with each.
+ * 
+ * @author braz
+ *
+ */
+public class CardinalityProcessCreationExperiment {
+
+	public static int numberOfProcesses = 10000;
+	public static int numberOfSmallProblems = 1000;
+	
+	public static void main(String[] args) {
+		GrinderConfiguration.disableTrace();
+		GrinderConfiguration.disableJustification();
+		Configuration.setProperty(GrinderConfiguration.KEY_DISPLAY_TREE_UTIL_UI, "false");
+		
+		Expression problem = Expressions.parse("| { ( on X, Y ) ( X, Y ) | X != a and Y != X } |");
+		
+		for (int round = 0; round != 3; round++) {
+			System.out.println("Round " + round);
+			
+			long start = System.nanoTime();
+			for (int i = 0; i != numberOfProcesses; i++) {
+				newProcessRebuildingRewriters(problem);
+			}
+			report("process creation, rebuilding rewriters", numberOfProcesses, start);
+
+			start = System.nanoTime();
+			for (int i = 0; i != numberOfProcesses; i++) {
+				DirectCardinalityComputationFactory.newCardinalityProcess(problem);
+			}
+			report("process creation, shared rewriter graph", numberOfProcesses, start);
+
+			Expression expected = null;
+			start = System.nanoTime();
+			for (int i = 0; i != numberOfSmallProblems; i++) {
+				expected = solve(problem, newProcessRebuildingRewriters(problem));
+			}
+			report("small problem, rebuilding rewriters", numberOfSmallProblems, start);
+
+			Expression result = null;
+			start = System.nanoTime();
+			for (int i = 0; i != numberOfSmallProblems; i++) {
+				result = solve(problem, DirectCardinalityComputationFactory.newCardinalityProcess(problem));
+			}
+			report("small problem, shared rewriter graph", numberOfSmallProblems, start);
+			
+			if ( ! expected.equals(result)) {
+				throw new Error("Shared rewriter graph produced " + result + " instead of " + expected);
+			}
+		}
+	}
+
+	/**
+	 * Creates a cardinality process the way {@link DirectCardinalityComputationFactory} did
+	 * before rewriter graphs were shared.
+	 */
+	private static RewritingProcess newProcessRebuildingRewriters(Expression rootExpression) {
+		RewritingProcess result = new DefaultRewritingProcess(
+				rootExpression,
+				DirectCardinalityComputationFactory.getRootRewriter(),
+				new DefaultRewriterLookup(DirectCardinalityComputationFactory.getCardinalityRewritersMap()),
+				new LinkedHashMap<Expression, Expression>(),
+				Expressions.TRUE,
+				new PrologConstantPredicate(),
+				new LinkedHashMap<Object, Object>());
+		return result;
+	}
+	
+	private static Expression solve(Expression problem, RewritingProcess process) {
+		new CountsDeclaration(10).setup(process);
+		Expression result = process.rewrite(CardinalityRewriter.R_card, problem);
+		return result;
+	}
+	
+	private static void report(String description, int numberOfRepetitions, long startInNanoseconds) {
+		long elapsed = System.nanoTime() - startInNanoseconds;
+		System.out.println(String.format("  %-45s: %10.2f microseconds each", description, elapsed/1000.0/numberOfRepetitions));
+	}
+}
@@ -37,10 +37,12 @@
  */
 package com.sri.ai.test.grinder.library.equality.cardinality.direct;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.Assert;
@@ -53,8 +55,10 @@ import com.sri.ai.grinder.library.Basic;
 import com.sri.ai.grinder.library.DirectCardinalityComputationFactory;
 import com.sri.ai.grinder.library.boole.And;
 import com.sri.ai.grinder.library.equality.cardinality.CardinalityUtil;
+import com.sri.ai.grinder.library.equality.cardinality.IndependentProblemsFinder;
 import com.sri.ai.grinder.library.set.tuple.Tuple;
 import com.sri.ai.test.grinder.AbstractGrinderTest;
+import com.sri.ai.util.Util;
 import com.sri.ai.util.base.Pair;
 
 public class CardinalityUtilTest extends AbstractGrinderTest {
@@ -163,9 +167,68 @@ public class CardinalityUtilTest extends AbstractGrinderTest {
 				"tuple(Y, X)", "tuple(X = a, Y != b)");
 	}
 	
+	@Test
+	public void testIndependentProblemsFinderAgreesWithOriginalImplementation() {
+		RewritingProcess process = new DefaultRewritingProcess(parse(""), new Basic());
+		Random random = new Random(1);
+		
+		List<String> formulas = Util.list(
+				"true",
+				"Z = a",
+				"X != a and Y != a and Z = a and W = a",
+				"and((X != a and W != b), Y != a, Z = a, W != a)",
+				"X = a and X = a and Y = X and Z != b");
+		for (String formula : formulas) {
+			List<Expression> conjuncts = And.getConjuncts(parse(formula));
+			assertSameIndependentProblems(conjuncts, Tuple.getElements(parse("tuple(X, Y)")), process);
+			assertSameIndependentProblems(conjuncts, Tuple.getElements(parse("tuple(X, Y, Z, V)")), process);
+		}
+		
+		// wide formulas on many variables, as generated by conditioning
+		for (int i = 0; i != 20; i++) {
+			int numberOfVariables = 5 + random.nextInt(40);
+			List<Expression> conjuncts = new ArrayList<Expression>();
+			for (int j = 0, numberOfConjuncts = 1 + random.nextInt(200); j != numberOfConjuncts; j++) {
+				String other = random.nextInt(3) == 0? "a" + random.nextInt(3) : "X" + random.nextInt(numberOfVariables);
+				conjuncts.add(parse("X" + random.nextInt(numberOfVariables) + (random.nextBoolean()? " = " : " != ") + other));
+			}
+			List<Expression> indices = new ArrayList<Expression>();
+			for (int j = 0; j != numberOfVariables + 3; j++) {
+				if (random.nextInt(3) == 0) {
+					indices.add(parse("X" + j));
+				}
+			}
+			assertSameIndependentProblems(conjuncts, indices, process);
+		}
+		
+		// memoized results are returned as copies callers may modify
+		List<Expression> conjuncts = And.getConjuncts(parse("X != a and Y != a and Z = a"));
+		List<Expression> indices   = Tuple.getElements(parse("tuple(X, Y)"));
+		List<Pair<Set<Expression>, List<Expression>>> first = IndependentProblemsFinder.find(conjuncts, indices, process);
+		for (Pair<Set<Expression>, List<Expression>> problem : first) {
+			problem.second.add(parse("W = b"));
+		}
+		assertSameIndependentProblems(conjuncts, indices, process);
+	}
+	
 	//
 	// PRIVATE METHODS
 	//
+	private void assertSameIndependentProblems(List<Expression> conjuncts, List<Expression> indices, RewritingProcess process) {
+		List<Pair<Set<Expression>, List<Expression>>> expected = CardinalityUtil.findIndependentProblemsWithoutMemoization(conjuncts, indices, process);
+		List<Pair<Set<Expression>, List<Expression>>> actual   = IndependentProblemsFinder.find(conjuncts, indices, process);
+		Assert.assertEquals(toMap(expected), toMap(actual));
+		Assert.assertEquals(toMap(expected), toMap(IndependentProblemsFinder.findWithoutMemoization(conjuncts, indices, process)));
+	}
+	
+	private static Map<Set<Expression>, List<Expression>> toMap(List<Pair<Set<Expression>, List<Expression>>> problems) {
+		Map<Set<Expression>, List<Expression>> result = new LinkedHashMap<Set<Expression>, List<Expression>>();
+		for (Pair<Set<Expression>, List<Expression>> problem : problems) {
+			Assert.assertNull("Index set appears in more than one problem: " + problem.first, result.put(problem.first, problem.second));
+		}
+		return result;
+	}
+	
 	private void assertProblemsMatch(List<Pair<Set<Expression>, List<Expression>>> indProblems, 
 			String... expectedPairs) {
 		if (expectedPairs.length % 2 != 0) {
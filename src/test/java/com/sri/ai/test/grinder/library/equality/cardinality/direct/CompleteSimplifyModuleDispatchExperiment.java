@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.library.equality.cardinality.direct;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.expresso.helper.SubExpressionsDepthFirstIterator;
+import com.sri.ai.grinder.GrinderConfiguration;
+import com.sri.ai.grinder.api.Module;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.helper.GrinderUtil;
+import com.sri.ai.grinder.library.DirectCardinalityComputationFactory;
+import com.sri.ai.grinder.library.FunctorConstants;
+import com.sri.ai.grinder.library.controlflow.ImposedConditionsModule;
+import com.sri.ai.grinder.library.equality.RandomEqualityFormulaGenerator;
+import com.sri.ai.grinder.library.equality.cardinality.direct.CardinalityRewriter;
+import com.sri.ai.util.Configuration;
+import com.sri.ai.util.Util;
+
+/**
+ * Measures the time taken by R_complete_simplify on large conditional formulas,
+ * and the time taken to query {@link ImposedConditionsModule} about each of their sub-expressions
+ * by a linear scan of its providers, by dispatch on functors and syntactic form types (see {@link Module.ProviderWithDispatchKeys}),
+ * and by dispatch with memoization, as {@link ImposedConditionsModule#getConditionsExpressionImposesOnSubExpressions(Expression, RewritingProcess)} does.
+ * 
+ * @author braz
+ *
+ */
+public class CompleteSimplifyModuleDispatchExperiment {
+
+	public static int SEED = 1;
+	public static int numberOfFormulas = 10;
+	public static int numberOfVariables = 6;
+	public static int numberOfConstants = 4;
+	public static int conditionalDepth = 5;
+	public static int formulaDepth = 2;
+	public static int formulaBreadth = 3;
+	public static int numberOfQueryRepetitions = 20;
+	
+	public static void main(String[] args) {
+		GrinderUtil.setTraceAndJustificationOffAndTurnOffConcurrency();
+		Configuration.setProperty(GrinderConfiguration.KEY_DISPLAY_TREE_UTIL_UI, "false");
+
+		Random random = new Random(SEED);
+		RandomEqualityFormulaGenerator generator = new RandomEqualityFormulaGenerator(random, numberOfVariables, numberOfConstants, formulaDepth, formulaBreadth);
+		List<Expression> formulas = new ArrayList<Expression>(numberOfFormulas);
+		List<Expression> subExpressions = new ArrayList<Expression>();
+		for (int i = 0; i != numberOfFormulas; i++) {
+			Expression formula = makeConditionalFormula(generator, conditionalDepth);
+			formulas.add(formula);
+			subExpressions.addAll(Util.listFrom(new SubExpressionsDepthFirstIterator(formula)));
+		}
+		System.out.println("Formulas have " + subExpressions.size() + " sub-expressions in total");
+
+		Expression[] expected = new Expression[formulas.size()];
+		for (int round = 0; round != 3; round++) {
+			System.out.println("Round " + round);
+
+			RewritingProcess process = DirectCardinalityComputationFactory.newCardinalityProcess(Expressions.TRUE);
+			ImposedConditionsModule module = (ImposedConditionsModule) process.findModule(ImposedConditionsModule.class);
+			if (module == null) {
+				throw new Error("ImposedConditionsModule module not found");
+			}
+
+			long start = System.nanoTime();
+			long numberOfResults = 0;
+			for (int i = 0; i != numberOfQueryRepetitions; i++) {
+				for (Expression subExpression : subExpressions) {
+					for (Module.Provider provider : module.getProviders()) {
+						if (((ImposedConditionsModule.Provider) provider).getConditionsExpressionImposesOnSubExpressions(subExpression, process) != null) {
+							numberOfResults++;
+							break;
+						}
+					}
+				}
+			}
+			report("linear scan of providers", subExpressions.size()*numberOfQueryRepetitions, numberOfResults, start);
+
+			start = System.nanoTime();
+			numberOfResults = 0;
+			for (int i = 0; i != numberOfQueryRepetitions; i++) {
+				for (Expression subExpression : subExpressions) {
+					for (Module.Provider provider : module.getProvidersFor(subExpression)) {
+						if (((ImposedConditionsModule.Provider) provider).getConditionsExpressionImposesOnSubExpressions(subExpression, process) != null) {
+							numberOfResults++;
+							break;
+						}
+					}
+				}
+			}
+			report("dispatch", subExpressions.size()*numberOfQueryRepetitions, numberOfResults, start);
+
+			start = System.nanoTime();
+			numberOfResults = 0;
+			for (int i = 0; i != numberOfQueryRepetitions; i++) {
+				for (Expression subExpression : subExpressions) {
+					if (module.getConditionsExpressionImposesOnSubExpressions(subExpression, process) != null) {
+						numberOfResults++;
+					}
+				}
+			}
+			report("dispatch, memoized", subExpressions.size()*numberOfQueryRepetitions, numberOfResults, start);
+
+			start = System.nanoTime();
+			for (int i = 0; i != formulas.size(); i++) {
+				RewritingProcess simplificationProcess = DirectCardinalityComputationFactory.newCardinalityProcess(formulas.get(i));
+				Expression result = simplificationProcess.rewrite(CardinalityRewriter.R_complete_simplify, formulas.get(i));
+				if (expected[i] == null) {
+					expected[i] = result;
+				}
+				else if ( ! expected[i].equals(result)) {
+					throw new Error("Complete simplification of " + formulas.get(i) + " produced " + result + " instead of " + expected[i]);
+				}
+			}
+			System.out.println(String.format("  %-35s: %10.2f ms per formula", "complete simplification", (System.nanoTime() - start)/1000000.0/formulas.size()));
+		}
+	}
+
+	/**
+	 * Makes a balanced tree of if then else expressions of given depth
+	 * with random equality formulas as conditions and leaves.
+	 */
+	private static Expression makeConditionalFormula(RandomEqualityFormulaGenerator generator, int depth) {
+		Expression result;
+		if (depth == 0) {
+			result = generator.next();
+		}
+		else {
+			Expression condition = generator.next();
+			Expression thenBranch = makeConditionalFormula(generator, depth - 1);
+			Expression elseBranch = makeConditionalFormula(generator, depth - 1);
+			result = Expressions.apply(FunctorConstants.IF_THEN_ELSE, condition, thenBranch, elseBranch);
+		}
+		return result;
+	}
+	
+	private static void report(String description, int numberOfQueries, long numberOfResults, long startInNanoseconds) {
+		long elapsed = System.nanoTime() - startInNanoseconds;
+		System.out.println(String.format("  %-35s: %10.2f microseconds per query (%d non-null results)", description, elapsed/1000.0/numberOfQueries, numberOfResults));
+	}
+}
@@ -38,7 +38,10 @@
 package com.sri.ai.test.grinder.library.equality.cardinality.direct;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -65,6 +68,7 @@ import com.sri.ai.grinder.library.equality.cardinality.direct.core.AddDisjunctAn
 import com.sri.ai.grinder.library.equality.cardinality.direct.core.IncompleteLinearImplies;
 import com.sri.ai.grinder.library.equality.cardinality.direct.core.IsContradiction;
 import com.sri.ai.grinder.library.equality.cardinality.direct.core.IsTautology;
+import com.sri.ai.grinder.library.equality.cardinality.direct.core.LearnedPickCheapestTopLevelCostFunction;
 import com.sri.ai.grinder.library.equality.cardinality.direct.core.PickCheapest;
 import com.sri.ai.grinder.library.equality.cardinality.direct.core.QuantifierEliminationWrapper;
 import com.sri.ai.grinder.library.equality.cardinality.direct.core.ReplaceConjunctAndTopSimplify;
@@ -4350,4 +4354,89 @@ public class DirectCardinalityTest extends AbstractGrinderTest {
 		assertEquals(expected, WorstCaseNumberOfDisjuncts.get(parse(expressionString)));
 	}
 	
+	@Test
+	public void testSharedRewriterGraph() {
+		Expression problem = parse("| { ( on X, Y ) ( X, Y ) | X != a and Y != X } |");
+		
+		RewritingProcess process1 = DirectCardinalityComputationFactory.newCardinalityProcess(problem);
+		RewritingProcess process2 = DirectCardinalityComputationFactory.newCardinalityProcess(problem);
+		RewritingProcess childProcess = DirectCardinalityComputationFactory.newCardinalityProcess(problem, process1);
+		assertSame(process1.getRootRewriter(), process2.getRootRewriter());
+		assertSame(process1.getRewriterLookup(), process2.getRewriterLookup());
+		assertSame(process1.getRewriterLookup(), childProcess.getRewriterLookup());
+		assertSame(
+				DirectCardinalityComputationFactory.getDefaultRewriterGraph(),
+				DirectCardinalityComputationFactory.getRewriterGraph(DirectCardinalityComputationFactory.newCardinalityConfiguration()));
+		
+		// processes with distinct type sizes sharing the rewriters must not interfere with each other
+		new CountsDeclaration(10).setup(process1);
+		new CountsDeclaration(20).setup(process2);
+		Expression result1 = process1.rewrite(CardinalityRewriter.R_card, problem);
+		Expression result2 = process2.rewrite(CardinalityRewriter.R_card, problem);
+		assertEquals(parse("81"), result1);
+		assertEquals(parse("361"), result2);
+		
+		RewritingProcess process3 = DirectCardinalityComputationFactory.newCardinalityProcess(problem);
+		new CountsDeclaration(10).setup(process3);
+		assertEquals(result1, process3.rewrite(CardinalityRewriter.R_card, problem));
+	}
+	
+	@Test
+	public void testLearnedPickCheapestTopLevelCostFunction() throws IOException {
+		LearnedPickCheapestTopLevelCostFunction costFunction = new LearnedPickCheapestTopLevelCostFunction();
+		PickCheapest pickCheapest = new PickCheapest();
+		pickCheapest.setPickCheapestTopLevelCostFunction(costFunction);
+		Assert.assertTrue(pickCheapest.isRecordingChoices());
+		
+		// before being fit, costs are the default ones
+		Assert.assertFalse(costFunction.isFit());
+		assertEquals(0, pickCheapest.pickIndex(parse("X = a or Y = b"), parse("(X = a or Y = b) and (Z = c or W = d)")));
+		
+		// record choices whose rewriting takes 3 microseconds per node of the chosen formula
+		// plus 200 microseconds per disjunctive operator in it.
+		String[] formulas = {
+				"X = a", "X != a", "X = a and Y = b", "X = a or Y = b", "not(X = a)",
+				"(X = a or Y = b) and (Z = c or W = d)", "X = a and Y = b and Z = c", "for all X : X = a or Y = b",
+				"there exists X : X = Y", "X = a => Y = b", "(X = a) <=> (Y = b)", "((X = a) <=> (Y = b)) and Z = c",
+				"X = a or Y = b or Z = c or W = d", "(X = a => Y = b) and (Y = b => Z = c)", "not(X = a and Y = b)", "X = Y and Y = Z",
+		};
+		for (int repetition = 0; repetition != 2; repetition++) {
+			for (String formula : formulas) {
+				Expression formulaExpression = parse(formula);
+				pickCheapest.recordChoice(formulaExpression, 1000*syntheticRewriteTimeInMicroseconds(formulaExpression), parse("1"));
+			}
+		}
+		Assert.assertTrue(costFunction.fit());
+		
+		Expression conjunction = parse("X = a and Y = b and Z = c and W = d");
+		Expression disjunction = parse("X = a or Y = b");
+		assertEquals(syntheticRewriteTimeInMicroseconds(disjunction), costFunction.predictRewriteTimeInMicroseconds(disjunction), 1.0);
+		assertEquals(syntheticRewriteTimeInMicroseconds(conjunction), costFunction.predictRewriteTimeInMicroseconds(conjunction), 1.0);
+		// default costs pick the smaller disjunction, but it is the most expensive one
+		assertEquals(1, new PickCheapest().pickIndex(conjunction, disjunction));
+		assertEquals(0, pickCheapest.pickIndex(conjunction, disjunction));
+		
+		File file = File.createTempFile("learnedPickCheapestCostModel", ".properties");
+		try {
+			costFunction.save(file);
+			LearnedPickCheapestTopLevelCostFunction loaded = LearnedPickCheapestTopLevelCostFunction.load(file);
+			assertEquals(costFunction.getNumberOfRecordedChoices(), loaded.getNumberOfRecordedChoices());
+			assertEquals(costFunction.predictRewriteTimeInMicroseconds(disjunction), loaded.predictRewriteTimeInMicroseconds(disjunction), 1e-9);
+			assertEquals(costFunction.predictResultSize(disjunction), loaded.predictResultSize(disjunction), 1e-9);
+		}
+		finally {
+			file.delete();
+		}
+	}
+	
+	private static long syntheticRewriteTimeInMicroseconds(Expression formula) {
+		long result = 3;
+		if (formula.hasFunctor(FunctorConstants.OR) || formula.hasFunctor(FunctorConstants.IMPLICATION) || formula.hasFunctor(FunctorConstants.EQUIVALENCE)) {
+			result += 200;
+		}
+		for (Expression argument : formula.getArguments()) {
+			result += syntheticRewriteTimeInMicroseconds(argument);
+		}
+		return result;
+	}
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.library.equality.cardinality.direct;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.core.DefaultRewritingProcess;
+import com.sri.ai.grinder.library.Basic;
+import com.sri.ai.grinder.library.equality.cardinality.CardinalityUtil;
+import com.sri.ai.grinder.library.equality.cardinality.IndependentProblemsFinder;
+
+/**
+ * Measures the time taken to find independent problems in wide conjunctions of literals
+ * by the original implementation ({@link CardinalityUtil#findIndependentProblemsWithoutMemoization(List, List, RewritingProcess)})
+ * and by {@link IndependentProblemsFinder}, with and without memoization.
+ * Each conjunction is queried repeatedly while literals are dropped from it one at a time,
+ * as happens when DPLL conditions on them, and each prefix of the conditioning is queried again
+ * for the sibling branch.
+ * 
+ * @author braz
+ *
+ */
+public class IndependentProblemsExperiment {
+
+	public static int SEED = 1;
+	public static int numberOfFormulas = 20;
+	public static int numberOfVariables = 200;
+	public static int numberOfLiterals = 500;
+	public static int numberOfIndices = 50;
+	public static int numberOfConditionings = 100;
+	
+	public static void main(String[] args) {
+		Random random = new Random(SEED);
+		List<List<List<Expression>>> queries = new ArrayList<List<List<Expression>>>();
+		List<List<Expression>> indicesOfFormulas = new ArrayList<List<Expression>>();
+		for (int i = 0; i != numberOfFormulas; i++) {
+			List<Expression> conjuncts = makeWideConjunction(random);
+			List<List<Expression>> conditionings = new ArrayList<List<Expression>>();
+			for (int j = 0; j != numberOfConditionings && conjuncts.size() > 1; j++) {
+				conditionings.add(new ArrayList<Expression>(conjuncts));
+				conditionings.add(new ArrayList<Expression>(conjuncts)); // sibling branch asks again
+				conjuncts.remove(random.nextInt(conjuncts.size()));
+			}
+			queries.add(conditionings);
+			List<Expression> indices = new ArrayList<Expression>();
+			for (int j = 0; j != numberOfIndices; j++) {
+				indices.add(Expressions.makeSymbol("X" + random.nextInt(numberOfVariables)));
+			}
+			indicesOfFormulas.add(indices);
+		}
+		
+		for (int round = 0; round != 3; round++) {
+			System.out.println("Round " + round);
+
+			RewritingProcess process = new DefaultRewritingProcess(Expressions.TRUE, new Basic());
+			long start = System.nanoTime();
+			int numberOfQueries = 0;
+			long numberOfProblems = 0;
+			for (int i = 0; i != queries.size(); i++) {
+				for (List<Expression> conjuncts : queries.get(i)) {
+					numberOfProblems += CardinalityUtil.findIndependentProblemsWithoutMemoization(conjuncts, indicesOfFormulas.get(i), process).size();
+					numberOfQueries++;
+				}
+			}
+			report("original implementation", numberOfQueries, numberOfProblems, start);
+
+			process = new DefaultRewritingProcess(Expressions.TRUE, new Basic());
+			start = System.nanoTime();
+			numberOfProblems = 0;
+			for (int i = 0; i != queries.size(); i++) {
+				for (List<Expression> conjuncts : queries.get(i)) {
+					numberOfProblems += IndependentProblemsFinder.findWithoutMemoization(conjuncts, indicesOfFormulas.get(i), process).size();
+				}
+			}
+			report("union-find, without memoization", numberOfQueries, numberOfProblems, start);
+
+			process = new DefaultRewritingProcess(Expressions.TRUE, new Basic());
+			start = System.nanoTime();
+			numberOfProblems = 0;
+			for (int i = 0; i != queries.size(); i++) {
+				for (List<Expression> conjuncts : queries.get(i)) {
+					numberOfProblems += IndependentProblemsFinder.find(conjuncts, indicesOfFormulas.get(i), process).size();
+				}
+			}
+			report("union-find, memoized", numberOfQueries, numberOfProblems, start);
+		}
+	}
+
+	private static List<Expression> makeWideConjunction(Random random) {
+		List<Expression> result = new ArrayList<Expression>(numberOfLiterals);
+		for (int i = 0; i != numberOfLiterals; i++) {
+			String other = random.nextInt(4) == 0? "X" + random.nextInt(numberOfVariables) : "a" + random.nextInt(10);
+			result.add(Expressions.parse("X" + random.nextInt(numberOfVariables) + (random.nextBoolean()? " = " : " != ") + other));
+		}
+		return result;
+	}
+	
+	private static void report(String description, int numberOfQueries, long numberOfProblems, long startInNanoseconds) {
+		long elapsed = System.nanoTime() - startInNanoseconds;
+		System.out.println(String.format("  %-35s: %10.2f microseconds per query (%d problems found)", description, elapsed/1000.0/numberOfQueries, numberOfProblems));
+	}
+}
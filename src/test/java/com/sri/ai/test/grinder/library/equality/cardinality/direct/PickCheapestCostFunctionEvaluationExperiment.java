@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.library.equality.cardinality.direct;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.grinder.GrinderConfiguration;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.helper.GrinderUtil;
+import com.sri.ai.grinder.library.DirectCardinalityComputationFactory;
+import com.sri.ai.grinder.library.equality.RandomCardinalityProblemGenerator;
+import com.sri.ai.grinder.library.equality.cardinality.core.CountsDeclaration;
+import com.sri.ai.grinder.library.equality.cardinality.direct.CardinalityConfiguration;
+import com.sri.ai.grinder.library.equality.cardinality.direct.CardinalityRewriter;
+import com.sri.ai.grinder.library.equality.cardinality.direct.core.LearnedPickCheapestTopLevelCostFunction;
+import com.sri.ai.util.Configuration;
+import com.sri.ai.util.Util;
+import com.sri.ai.util.collect.FirstNIterator;
+
+/**
+ * Compares the total time taken by R_card to solve a corpus of random cardinality problems
+ * when pick cheapest uses the default top level cost function
+ * and when it uses a {@link LearnedPickCheapestTopLevelCostFunction}
+ * trained on a separate corpus generated with the same parameters.
+ * <p>
+ * If a file name is given as argument, the learned model is loaded from it if it exists
+ * (and trained further), and saved to it after training.
+ *
+ * @author braz
+ *
+ */
+public class PickCheapestCostFunctionEvaluationExperiment {
+
+	public static int SEED = 1;
+	public static int sizeOfTrainingCorpus = 100;
+	public static int sizeOfEvaluationCorpus = 50;
+	public static int numberOfVariables = 5;
+	public static int numberOfConstants = 4;
+	public static int depth = 3;
+	public static int breadth = 3;
+	public static int numberOfRuns = 3;
+
+	public static void main(String[] args) throws IOException {
+		GrinderUtil.setTraceAndJustificationOffAndTurnOffConcurrency();
+		Configuration.setProperty(GrinderConfiguration.KEY_DISPLAY_TREE_UTIL_UI, "false");
+
+		Random random = new Random(SEED);
+		List<Expression> trainingCorpus   = makeCorpus(random, sizeOfTrainingCorpus);
+		List<Expression> evaluationCorpus = makeCorpus(random, sizeOfEvaluationCorpus);
+
+		File modelFile = args.length > 0? new File(args[0]) : null;
+		LearnedPickCheapestTopLevelCostFunction learned;
+		if (modelFile != null && modelFile.exists()) {
+			learned = LearnedPickCheapestTopLevelCostFunction.load(modelFile);
+			System.out.println("Loaded model trained on " + learned.getNumberOfRecordedChoices() + " choices from " + modelFile);
+		}
+		else {
+			learned = new LearnedPickCheapestTopLevelCostFunction();
+		}
+
+		CardinalityConfiguration defaultConfiguration = DirectCardinalityComputationFactory.newCardinalityConfiguration();
+		CardinalityConfiguration learnedConfiguration = DirectCardinalityComputationFactory.newCardinalityConfiguration();
+		learnedConfiguration.setPickCheapestTopLevelCostFunction(learned);
+
+		long trainingTime = solveAll(trainingCorpus, learnedConfiguration, null);
+		learned.fit();
+		learned.setLearning(false);
+		System.out.println("Trained on " + learned.getNumberOfRecordedChoices() + " choices in " + trainingTime/1000000 + " ms");
+		System.out.println("Rewrite time weights: " + Arrays.toString(learned.getRewriteTimeWeights()));
+		if (modelFile != null) {
+			learned.save(modelFile);
+			System.out.println("Saved model to " + modelFile);
+		}
+
+		Expression[] expected = new Expression[evaluationCorpus.size()];
+		solveAll(evaluationCorpus, defaultConfiguration, expected); // warm-up
+		long defaultTime = 0;
+		long learnedTime = 0;
+		for (int run = 0; run != numberOfRuns; run++) {
+			defaultTime += solveAll(evaluationCorpus, defaultConfiguration, expected);
+			learnedTime += solveAll(evaluationCorpus, learnedConfiguration, expected);
+		}
+
+		System.out.println("Total time on " + evaluationCorpus.size() + " problems (average of " + numberOfRuns + " runs):");
+		System.out.println("  default cost function: " + defaultTime/numberOfRuns/1000000 + " ms");
+		System.out.println("  learned cost function: " + learnedTime/numberOfRuns/1000000 + " ms");
+	}
+
+	private static List<Expression> makeCorpus(Random random, int size) {
+		RandomCardinalityProblemGenerator generator = new RandomCardinalityProblemGenerator(random, numberOfVariables, numberOfConstants, numberOfVariables, depth, breadth);
+		List<Expression> result = Util.listFrom(new FirstNIterator<Expression>(size, generator));
+		return result;
+	}
+
+	/**
+	 * Solves all problems with a given configuration and returns the time taken, in nanoseconds.
+	 * If expected is not null, its null positions are filled with the results
+	 * and the remaining ones are checked against them.
+	 */
+	private static long solveAll(List<Expression> problems, CardinalityConfiguration configuration, Expression[] expected) {
+		long start = System.nanoTime();
+		int i = 0;
+		for (Expression problem : problems) {
+			RewritingProcess process = DirectCardinalityComputationFactory.newCardinalityProcess(problem, configuration, null);
+			new CountsDeclaration(10).setup(process);
+			Expression result = process.rewrite(CardinalityRewriter.R_card, problem);
+			if (expected != null) {
+				if (expected[i] == null) {
+					expected[i] = result;
+				}
+				else if ( ! expected[i].equals(result)) {
+					throw new Error("Solving " + problem + " produced " + result + " instead of " + expected[i]);
+				}
+			}
+			i++;
+		}
+		long result = System.nanoTime() - start;
+		return result;
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.library.equality.cardinality.plaindpll;
+
+import static com.sri.ai.expresso.helper.Expressions.parse;
+import static com.sri.ai.grinder.plaindpll.util.DPLLUtil.makeProcess;
+import static com.sri.ai.util.Util.list;
+import static com.sri.ai.util.Util.map;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.helper.GrinderUtil;
+import com.sri.ai.grinder.plaindpll.core.AbstractConstraintTheory;
+import com.sri.ai.grinder.plaindpll.core.ChoosingOrderRegistry;
+import com.sri.ai.grinder.plaindpll.core.SGDPLLT;
+import com.sri.ai.grinder.plaindpll.problemtype.ModelCounting;
+import com.sri.ai.grinder.plaindpll.theory.EqualityConstraintTheory;
+import com.sri.ai.grinder.plaindpll.theory.term.SymbolTermTheory;
+
+@Beta
+public class ChoosingOrderRegistryTest {
+	
+	@Test
+	public void testAgreementWithStringComparison() {
+		Random random = new Random(1);
+		
+		List<Expression> symbols = new ArrayList<Expression>();
+		for (int i = 0; i != 200; i++) {
+			symbols.add(Expressions.makeSymbol((random.nextBoolean()? "X" : "Y") + random.nextInt(1000)));
+		}
+		// a sequence of symbols each of which falls right after the previous one, forcing ordinals to be spread again
+		String name = "Z";
+		for (int i = 0; i != 100; i++) {
+			name = name + "a";
+			symbols.add(Expressions.makeSymbol(name));
+		}
+		symbols.add(Expressions.makeSymbol("Zb"));
+		
+		for (int run = 0; run != 3; run++) {
+			Collections.shuffle(symbols, random);
+			ChoosingOrderRegistry registry = new ChoosingOrderRegistry();
+			for (int i = 0; i != 5000; i++) {
+				Expression symbol1 = symbols.get(random.nextInt(symbols.size()));
+				Expression symbol2 = symbols.get(random.nextInt(symbols.size()));
+				int expected = Integer.signum(AbstractConstraintTheory.choosingOrderTieBreaker.compare(symbol1, symbol2));
+				assertEquals(symbol1 + " vs " + symbol2, expected, Integer.signum(registry.compare(symbol1, symbol2)));
+			}
+			// all pairs after all registrations
+			for (Expression symbol1 : symbols) {
+				for (Expression symbol2 : symbols) {
+					int expected = Integer.signum(AbstractConstraintTheory.choosingOrderTieBreaker.compare(symbol1, symbol2));
+					assertEquals(symbol1 + " vs " + symbol2, expected, Integer.signum(registry.compare(symbol1, symbol2)));
+				}
+			}
+			// registration is keyed on expressions, not instances
+			assertEquals(0, registry.compare(Expressions.makeSymbol("Zb"), Expressions.makeSymbol("Zb")));
+		}
+	}
+	
+	@Test
+	public void testReproducibility() {
+		GrinderUtil.setTraceAndJustificationOffAndTurnOffConcurrency();
+
+		EqualityConstraintTheory theory = new EqualityConstraintTheory(new SymbolTermTheory());
+		Expression expression = parse("if X = Y and Y = Z and W != X and (V = a or V = Z) then 1 else 0");
+		List<Expression> indices = list(parse("X"), parse("W"));
+		
+		Expression first = null;
+		for (int run = 0; run != 3; run++) {
+			RewritingProcess process = makeProcess(theory, map("X", "Everything", "Y", "Everything", "Z", "Everything", "W", "Everything", "V", "Everything"), map("Everything", "10"));
+			// registers symbols in a different order in each run
+			List<Expression> symbols = list(parse("V"), parse("W"), parse("X"), parse("Y"), parse("Z"));
+			Collections.rotate(symbols, run);
+			for (int i = 0; i != symbols.size() - 1; i++) {
+				ChoosingOrderRegistry.get(process).compare(symbols.get(i), symbols.get(i + 1));
+			}
+			Expression result = new SGDPLLT(theory, new ModelCounting()).solve(expression, indices, process);
+			if (first == null) {
+				first = result;
+			}
+			else {
+				assertEquals(first, result);
+			}
+		}
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.library.equality.cardinality.plaindpll;
+
+import static com.sri.ai.expresso.helper.Expressions.apply;
+import static com.sri.ai.expresso.helper.Expressions.parse;
+import static com.sri.ai.grinder.plaindpll.util.DPLLUtil.makeProcess;
+import static com.sri.ai.util.Util.list;
+import static com.sri.ai.util.Util.map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.helper.GrinderUtil;
+import com.sri.ai.grinder.library.FunctorConstants;
+import com.sri.ai.grinder.library.controlflow.IfThenElse;
+import com.sri.ai.grinder.plaindpll.api.GroupProblemType;
+import com.sri.ai.grinder.plaindpll.core.DecisionDiagram;
+import com.sri.ai.grinder.plaindpll.core.DecisionDiagramFactory;
+import com.sri.ai.grinder.plaindpll.core.SGDPLLT;
+import com.sri.ai.grinder.plaindpll.problemtype.Max;
+import com.sri.ai.grinder.plaindpll.problemtype.ModelCounting;
+import com.sri.ai.grinder.plaindpll.problemtype.Sum;
+import com.sri.ai.grinder.plaindpll.theory.EqualityConstraintTheory;
+import com.sri.ai.grinder.plaindpll.theory.term.SymbolTermTheory;
+
+@Beta
+public class DecisionDiagramTest {
+	
+	@Test
+	public void testDecisionDiagramFactory() {
+		
+		GrinderUtil.setTraceAndJustificationOffAndTurnOffConcurrency();
+
+		EqualityConstraintTheory theory = new EqualityConstraintTheory(new SymbolTermTheory());
+		RewritingProcess process = makeProcess(theory, map("X", "Everything", "Y", "Everything"), map("Everything", "10"));
+		DecisionDiagramFactory factory = new DecisionDiagramFactory(theory, new Sum());
+		
+		DecisionDiagram one = factory.makeTerminal(parse("1"));
+		DecisionDiagram two = factory.makeTerminal(parse("2"));
+		assertSame(one, factory.makeTerminal(parse("1")));
+		
+		// nodes with identical branches are reduced
+		assertSame(one, factory.makeIfThenElse(parse("X = a"), one, one));
+		
+		// isomorphic diagrams are the same instance
+		DecisionDiagram diagram = factory.makeIfThenElse(parse("X = a"), one, two);
+		assertSame(diagram, factory.makeIfThenElse(parse("X = a"), one, two));
+		assertSame(diagram, factory.fromExpression(parse("if X = a then 1 else 2"), process));
+		assertEquals(parse("if X = a then 1 else 2"), diagram);
+		
+		// splitters out of order are pushed down
+		DecisionDiagram reordered = factory.makeIfThenElse(parse("Y = b"), diagram, two);
+		assertEquals(parse("X = a"), reordered.getSplitter());
+		assertSame(two, reordered.getElseBranch());
+		assertEquals(parse("if X = a then if Y = b then 1 else 2 else 2"), reordered);
+		
+		// addition
+		DecisionDiagram sum = factory.add(diagram, factory.fromExpression(parse("if Y = b then 10 else 20"), process), process);
+		assertEquals(parse("if X = a then if Y = b then 11 else 21 else if Y = b then 12 else 22"), sum);
+		assertEquals(7, sum.getNumberOfNodes());
+		assertSame(sum, factory.add(diagram, factory.fromExpression(parse("if Y = b then 10 else 20"), process), process));
+		assertSame(diagram, factory.add(diagram, factory.makeTerminal(parse("0")), process));
+		
+		// diagrams may contain inconsistent combinations of splitters, which are pruned when converting them to expressions
+		DecisionDiagram inconsistent = factory.add(
+				factory.fromExpression(parse("if X = a then 1 else 0"), process),
+				factory.fromExpression(parse("if X = b then 2 else 0"), process),
+				process);
+		assertEquals(parse("if X = a then if X = b then 3 else 1 else if X = b then 2 else 0"), inconsistent);
+		assertEquals(parse("if X = a then 1 else if X = b then 2 else 0"), factory.toExpression(inconsistent, process));
+	}
+	
+	@Test
+	public void testSolvingWithDecisionDiagramsAgreesWithIfThenElseSolutions() {
+
+		GrinderUtil.setTraceAndJustificationOffAndTurnOffConcurrency();
+		
+		Random random = new Random(1);
+		EqualityConstraintTheory theory = new EqualityConstraintTheory(new SymbolTermTheory());
+		Map<String, String> mapFromSymbolNameToTypeName = map("X", "Everything", "W", "Everything", "Y", "Everything", "Z", "Everything");
+		Map<String, String> mapFromTypeNameToSizeString = map("Everything", "10");
+		RewritingProcess process = makeProcess(theory, mapFromSymbolNameToTypeName, mapFromTypeNameToSizeString);
+		List<Expression> indices = list(parse("X"), parse("W"));
+		List<Expression> freeVariables = list(parse("Y"), parse("Z"));
+		List<Expression> constants = list(parse("a"), parse("b"), parse("c"));
+		
+		List<GroupProblemType> problemTypes = list(new Sum(), new Max(), new ModelCounting());
+		for (GroupProblemType problemType : problemTypes) {
+			SGDPLLT withIfThenElse       = new SGDPLLT(theory, problemType);
+			SGDPLLT withDecisionDiagrams = new SGDPLLT(theory, problemType);
+			withDecisionDiagrams.setUseDecisionDiagrams(true);
+			for (int i = 0; i != 10; i++) {
+				Expression expression =
+						problemType instanceof ModelCounting?
+								IfThenElse.make(makeFormula(random, 4), parse("1"), parse("0")) // as done by ModelCounting for cardinality problems
+								: makeDeepConditionalValue(random, 5);
+				Expression expected = withIfThenElse.solve(expression, indices, mapFromSymbolNameToTypeName, mapFromTypeNameToSizeString);
+				Expression actual   = withDecisionDiagrams.solve(expression, indices, mapFromSymbolNameToTypeName, mapFromTypeNameToSizeString);
+				// solutions may differ in form, so we compare their values for all assignments to free variables
+				for (Expression valueOfY : constants) {
+					for (Expression valueOfZ : constants) {
+						List<Expression> values = list(valueOfY, valueOfZ);
+						assertEquals(
+								"Solving " + expression + " for Y = " + valueOfY + " and Z = " + valueOfZ,
+								evaluate(expected, freeVariables, values, theory, process),
+								evaluate(actual,   freeVariables, values, theory, process));
+					}
+				}
+			}
+		}
+	}
+
+	private static Expression evaluate(Expression solution, List<Expression> freeVariables, List<Expression> values, EqualityConstraintTheory theory, RewritingProcess process) {
+		for (int i = 0; i != freeVariables.size(); i++) {
+			solution = solution.replaceAllOccurrences(freeVariables.get(i), values.get(i), process);
+		}
+		Expression result = theory.simplify(solution, process);
+		return result;
+	}
+
+	private static Expression makeDeepConditionalValue(Random random, int depth) {
+		Expression result;
+		if (depth == 0) {
+			result = Expressions.makeSymbol(random.nextInt(4));
+		}
+		else if (random.nextInt(4) == 0) {
+			result = apply(FunctorConstants.PLUS, makeDeepConditionalValue(random, depth - 1), makeDeepConditionalValue(random, depth - 1));
+		}
+		else {
+			result = IfThenElse.make(makeLiteral(random), makeDeepConditionalValue(random, depth - 1), makeDeepConditionalValue(random, depth - 1), false);
+		}
+		return result;
+	}
+
+	private static Expression makeFormula(Random random, int depth) {
+		Expression result;
+		if (depth == 0) {
+			result = makeLiteral(random);
+		}
+		else {
+			result = apply(random.nextBoolean()? FunctorConstants.AND : FunctorConstants.OR, makeFormula(random, depth - 1), makeFormula(random, depth - 1));
+		}
+		return result;
+	}
+
+	private static Expression makeLiteral(Random random) {
+		String[] terms = {"X", "W", "Y", "Z", "a", "b"};
+		Expression result = parse(terms[random.nextInt(4)] + (random.nextBoolean()? " = " : " != ") + terms[random.nextInt(terms.length)]);
+		return result;
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.library.equality.cardinality.plaindpll;
+
+import static com.sri.ai.expresso.helper.Expressions.apply;
+import static com.sri.ai.expresso.helper.Expressions.parse;
+import static com.sri.ai.grinder.plaindpll.util.DPLLUtil.makeProcess;
+import static com.sri.ai.util.Util.map;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.helper.GrinderUtil;
+import com.sri.ai.grinder.library.FunctorConstants;
+import com.sri.ai.grinder.plaindpll.theory.EqualityConstraintTheory;
+import com.sri.ai.grinder.plaindpll.theory.term.SymbolTermTheory;
+import com.sri.ai.grinder.plaindpll.util.DPLLUtil;
+
+@Beta
+public class ImplicationClassificationTest {
+	
+	@Test
+	public void test() {
+		GrinderUtil.setTraceAndJustificationOffAndTurnOffConcurrency();
+		
+		RewritingProcess process = makeProcess(new EqualityConstraintTheory(new SymbolTermTheory()), map("X", "Everything", "Y", "Everything", "Z", "Everything"), map("Everything", "10"));
+
+		assertEquals(parse("true"),  DPLLUtil.impliesExpressionOrItsNegationOrNeither(parse("X = a"), parse("X = Y and Y = a"), process));
+		assertEquals(parse("false"), DPLLUtil.impliesExpressionOrItsNegationOrNeither(parse("X = b"), parse("X = Y and Y = a"), process));
+		assertEquals(parse("X = Z"), DPLLUtil.impliesExpressionOrItsNegationOrNeither(parse("X = Z"), parse("X = Y and Y = a"), process));
+		assertEquals(parse("true"),  DPLLUtil.impliesExpressionOrItsNegationOrNeither(parse("X = Z"), parse("X = a and X != a"), process));
+		
+		Random random = new Random(1);
+		for (int i = 0; i != 100; i++) {
+			Expression expression = makeFormula(random, random.nextInt(2));
+			Expression constraint = makeFormula(random, 1 + random.nextInt(2));
+			assertEquals(
+					expression + " under " + constraint,
+					DPLLUtil.impliesExpressionOrItsNegationOrNeitherWithTwoTautologicalityChecks(expression, constraint, process),
+					DPLLUtil.impliesExpressionOrItsNegationOrNeither(expression, constraint, process));
+		}
+	}
+
+	private static Expression makeFormula(Random random, int depth) {
+		Expression result;
+		if (depth == 0) {
+			String[] terms = {"X", "Y", "Z", "a", "b"};
+			result = parse(terms[random.nextInt(3)] + (random.nextBoolean()? " = " : " != ") + terms[random.nextInt(terms.length)]);
+		}
+		else {
+			result = apply(random.nextInt(3) == 0? FunctorConstants.OR : FunctorConstants.AND, makeFormula(random, depth - 1), makeFormula(random, depth - 1));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.library.equality.cardinality.plaindpll;
+
+import static com.sri.ai.expresso.helper.Expressions.apply;
+import static com.sri.ai.expresso.helper.Expressions.makeSymbol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.core.DefaultExistentiallyQuantifiedFormula;
+import com.sri.ai.expresso.core.DefaultUniversallyQuantifiedFormula;
+import com.sri.ai.expresso.core.ExtensionalIndexExpressionsSet;
+import com.sri.ai.grinder.GrinderConfiguration;
+import com.sri.ai.grinder.api.RewritingProcess;
+import com.sri.ai.grinder.helper.GrinderUtil;
+import com.sri.ai.grinder.library.FunctorConstants;
+import com.sri.ai.grinder.library.indexexpression.IndexExpressions;
+import com.sri.ai.grinder.plaindpll.theory.EqualityConstraintTheory;
+import com.sri.ai.grinder.plaindpll.theory.term.SymbolTermTheory;
+import com.sri.ai.grinder.plaindpll.util.DPLLUtil;
+import com.sri.ai.util.Configuration;
+import com.sri.ai.util.Util;
+
+/**
+ * Measures the time taken by {@link EqualityConstraintTheory} to simplify generated formulas with nested quantifiers,
+ * with and without the per-process cache of quantified formulas
+ * (disabled by setting {@link GrinderConfiguration#KEY_QUANTIFIED_FORMULAS_CACHE_MAXIMUM_SIZE} to zero).
+ * 
+ * @author braz
+ *
+ */
+public class NestedQuantifiersExperiment {
+
+	public static int SEED = 1;
+	public static int numberOfProblems = 30;
+	public static int depth = 4;
+	public static int breadth = 2;
+	public static int numberOfConstants = 2;
+	
+	public static void main(String[] args) {
+		GrinderUtil.setTraceAndJustificationOffAndTurnOffConcurrency();
+		
+		Random random = new Random(SEED);
+		EqualityConstraintTheory theory = new EqualityConstraintTheory(new SymbolTermTheory());
+		Map<String, String> mapFromSymbolNameToTypeName = Util.map("V", "Everything");
+		Map<String, String> mapFromTypeNameToSizeString = Util.map("Everything", "10");
+		
+		List<Expression> problems = new ArrayList<Expression>();
+		for (int i = 0; i != numberOfProblems; i++) {
+			List<Expression> variablesInScope = new ArrayList<Expression>();
+			variablesInScope.add(makeSymbol("V"));
+			problems.add(makeNestedQuantifiedFormula(random, depth, variablesInScope));
+		}
+		
+		for (int round = 0; round != 3; round++) {
+			System.out.println("Round " + round);
+			
+			Configuration.setProperty(GrinderConfiguration.KEY_QUANTIFIED_FORMULAS_CACHE_MAXIMUM_SIZE, "0");
+			List<Expression> expected = new ArrayList<Expression>();
+			long start = System.nanoTime();
+			for (Expression problem : problems) {
+				RewritingProcess process = DPLLUtil.makeProcess(theory, mapFromSymbolNameToTypeName, mapFromTypeNameToSizeString);
+				expected.add(theory.simplify(problem, process));
+			}
+			report("without cache", start);
+
+			Configuration.setProperty(GrinderConfiguration.KEY_QUANTIFIED_FORMULAS_CACHE_MAXIMUM_SIZE, GrinderConfiguration.DEFAULT_VALUE_QUANTIFIED_FORMULAS_CACHE_MAXIMUM_SIZE.toString());
+			start = System.nanoTime();
+			for (int i = 0; i != problems.size(); i++) {
+				RewritingProcess process = DPLLUtil.makeProcess(theory, mapFromSymbolNameToTypeName, mapFromTypeNameToSizeString);
+				Expression result = theory.simplify(problems.get(i), process);
+				if ( ! result.equals(expected.get(i))) {
+					throw new Error("Cached solving produced " + result + " instead of " + expected.get(i) + " for " + problems.get(i));
+				}
+			}
+			report("with cache", start);
+		}
+	}
+
+	/**
+	 * Makes a quantified formula whose body is a conjunction or disjunction of
+	 * literals on the variables in scope and (if depth allows) further quantified formulas.
+	 */
+	private static Expression makeNestedQuantifiedFormula(Random random, int depth, List<Expression> variablesInScope) {
+		Expression index = makeSymbol("X" + depth);
+		List<Expression> variablesInBody = new ArrayList<Expression>(variablesInScope);
+		variablesInBody.add(index);
+		
+		List<Expression> arguments = new ArrayList<Expression>();
+		arguments.add(makeLiteral(random, index, variablesInBody));
+		for (int i = 0; i != breadth; i++) {
+			if (depth > 1) {
+				arguments.add(makeNestedQuantifiedFormula(random, depth - 1, variablesInBody));
+			}
+			else {
+				arguments.add(makeLiteral(random, index, variablesInBody));
+			}
+		}
+		Expression body = apply(random.nextBoolean()? FunctorConstants.AND : FunctorConstants.OR, arguments.toArray());
+		
+		ExtensionalIndexExpressionsSet indexExpressions = new ExtensionalIndexExpressionsSet(Util.list(IndexExpressions.makeIndexExpression(index, makeSymbol("Everything"))));
+		Expression result;
+		if (random.nextBoolean()) {
+			result = new DefaultUniversallyQuantifiedFormula(indexExpressions, body);
+		}
+		else {
+			result = new DefaultExistentiallyQuantifiedFormula(indexExpressions, body);
+		}
+		return result;
+	}
+
+	private static Expression makeLiteral(Random random, Expression index, List<Expression> variablesInScope) {
+		Expression other;
+		int choice = random.nextInt(variablesInScope.size() + numberOfConstants);
+		if (choice < variablesInScope.size()) {
+			other = variablesInScope.get(choice);
+		}
+		else {
+			other = makeSymbol("a" + (choice - variablesInScope.size()));
+		}
+		Expression result = apply(random.nextBoolean()? FunctorConstants.EQUALITY : FunctorConstants.DISEQUALITY, index, other);
+		return result;
+	}
+
+	private static void report(String description, long startInNanoseconds) {
+		long elapsed = System.nanoTime() - startInNanoseconds;
+		System.out.println(String.format("  %-25s: %10.2f ms per problem", description, elapsed/1000000.0/numberOfProblems));
+	}
+}
@@ -42,6 +42,11 @@ import static com.sri.ai.expresso.helper.Expressions.parse;
 import static com.sri.ai.util.Util.list;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
 
 import org.junit.Test;
 
@@ -53,10 +58,12 @@ import com.sri.ai.expresso.helper.Expressions;
 import com.sri.ai.grinder.api.Rewriter;
 import com.sri.ai.grinder.helper.GrinderUtil;
 import com.sri.ai.grinder.library.FunctorConstants;
+import com.sri.ai.grinder.library.controlflow.IfThenElse;
 import com.sri.ai.grinder.plaindpll.core.SGDPLLT;
 import com.sri.ai.grinder.plaindpll.problemtype.Sum;
 import com.sri.ai.grinder.plaindpll.theory.EqualityConstraintTheory;
 import com.sri.ai.grinder.plaindpll.theory.term.SymbolTermTheory;
+import com.sri.ai.util.Util;
 
 @Beta
 public class SymbolEqualitySumDPLLTest extends AbstractSymbolicSymbolEqualityDPLLTest {
@@ -95,4 +102,41 @@ public class SymbolEqualitySumDPLLTest extends AbstractSymbolicSymbolEqualityDPL
 		expected   = parse("if | type(Y) | - 1 = 0 then 2 * | Everything | else 3 * | Everything |");
 		runSymbolicAndNonSymbolicTests(expression, indices, expected);
 	}
+
+	@Test
+	public void testMemoizedSymbolicAdditionAgreesWithUnmemoized() {
+		GrinderUtil.setTraceAndJustificationOffAndTurnOffConcurrency();
+		
+		Random random = new Random(1);
+		List<Expression> indices = list(parse("X"), parse("W"));
+		Map<String, String> mapFromSymbolNameToTypeName = Util.map("X", "Everything", "W", "Everything", "Y", "Everything", "Z", "Everything");
+		Map<String, String> mapFromTypeNameToSizeString = Util.map("Everything", "10");
+		
+		SGDPLLT memoized   = new SGDPLLT(new EqualityConstraintTheory(new SymbolTermTheory()), new Sum());
+		SGDPLLT unmemoized = new SGDPLLT(new EqualityConstraintTheory(new SymbolTermTheory()), new Sum());
+		unmemoized.setMemoizeSymbolicAdditions(false);
+		
+		for (int i = 0; i != 20; i++) {
+			Expression expression = makeDeepConditionalSum(random, 5);
+			Expression expected = unmemoized.solve(expression, indices, mapFromSymbolNameToTypeName, mapFromTypeNameToSizeString);
+			Expression actual   = memoized.solve(expression, indices, mapFromSymbolNameToTypeName, mapFromTypeNameToSizeString);
+			Assert.assertEquals("Solving " + expression, expected, actual);
+		}
+	}
+
+	private static Expression makeDeepConditionalSum(Random random, int depth) {
+		Expression result;
+		if (depth == 0) {
+			result = Expressions.makeSymbol(random.nextInt(4));
+		}
+		else if (random.nextInt(4) == 0) {
+			result = apply(FunctorConstants.PLUS, makeDeepConditionalSum(random, depth - 1), makeDeepConditionalSum(random, depth - 1));
+		}
+		else {
+			String[] terms = {"X", "W", "Y", "Z", "a", "b"};
+			Expression condition = parse(terms[random.nextInt(4)] + (random.nextBoolean()? " = " : " != ") + terms[random.nextInt(terms.length)]);
+			result = IfThenElse.make(condition, makeDeepConditionalSum(random, depth - 1), makeDeepConditionalSum(random, depth - 1), false);
+		}
+		return result;
+	}
 }
@@ -40,8 +40,12 @@ package com.sri.ai.test.grinder.library.equality.cardinality.plaindpll;
 import static com.sri.ai.expresso.helper.Expressions.parse;
 import static com.sri.ai.util.Util.list;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 import com.google.common.annotations.Beta;
@@ -49,11 +53,14 @@ import com.sri.ai.expresso.api.Expression;
 import com.sri.ai.expresso.api.IndexExpressionsSet;
 import com.sri.ai.expresso.core.DefaultUniversallyQuantifiedFormula;
 import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.grinder.api.RewritingProcess;
 import com.sri.ai.grinder.helper.GrinderUtil;
 import com.sri.ai.grinder.plaindpll.core.SGDPLLT;
 import com.sri.ai.grinder.plaindpll.problemtype.Tautologicality;
 import com.sri.ai.grinder.plaindpll.theory.EqualityConstraintTheory;
 import com.sri.ai.grinder.plaindpll.theory.term.SymbolTermTheory;
+import com.sri.ai.grinder.plaindpll.util.DPLLUtil;
+import com.sri.ai.util.Util;
 
 @Beta
 public class SymbolEqualityTautologicalityDPLLTest extends AbstractSymbolicSymbolEqualityDPLLTest {
@@ -200,6 +207,39 @@ public class SymbolEqualityTautologicalityDPLLTest extends AbstractSymbolicSymbo
 		runSymbolicAndNonSymbolicTests(expression, indices, expected);
 	}
 
+	@Test
+	public void testNestedQuantifiersSolvedRepeatedlyInSameProcess() {
+		GrinderUtil.setTraceAndJustificationOffAndTurnOffConcurrency();
+		
+		// nested quantified formulas are memoized per process by the theory,
+		// so solving them again in the same process must give the same results as solving them in fresh processes.
+		EqualityConstraintTheory theory = new EqualityConstraintTheory(new SymbolTermTheory());
+		Map<String, String> mapFromSymbolNameToTypeName = Util.map("V", "Everything");
+		Map<String, String> mapFromTypeNameToSizeString = Util.map("Everything", "10");
+		List<Expression> formulas = list(
+				parse("for all X in Everything : X = V => (for all Y in Everything : Y = X => Y = V)"),
+				parse("for all X in Everything : there exists Y in Everything : Y != X and (for all Z in Everything : Z = Y => Z != X)"),
+				parse("for all X in Everything : (there exists Y in Everything : Y = X and Y = V) or X != V"),
+				parse("there exists X in Everything : X = V and (for all Y in Everything : Y = X => Y = a)"),
+				parse("(for all X in Everything : X = V => (for all Y in Everything : Y = X => Y = V)) and (there exists X in Everything : X = V and (for all Y in Everything : Y = X => Y = a))"));
+		
+		List<Expression> expected = new ArrayList<Expression>();
+		for (Expression formula : formulas) {
+			RewritingProcess process = DPLLUtil.makeProcess(theory, mapFromSymbolNameToTypeName, mapFromTypeNameToSizeString);
+			expected.add(theory.simplify(formula, process));
+		}
+		Assert.assertEquals(parse("true"), expected.get(0));
+		Assert.assertEquals(parse("true"), expected.get(1));
+		Assert.assertEquals(parse("true"), expected.get(2));
+		
+		RewritingProcess process = DPLLUtil.makeProcess(theory, mapFromSymbolNameToTypeName, mapFromTypeNameToSizeString);
+		for (int round = 0; round != 3; round++) {
+			for (int i = 0; i != formulas.size(); i++) {
+				Assert.assertEquals("Solving " + formulas.get(i) + " in round " + round, expected.get(i), theory.simplify(formulas.get(i), process));
+			}
+		}
+	}
+
 	protected Expression makeProblem(Expression expression, IndexExpressionsSet indexExpressions) {
 		Expression problem = new DefaultUniversallyQuantifiedFormula(indexExpressions, expression);
 		return problem;
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.library.equality.cardinality.plaindpll;
+
+import static com.sri.ai.expresso.helper.Expressions.apply;
+import static com.sri.ai.expresso.helper.Expressions.parse;
+import static com.sri.ai.util.Util.list;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.grinder.helper.GrinderUtil;
+import com.sri.ai.grinder.library.FunctorConstants;
+import com.sri.ai.grinder.library.controlflow.IfThenElse;
+import com.sri.ai.grinder.plaindpll.core.SGDPLLT;
+import com.sri.ai.grinder.plaindpll.problemtype.Sum;
+import com.sri.ai.grinder.plaindpll.theory.EqualityConstraintTheory;
+import com.sri.ai.grinder.plaindpll.theory.term.SymbolTermTheory;
+import com.sri.ai.util.Util;
+
+/**
+ * Measures the time taken by {@link SGDPLLT} to solve sums of generated expressions with deep conditional structure
+ * (whose sub-solutions are merged by symbolic addition) with and without memoization of symbolic additions.
+ * 
+ * @author braz
+ *
+ */
+public class SymbolicAdditionExperiment {
+
+	public static int SEED = 1;
+	public static int numberOfProblems = 30;
+	public static int depth = 7;
+	public static int numberOfFreeVariables = 4;
+	public static int numberOfConstants = 3;
+	
+	public static void main(String[] args) {
+		GrinderUtil.setTraceAndJustificationOffAndTurnOffConcurrency();
+		
+		Random random = new Random(SEED);
+		List<Expression> indices = list(parse("X"), parse("W"));
+		Map<String, String> mapFromSymbolNameToTypeName = new LinkedHashMap<String, String>(Util.map("X", "Everything", "W", "Everything"));
+		for (int i = 0; i != numberOfFreeVariables; i++) {
+			mapFromSymbolNameToTypeName.put("Y" + i, "Everything");
+		}
+		Map<String, String> mapFromTypeNameToSizeString = Util.map("Everything", "10");
+		
+		List<Expression> problems = new ArrayList<Expression>();
+		for (int i = 0; i != numberOfProblems; i++) {
+			problems.add(makeDeepConditionalSum(random, depth));
+		}
+
+		SGDPLLT memoized   = new SGDPLLT(new EqualityConstraintTheory(new SymbolTermTheory()), new Sum());
+		SGDPLLT unmemoized = new SGDPLLT(new EqualityConstraintTheory(new SymbolTermTheory()), new Sum());
+		unmemoized.setMemoizeSymbolicAdditions(false);
+		
+		for (int round = 0; round != 3; round++) {
+			System.out.println("Round " + round);
+			
+			List<Expression> expected = new ArrayList<Expression>();
+			long start = System.nanoTime();
+			for (Expression problem : problems) {
+				expected.add(unmemoized.solve(problem, indices, mapFromSymbolNameToTypeName, mapFromTypeNameToSizeString));
+			}
+			report("without memoization", start);
+
+			start = System.nanoTime();
+			for (int i = 0; i != problems.size(); i++) {
+				Expression result = memoized.solve(problems.get(i), indices, mapFromSymbolNameToTypeName, mapFromTypeNameToSizeString);
+				if ( ! result.equals(expected.get(i))) {
+					throw new Error("Memoized symbolic addition produced " + result + " instead of " + expected.get(i) + " for " + problems.get(i));
+				}
+			}
+			report("with memoization", start);
+		}
+	}
+
+	private static Expression makeDeepConditionalSum(Random random, int depth) {
+		Expression result;
+		if (depth == 0) {
+			result = Expressions.makeSymbol(random.nextInt(4));
+		}
+		else if (random.nextInt(4) == 0) {
+			result = apply(FunctorConstants.PLUS, makeDeepConditionalSum(random, depth - 1), makeDeepConditionalSum(random, depth - 1));
+		}
+		else {
+			Expression condition = apply(random.nextBoolean()? FunctorConstants.EQUAL : FunctorConstants.DISEQUALITY, makeTerm(random), makeTerm(random));
+			result = IfThenElse.make(condition, makeDeepConditionalSum(random, depth - 1), makeDeepConditionalSum(random, depth - 1), false);
+		}
+		return result;
+	}
+
+	private static Expression makeTerm(Random random) {
+		int choice = random.nextInt(2 + numberOfFreeVariables + numberOfConstants);
+		Expression result;
+		if (choice < 2) {
+			result = Expressions.makeSymbol(choice == 0? "X" : "W");
+		}
+		else if (choice < 2 + numberOfFreeVariables) {
+			result = Expressions.makeSymbol("Y" + (choice - 2));
+		}
+		else {
+			result = Expressions.makeSymbol("a" + (choice - 2 - numberOfFreeVariables));
+		}
+		return result;
+	}
+
+	private static void report(String description, long startInNanoseconds) {
+		long elapsed = System.nanoTime() - startInNanoseconds;
+		System.out.println(String.format("  %-25s: %10.2f ms per problem", description, elapsed/1000000.0/numberOfProblems));
+	}
+}
@@ -39,11 +39,19 @@ package com.sri.ai.test.grinder.parser.antlr;
 
 import static com.sri.ai.util.Util.list;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 import com.sri.ai.expresso.api.Expression;
@@ -52,7 +60,9 @@ import com.sri.ai.expresso.api.IntensionalSet;
 import com.sri.ai.expresso.api.SyntaxTree;
 import com.sri.ai.expresso.core.DefaultSyntaxLeaf;
 import com.sri.ai.expresso.core.ExtensionalIndexExpressionsSet;
+import com.sri.ai.expresso.helper.ExpressionBatchParser;
 import com.sri.ai.expresso.helper.Expressions;
+import com.sri.ai.expresso.helper.ParseResult;
 import com.sri.ai.expresso.helper.SyntaxTrees;
 import com.sri.ai.grinder.helper.FunctionSignature;
 import com.sri.ai.grinder.parser.antlr.AntlrGrinderParserWrapper;
@@ -5417,4 +5427,67 @@ public class AntlrGrinderParserTest extends AbstractParserTest {
 	public static SyntaxTree makeScopingSyntaxTree(List<Expression> indexExpressions) {
 		return makeScopingSyntaxTree(new ExtensionalIndexExpressionsSet(indexExpressions));
 	}
+
+	@Test
+	public void testParseAll() {
+		String source = "f(X') ; // a comment; with a separator\n 'a;b' + 1;\n/* ; */ if X then Y else Z;\n X + ;  ;\n g(Y)";
+		List<ParseResult> results = new ArrayList<ParseResult>();
+		for (Iterator<ParseResult> iterator = parser.parseAll(new StringReader(source)); iterator.hasNext(); ) {
+			results.add(iterator.next());
+		}
+		Assert.assertEquals(5, results.size());
+		Assert.assertEquals(parser.parse("f(X')"), results.get(0).getExpression());
+		Assert.assertEquals(parser.parse("'a;b' + 1"), results.get(1).getExpression());
+		Assert.assertEquals(parser.parse("if X then Y else Z"), results.get(2).getExpression());
+		Assert.assertFalse(results.get(3).succeeded());
+		Assert.assertFalse(results.get(3).getErrors().isEmpty());
+		Assert.assertEquals(4, results.get(3).getLine());
+		Assert.assertEquals(parser.parse("g(Y)"), results.get(4).getExpression());
+		Assert.assertEquals(5, results.get(4).getLine());
+		for (int i = 0; i != results.size(); i++) {
+			Assert.assertEquals(i, results.get(i).getIndex());
+		}
+		
+		StringBuilder manyExpressions = new StringBuilder();
+		for (int i = 0; i != 1000; i++) {
+			manyExpressions.append("f(" + i + ", X + " + i + ");\n");
+		}
+		int i = 0;
+		for (Iterator<ParseResult> iterator = parser.parseAll(new StringReader(manyExpressions.toString())); iterator.hasNext(); i++) {
+			Assert.assertEquals(parser.parse("f(" + i + ", X + " + i + ")"), iterator.next().getExpression());
+		}
+		Assert.assertEquals(1000, i);
+	}
+
+	@Test
+	public void testParseAllFromFile() throws IOException {
+		// large enough to be memory-mapped and decoded in several chunks, with multi-byte characters
+		File file = File.createTempFile("top-level-expressions", ".txt");
+		try {
+			try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+				for (int i = 0; i != 5000; i++) {
+					writer.write("f(" + i + ", '\u00e9t\u00e9 \u2200 " + i + "');\n");
+				}
+			}
+			Assert.assertTrue(file.length() >= ExpressionBatchParser.MINIMUM_SIZE_OF_MEMORY_MAPPED_FILES);
+			
+			int i = 0;
+			try (ExpressionBatchParser.ParseResultIterator iterator = parser.parseAll(file)) {
+				for ( ; iterator.hasNext(); i++) {
+					Assert.assertEquals(parser.parse("f(" + i + ", '\u00e9t\u00e9 \u2200 " + i + "')"), iterator.next().getExpression());
+				}
+			}
+			Assert.assertEquals(5000, i);
+			
+			// stopping early and closing
+			try (ExpressionBatchParser.ParseResultIterator iterator = parser.parseAll(file)) {
+				Assert.assertEquals(parser.parse("f(0, '\u00e9t\u00e9 \u2200 0')"), iterator.next().getExpression());
+				iterator.close();
+				Assert.assertFalse(iterator.hasNext());
+			}
+		}
+		finally {
+			file.delete();
+		}
+	}
 }
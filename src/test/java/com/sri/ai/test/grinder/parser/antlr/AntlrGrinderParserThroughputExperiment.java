@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.parser.antlr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.sri.ai.expresso.api.Expression;
+import com.sri.ai.grinder.parser.antlr.AntlrGrinderParserWrapper;
+
+/**
+ * Measures the throughput of {@link AntlrGrinderParserWrapper} on the corpus of expressions
+ * used by {@link AntlrGrinderParserTest}, first on a cold parser (empty ATN/DFA caches)
+ * and then on successive warm passes, both in a single thread and in several threads at once.
+ * 
+ * @author braz
+ *
+ */
+public class AntlrGrinderParserThroughputExperiment {
+
+	public static int numberOfWarmPasses = 20;
+	public static int numberOfThreads = Runtime.getRuntime().availableProcessors();
+	
+	public static void main(String[] args) throws InterruptedException {
+		final List<String> corpus = collectCorpus();
+		System.out.println("Corpus size: " + corpus.size() + " expressions");
+		
+		long start = System.nanoTime();
+		parseAll(corpus);
+		report("Cold pass", corpus.size(), System.nanoTime() - start);
+		
+		start = System.nanoTime();
+		for (int i = 0; i != numberOfWarmPasses; i++) {
+			parseAll(corpus);
+		}
+		report("Warm passes (" + numberOfWarmPasses + ")", numberOfWarmPasses*corpus.size(), System.nanoTime() - start);
+		
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t != numberOfThreads; t++) {
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i != numberOfWarmPasses; i++) {
+						parseAll(corpus);
+					}
+				}
+			});
+		}
+		start = System.nanoTime();
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		report("Warm passes in " + numberOfThreads + " threads", numberOfThreads*numberOfWarmPasses*corpus.size(), System.nanoTime() - start);
+	}
+
+	private static void parseAll(List<String> corpus) {
+		AntlrGrinderParserWrapper parser = new AntlrGrinderParserWrapper();
+		for (String string : corpus) {
+			parser.parse(string);
+		}
+	}
+	
+	private static void report(String title, int numberOfParses, long nanoseconds) {
+		double milliseconds = nanoseconds/1000000.0;
+		System.out.println(title + ": " + numberOfParses + " parses in " + milliseconds + " ms, " + (long) (numberOfParses/(milliseconds/1000.0)) + " parses per second");
+	}
+
+	/**
+	 * Runs the tests in {@link AntlrGrinderParserTest} with a parser recording its inputs
+	 * and returns the successfully parsed ones.
+	 */
+	private static List<String> collectCorpus() {
+		List<String> result = new ArrayList<String>();
+		PrintStream standardOutput = System.out;
+		PrintStream standardError  = System.err;
+		PrintStream discarding = new PrintStream(new ByteArrayOutputStream());
+		System.setOut(discarding);
+		System.setErr(discarding);
+		try {
+			for (Method method : AntlrGrinderParserTest.class.getMethods()) {
+				if (method.isAnnotationPresent(Test.class)) {
+					try {
+						method.invoke(new CorpusCollector(result));
+					}
+					catch (Throwable throwable) {
+						// a failing test only reduces the corpus
+					}
+				}
+			}
+		}
+		finally {
+			System.setOut(standardOutput);
+			System.setErr(standardError);
+		}
+		return result;
+	}
+	
+	private static class CorpusCollector extends AntlrGrinderParserTest {
+		public CorpusCollector(final List<String> corpus) {
+			parser = new AntlrGrinderParserWrapper() {
+				@Override
+				public Expression parse(String string) {
+					Expression result = super.parse(string);
+					if (result != null) {
+						corpus.add(string);
+					}
+					return result;
+				}
+			};
+		}
+	}
+}
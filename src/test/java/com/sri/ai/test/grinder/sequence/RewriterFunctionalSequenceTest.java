@@ -39,9 +39,11 @@ package com.sri.ai.test.grinder.sequence;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -55,6 +57,7 @@ import com.sri.ai.grinder.core.AbstractRewriter;
 import com.sri.ai.grinder.core.DefaultRewriterLookup;
 import com.sri.ai.grinder.core.DefaultRewritingProcess;
 import com.sri.ai.grinder.library.Basic;
+import com.sri.ai.grinder.sequence.ConcurrentRewriterFunctionalSequenceRefinement;
 import com.sri.ai.grinder.sequence.RewriterFunctionalSequence;
 import com.sri.ai.test.grinder.AbstractGrinderTest;
 import com.sri.ai.util.Configuration;
@@ -167,6 +170,44 @@ public class RewriterFunctionalSequenceTest extends AbstractGrinderTest {
 				), results);
 	}
 
+	@Test
+	public void testConcurrentRefinement() {
+		int numberOfSequences = 8;
+		
+		List<Expression> serialFinalValues = new LinkedList<Expression>();
+		for (HalfTheAverageRewriterFunctionalSequence sequence : makeSequencesSharingChildSequences(numberOfSequences)) {
+			Expression value = null;
+			while (sequence.hasNext()) {
+				value = sequence.next();
+			}
+			serialFinalValues.add(value);
+		}
+		
+		// a single refinement, advancing sequences that share one rewriter, one process and one map of child sequences,
+		// so that threads race on the same child sequences
+		ConcurrentRewriterFunctionalSequenceRefinement refinement = new ConcurrentRewriterFunctionalSequenceRefinement(4);
+		for (int round = 0; round != 10; round++) {
+			List<Expression> parallelFinalValues = refinement.refine(makeSequencesSharingChildSequences(numberOfSequences), 0);
+			assertEquals(serialFinalValues, parallelFinalValues);
+		}
+	}
+	
+	/**
+	 * Makes root sequences on overlapping arguments of a single rewriter under a single process,
+	 * sharing a map of child sequences that fails if a child sequence is created twice for the same invocation.
+	 */
+	private static List<HalfTheAverageRewriterFunctionalSequence> makeSequencesSharingChildSequences(int numberOfSequences) {
+		Rewriter rewriter = new HalfTheAverageRewriterWithSharedSubRewriterInvocations();
+		DefaultRewriterLookup rewriterLookup = new DefaultRewriterLookup();		
+		rewriterLookup.put(rewriter.getName(), rewriter);
+		DefaultRewritingProcess process = new DefaultRewritingProcess(rewriter, rewriterLookup);
+		List<Expression> argumentsOfSequences = new ArrayList<Expression>();
+		for (int i = 0; i != numberOfSequences; i++) {
+			argumentsOfSequences.add(Expressions.apply("args", 2 + i % 3, Expressions.makeSymbol(i % 2)));
+		}
+		return HalfTheAverageRewriterFunctionalSequence.makeSequencesSharingChildSequences(rewriter.getName(), argumentsOfSequences, process);
+	}
+
 	public static class HalfTheAverageRewriterFunctionalSequence extends RewriterFunctionalSequence {
 		public HalfTheAverageRewriterFunctionalSequence(String rewriterName, Expression arguments, RewritingProcess process) {
 			super(rewriterName, arguments, process);
@@ -176,6 +217,27 @@ public class RewriterFunctionalSequenceTest extends AbstractGrinderTest {
 			super(rewriterName, arguments, process, sharedRewriterFunctionalSequences);
 		}
 		
+		public static List<HalfTheAverageRewriterFunctionalSequence> makeSequencesSharingChildSequences(String rewriterName, List<Expression> argumentsOfSequences, RewritingProcess process) {
+			Map<ChildRewriterInvocation, RewriterFunctionalSequence> sharedRewriterFunctionalSequences =
+					new ConcurrentHashMap<ChildRewriterInvocation, RewriterFunctionalSequence>() {
+						private static final long serialVersionUID = 1L;
+
+						@Override
+						public RewriterFunctionalSequence put(ChildRewriterInvocation childRewriterInvocation, RewriterFunctionalSequence sequence) {
+							RewriterFunctionalSequence previous = super.put(childRewriterInvocation, sequence);
+							if (previous != null) {
+								throw new Error("Child sequence created twice for the same invocation, replacing " + previous);
+							}
+							return previous;
+						}
+					};
+			List<HalfTheAverageRewriterFunctionalSequence> result = new ArrayList<HalfTheAverageRewriterFunctionalSequence>();
+			for (Expression arguments : argumentsOfSequences) {
+				result.add(new HalfTheAverageRewriterFunctionalSequence(rewriterName, arguments, process, sharedRewriterFunctionalSequences));
+			}
+			return result;
+		}
+		
 		@Override
 		protected RewriterFunctionalSequence newInstance(String childRewriterName, Expression childCallExpression, RewritingProcess childCallProcess) {
 			RewriterFunctionalSequence result = new HalfTheAverageRewriterFunctionalSequence(
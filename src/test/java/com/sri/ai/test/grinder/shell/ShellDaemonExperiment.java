@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.shell;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sri.ai.grinder.shell.Shell;
+import com.sri.ai.grinder.shell.ShellClient;
+import com.sri.ai.grinder.shell.ShellDaemon;
+
+/**
+ * Compares the throughput of evaluating a batch of queries by launching a JVM running {@link Shell} per query
+ * with that of sending them to a {@link ShellDaemon} (itself launched in a separate JVM) with a {@link ShellClient},
+ * both one request at a time and with all requests pipelined.
+ *
+ * @author braz
+ *
+ */
+public class ShellDaemonExperiment {
+
+	public static int numberOfQueries = 20;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		List<String> queries = new ArrayList<String>();
+		for (int i = 0; i != numberOfQueries; i++) {
+			queries.add("if X = a" + i + " then " + i + " + X + 1 else (X, " + i + ") = (b, Y)");
+		}
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		String classPath = System.getProperty("java.class.path");
+
+		long start = System.nanoTime();
+		List<String> launchedResults = new ArrayList<String>();
+		for (String query : queries) {
+			Process process = new ProcessBuilder(java, "-cp", classPath, Shell.class.getName(), query).redirectErrorStream(true).start();
+			List<String> lines = readLines(process);
+			process.waitFor();
+			launchedResults.add(lines.get(lines.size() - 1));
+		}
+		long launchedTime = System.nanoTime() - start;
+
+		Process daemonProcess = new ProcessBuilder(java, "-cp", classPath, Shell.class.getName(), "--daemon", "0").start();
+		try {
+			BufferedReader daemonOutput = new BufferedReader(new InputStreamReader(daemonProcess.getInputStream(), StandardCharsets.UTF_8));
+			String listening = daemonOutput.readLine();
+			int port = Integer.parseInt(listening.substring(listening.lastIndexOf(' ') + 1));
+			
+			try (ShellClient client = new ShellClient(port)) {
+				start = System.nanoTime();
+				for (int i = 0; i != queries.size(); i++) {
+					check(queries.get(i), client.request(queries.get(i)), launchedResults.get(i));
+				}
+				long sequentialTime = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				List<ShellDaemon.Response> responses = client.requestAll(queries);
+				long pipelinedTime = System.nanoTime() - start;
+				for (int i = 0; i != queries.size(); i++) {
+					check(queries.get(i), responses.get(i), launchedResults.get(i));
+				}
+
+				System.out.println("Time for " + queries.size() + " queries:");
+				System.out.println("  one JVM launch per query:  " + launchedTime/1000000 + " ms");
+				System.out.println("  daemon, one at a time:     " + sequentialTime/1000000 + " ms");
+				System.out.println("  daemon, pipelined:         " + pipelinedTime/1000000 + " ms");
+			}
+		}
+		finally {
+			daemonProcess.destroy();
+		}
+	}
+
+	private static List<String> readLines(Process process) throws IOException {
+		List<String> result = new ArrayList<String>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				result.add(line);
+			}
+		}
+		return result;
+	}
+
+	private static void check(String query, ShellDaemon.Response response, String expected) {
+		if ( ! response.isOK() || ! response.payload.equals(expected)) {
+			throw new Error("Daemon answered " + response + " to " + query + " instead of " + expected);
+		}
+	}
+}
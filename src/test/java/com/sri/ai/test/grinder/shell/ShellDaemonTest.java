@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-expresso nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.grinder.shell;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sri.ai.grinder.library.CommonLibrary;
+import com.sri.ai.grinder.shell.ShellClient;
+import com.sri.ai.grinder.shell.ShellDaemon;
+import com.sri.ai.util.Util;
+
+public class ShellDaemonTest {
+
+	@Test
+	public void testRequestsOverSocket() throws IOException {
+		try (ShellDaemon daemon = new ShellDaemon(new CommonLibrary(), 0, 2, ShellDaemon.DEFAULT_REQUEST_TIMEOUT_IN_MILLISECONDS)) {
+			daemon.start();
+			try (ShellClient client = new ShellClient(daemon.getPort())) {
+				ShellDaemon.Response response = client.request("1 + 2");
+				Assert.assertEquals(ShellDaemon.OK, response.status);
+				Assert.assertEquals("3", response.payload);
+				
+				response = client.request("if X = X then a else b");
+				Assert.assertEquals(ShellDaemon.OK, response.status);
+				Assert.assertEquals("a", response.payload);
+				
+				response = client.request("1 + ");
+				Assert.assertEquals(ShellDaemon.ERROR, response.status);
+				
+				// pipelined requests are evaluated concurrently but answered in order
+				List<String> requests = new ArrayList<String>();
+				List<String> expected = new ArrayList<String>();
+				for (int i = 0; i != 20; i++) {
+					requests.add(Util.list("X + " + i + " + 1", "if Y = b then " + i + " else " + i, i + " * 3").get(i % 3));
+					expected.add(Util.list("X + " + (i + 1), "" + i, "" + (i * 3)).get(i % 3));
+				}
+				List<ShellDaemon.Response> responses = client.requestAll(requests);
+				Assert.assertEquals(requests.size(), responses.size());
+				for (int i = 0; i != requests.size(); i++) {
+					Assert.assertEquals(ShellDaemon.OK,   responses.get(i).status);
+					Assert.assertEquals(expected.get(i), responses.get(i).payload);
+				}
+			}
+			
+			// a second connection to the same daemon
+			try (ShellClient client = new ShellClient(daemon.getPort())) {
+				Assert.assertEquals("6", client.request("1 + 2 + 3").payload);
+			}
+		}
+	}
+
+	@Test
+	public void testOverlappingRequestsDependingOnModuleProviders() throws IOException {
+		// these requests go through if-then-else externalization and imposed conditions,
+		// which depend on providers registered with modules of the shared root rewriter
+		List<String> requests = new ArrayList<String>();
+		for (int i = 0; i != 30; i++) {
+			requests.add(Util.list(
+					"f(if Y = b then " + i + " else 4, if Z = c then 5 else " + i + ")",
+					"if X = a then if X = a then " + i + " else 2 else 3",
+					"g(if X = a then if X != b then " + i + " else 2 else 3)").get(i % 3));
+		}
+		
+		List<String> sequentialPayloads = new ArrayList<String>();
+		try (ShellDaemon daemon = new ShellDaemon(new CommonLibrary(), 0, 1, ShellDaemon.DEFAULT_REQUEST_TIMEOUT_IN_MILLISECONDS)) {
+			daemon.start();
+			try (ShellClient client = new ShellClient(daemon.getPort())) {
+				for (String request : requests) {
+					ShellDaemon.Response response = client.request(request);
+					Assert.assertEquals(response.payload, ShellDaemon.OK, response.status);
+					sequentialPayloads.add(response.payload);
+				}
+			}
+		}
+		Assert.assertEquals("if X = a then 1 else 3", sequentialPayloads.get(1));
+		
+		try (ShellDaemon daemon = new ShellDaemon(new CommonLibrary(), 0, 8, ShellDaemon.DEFAULT_REQUEST_TIMEOUT_IN_MILLISECONDS)) {
+			daemon.start();
+			try (ShellClient client1 = new ShellClient(daemon.getPort()); ShellClient client2 = new ShellClient(daemon.getPort())) {
+				for (int round = 0; round != 3; round++) {
+					CompletableFuture<List<ShellDaemon.Response>> fromSecondClient = CompletableFuture.supplyAsync(() -> requestAll(client2, requests));
+					List<ShellDaemon.Response> fromFirstClient = client1.requestAll(requests);
+					checkAgainst(sequentialPayloads, fromFirstClient);
+					checkAgainst(sequentialPayloads, fromSecondClient.join());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testTimeout() throws IOException {
+		// externalizing this many conditionals takes exponential time, way beyond the time out
+		StringBuilder slowRequest = new StringBuilder("f(");
+		for (int i = 0; i != 16; i++) {
+			slowRequest.append(i == 0? "" : ", ").append("if X" + i + " = a then " + i + " else b");
+		}
+		slowRequest.append(")");
+		
+		try (ShellDaemon daemon = new ShellDaemon(new CommonLibrary(), 0, 2, 10)) {
+			daemon.start();
+			try (ShellClient client = new ShellClient(daemon.getPort())) {
+				ShellDaemon.Response response = client.request(slowRequest.toString());
+				Assert.assertEquals(response.payload, ShellDaemon.TIMEOUT, response.status);
+				
+				// the daemon keeps serving requests after a time out
+				response = client.request("1 + 2");
+				Assert.assertEquals(ShellDaemon.OK, response.status);
+				Assert.assertEquals("3", response.payload);
+			}
+		}
+	}
+
+	private static List<ShellDaemon.Response> requestAll(ShellClient client, List<String> requests) {
+		try {
+			return client.requestAll(requests);
+		}
+		catch (IOException ioException) {
+			throw new Error(ioException);
+		}
+	}
+
+	private static void checkAgainst(List<String> expectedPayloads, List<ShellDaemon.Response> responses) {
+		Assert.assertEquals(expectedPayloads.size(), responses.size());
+		for (int i = 0; i != responses.size(); i++) {
+			Assert.assertEquals(ShellDaemon.OK, responses.get(i).status);
+			Assert.assertEquals(expectedPayloads.get(i), responses.get(i).payload);
+		}
+	}
+}